@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gov.nasa.jpf;
+
+import gov.nasa.jpf.report.Statistics;
+import gov.nasa.jpf.vm.BenchmarkSupport;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * end-to-end JPF.run() throughput for the examples, with the different heap and
+ * serializer implementations. Besides runs/sec this reports new states/sec and
+ * executed instructions/sec as secondary results, the latter is what we get
+ * from ThreadInfo.executeTransition() on these SUTs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class JPFRunBenchmark {
+
+  @Param({"DiningPhil", "oldclassic"})
+  public String target;
+
+  @Param({"gov.nasa.jpf.vm.OVHeap", "gov.nasa.jpf.vm.PSIMHeap", "gov.nasa.jpf.vm.PagedHeap"})
+  public String heap;
+
+  @Param({"gov.nasa.jpf.vm.serialize.CFSerializer",
+          "gov.nasa.jpf.vm.serialize.IncrementalHashingSerializer"})
+  public String serializer;
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Counters {
+    public long states;
+    public long insns;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      states = 0;
+      insns = 0;
+    }
+  }
+
+  @Benchmark
+  public boolean run (Counters counters) {
+    Config conf = BenchmarkSupport.createConfig(
+            "+vm.heap.class=" + heap,
+            "+vm.serializer.class=" + serializer,
+            target);
+
+    JPF jpf = new JPF(conf);
+    jpf.run();
+
+    Statistics stat = jpf.getReporter().getRegisteredStatistics();
+    counters.states += stat.newStates;
+    counters.insns += stat.insns;
+
+    return jpf.foundErrors();
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf.search;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.JPF;
+import gov.nasa.jpf.report.Statistics;
+import gov.nasa.jpf.vm.BenchmarkSupport;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * full state space exploration of the concurrent examples with the different
+ * search strategies. Runs continue after property violations so that the
+ * number of new states per run (secondary result) shows the reduction, and
+ * runs/sec the overhead of a search strategy
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SearchBenchmark {
+
+  @Param({"oldclassic", "Racer"})
+  public String target;
+
+  @Param({"gov.nasa.jpf.search.DFSearch", "gov.nasa.jpf.search.dpor.DPORSearch"})
+  public String search;
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Counters {
+    public long states;
+    public long backtracks;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      states = 0;
+      backtracks = 0;
+    }
+  }
+
+  @Benchmark
+  public boolean run (Counters counters) {
+    Config conf = BenchmarkSupport.createConfig(
+            "+search.class=" + search,
+            "+search.multiple_errors=true",
+            target);
+
+    JPF jpf = new JPF(conf);
+    jpf.run();
+
+    Statistics stat = jpf.getReporter().getRegisteredStatistics();
+    counters.states += stat.newStates;
+    counters.backtracks += stat.backtracked;
+
+    return jpf.foundErrors();
+  }
+}
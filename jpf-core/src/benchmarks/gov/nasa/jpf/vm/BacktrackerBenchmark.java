@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gov.nasa.jpf.vm;
+
+import gov.nasa.jpf.JPF;
+import gov.nasa.jpf.util.IntVector;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * a store / modify / backtrack cycle as it happens for each transition of a
+ * DFSearch: push the kernel and system state (which freezes all objects),
+ * modify a number of objects (which clones them), and backtrack (which
+ * restores the frozen ones)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BacktrackerBenchmark {
+
+  @Param({"gov.nasa.jpf.vm.OVHeap", "gov.nasa.jpf.vm.PSIMHeap", "gov.nasa.jpf.vm.PagedHeap"})
+  public String heap;
+
+  @Param({"100", "10000"})
+  public int nNodes;
+
+  // number of objects that are modified between push and backtrack
+  @Param({"0", "10"})
+  public int nModified;
+
+  Backtracker backtracker;
+  Heap h;
+  int[] nodeRefs;
+  int value;
+
+  @Setup
+  public void setup() {
+    JPF jpf = BenchmarkSupport.createHeapState(nNodes, "+vm.heap.class=" + heap);
+    VM vm = jpf.getVM();
+
+    backtracker = vm.getBacktracker();
+    h = vm.getHeap();
+
+    String nodeClsName = SyntheticHeap.Node.class.getName();
+    IntVector refs = new IntVector();
+    for (ElementInfo ei : h.liveObjects()) {
+      if (ei.getClassInfo().getName().equals(nodeClsName)) {
+        refs.add(ei.getObjectRef());
+      }
+    }
+    nodeRefs = refs.toArray();
+  }
+
+  @Benchmark
+  public boolean pushModifyBacktrack() {
+    backtracker.pushKernelState();
+    backtracker.pushSystemState();
+
+    for (int i = 0; i < nModified; i++) {
+      int ref = nodeRefs[(value + i) % nodeRefs.length];
+      h.getModifiable(ref).setIntField("value", value);
+    }
+    value++;
+
+    return backtracker.backtrack();
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gov.nasa.jpf.vm;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.JPF;
+import gov.nasa.jpf.ListenerAdapter;
+import gov.nasa.jpf.search.Search;
+
+/**
+ * common setup for the benchmarks that need a live VM.
+ *
+ * The benchmarks have to be executed from the jpf-core root dir so that our
+ * jpf.properties is found (the 'jmh' gradle task does this). All output is
+ * suppressed since we don't want to measure console publishing.
+ */
+public class BenchmarkSupport {
+
+  public static final String BENCHMARK_CLASSPATH = "build/benchmarks";
+
+  static final String[] CONSOLE_TOPICS = { "start", "transition", "constraint", "probe", "property_violation", "finished" };
+
+  /**
+   * stops the search once the SyntheticHeap SUT has built its heap
+   */
+  static class HeapBuiltListener extends ListenerAdapter {
+    @Override
+    public void stateAdvanced (Search search) {
+      ChoiceGenerator<?> cg = search.getVM().getChoiceGenerator();
+      if (cg != null && SyntheticHeap.HEAP_BUILT.equals(cg.getId())) {
+        search.terminate();
+      }
+    }
+  }
+
+  public static Config createConfig (String... args) {
+    Config conf = JPF.createConfig(args);
+
+    for (String topic : CONSOLE_TOPICS) {
+      conf.setProperty("report.console." + topic, "");
+    }
+    conf.setProperty("report.statistics", "true");
+    conf.setProperty("log.level", "severe");
+    conf.setProperty("vm.tree_output", "false");
+
+    return conf;
+  }
+
+  /**
+   * run the SyntheticHeap SUT up to the point where it has created its objects, and
+   * return the JPF with the VM still in this state
+   */
+  public static JPF createHeapState (int nNodes, String... args) {
+    Config conf = createConfig(args);
+    conf.setProperty("classpath", BENCHMARK_CLASSPATH);
+    conf.setTarget(SyntheticHeap.class.getName());
+    conf.setTargetArgs(new String[] { Integer.toString(nNodes) });
+
+    JPF jpf = new JPF(conf);
+    jpf.addListener(new HeapBuiltListener());
+    jpf.run();
+
+    ChoiceGenerator<?> cg = jpf.getVM().getChoiceGenerator();
+    if (cg == null || !SyntheticHeap.HEAP_BUILT.equals(cg.getId())) {
+      throw new IllegalStateException("SyntheticHeap did not reach " + SyntheticHeap.HEAP_BUILT);
+    }
+
+    return jpf;
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gov.nasa.jpf.vm;
+
+import gov.nasa.jpf.JPF;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * the per state heap operations of GenericHeap based heaps: garbage collection
+ * (all objects of the synthetic heap are live, i.e. this is mark and sweep
+ * without releasing anything) and iteration over live objects
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HeapBenchmark {
+
+  @Param({"gov.nasa.jpf.vm.OVHeap", "gov.nasa.jpf.vm.PSIMHeap", "gov.nasa.jpf.vm.PagedHeap"})
+  public String heap;
+
+  @Param({"100", "10000"})
+  public int nNodes;
+
+  Heap h;
+
+  @Setup
+  public void setup() {
+    JPF jpf = BenchmarkSupport.createHeapState(nNodes, "+vm.heap.class=" + heap);
+    h = jpf.getVM().getHeap();
+  }
+
+  @Benchmark
+  public int gc() {
+    h.gc();
+    return h.size();
+  }
+
+  @Benchmark
+  public int liveObjects() {
+    int n = 0;
+    for (ElementInfo ei : h.liveObjects()) {
+      n += ei.getObjectRef();
+    }
+    return n;
+  }
+}
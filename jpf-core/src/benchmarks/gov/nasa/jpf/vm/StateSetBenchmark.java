@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gov.nasa.jpf.vm;
+
+import gov.nasa.jpf.util.ConcurrentFingerprintTable;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * StateSet.add() for new and already stored states, i.e. hashing of the
+ * serialized state plus the fingerprint table lookup. This does not include
+ * the serialization itself (see SerializerBenchmark)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StateSetBenchmark {
+
+  static final int N_STORED = 1 << 16;
+
+  @Param({"JenkinsStateSet", "ConcurrentStateSet"})
+  public String stateSet;
+
+  // length of the serialized state (in ints)
+  @Param({"64", "1024"})
+  public int stateLength;
+
+  SerializingStateSet set;
+  int[] state;
+  int nextNew;
+  int nextOld;
+
+  @Setup
+  public void setup() {
+    if (stateSet.equals("JenkinsStateSet")) {
+      set = new JenkinsStateSet();
+    } else {
+      set = new ConcurrentStateSet(new ConcurrentFingerprintTable(), new AtomicInteger());
+    }
+
+    Random random = new Random(42);
+    state = new int[stateLength];
+    for (int i = 0; i < stateLength; i++) {
+      state[i] = random.nextInt();
+    }
+
+    // states only differ in their first value, which is what we use as counter
+    for (int i = 0; i < N_STORED; i++) {
+      state[0] = i;
+      set.add(state);
+    }
+    nextNew = N_STORED;
+  }
+
+  @Benchmark
+  public int addNew() {
+    state[0] = nextNew++;
+    return set.add(state);
+  }
+
+  @Benchmark
+  public int addVisited() {
+    state[0] = nextOld++ & (N_STORED - 1);
+    return set.add(state);
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gov.nasa.jpf.vm;
+
+/**
+ * the SUT we use to get synthetic heaps for the benchmarks: a binary tree of
+ * nodes plus a number of int arrays, all reachable from static fields. Once
+ * the heap is built we break the transition, which is where the benchmark
+ * setup stops the search.
+ *
+ * usage: SyntheticHeap <nNodes>
+ */
+public class SyntheticHeap {
+
+  public static final String HEAP_BUILT = "heapBuilt";
+
+  static class Node {
+    int value;
+    Node left;
+    Node right;
+
+    Node (int value) {
+      this.value = value;
+    }
+  }
+
+  static Node[] nodes;
+  static int[][] arrays;
+
+  public static void main (String[] args) {
+    int nNodes = Integer.parseInt(args[0]);
+
+    nodes = new Node[nNodes];
+    for (int i = 0; i < nNodes; i++) {
+      Node n = new Node(i);
+      nodes[i] = n;
+
+      if (i > 0) { // link into the tree
+        Node parent = nodes[(i - 1) / 2];
+        if ((i & 1) == 1) {
+          parent.left = n;
+        } else {
+          parent.right = n;
+        }
+      }
+    }
+
+    arrays = new int[nNodes / 16 + 1][];
+    for (int i = 0; i < arrays.length; i++) {
+      int[] a = new int[32];
+      for (int j = 0; j < a.length; j++) {
+        a[j] = i + j;
+      }
+      arrays[i] = a;
+    }
+
+    Verify.breakTransition(HEAP_BUILT);
+  }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf;
+
+import gov.nasa.jpf.util.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * a JPF object that lives in its own IsolatingClassLoader, so that several of
+ * them can be executed concurrently within the same host VM (e.g. from different
+ * threads of a parallel search).
+ *
+ * The isolated JPF gets a copy of a template Config, plus optional "key=value"
+ * overrides. Since the isolated JPF classes are different from the ones that
+ * created the IsolatedJPF, all access goes through reflection, and data can only
+ * be exchanged via system types or explicitly shared classes (which are loaded
+ * by our own classloader)
+ */
+public class IsolatedJPF implements Runnable {
+
+  static final String JPF_CLASSNAME = "gov.nasa.jpf.JPF";
+  static final String CONFIG_CLASSNAME = "gov.nasa.jpf.Config";
+
+  protected IsolatingClassLoader loader;
+  protected Object config;  // the isolated gov.nasa.jpf.Config
+  protected Object jpf;     // the isolated gov.nasa.jpf.JPF
+
+  public IsolatedJPF (Config template, String[] sharedPrefixes, String... overrides) {
+    this( createClassLoader(template, sharedPrefixes), template, overrides);
+  }
+
+  /**
+   * create an isolated JPF within an existing IsolatingClassLoader. This can be used
+   * to run consecutive JPFs with the same (already loaded and warmed up) JPF classes,
+   * but the loader must not be used by another JPF at the same time
+   */
+  public IsolatedJPF (IsolatingClassLoader loader, Config template, String... overrides) {
+    this.loader = loader;
+
+    try {
+      Class<?> cfgCls = loader.loadClass(CONFIG_CLASSNAME);
+      config = cfgCls.getConstructor(Reader.class).newInstance( new StringReader( getConfigContents(template)));
+
+      // free command line args are not part of the dictionary, turn them into target keys
+      String[] freeArgs = template.getFreeArgs();
+      if (freeArgs != null && freeArgs.length > 0 && template.getTarget() == null) {
+        cfgCls.getMethod("setTarget", String.class).invoke(config, freeArgs[0]);
+        if (freeArgs.length > 1) {
+          String[] targetArgs = Arrays.copyOfRange(freeArgs, 1, freeArgs.length);
+          cfgCls.getMethod("setTargetArgs", String[].class).invoke(config, (Object)targetArgs);
+        }
+      }
+
+      Method setProperty = cfgCls.getMethod("setProperty", String.class, String.class);
+      for (String kv : overrides) {
+        int idx = kv.indexOf('=');
+        if (idx <= 0) {
+          throw new JPFConfigException("illegal IsolatedJPF override (expected key=value): " + kv);
+        }
+        setProperty.invoke(config, kv.substring(0, idx).trim(), kv.substring(idx + 1).trim());
+      }
+
+      // the loader already has the collected native_classpath, don't collect again
+      cfgCls.getMethod("setClassLoader", ClassLoader.class).invoke(config, loader);
+
+      Class<?> jpfCls = loader.loadClass(JPF_CLASSNAME);
+      jpf = jpfCls.getConstructor(cfgCls).newInstance(config);
+
+    } catch (InvocationTargetException itx) {
+      throw new JPFException("failed to create isolated JPF: " + itx.getCause(), itx.getCause());
+    } catch (ReflectiveOperationException rox) {
+      throw new JPFException("failed to create isolated JPF: " + rox, rox);
+    }
+  }
+
+  public static IsolatingClassLoader createClassLoader (Config template, String... sharedPrefixes) {
+    ClassLoader parent = JPF.class.getClassLoader();
+    IsolatingClassLoader loader = new IsolatingClassLoader( getIsolationPath(template), parent, sharedPrefixes);
+    loader.setNativeLibs( template.getCompactStringArray("native_libraries"));
+
+    return loader;
+  }
+
+  /**
+   * the path we load isolated classes from - this is where our own JPF classes
+   * came from, the host classpath and the configured native_classpath
+   */
+  public static URL[] getIsolationPath (Config template) {
+    LinkedHashSet<URL> urls = new LinkedHashSet<URL>();
+
+    ClassLoader cl = JPF.class.getClassLoader();
+    if (cl instanceof URLClassLoader) {
+      for (URL url : ((URLClassLoader)cl).getURLs()) {
+        urls.add(url);
+      }
+    }
+
+    ArrayList<String> list = new ArrayList<String>();
+    String hostCp = System.getProperty("java.class.path");
+    if (hostCp != null) {
+      for (String e : hostCp.split(File.pathSeparator)) {
+        if (e.length() > 0) {
+          list.add(e);
+        }
+      }
+    }
+
+    String[] cp = template.getCompactStringArray("native_classpath");
+    if (cp != null) {
+      for (String e : FileUtils.expandWildcards(cp)) {
+        list.add(e);
+      }
+    }
+
+    for (URL url : FileUtils.getURLs(list)) {
+      urls.add(url);
+    }
+
+    return urls.toArray(new URL[urls.size()]);
+  }
+
+  protected static String getConfigContents (Config template) {
+    try {
+      StringWriter sw = new StringWriter();
+      template.store(sw, null);
+      return sw.toString();
+    } catch (IOException iox) {
+      throw new JPFException("failed to copy config: " + iox);
+    }
+  }
+
+  public ClassLoader getClassLoader() {
+    return loader;
+  }
+
+  /**
+   * the isolated gov.nasa.jpf.JPF object (use reflection to access)
+   */
+  public Object getJPF() {
+    return jpf;
+  }
+
+  protected Object call (Object target, String mthName) {
+    try {
+      Method m = target.getClass().getMethod(mthName);
+      return m.invoke(target);
+
+    } catch (InvocationTargetException itx) {
+      Throwable cause = itx.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException)cause; // isolated type, but still a RuntimeException
+      } else if (cause instanceof java.lang.Error) {
+        throw (java.lang.Error)cause;
+      }
+      throw new JPFException("isolated JPF call failed: " + mthName, cause);
+
+    } catch (ReflectiveOperationException rox) {
+      throw new JPFException("isolated JPF call failed: " + mthName, rox);
+    }
+  }
+
+  @Override
+  public void run() {
+    call(jpf, "run");
+  }
+
+  public boolean foundErrors() {
+    return (Boolean) call(jpf, "foundErrors");
+  }
+
+  /**
+   * the isolated gov.nasa.jpf.report.Statistics (use reflection to access), which
+   * is null if the isolated config does not set 'report.statistics'
+   */
+  public Object getStatistics() {
+    Object reporter = call(jpf, "getReporter");
+    return (reporter != null) ? call(reporter, "getStatistics") : null;
+  }
+
+  /**
+   * the descriptions of all property violations found by the isolated search
+   */
+  public String[] getErrorDescriptions() {
+    Object search = call(jpf, "getSearch");
+    if (search != null) {
+      List<?> errors = (List<?>) call(search, "getErrors");
+      String[] descriptions = new String[errors.size()];
+      for (int i = 0; i < descriptions.length; i++) {
+        descriptions[i] = (String) call(errors.get(i), "getDescription");
+      }
+      return descriptions;
+    }
+    return new String[0];
+  }
+
+  /**
+   * request termination of a running isolated JPF. Note this is only a request,
+   * the search loop has to check for it
+   */
+  public void terminate() {
+    Object search = call(jpf, "getSearch");
+    if (search != null) {
+      call(search, "terminate");
+    }
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf;
+
+import java.net.URL;
+
+/**
+ * a child-first JPFClassLoader that defines its own copies of all non-system
+ * classes it can find on its path.
+ *
+ * JPF keeps a lot of its runtime state in static fields (VM.vm,
+ * ThreadInfo.currentThread, ClassLoaderInfo.loadedClasses etc.), which means two
+ * JPF objects that share the same JPF classes cannot run concurrently. Each
+ * IsolatingClassLoader gets its own set of these classes, and hence its own
+ * statics. The only exceptions are the system classes and an explicit set of
+ * 'shared' classes, which are always resolved through the parent. Shared classes
+ * are used to communicate between isolated JPFs and must therefore not
+ * reference any JPF type that is not shared itself
+ *
+ * Note that objects of non-shared types cannot be passed between loaders, they
+ * have to be accessed through reflection or through shared types
+ */
+public class IsolatingClassLoader extends JPFClassLoader {
+
+  static final String[] SYSTEM_PREFIXES = {
+    "java.", "javax.", "jdk.", "sun.", "com.sun.", "org.w3c.", "org.xml.",
+    "org.junit.", "junit.", "org.hamcrest."
+  };
+
+  static {
+    ClassLoader.registerAsParallelCapable();
+  }
+
+  protected String[] sharedPrefixes;
+
+  public IsolatingClassLoader (URL[] urls, ClassLoader parent, String... sharedPrefixes) {
+    super(urls, null, parent);
+
+    this.sharedPrefixes = sharedPrefixes;
+  }
+
+  protected boolean isParentFirst (String clsName) {
+    for (String p : SYSTEM_PREFIXES) {
+      if (clsName.startsWith(p)) {
+        return true;
+      }
+    }
+
+    if (sharedPrefixes != null) {
+      for (String p : sharedPrefixes) {
+        if (clsName.startsWith(p)) {
+          return true;
+        }
+      }
+    }
+
+    return false;
+  }
+
+  @Override
+  protected Class<?> loadClass (String clsName, boolean resolve) throws ClassNotFoundException {
+    if (isParentFirst(clsName)) {
+      return super.loadClass(clsName, resolve);
+    }
+
+    synchronized (getClassLoadingLock(clsName)) {
+      Class<?> cls = findLoadedClass(clsName);
+
+      if (cls == null) {
+        try {
+          cls = findClass(clsName);
+        } catch (ClassNotFoundException cnfx) {
+          return super.loadClass(clsName, resolve); // not on our path, delegate
+        }
+      }
+
+      if (resolve) {
+        resolveClass(cls);
+      }
+      return cls;
+    }
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * the data that is shared between a SwarmJPF and its workers.
+ *
+ * Workers run in their own IsolatingClassLoaders, i.e. this class is loaded
+ * by the parent loader and therefore must not use any JPF type that isn't shared
+ * as well (only system types). Workers look up their context through the id that
+ * is passed to them as the 'swarm.context' config value
+ */
+public class SwarmContext {
+
+  static final ConcurrentHashMap<String,SwarmContext> contexts = new ConcurrentHashMap<String,SwarmContext>();
+  static final AtomicInteger nextContextId = new AtomicInteger();
+
+  protected final String id;
+
+  protected final AtomicBoolean terminated = new AtomicBoolean();
+
+  // id of the first worker that found a property violation, -1 if none did (yet)
+  protected final AtomicInteger firstViolation = new AtomicInteger(-1);
+
+  // per worker counters that are updated while the workers run
+  protected final AtomicLongArray newStates;
+  protected final AtomicLongArray visitedStates;
+
+  public SwarmContext (int nWorkers) {
+    newStates = new AtomicLongArray(nWorkers);
+    visitedStates = new AtomicLongArray(nWorkers);
+    id = "swarm" + nextContextId.incrementAndGet();
+  }
+
+  //--- the registry
+
+  public static void register (SwarmContext ctx) {
+    contexts.put(ctx.id, ctx);
+  }
+
+  public static void unregister (SwarmContext ctx) {
+    contexts.remove(ctx.id);
+  }
+
+  public static SwarmContext get (String id) {
+    return (id != null) ? contexts.get(id) : null;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public int getNumberOfWorkers() {
+    return newStates.length();
+  }
+
+  //--- counters
+
+  public void addNewState (int workerId) {
+    newStates.incrementAndGet(workerId);
+  }
+
+  public void addVisitedState (int workerId) {
+    visitedStates.incrementAndGet(workerId);
+  }
+
+  public long getNewStates (int workerId) {
+    return newStates.get(workerId);
+  }
+
+  public long getVisitedStates (int workerId) {
+    return visitedStates.get(workerId);
+  }
+
+  public long getTotalNewStates() {
+    long n = 0;
+    for (int i = 0; i < newStates.length(); i++) {
+      n += newStates.get(i);
+    }
+    return n;
+  }
+
+  //--- termination and results
+
+  /**
+   * record a property violation of a worker, which terminates all others.
+   * Answer if this was the first one
+   */
+  public boolean reportViolation (int workerId) {
+    boolean isFirst = firstViolation.compareAndSet(-1, workerId);
+    terminate();
+    return isFirst;
+  }
+
+  public int getFirstViolation() {
+    return firstViolation.get();
+  }
+
+  public void terminate() {
+    terminated.set(true);
+  }
+
+  public boolean isTerminated() {
+    return terminated.get();
+  }
+}
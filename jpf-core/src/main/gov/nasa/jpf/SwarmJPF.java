@@ -0,0 +1,332 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf;
+
+import gov.nasa.jpf.report.Publisher;
+import gov.nasa.jpf.search.RandomSearch;
+import gov.nasa.jpf.search.heuristic.PreferThreads;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+
+/**
+ * a JPFShell that runs a portfolio of differently configured JPFs on the same
+ * system under test, each one in its own thread of the host VM (swarm
+ * verification).
+ *
+ * Workers are IsolatedJPFs which get a copy of our Config, plus a search class
+ * from 'swarm.searches'. If there are more workers than searches, the searches
+ * are re-used with randomized choice orders (each worker with a different
+ * seed). RandomSearch workers are always randomized, and are terminated once
+ * all exhaustive (non-random) workers are done. The default searches only
+ * include PreferThreads if 'search.heuristic.preferredThreads' is set.
+ *
+ * The first property violation found by any worker terminates all others.
+ * Workers only publish property violations, everything else is reported by the
+ * swarm once all workers are done, including the aggregated states/sec.
+ *
+ * Usage:
+ *   jpf +shell=gov.nasa.jpf.SwarmJPF [+swarm.workers=<n>] <app-properties>
+ *
+ * Configuration:
+ *   swarm.workers  - number of worker JPFs (default: number of swarm.searches)
+ *   swarm.searches - search classes of the workers
+ *   cg.seed        - base seed for randomized workers
+ */
+public class SwarmJPF implements JPFShell {
+
+  static final String[] SHARED_CLASSES = { SwarmContext.class.getName() };
+
+  static final String[] DEFAULT_SEARCHES = {
+    "gov.nasa.jpf.search.RandomSearch",
+    "gov.nasa.jpf.search.heuristic.DFSHeuristic",
+    "gov.nasa.jpf.search.heuristic.BFSHeuristic",
+    "gov.nasa.jpf.search.heuristic.MostBlocked",
+    "gov.nasa.jpf.search.heuristic.PreferThreads"
+  };
+
+  /**
+   * what we keep for each worker
+   */
+  class Worker implements Runnable {
+    int id;
+    String searchClass;
+    boolean isRandomized;
+    long seed;
+
+    Thread thread;
+    IsolatedJPF jpf;
+    boolean foundErrors;
+    boolean wasTerminated;
+    String failure;
+    long elapsed;
+
+    Worker (int id, String searchClass, boolean isRandomized, long seed) {
+      this.id = id;
+      this.searchClass = searchClass;
+      this.isRandomized = isRandomized;
+      this.seed = seed;
+    }
+
+    boolean isExhaustive() {
+      return !searchClass.equals(RandomSearch.class.getName());
+    }
+
+    @Override
+    public void run() {
+      long t0 = System.currentTimeMillis();
+      try {
+        jpf = new IsolatedJPF(config, SHARED_CLASSES, getWorkerConfig(this));
+        jpf.run();
+        foundErrors = jpf.foundErrors();
+        wasTerminated = !foundErrors && context.isTerminated();
+
+      } catch (Throwable t) {
+        failure = t.toString();
+      } finally {
+        elapsed = System.currentTimeMillis() - t0;
+      }
+    }
+
+    @Override
+    public String toString() {
+      if (isRandomized) {
+        return searchClass + " (seed " + seed + ')';
+      } else {
+        return searchClass;
+      }
+    }
+  }
+
+  protected Config config;
+  protected String[] searches;
+  protected int nWorkers;
+  protected long seed;
+
+  protected SwarmContext context;
+  protected Worker[] workers;
+  protected long elapsed;
+
+  protected PrintWriter out;
+
+  public SwarmJPF (Config config) {
+    this.config = config;
+
+    searches = config.getStringArray("swarm.searches");
+    if (searches == null) {
+      searches = getDefaultSearches(config);
+    }
+    if (searches.length == 0) {
+      throw new JPFConfigException("no swarm.searches");
+    }
+    for (int i = 0; i < searches.length; i++) {
+      searches[i] = config.expandClassName(searches[i]);
+    }
+
+    nWorkers = config.getInt("swarm.workers", searches.length);
+    if (nWorkers < 1) {
+      nWorkers = 1;
+    }
+    seed = config.getLong("cg.seed", 42);
+
+    out = new PrintWriter(System.out, true);
+  }
+
+  @Override
+  public void start (String[] args) {
+    try {
+      run();
+    } catch (JPFConfigException cx) {
+      out.println(cx.getMessage());
+    }
+  }
+
+  /**
+   * PreferThreads is only useful (and possible) if we know which threads to prefer
+   */
+  protected static String[] getDefaultSearches (Config config) {
+    ArrayList<String> list = new ArrayList<String>();
+
+    for (String s : DEFAULT_SEARCHES) {
+      if (!s.equals(PreferThreads.class.getName()) || config.containsKey("search.heuristic.preferredThreads")) {
+        list.add(s);
+      }
+    }
+
+    return list.toArray(new String[list.size()]);
+  }
+
+  public boolean foundErrors() {
+    return (context != null) && (context.getFirstViolation() >= 0);
+  }
+
+  public SwarmContext getContext() {
+    return context;
+  }
+
+  protected Worker[] createWorkers() {
+    Worker[] workers = new Worker[nWorkers];
+
+    for (int i = 0; i < nWorkers; i++) {
+      String searchClass = searches[i % searches.length];
+      boolean isRandomized = (i >= searches.length) || searchClass.equals(RandomSearch.class.getName());
+      workers[i] = new Worker(i, searchClass, isRandomized, seed + i);
+    }
+
+    return workers;
+  }
+
+  protected boolean hasExhaustiveWorkers() {
+    for (Worker w : workers) {
+      if (w.isExhaustive()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  protected String[] getWorkerConfig (Worker w) {
+    String listeners = config.getString("listener");
+    if (listeners == null || listeners.isEmpty()) {
+      listeners = SwarmListener.class.getName();
+    } else {
+      listeners = listeners + ',' + SwarmListener.class.getName();
+    }
+
+    String randomization = w.isRandomized ? "FIXED_SEED" : config.getString("cg.randomize_choices", "NONE");
+
+    // if there is an exhaustive worker, random workers keep going until they are terminated
+    int pathLimit = config.getInt("search.RandomSearch.path_limit", 0);
+    if (!w.isExhaustive() && hasExhaustiveWorkers() && !config.containsKey("search.RandomSearch.path_limit")) {
+      pathLimit = Integer.MAX_VALUE;
+    }
+
+    return new String[] {
+      "search.class=" + w.searchClass,
+      "search.multiple_errors=false",
+      "search.RandomSearch.path_limit=" + pathLimit,
+      "cg.randomize_choices=" + randomization,
+      "cg.seed=" + w.seed,
+      "listener=" + listeners,
+      "swarm.context=" + context.getId(),
+      "swarm.worker_id=" + w.id,
+      "vm.tree_output=false",
+
+      // workers only report property violations, we do the rest
+      "report.console.start=",
+      "report.console.transition=",
+      "report.console.constraint=",
+      "report.console.probe=",
+      "report.console.finished="
+    };
+  }
+
+  public void run() {
+    context = new SwarmContext(nWorkers);
+    workers = createWorkers();
+
+    printHeader();
+
+    long t0 = System.currentTimeMillis();
+    SwarmContext.register(context);
+    try {
+      for (Worker w : workers) {
+        w.thread = new Thread(w, "jpf-swarm-" + w.id);
+        w.thread.setDaemon(true);
+        w.thread.start();
+      }
+
+      if (hasExhaustiveWorkers()) {
+        // once all exhaustive workers are done there is nothing left to find
+        join(true);
+        context.terminate();
+      }
+      join(false);
+
+    } catch (InterruptedException ix) {
+      context.terminate();
+      Thread.currentThread().interrupt();
+
+    } finally {
+      SwarmContext.unregister(context);
+      elapsed = System.currentTimeMillis() - t0;
+    }
+
+    printResults();
+  }
+
+  protected void join (boolean exhaustiveOnly) throws InterruptedException {
+    for (Worker w : workers) {
+      if (!exhaustiveOnly || w.isExhaustive()) {
+        w.thread.join();
+      }
+    }
+  }
+
+  //--- reporting
+
+  protected void printHeader() {
+    out.println("JPF swarm with " + nWorkers + " workers");
+    for (Worker w : workers) {
+      out.println("  worker " + w.id + ": " + w);
+    }
+    out.println();
+  }
+
+  protected void printResults() {
+    out.println();
+    out.println("====================================================== swarm results");
+
+    for (Worker w : workers) {
+      out.print("worker " + w.id + ": ");
+      out.print(Publisher.formatHMS(w.elapsed));
+      out.print(", new=" + context.getNewStates(w.id));
+      out.print(", visited=" + context.getVisitedStates(w.id));
+      out.print(", states/sec=" + getRate(context.getNewStates(w.id), w.elapsed));
+
+      if (w.failure != null) {
+        out.println(", failed: " + w.failure);
+      } else if (w.foundErrors) {
+        out.println(", error");
+      } else if (w.wasTerminated) {
+        out.println(", terminated");
+      } else if (w.thread.isAlive()) {
+        out.println(", still running");
+      } else {
+        out.println(", no errors");
+      }
+    }
+
+    out.println();
+    int firstViolation = context.getFirstViolation();
+    if (firstViolation >= 0) {
+      out.println("first error found by worker " + firstViolation + ": " + workers[firstViolation]);
+    } else {
+      out.println("no errors detected");
+    }
+
+    long nNew = context.getTotalNewStates();
+    out.println("elapsed time:       " + Publisher.formatHMS(elapsed));
+    out.println("new states:         " + nNew);
+    out.println("states/sec:         " + getRate(nNew, elapsed));
+  }
+
+  static long getRate (long n, long millis) {
+    return (millis > 0) ? (n * 1000 / millis) : n;
+  }
+}
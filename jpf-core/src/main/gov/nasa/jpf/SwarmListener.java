@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf;
+
+import gov.nasa.jpf.search.Search;
+
+/**
+ * the listener that connects a SwarmJPF worker to its shared SwarmContext.
+ *
+ * It counts the states of the worker, reports property violations (which
+ * terminates all other workers) and terminates the worker search as soon as
+ * the context is terminated. Since this is executed by the worker thread itself,
+ * we don't have to worry about Search.done visibility
+ */
+public class SwarmListener extends ListenerAdapter {
+
+  protected SwarmContext context;
+  protected int workerId;
+
+  public SwarmListener (Config config, JPF jpf) {
+    context = SwarmContext.get( config.getString("swarm.context"));
+    if (context == null) {
+      throw new JPFConfigException("SwarmListener can only be used by SwarmJPF workers");
+    }
+    workerId = config.getInt("swarm.worker_id", 0);
+  }
+
+  @Override
+  public void stateAdvanced (Search search) {
+    if (search.isNewState()) {
+      context.addNewState(workerId);
+    } else {
+      context.addVisitedState(workerId);
+    }
+
+    if (context.isTerminated()) {
+      search.terminate();
+    }
+  }
+
+  @Override
+  public void stateBacktracked (Search search) {
+    if (context.isTerminated()) {
+      search.terminate();
+    }
+  }
+
+  @Override
+  public void propertyViolated (Search search) {
+    context.reportViolation(workerId);
+  }
+}
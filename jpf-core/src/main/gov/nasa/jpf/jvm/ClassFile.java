@@ -92,6 +92,27 @@ public class ClassFile extends BinaryClassSource {
   // the const pool
   int[] cpPos;     // cpPos[i] holds data start index for cp_entry i (0 is unused)
   Object[] cpValue; // cpValue[i] hold the String/Integer/Float/Double associated with corresponding cp_entries
+  int cpEnd;       // data index of the first byte after the const pool
+
+  // a const pool that was parsed before for the same data (e.g. by a previous run)
+  ConstPool parsedCp;
+
+  /**
+   * the parse results of a const pool, which only depend on the classfile data.
+   * This is what we need to parse the rest of the classfile without scanning the
+   * const pool and decoding its UTF8 entries again (see ClassFileCache)
+   */
+  public static class ConstPool {
+    public final int[] pos;
+    public final Object[] values;
+    public final int end;
+
+    public ConstPool (int[] pos, Object[] values, int end){
+      this.pos = pos;
+      this.values = values;
+      this.end = end;
+    }
+  }
 
   // Map index of bootstrap method to constant pool index of invokedynamic.
   // We store this info because we need to get the call site descriptor of
@@ -123,6 +144,16 @@ public class ClassFile extends BinaryClassSource {
     super(data,0);
   }
 
+  /**
+   * a ClassFile for data whose const pool was parsed before. The arrays of cp are
+   * used as they are
+   */
+  public ClassFile (byte[] data, ConstPool cp){
+    super(data,0);
+
+    parsedCp = cp;
+  }
+
   public ClassFile (String typeName, byte[] data){
     super(data,0);
     
@@ -407,6 +438,13 @@ public class ClassFile extends BinaryClassSource {
     return data[cpPos[i]];
   }
 
+  /**
+   * the parse results of our const pool, or null if we didn't parse yet
+   */
+  public ConstPool getConstPool(){
+    return (cpPos != null) ? new ConstPool(cpPos, cpValue, cpEnd) : null;
+  }
+
   /**
    * the result can be used as input for u2(dataIndex)
    *
@@ -951,9 +989,16 @@ public class ClassFile extends BinaryClassSource {
       }
       // get the const pool
       int cpCount = readU2();
-      cpPos = new int[cpCount];
-      cpValue = new Object[cpCount];
-      parseCp(cpCount);
+      if (parsedCp != null && parsedCp.pos.length == cpCount){
+        cpPos = parsedCp.pos;
+        cpValue = parsedCp.values;
+        pos = parsedCp.end;
+      } else {
+        cpPos = new int[cpCount];
+        cpValue = new Object[cpCount];
+        parseCp(cpCount);
+      }
+      cpEnd = pos;
 
       // the class essentials
       int accessFlags = readU2();
@@ -0,0 +1,647 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf.jvm;
+
+import gov.nasa.jpf.JPF;
+import gov.nasa.jpf.util.JPFLogger;
+import gov.nasa.jpf.vm.ClassFileContainer;
+import gov.nasa.jpf.vm.ClassFileMatch;
+import gov.nasa.jpf.vm.ClassParseException;
+import gov.nasa.jpf.vm.ClassPath;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.zip.CRC32;
+
+/**
+ * a persistent, memory mapped cache of classfile lookups for a given system classpath.
+ *
+ * Each JPF run otherwise has to locate every single (model) class by probing all
+ * classpath containers in order, read it from the respective directory, jar or the
+ * runtime image and compute module names on the host VM. For short runs this is a
+ * noticeable part of the startup time. The cache file stores the lookup results
+ * (container, url and classfile contents) and is memory mapped on subsequent runs.
+ *
+ * Together with the classfile contents we store the parsed const pool of each
+ * class, which is all ClassFile computes from the data alone (data indices of all
+ * entries and their decoded values). UTF8 values go into a string table that is
+ * shared by all classes of the cache, and each of them is decoded at most once per
+ * run. The rest of a classfile (members, attributes and code) is parsed through
+ * ClassFileReader callbacks that directly create the ClassInfo, MethodInfos and
+ * Instructions of the current run - those refer to loaders, native peers, listeners,
+ * attributes and the configured instruction factory, i.e. they can't be persisted.
+ *
+ * The cache file is keyed by the JPF and host VM versions and the list of classpath
+ * containers, with the modification times and sizes of jars. If any of those changed,
+ * the whole cache is discarded. Directories are not stamped (that would require walking
+ * their whole trees on each startup), we check each entry when it is used instead:
+ * classfiles from directories have to have the same modification time and size, and
+ * there must not be a classfile for the same type in any directory that comes before
+ * the cached container. All cached contents are checked against their CRC.
+ *
+ * The file name consists of a hash of the classpath and a hash of the whole key.
+ * Once we stored a cache, we delete all other cache files for the same classpath,
+ * which are stale since their jars or the host VM have changed
+ */
+public class ClassFileCache {
+
+  static JPFLogger log = JPF.getLogger("class");
+
+  static final int MAGIC = 0x4a504643; // 'JPFC'
+  static final int FORMAT = 2;
+
+  // kinds of const pool values
+  static final byte CP_NONE = 0;
+  static final byte CP_STRING = 1;
+  static final byte CP_INT = 2;
+  static final byte CP_FLOAT = 3;
+  static final byte CP_LONG = 4;
+  static final byte CP_DOUBLE = 5;
+  static final byte CP_INFO = 6;
+
+  static final ClassFile.CpInfo[] cpInfos = ClassFile.CpInfo.values();
+
+  static class Entry {
+    String name;         // the type name we were asked for
+    String typeName;     // the type name of the match
+    String url;
+    int containerIdx;    // -1 for the runtime image
+    String srcPath;      // the classfile to check, or null if it is covered by the container stamp
+    long lastModified;
+    long length;
+    int crc;             // of the classfile data and the const pool
+
+    int offset;          // in the mapped data, or -1 if we have the data
+    int size;
+    int cpSize;          // of the encoded const pool that follows the data, 0 if none
+    byte[] data;
+
+    JVMClassFileContainer.JVMClassFileMatch match; // if we looked it up in this run
+  }
+
+  protected File file;
+  protected String key;
+  protected String cpHash;
+  protected ClassPath cp;
+  protected ClassFileContainer[] containers;
+  protected JRTClassFileContainer jrt;
+
+  protected HashMap<String,Entry> entries = new HashMap<String,Entry>();
+  protected ByteBuffer mappedData;
+  protected boolean isModified;
+
+  // the shared UTF8 table of the mapped cache
+  protected int[] stringOffsets;
+  protected String[] strings;
+
+  public ClassFileCache (File dir, ClassPath cp){
+    this.cp = cp;
+
+    int n = cp.getNumberOfClassFileContainers();
+    containers = new ClassFileContainer[n];
+    StringBuilder sb = new StringBuilder();
+    StringBuilder cpSpec = new StringBuilder();
+    sb.append("jpf=").append(JPF.VERSION);
+    sb.append(",java=").append(System.getProperty("java.version"));
+    sb.append(',').append(System.getProperty("java.home"));
+
+    for (int i=0; i<n; i++){
+      ClassFileContainer c = cp.getClassFileContainer(i);
+      containers[i] = c;
+
+      sb.append(';').append(c.getURL());
+      cpSpec.append(';').append(c.getURL());
+      if (c instanceof JarClassFileContainer){
+        File f = new File(((JarClassFileContainer)c).jar.getName());
+        sb.append('@').append(f.lastModified()).append(':').append(f.length());
+      } else if (!(c instanceof DirClassFileContainer)){ // dir entries are checked when used
+        log.warning("classfile cache disabled, unknown classpath container: ", c.getName());
+        return;
+      }
+    }
+
+    key = sb.toString();
+    cpHash = Integer.toHexString(cpSpec.toString().hashCode());
+    file = new File(dir, "classes-" + cpHash + '-' + Integer.toHexString(key.hashCode()) + ".cache");
+    jrt = new JRTClassFileContainer();
+
+    if (file.isFile()){
+      try {
+        load();
+      } catch (IOException iox){
+        log.warning("discarding corrupted classfile cache ", file.getPath(), " : ", iox.getMessage());
+        entries.clear();
+        mappedData = null;
+        stringOffsets = null;
+        strings = null;
+        isModified = true;
+      }
+    }
+  }
+
+  public boolean isEnabled(){
+    return key != null;
+  }
+
+  public File getFile(){
+    return file;
+  }
+
+  public int size(){
+    return entries.size();
+  }
+
+  protected void load() throws IOException {
+    try (FileChannel fc = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      final MappedByteBuffer buf = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+
+      DataInputStream in = new DataInputStream( new InputStream(){
+        @Override
+        public int read() {
+          return buf.hasRemaining() ? (buf.get() & 0xff) : -1;
+        }
+        @Override
+        public int read (byte[] b, int off, int len){
+          if (!buf.hasRemaining()){
+            return -1;
+          }
+          len = Math.min(len, buf.remaining());
+          buf.get(b, off, len);
+          return len;
+        }
+      });
+
+      if (in.readInt() != MAGIC || in.readInt() != FORMAT){
+        throw new IOException("not a classfile cache");
+      }
+      if (!key.equals(in.readUTF())){
+        log.info("classfile cache key mismatch, discarding ", file.getPath());
+        isModified = true;
+        return;
+      }
+
+      int nStrings = in.readInt();
+      int stringsSize = in.readInt();
+      int stringsCrc = in.readInt();
+      int[] offsets = new int[nStrings];
+      for (int i=0; i<nStrings; i++){
+        offsets[i] = in.readInt();
+      }
+
+      int n = in.readInt();
+      for (int i=0; i<n; i++){
+        Entry e = new Entry();
+        e.name = in.readUTF();
+        e.typeName = in.readUTF();
+        e.url = in.readUTF();
+        e.containerIdx = in.readInt();
+        String srcPath = in.readUTF();
+        e.srcPath = srcPath.isEmpty() ? null : srcPath;
+        e.lastModified = in.readLong();
+        e.length = in.readLong();
+        e.crc = in.readInt();
+        e.offset = in.readInt();
+        e.size = in.readInt();
+        e.cpSize = in.readInt();
+
+        entries.put(e.name, e);
+      }
+
+      ByteBuffer data = buf.slice();
+
+      // the string table is shared by all entries, check it right away
+      if (stringsSize > data.capacity()){
+        throw new IOException("truncated string table");
+      }
+      ByteBuffer sb = data.duplicate();
+      sb.limit(stringsSize);
+      CRC32 crc = new CRC32();
+      crc.update(sb);
+      if ((int)crc.getValue() != stringsCrc){
+        throw new IOException("string table CRC mismatch");
+      }
+
+      mappedData = data;
+      stringOffsets = offsets;
+      strings = new String[nStrings];
+      log.info("loaded classfile cache ", file.getPath(), " with ", n, " entries");
+    }
+  }
+
+  protected boolean isInMappedData (Entry e){
+    return (e.offset >= 0) && ((long)e.offset + e.size + e.cpSize <= mappedData.capacity());
+  }
+
+  protected byte[] getData (Entry e){
+    if (e.data != null){
+      return e.data;
+
+    } else {
+      if (!isInMappedData(e)){
+        return null;
+      }
+
+      byte[] data = new byte[e.size];
+      ByteBuffer buf = mappedData.duplicate();
+      buf.position(e.offset);
+      buf.get(data);
+
+      CRC32 crc = new CRC32();
+      crc.update(data);
+      buf.limit(e.offset + e.size + e.cpSize);
+      crc.update(buf);
+      if ((int)crc.getValue() != e.crc){
+        return null;
+      }
+
+      return data;
+    }
+  }
+
+  //--- the const pools
+
+  protected String getString (int idx){
+    String s = strings[idx];
+    if (s == null){
+      ByteBuffer buf = mappedData.duplicate();
+      buf.position(stringOffsets[idx]);
+      int len = buf.getShort() & 0xffff;
+      byte[] b = new byte[len];
+      buf.get(b);
+
+      try {
+        s = ClassFile.readModifiedUTF8String(b, 0, len);
+      } catch (ClassParseException x){
+        throw new IllegalArgumentException("malformed string table entry " + idx);
+      }
+      strings[idx] = s;
+    }
+    return s;
+  }
+
+  /**
+   * decode the const pool of a mapped entry. This has to be called after its
+   * data was checked by getData(), we only check the indices
+   */
+  protected ClassFile.ConstPool getConstPool (Entry e){
+    if (e.cpSize == 0 || !isInMappedData(e)){
+      return null;
+    }
+
+    try {
+      ByteBuffer buf = mappedData.duplicate();
+      buf.position(e.offset + e.size);
+      buf.limit(e.offset + e.size + e.cpSize);
+
+      int cpCount = buf.getInt();
+      int end = buf.getInt();
+      int[] pos = new int[cpCount];
+      Object[] values = new Object[cpCount];
+
+      for (int i=1; i<cpCount; i++){
+        pos[i] = buf.getInt();
+        byte kind = buf.get();
+        switch (kind){
+          case CP_NONE:   break;
+          case CP_STRING: values[i] = getString(buf.getInt()); break;
+          case CP_INT:    values[i] = buf.getInt(); break;
+          case CP_FLOAT:  values[i] = Float.intBitsToFloat(buf.getInt()); break;
+          case CP_LONG:   values[i] = buf.getLong(); break;
+          case CP_DOUBLE: values[i] = Double.longBitsToDouble(buf.getLong()); break;
+          case CP_INFO:   values[i] = cpInfos[buf.get()]; break;
+          default:
+            throw new IllegalArgumentException("unknown const pool value kind " + kind);
+        }
+      }
+
+      return new ClassFile.ConstPool(pos, values, end);
+
+    } catch (RuntimeException x){ // BufferUnderflow, IndexOutOfBounds, IllegalArgument
+      log.warning("corrupted const pool of classfile cache entry ", e.name, " : ", x);
+      return null;
+    }
+  }
+
+  protected static byte[] encodeConstPool (ClassFile.ConstPool cp, HashMap<String,Integer> stringIds,
+                                           ArrayList<String> stringList) throws IOException {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream(cp.pos.length * 8);
+    DataOutputStream out = new DataOutputStream(bos);
+
+    out.writeInt(cp.pos.length);
+    out.writeInt(cp.end);
+    for (int i=1; i<cp.pos.length; i++){
+      out.writeInt(cp.pos[i]);
+
+      Object v = cp.values[i];
+      if (v == null){
+        out.writeByte(CP_NONE);
+
+      } else if (v instanceof String){
+        Integer id = stringIds.get(v);
+        if (id == null){
+          id = stringList.size();
+          stringIds.put((String)v, id);
+          stringList.add((String)v);
+        }
+        out.writeByte(CP_STRING);
+        out.writeInt(id);
+
+      } else if (v instanceof Integer){
+        out.writeByte(CP_INT);
+        out.writeInt((Integer)v);
+      } else if (v instanceof Float){
+        out.writeByte(CP_FLOAT);
+        out.writeInt(Float.floatToRawIntBits((Float)v));
+      } else if (v instanceof Long){
+        out.writeByte(CP_LONG);
+        out.writeLong((Long)v);
+      } else if (v instanceof Double){
+        out.writeByte(CP_DOUBLE);
+        out.writeLong(Double.doubleToRawLongBits((Double)v));
+      } else if (v instanceof ClassFile.CpInfo){
+        out.writeByte(CP_INFO);
+        out.writeByte(((ClassFile.CpInfo)v).ordinal());
+      } else {
+        throw new IOException("unknown const pool value: " + v.getClass().getName());
+      }
+    }
+
+    out.flush();
+    return bos.toByteArray();
+  }
+
+  protected boolean isValid (Entry e){
+    if (e.srcPath != null){
+      File f = new File(e.srcPath);
+      if ((f.lastModified() != e.lastModified) || (f.length() != e.length)){
+        return false;
+      }
+    }
+
+    // a classfile that was added to a dir further up in the classpath would shadow
+    // the cached one (runtime image entries come after all containers). Jars are
+    // covered by the key
+    int n = (e.containerIdx < 0) ? containers.length : e.containerIdx;
+    for (int i=0; i<n; i++){
+      if (containers[i] instanceof DirClassFileContainer){
+        if (((DirClassFileContainer)containers[i]).getClassFile(e.name).isFile()){
+          return false;
+        }
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * @return the cached match for this type name, or null if we don't know it
+   * or it is stale
+   */
+  public ClassFileMatch getMatch (String name){
+    if (key == null || containers.length != cp.getNumberOfClassFileContainers()){
+      return null; // classpath has changed since we were created
+    }
+
+    Entry e = entries.get(name);
+    if (e != null){
+      byte[] data = null;
+      if (isValid(e)){
+        data = getData(e);
+      }
+
+      if (data != null){
+        JVMClassFileContainer c = (e.containerIdx < 0) ? jrt : (JVMClassFileContainer)containers[e.containerIdx];
+        ClassFile.ConstPool cpool = (e.match != null) ? e.match.getConstPool() : getConstPool(e);
+        e.match = c.new JVMClassFileMatch(e.typeName, e.url, data, cpool);
+        return e.match;
+
+      } else {
+        log.info("stale classfile cache entry: ", name);
+        entries.remove(name);
+        isModified = true;
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * record a match that was obtained from the classpath or the runtime image
+   */
+  public void add (String name, ClassFileMatch match){
+    if (key == null || !(match instanceof JVMClassFileContainer.JVMClassFileMatch)){
+      return;
+    }
+    if (containers.length != cp.getNumberOfClassFileContainers()){
+      return;
+    }
+
+    ClassFileContainer c = match.getContainer();
+    Entry e = new Entry();
+
+    e.containerIdx = -1;
+    if (!(c instanceof JRTClassFileContainer)){
+      for (int i=0; i<containers.length; i++){
+        if (containers[i] == c){
+          e.containerIdx = i;
+          break;
+        }
+      }
+      if (e.containerIdx < 0){
+        return; // not one of ours
+      }
+
+      if (c instanceof DirClassFileContainer){
+        File f = ((DirClassFileContainer)c).getClassFile(match.typeName);
+        e.srcPath = f.getPath();
+        e.lastModified = f.lastModified();
+        e.length = f.length();
+      }
+    }
+
+    e.name = name;
+    e.typeName = match.typeName;
+    e.url = match.url;
+    e.match = (JVMClassFileContainer.JVMClassFileMatch)match;
+    e.data = e.match.getData();
+    e.offset = -1;
+    e.size = e.data.length;
+
+    entries.put(name, e);
+    isModified = true;
+  }
+
+  /**
+   * write the cache file if we have new or stale entries. We write to a temporary
+   * file first so that concurrent JPF runs never see partial caches
+   */
+  public void store (){
+    if (key == null || !isModified){
+      return;
+    }
+
+    File dir = file.getParentFile();
+    if (dir != null && !dir.isDirectory() && !dir.mkdirs()){
+      log.warning("cannot create classfile cache dir ", dir.getPath());
+      return;
+    }
+
+    File tmp = null;
+    try {
+      tmp = File.createTempFile("classes-", ".tmp", dir);
+      ArrayList<Entry> list = new ArrayList<Entry>(entries.size());
+      ArrayList<byte[]> dataList = new ArrayList<byte[]>(entries.size());
+      ArrayList<byte[]> cpList = new ArrayList<byte[]>(entries.size());
+      HashMap<String,Integer> stringIds = new HashMap<String,Integer>();
+      ArrayList<String> stringList = new ArrayList<String>();
+
+      for (Entry e : entries.values()){
+        byte[] data = getData(e);
+        if (data != null){
+          ClassFile.ConstPool cpool = (e.match != null) ? e.match.getConstPool() : getConstPool(e);
+          byte[] cpData = new byte[0];
+          if (cpool != null){
+            try {
+              cpData = encodeConstPool(cpool, stringIds, stringList);
+            } catch (IOException x){ // we just parse this one again next time
+              log.warning("cannot store const pool of ", e.name, " : ", x.getMessage());
+            }
+          }
+
+          CRC32 crc = new CRC32();
+          crc.update(data);
+          crc.update(cpData);
+          e.crc = (int)crc.getValue();
+          e.size = data.length;
+          e.cpSize = cpData.length;
+
+          list.add(e);
+          dataList.add(data);
+          cpList.add(cpData);
+        }
+      }
+
+      // the string table comes first in the mapped data, entry offsets are relative to it
+      ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      DataOutputStream sout = new DataOutputStream(bos);
+      int[] stringOffsets = new int[stringList.size()];
+      for (int i=0; i<stringOffsets.length; i++){
+        stringOffsets[i] = sout.size();
+        sout.writeUTF(stringList.get(i));
+      }
+      sout.flush();
+      byte[] stringData = bos.toByteArray();
+      CRC32 crc = new CRC32();
+      crc.update(stringData);
+
+      try (DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream(tmp)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT);
+        out.writeUTF(key);
+
+        out.writeInt(stringOffsets.length);
+        out.writeInt(stringData.length);
+        out.writeInt((int)crc.getValue());
+        for (int off : stringOffsets){
+          out.writeInt(off);
+        }
+
+        out.writeInt(list.size());
+        int offset = stringData.length;
+        for (Entry e : list){
+          out.writeUTF(e.name);
+          out.writeUTF(e.typeName);
+          out.writeUTF(e.url);
+          out.writeInt(e.containerIdx);
+          out.writeUTF( (e.srcPath != null) ? e.srcPath : "");
+          out.writeLong(e.lastModified);
+          out.writeLong(e.length);
+          out.writeInt(e.crc);
+          out.writeInt(offset);
+          out.writeInt(e.size);
+          out.writeInt(e.cpSize);
+          offset += e.size + e.cpSize;
+        }
+
+        out.write(stringData);
+        for (int i=0; i<dataList.size(); i++){
+          out.write(dataList.get(i));
+          out.write(cpList.get(i));
+        }
+      }
+
+      try {
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException x){
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+
+      isModified = false;
+      log.info("stored classfile cache ", file.getPath(), " with ", list.size(), " entries");
+
+      pruneStaleFiles();
+
+    } catch (IOException iox){
+      log.warning("cannot store classfile cache ", file.getPath(), " : ", iox.getMessage());
+      if (tmp != null){
+        tmp.delete();
+      }
+    }
+  }
+
+  /**
+   * delete the cache files for our classpath that have a different key, i.e. were
+   * stored before a jar or the host VM changed. Runs that still have them mapped
+   * are not affected (we never write into a cache file)
+   */
+  protected void pruneStaleFiles (){
+    final String prefix = "classes-" + cpHash + '-';
+    final String ourName = file.getName();
+
+    File[] stale = file.getAbsoluteFile().getParentFile().listFiles( new FilenameFilter(){
+      @Override
+      public boolean accept (File dir, String name){
+        return name.startsWith(prefix) && name.endsWith(".cache") && !name.equals(ourName);
+      }
+    });
+
+    if (stale != null){
+      for (File f : stale){
+        if (f.delete()){
+          log.info("deleted stale classfile cache ", f.getPath());
+        }
+      }
+    }
+  }
+}
@@ -48,14 +48,21 @@ public class DirClassFileContainer extends JVMClassFileContainer {
     this.dir = dir;
   }
 
-  @Override
-  public ClassFileMatch getMatch(String clsName) throws ClassParseException {
+  /**
+   * the file that would hold the classfile for clsName, which might not exist
+   */
+  protected File getClassFile (String clsName) {
     String classEntryURL = getClassEntryURL(clsName);
 
     if(clsName.startsWith("java."))
       classEntryURL = "modules" + File.separator + classEntryURL;
     
-    File f = new File(dir, classEntryURL);
+    return new File(dir, classEntryURL);
+  }
+
+  @Override
+  public ClassFileMatch getMatch(String clsName) throws ClassParseException {
+    File f = getClassFile(clsName);
    
     if (f.isFile()) {
       FileInputStream fis = null;
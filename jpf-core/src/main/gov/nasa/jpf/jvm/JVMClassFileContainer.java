@@ -33,12 +33,20 @@ public abstract class JVMClassFileContainer extends ClassFileContainer {
   // the VM and container type specific info we need to instantiate a ClassInfo from this container
   public class JVMClassFileMatch extends ClassFileMatch {
     byte[] data;
+    ClassFile.ConstPool cp; // set once the data got parsed, or if we know it from a ClassFileCache
     
     JVMClassFileMatch (String typeName, String url, byte[] data) {
       super(typeName, url);
       
       this.data = data;
     }
+
+    JVMClassFileMatch (String typeName, String url, byte[] data, ClassFile.ConstPool cp) {
+      super(typeName, url);
+
+      this.data = data;
+      this.cp = cp;
+    }
     
     @Override
     public ClassFileContainer getContainer(){
@@ -48,23 +56,43 @@ public abstract class JVMClassFileContainer extends ClassFileContainer {
     public byte[] getData(){
       return data;
     }
+
+    public ClassFile.ConstPool getConstPool(){
+      return cp;
+    }
+
+    protected ClassFile createClassFile(){
+      return (cp != null) ? new ClassFile(data, cp) : new ClassFile(data);
+    }
+
+    // keep what the ClassFile parsed, so that a ClassFileCache can store it
+    protected void updateConstPool (ClassFile cf){
+      ClassFile.ConstPool parsedCp = cf.getConstPool();
+      if (parsedCp != null){
+        cp = parsedCp;
+      }
+    }
     
     @Override
     public JVMClassInfo createClassInfo (ClassLoaderInfo loader) throws ClassParseException {
       JVMSystemClassLoaderInfo sysCli = (JVMSystemClassLoaderInfo)loader.getSystemClassLoader();
       
       JVMCodeBuilder cb = sysCli.getCodeBuilder(typeName);
-      ClassFile cf = new ClassFile(data);
+      ClassFile cf = createClassFile();
       
-      return new JVMClassInfo( typeName, loader, cf, url, cb);
+      JVMClassInfo ci = new JVMClassInfo( typeName, loader, cf, url, cb);
+      updateConstPool(cf);
+      return ci;
     }
     
     @Override
     public AnnotationInfo createAnnotationInfo (ClassLoaderInfo loader) throws ClassParseException {
-      ClassFile cf = new ClassFile(data);
+      ClassFile cf = createClassFile();
       JVMAnnotationParser parser = new JVMAnnotationParser(cf);
 
-      return new AnnotationInfo(typeName, loader, parser);
+      AnnotationInfo ai = new AnnotationInfo(typeName, loader, parser);
+      updateConstPool(cf);
+      return ai;
     }
   }
   
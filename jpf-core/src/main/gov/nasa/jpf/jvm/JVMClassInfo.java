@@ -415,6 +415,10 @@ public class JVMClassInfo extends ClassInfo {
 
       cf.parseBytecode(cb, tag, codeLength);
       cb.installCode();
+
+      if (superInstructions){
+        cb.installSuperInstructions();
+      }
     }
 
     @Override
@@ -749,12 +753,17 @@ public class JVMClassInfo extends ClassInfo {
     }
   }
 
+  // do we attach superinstructions to the method code (only used by the ThreadInfo fast path)
+  protected static boolean superInstructions;
+
   // since nested class init locking can explode the state space, we make it optional and controllable
   protected static boolean nestedInit;
   protected static StringSetMatcher includeNestedInit;
   protected static StringSetMatcher excludeNestedInit;
 
   protected static boolean init (Config config){
+    superInstructions = config.getBoolean("jvm.superinstructions", true);
+
     nestedInit = config.getBoolean("jvm.nested_init", false);
     if (nestedInit){
       includeNestedInit =  StringSetMatcher.getNonEmpty(config.getStringArray("jvm.nested_init.include"));
@@ -19,12 +19,17 @@
 package gov.nasa.jpf.jvm;
 
 import gov.nasa.jpf.JPFException;
+import gov.nasa.jpf.jvm.bytecode.FusedArrayLoad;
+import gov.nasa.jpf.jvm.bytecode.FusedGetField;
+import gov.nasa.jpf.jvm.bytecode.FusedIntCompare;
+import gov.nasa.jpf.jvm.bytecode.FusedIntOp;
 import gov.nasa.jpf.util.Invocation;
 import gov.nasa.jpf.vm.ClassInfo;
 import gov.nasa.jpf.vm.Instruction;
 import gov.nasa.jpf.vm.bytecode.LookupSwitchInstruction;
 import gov.nasa.jpf.vm.MethodInfo;
 import gov.nasa.jpf.vm.NativeMethodInfo;
+import gov.nasa.jpf.vm.bytecode.SuperInstruction;
 import gov.nasa.jpf.vm.bytecode.TableSwitchInstruction;
 
 import java.util.ArrayList;
@@ -89,6 +94,35 @@ public class JVMCodeBuilder implements JVMByteCodeReader {
     mi.setCode(a);
   }
 
+  /**
+   * the quickening pass, to be called after installCode(). This attaches
+   * superinstructions to the first instructions of common sequences (int
+   * arithmetic and compare-and-branch on locals, array loads and field reads)
+   * so that the fast path of ThreadInfo.executeTransition() can execute them
+   * with a single dispatch. The method code itself is not changed
+   */
+  public void installSuperInstructions(){
+    Instruction[] a = mi.getInstructions();
+    if (a != null){
+      for (int i=0; i<a.length; i++){
+        SuperInstruction si = FusedIntOp.create(a, i);
+        if (si == null){
+          si = FusedIntCompare.create(a, i);
+        }
+        if (si == null){
+          si = FusedArrayLoad.create(a, i);
+        }
+        if (si == null){
+          si = FusedGetField.create(a, i);
+        }
+
+        if (si != null){
+          a[i].setSuperInstruction(si);
+        }
+      }
+    }
+  }
+
   public int getCodeSize(){
     return code.size();
   }
@@ -21,6 +21,7 @@ import gov.nasa.jpf.Config;
 import gov.nasa.jpf.JPF;
 import gov.nasa.jpf.util.JPFLogger;
 import gov.nasa.jpf.vm.ClassFileContainer;
+import gov.nasa.jpf.vm.ClassFileMatch;
 import gov.nasa.jpf.vm.ClassInfo;
 import gov.nasa.jpf.vm.ClassLoaderInfo;
 import gov.nasa.jpf.vm.ClassParseException;
@@ -38,6 +39,7 @@ public class JVMSystemClassLoaderInfo extends SystemClassLoaderInfo {
 
   static JPFLogger log = JPF.getLogger("class");
   protected JVMCodeBuilder defaultCodeBuilder;
+  protected ClassFileCache classFileCache; // optional
 
   public JVMSystemClassLoaderInfo (VM vm, int appId) {
     super(vm, appId);
@@ -46,6 +48,17 @@ public class JVMSystemClassLoaderInfo extends SystemClassLoaderInfo {
 
     JVMClassInfo.init(config);
 
+    if (config.getBoolean("jvm.class_cache", false)) {
+      File dir = config.getPath("jvm.class_cache.dir");
+      if (dir == null){
+        dir = new File(System.getProperty("java.io.tmpdir"), "jpf-class-cache");
+      }
+      classFileCache = new ClassFileCache(dir, cp);
+      if (!classFileCache.isEnabled()){
+        classFileCache = null;
+      }
+    }
+
     // now we can notify
     vm.registerClassLoader(this);
   }
@@ -149,6 +162,33 @@ public class JVMSystemClassLoaderInfo extends SystemClassLoaderInfo {
     log.info("collected system classpath: ", cp);
   }
 
+  @Override
+  protected ClassFileMatch getMatch (String typeName) {
+    if (classFileCache != null && !ClassInfo.isBuiltinClass(typeName)) {
+      ClassFileMatch match = classFileCache.getMatch(typeName);
+      if (match != null) {
+        isJPFClass = !(match.getContainer() instanceof JRTClassFileContainer);
+        return match;
+      }
+
+      match = super.getMatch(typeName);
+      if (match != null) {
+        classFileCache.add(typeName, match);
+      }
+      return match;
+
+    } else {
+      return super.getMatch(typeName);
+    }
+  }
+
+  @Override
+  public void cleanUp () {
+    if (classFileCache != null) {
+      classFileCache.store();
+    }
+  }
+
   /**
    * override this if you have different CodeBuilders for different types
    * NOTE - this CodeBuilder is not completely initialized yet, clients still have to call startMethod(mi) on it
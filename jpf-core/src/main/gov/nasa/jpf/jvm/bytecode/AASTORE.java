@@ -116,6 +116,11 @@ public class AASTORE extends ArrayStoreInstruction {
     return getNext(ti);      
   }
 
+  @Override
+  public boolean isThreadLocal (ThreadInfo ti) {
+    return false; // might throw ArrayStoreExceptions or set exposure CGs
+  }
+
   protected Instruction checkArrayStoreException(ThreadInfo ti, StackFrame frame, ElementInfo ei){
     ClassInfo c = ei.getClassInfo();
     int refVal = frame.peek();
@@ -38,6 +38,11 @@ public class ACONST_NULL extends Instruction implements JVMInstruction {
     return getNext(ti);
   }
 
+  @Override
+  public boolean isThreadLocal (ThreadInfo ti) {
+    return true;
+  }
+
   @Override
   public int getByteCode () {
     return 0x01;
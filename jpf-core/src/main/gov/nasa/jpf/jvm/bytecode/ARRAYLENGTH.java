@@ -65,6 +65,11 @@ public class ARRAYLENGTH extends Instruction implements JVMInstruction {
 
     return getNext(ti);
   }
+
+  @Override
+  public boolean isThreadLocal (ThreadInfo ti) {
+    return ti.getTopFrame().peek() != MJIEnv.NULL;
+  }
   
   @Override
   public int getByteCode () {
@@ -43,6 +43,11 @@ public class BIPUSH extends Instruction implements JVMInstruction {
 
     return getNext(ti);
   }
+
+  @Override
+  public boolean isThreadLocal (ThreadInfo ti) {
+    return true;
+  }
   
   public int getValue(){
 	  return value;
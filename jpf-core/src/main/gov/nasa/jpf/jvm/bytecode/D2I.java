@@ -37,6 +37,11 @@ public class D2I extends Instruction implements JVMInstruction {
     
     return getNext(ti);
   }
+
+  @Override
+  public boolean isThreadLocal (ThreadInfo ti) {
+    return true;
+  }
   
   @Override
   public int getByteCode () {
@@ -42,6 +42,11 @@ public class DCONST extends Instruction implements JVMInstruction {
 
     return getNext(ti);
   }
+
+  @Override
+  public boolean isThreadLocal (ThreadInfo ti) {
+    return true;
+  }
   
   public double getValue(){
 	  return value;
@@ -42,6 +42,11 @@ public class DDIV extends Instruction implements JVMInstruction {
     return getNext(ti);
   }
 
+  @Override
+  public boolean isThreadLocal (ThreadInfo ti) {
+    return true;
+  }
+
   @Override
   public int getByteCode () {
     return 0x6F;
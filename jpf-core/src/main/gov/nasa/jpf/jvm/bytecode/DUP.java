@@ -37,6 +37,11 @@ public class DUP extends Instruction implements JVMInstruction {
     return getNext(th);
   }
 
+  @Override
+  public boolean isThreadLocal (ThreadInfo ti) {
+    return true;
+  }
+
   @Override
   public int getByteCode () {
     return 0x59;
@@ -41,5 +41,10 @@ public abstract class DoubleCompareInstruction extends Instruction implements JV
     return getNext(ti);
   }
 
+  @Override
+  public boolean isThreadLocal (ThreadInfo ti) {
+    return true;
+  }
+
   protected abstract int conditionValue (double v1, double v2);
 }
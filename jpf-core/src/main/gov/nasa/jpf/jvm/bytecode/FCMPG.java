@@ -39,6 +39,11 @@ public class FCMPG extends Instruction implements JVMInstruction {
 
     return getNext(ti);
   }
+
+  @Override
+  public boolean isThreadLocal (ThreadInfo ti) {
+    return true;
+  }
   
   protected int conditionValue(float v1, float v2) {
       if (Float.isNaN(v1) || Float.isNaN(v2)) {
@@ -45,6 +45,11 @@ public class FCONST extends Instruction implements JVMInstruction {
     return getNext(ti);
   }
 
+  @Override
+  public boolean isThreadLocal (ThreadInfo ti) {
+    return true;
+  }
+
   public float getValue(){
 	  return value;
   }
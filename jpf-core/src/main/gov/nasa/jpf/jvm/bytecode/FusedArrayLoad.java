@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf.jvm.bytecode;
+
+import gov.nasa.jpf.vm.Instruction;
+import gov.nasa.jpf.vm.StackFrame;
+import gov.nasa.jpf.vm.ThreadInfo;
+import gov.nasa.jpf.vm.bytecode.SuperInstruction;
+
+/**
+ * superinstruction for loading array elements with a local index, i.e.
+ *
+ *   ALOAD a, ILOAD i, xALOAD
+ *
+ * The load itself is still executed by the xALOAD instruction, so that we
+ * keep sharedness policies and attribute propagation
+ */
+public class FusedArrayLoad extends SuperInstruction {
+
+  protected ArrayLoadInstruction load;
+  protected int arrayLocal;
+  protected int indexLocal;
+
+  protected FusedArrayLoad (Instruction[] insns) {
+    super(insns);
+
+    arrayLocal = ((ALOAD)insns[0]).getLocalVariableIndex();
+    indexLocal = ((ILOAD)insns[1]).getLocalVariableIndex();
+    load = (ArrayLoadInstruction)insns[2];
+  }
+
+  /**
+   * return a FusedArrayLoad if the sequence starting at code[i] matches, null otherwise
+   */
+  public static FusedArrayLoad create (Instruction[] code, int i) {
+    if ((i + 2 < code.length) && (code[i].getClass() == ALOAD.class) && (code[i+1].getClass() == ILOAD.class)
+        && isArrayLoad(code[i+2])) {
+      return new FusedArrayLoad(new Instruction[] { code[i], code[i+1], code[i+2] });
+    }
+    return null;
+  }
+
+  static boolean isArrayLoad (Instruction insn) {
+    Class<?> cls = insn.getClass();
+    return (cls == IALOAD.class) || (cls == AALOAD.class) || (cls == BALOAD.class) || (cls == CALOAD.class) ||
+           (cls == SALOAD.class) || (cls == FALOAD.class) || (cls == LALOAD.class) || (cls == DALOAD.class);
+  }
+
+  @Override
+  public boolean isThreadLocal (ThreadInfo ti) {
+    StackFrame frame = ti.getTopFrame();
+    return load.isThreadLocal(ti, frame.getLocalVariable(arrayLocal), frame.getLocalVariable(indexLocal));
+  }
+
+  @Override
+  public Instruction execute (ThreadInfo ti) {
+    StackFrame frame = ti.getModifiableTopFrame();
+
+    frame.pushLocal(arrayLocal);
+    frame.pushLocal(indexLocal);
+    frame.setPC(load);
+
+    return load.execute(ti);
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf.jvm.bytecode;
+
+import gov.nasa.jpf.vm.Instruction;
+import gov.nasa.jpf.vm.StackFrame;
+import gov.nasa.jpf.vm.ThreadInfo;
+import gov.nasa.jpf.vm.bytecode.SuperInstruction;
+
+/**
+ * superinstruction for reading fields of objects stored in locals (mostly 'this'), i.e.
+ *
+ *   ALOAD a, GETFIELD
+ *
+ * This is only used once the GETFIELD has resolved its FieldInfo, which it
+ * does on first execution. The field access itself is still executed by the
+ * GETFIELD
+ */
+public class FusedGetField extends SuperInstruction {
+
+  protected GETFIELD getField;
+  protected int objLocal;
+
+  protected FusedGetField (Instruction[] insns) {
+    super(insns);
+
+    objLocal = ((ALOAD)insns[0]).getLocalVariableIndex();
+    getField = (GETFIELD)insns[1];
+  }
+
+  /**
+   * return a FusedGetField if the sequence starting at code[i] matches, null otherwise
+   */
+  public static FusedGetField create (Instruction[] code, int i) {
+    if ((i + 1 < code.length) && (code[i].getClass() == ALOAD.class) && (code[i+1].getClass() == GETFIELD.class)) {
+      return new FusedGetField(new Instruction[] { code[i], code[i+1] });
+    }
+    return null;
+  }
+
+  @Override
+  public boolean isThreadLocal (ThreadInfo ti) {
+    return getField.isThreadLocal(ti, ti.getTopFrame().getLocalVariable(objLocal));
+  }
+
+  @Override
+  public Instruction execute (ThreadInfo ti) {
+    StackFrame frame = ti.getModifiableTopFrame();
+
+    frame.pushLocal(objLocal);
+    frame.setPC(getField);
+
+    return getField.execute(ti);
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf.jvm.bytecode;
+
+import gov.nasa.jpf.vm.Instruction;
+import gov.nasa.jpf.vm.StackFrame;
+import gov.nasa.jpf.vm.ThreadInfo;
+import gov.nasa.jpf.vm.bytecode.SuperInstruction;
+
+/**
+ * superinstruction for compare-and-branch on int locals, i.e.
+ *
+ *   ILOAD a, (ILOAD b | ICONST/BIPUSH/SIPUSH c), IF_ICMPxx
+ *   ILOAD a, IFxx
+ *
+ * which are the typical loop conditions
+ */
+public class FusedIntCompare extends SuperInstruction {
+
+  // conditions, in the order of the IFxx and IF_ICMPxx bytecodes
+  static final int EQ = 0;
+  static final int NE = 1;
+  static final int LT = 2;
+  static final int GE = 3;
+  static final int GT = 4;
+  static final int LE = 5;
+
+  protected IfInstruction ifInsn;
+
+  protected int src1;
+  protected int src2; // local var index, or -1 if we use constValue
+  protected int constValue;
+  protected int cond;
+
+  protected FusedIntCompare (Instruction[] insns) {
+    super(insns);
+
+    src1 = ((ILOAD)insns[0]).getLocalVariableIndex();
+    ifInsn = (IfInstruction)insns[insns.length-1];
+
+    if (insns.length == 3) {
+      src2 = FusedIntOp.getLocalOperand(insns[1]);
+      constValue = FusedIntOp.getConstOperand(insns[1]);
+      cond = ifInsn.getByteCode() - 0x9f; // IF_ICMPEQ
+    } else {
+      src2 = -1;
+      constValue = 0;
+      cond = ifInsn.getByteCode() - 0x99; // IFEQ
+    }
+  }
+
+  /**
+   * return a FusedIntCompare if the sequence starting at code[i] matches, null otherwise
+   */
+  public static FusedIntCompare create (Instruction[] code, int i) {
+    if ((i + 1 < code.length) && (code[i].getClass() == ILOAD.class)) {
+      if (isZeroCompareBranch(code[i+1])) {
+        return new FusedIntCompare(new Instruction[] { code[i], code[i+1] });
+      }
+      if ((i + 2 < code.length) && FusedIntOp.isIntOperand(code[i+1]) && isIntCompareBranch(code[i+2])) {
+        return new FusedIntCompare(new Instruction[] { code[i], code[i+1], code[i+2] });
+      }
+    }
+    return null;
+  }
+
+  static boolean isZeroCompareBranch (Instruction insn) {
+    Class<?> cls = insn.getClass();
+    return (cls == IFEQ.class) || (cls == IFNE.class) || (cls == IFLT.class) ||
+           (cls == IFGE.class) || (cls == IFGT.class) || (cls == IFLE.class);
+  }
+
+  static boolean isIntCompareBranch (Instruction insn) {
+    Class<?> cls = insn.getClass();
+    return (cls == IF_ICMPEQ.class) || (cls == IF_ICMPNE.class) || (cls == IF_ICMPLT.class) ||
+           (cls == IF_ICMPGE.class) || (cls == IF_ICMPGT.class) || (cls == IF_ICMPLE.class);
+  }
+
+  @Override
+  public boolean isThreadLocal (ThreadInfo ti) {
+    return !ti.getTopFrame().hasAttrs();
+  }
+
+  @Override
+  public Instruction execute (ThreadInfo ti) {
+    StackFrame frame = ti.getTopFrame(); // we don't modify it
+
+    int v1 = frame.getLocalVariable(src1);
+    int v2 = (src2 >= 0) ? frame.getLocalVariable(src2) : constValue;
+    boolean isTaken;
+
+    switch (cond) {
+      case EQ: isTaken = (v1 == v2); break;
+      case NE: isTaken = (v1 != v2); break;
+      case LT: isTaken = (v1 < v2); break;
+      case GE: isTaken = (v1 >= v2); break;
+      case GT: isTaken = (v1 > v2); break;
+      case LE: isTaken = (v1 <= v2); break;
+      default:
+        throw new IllegalStateException("not a fusable branch: " + ifInsn);
+    }
+
+    ifInsn.conditionValue = isTaken;
+
+    if (isTaken) {
+      return ifInsn.getTarget();
+    } else {
+      return getFollowingInstruction();
+    }
+  }
+}
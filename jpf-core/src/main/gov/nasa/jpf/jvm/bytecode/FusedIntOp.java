@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf.jvm.bytecode;
+
+import gov.nasa.jpf.vm.Instruction;
+import gov.nasa.jpf.vm.StackFrame;
+import gov.nasa.jpf.vm.ThreadInfo;
+import gov.nasa.jpf.vm.bytecode.SuperInstruction;
+
+/**
+ * superinstruction for int arithmetic on locals, i.e.
+ *
+ *   ILOAD a, (ILOAD b | ICONST/BIPUSH/SIPUSH c), IADD/ISUB/IMUL/IAND/IOR/IXOR/ISHL/ISHR/IUSHR, ISTORE d
+ *
+ * which computes the result without going through the operand stack
+ */
+public class FusedIntOp extends SuperInstruction {
+
+  protected int src1;
+  protected int src2; // local var index, or -1 if we use constValue
+  protected int constValue;
+  protected int op;   // bytecode of the arithmetic insn
+  protected int dst;
+
+  protected FusedIntOp (Instruction[] insns) {
+    super(insns);
+
+    src1 = ((ILOAD)insns[0]).getLocalVariableIndex();
+    src2 = getLocalOperand(insns[1]);
+    constValue = getConstOperand(insns[1]);
+    op = insns[2].getByteCode();
+    dst = ((ISTORE)insns[3]).getLocalVariableIndex();
+  }
+
+  /**
+   * return a FusedIntOp if the sequence starting at code[i] matches, null otherwise.
+   * Note we only match our own instruction classes, subclasses created by other
+   * InstructionFactories might execute differently
+   */
+  public static FusedIntOp create (Instruction[] code, int i) {
+    if ((i + 3 < code.length) && (code[i].getClass() == ILOAD.class) && isIntOperand(code[i+1])
+        && isIntOp(code[i+2]) && (code[i+3].getClass() == ISTORE.class)) {
+      return new FusedIntOp(new Instruction[] { code[i], code[i+1], code[i+2], code[i+3] });
+    }
+    return null;
+  }
+
+  //--- operand helpers, also used by FusedIntCompare
+
+  static boolean isIntOperand (Instruction insn) {
+    Class<?> cls = insn.getClass();
+    return (cls == ILOAD.class) || (cls == ICONST.class) || (cls == BIPUSH.class) || (cls == SIPUSH.class);
+  }
+
+  static int getLocalOperand (Instruction insn) {
+    return (insn.getClass() == ILOAD.class) ? ((ILOAD)insn).getLocalVariableIndex() : -1;
+  }
+
+  static int getConstOperand (Instruction insn) {
+    Class<?> cls = insn.getClass();
+    if (cls == ICONST.class) {
+      return ((ICONST)insn).getValue();
+    } else if (cls == BIPUSH.class) {
+      return ((BIPUSH)insn).getValue();
+    } else if (cls == SIPUSH.class) {
+      return ((SIPUSH)insn).getValue();
+    } else {
+      return 0;
+    }
+  }
+
+  static boolean isIntOp (Instruction insn) {
+    Class<?> cls = insn.getClass();
+    return (cls == IADD.class) || (cls == ISUB.class) || (cls == IMUL.class) ||
+           (cls == IAND.class) || (cls == IOR.class) || (cls == IXOR.class) ||
+           (cls == ISHL.class) || (cls == ISHR.class) || (cls == IUSHR.class);
+  }
+
+  @Override
+  public boolean isThreadLocal (ThreadInfo ti) {
+    return !ti.getTopFrame().hasAttrs(); // we don't propagate operand attributes
+  }
+
+  @Override
+  public Instruction execute (ThreadInfo ti) {
+    StackFrame frame = ti.getModifiableTopFrame();
+
+    int v1 = frame.getLocalVariable(src1);
+    int v2 = (src2 >= 0) ? frame.getLocalVariable(src2) : constValue;
+    int r;
+
+    switch (op) {
+      case 0x60: r = v1 + v2; break;          // IADD
+      case 0x64: r = v1 - v2; break;          // ISUB
+      case 0x68: r = v1 * v2; break;          // IMUL
+      case 0x7e: r = v1 & v2; break;          // IAND
+      case 0x80: r = v1 | v2; break;          // IOR
+      case 0x82: r = v1 ^ v2; break;          // IXOR
+      case 0x78: r = v1 << (v2 & 0x1f); break;  // ISHL
+      case 0x7a: r = v1 >> (v2 & 0x1f); break;  // ISHR
+      case 0x7c: r = v1 >>> (v2 & 0x1f); break; // IUSHR
+      default:
+        throw new IllegalStateException("not a fusable int op: " + insns[2]);
+    }
+
+    frame.storeLocalValue(dst, r);
+
+    return getFollowingInstruction();
+  }
+}
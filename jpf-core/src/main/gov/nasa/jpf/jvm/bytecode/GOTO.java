@@ -50,6 +50,11 @@ public class GOTO extends Instruction implements JVMInstruction {
     return getTarget();
   }
 
+  @Override
+  public boolean isThreadLocal (ThreadInfo ti) {
+    return true;
+  }
+
   @Override
   public boolean isBackJump () {
     return (targetPosition <= position);
@@ -42,6 +42,11 @@ public class ICONST extends Instruction implements JVMInstruction {
     return getNext(ti);
   }
 
+  @Override
+  public boolean isThreadLocal (ThreadInfo ti) {
+    return true;
+  }
+
   public int getValue() {
     return value;
   }
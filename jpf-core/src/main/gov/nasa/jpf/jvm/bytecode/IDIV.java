@@ -45,6 +45,11 @@ public class IDIV extends Instruction implements JVMInstruction {
     return getNext(ti);
   }
 
+  @Override
+  public boolean isThreadLocal (ThreadInfo ti) {
+    return ti.getTopFrame().peek() != 0; // no ArithmeticException
+  }
+
   @Override
   public int getByteCode () {
     return 0x6C;
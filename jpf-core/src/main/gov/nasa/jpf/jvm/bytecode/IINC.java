@@ -48,6 +48,11 @@ public class IINC extends Instruction implements JVMInstruction {
     return getNext(ti);
   }
 
+  @Override
+  public boolean isThreadLocal (ThreadInfo ti) {
+    return true;
+  }
+
   @Override
   public int getLength() {
     return 3; // opcode, index, const
@@ -44,6 +44,11 @@ public class IREM extends Instruction implements JVMInstruction {
     return getNext(ti);
   }
 
+  @Override
+  public boolean isThreadLocal (ThreadInfo ti) {
+    return ti.getTopFrame().peek() != 0; // no ArithmeticException
+  }
+
   @Override
   public int getByteCode () {
     return 0x70;
@@ -40,6 +40,11 @@ public class ISHR extends Instruction implements JVMInstruction {
     return getNext( ti);
   }
 
+  @Override
+  public boolean isThreadLocal (ThreadInfo ti) {
+    return true;
+  }
+
   @Override
   public int getByteCode () {
     return 0x7A;
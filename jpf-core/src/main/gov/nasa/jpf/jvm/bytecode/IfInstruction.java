@@ -82,6 +82,11 @@ public abstract class IfInstruction extends Instruction implements JVMInstructio
     }
   }
 
+  @Override
+  public boolean isThreadLocal (ThreadInfo ti) {
+    return true;
+  }
+
   /**
    * use this as a delegatee in overridden executes of derived IfInstructions
    * (e.g. for symbolic execution)
@@ -19,6 +19,7 @@
 package gov.nasa.jpf.jvm.bytecode;
 
 import gov.nasa.jpf.vm.ElementInfo;
+import gov.nasa.jpf.vm.MJIEnv;
 import gov.nasa.jpf.vm.ThreadInfo;
 import gov.nasa.jpf.vm.bytecode.ArrayElementInstruction;
 
@@ -112,5 +113,21 @@ public abstract class JVMArrayElementInstruction extends  ArrayElementInstructio
   
   @Override
   public abstract boolean isRead();
+
+  /**
+   * in-bounds accesses of arrays that are confined to ti can't create a CG
+   */
+  @Override
+  public boolean isThreadLocal (ThreadInfo ti) {
+    return isThreadLocal(ti, peekArrayRef(ti), peekIndex(ti));
+  }
+
+  boolean isThreadLocal (ThreadInfo ti, int aref, int idx) {
+    if (aref != MJIEnv.NULL) {
+      ElementInfo ei = ti.getElementInfo(aref);
+      return (idx >= 0) && (idx < ei.arrayLength()) && !ei.isExposedOrShared() && ei.isReferencedByThread(ti);
+    }
+    return false;
+  }
   
 }
@@ -17,6 +17,10 @@
  */
 package gov.nasa.jpf.jvm.bytecode;
 
+import gov.nasa.jpf.vm.ElementInfo;
+import gov.nasa.jpf.vm.MJIEnv;
+import gov.nasa.jpf.vm.StackFrame;
+import gov.nasa.jpf.vm.ThreadInfo;
 import gov.nasa.jpf.vm.bytecode.InstanceFieldInstruction;
 
 /**
@@ -27,6 +31,24 @@ public abstract class JVMInstanceFieldInstruction extends InstanceFieldInstructi
   protected JVMInstanceFieldInstruction (String fieldName, String classType, String fieldDescriptor){
     super(fieldName, classType, fieldDescriptor);
   }
+
+  /**
+   * once we know the field, accessing it in objects that are confined to ti
+   * can't create a CG
+   */
+  @Override
+  public boolean isThreadLocal (ThreadInfo ti) {
+    StackFrame frame = ti.getTopFrame();
+    return isThreadLocal(ti, frame.getSlot(getObjectSlot(frame)));
+  }
+
+  boolean isThreadLocal (ThreadInfo ti, int objRef) {
+    if ((fi != null) && (objRef != MJIEnv.NULL)) {
+      ElementInfo ei = ti.getElementInfo(objRef);
+      return !ei.isExposedOrShared() && ei.isReferencedByThread(ti);
+    }
+    return false;
+  }
     
   @Override
   public void accept(JVMInstructionVisitor insVisitor) {
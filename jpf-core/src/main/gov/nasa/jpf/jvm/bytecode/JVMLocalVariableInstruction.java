@@ -19,6 +19,7 @@ package gov.nasa.jpf.jvm.bytecode;
 
 import gov.nasa.jpf.vm.bytecode.LocalVariableInstruction;
 import gov.nasa.jpf.vm.Instruction;
+import gov.nasa.jpf.vm.ThreadInfo;
 import gov.nasa.jpf.vm.LocalVarInfo;
 
 /**
@@ -99,6 +100,11 @@ public abstract class JVMLocalVariableInstruction extends Instruction implements
       return baseMnemonic + " " + index;
     }
   }
+
+  @Override
+  public boolean isThreadLocal (ThreadInfo ti) {
+    return true;
+  }
 }
 
 
@@ -41,6 +41,11 @@ public class LAND extends Instruction implements JVMInstruction {
 
     return getNext(ti);
   }
+
+  @Override
+  public boolean isThreadLocal (ThreadInfo ti) {
+    return true;
+  }
   
   @Override
   public int getByteCode () {
@@ -41,6 +41,11 @@ public class LCMP extends Instruction implements JVMInstruction {
 
     return getNext(ti);
   }
+
+  @Override
+  public boolean isThreadLocal (ThreadInfo ti) {
+    return true;
+  }
   
   protected int conditionValue(long v1, long v2) {
       if (v1 == v2) {
@@ -46,6 +46,11 @@ public class LDIV extends Instruction implements JVMInstruction {
     return getNext(ti);
   }
 
+  @Override
+  public boolean isThreadLocal (ThreadInfo ti) {
+    return ti.getTopFrame().peekLong() != 0; // no ArithmeticException
+  }
+
   @Override
   public int getByteCode () {
     return 0x6D;
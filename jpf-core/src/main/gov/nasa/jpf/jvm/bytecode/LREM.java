@@ -42,6 +42,11 @@ public class LREM extends Instruction implements JVMInstruction {
     return getNext(ti);
   }
 
+  @Override
+  public boolean isThreadLocal (ThreadInfo ti) {
+    return ti.getTopFrame().peekLong() != 0; // no ArithmeticException
+  }
+
   @Override
   public int getByteCode () {
     return 0x71;
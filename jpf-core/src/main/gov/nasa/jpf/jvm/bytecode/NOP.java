@@ -36,6 +36,11 @@ public class NOP extends Instruction implements JVMInstruction {
     return getNext(th);
   }
 
+  @Override
+  public boolean isThreadLocal (ThreadInfo ti) {
+    return true;
+  }
+
   @Override
   public int getByteCode () {
     return 0x00;
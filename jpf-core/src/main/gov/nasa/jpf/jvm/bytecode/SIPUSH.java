@@ -42,6 +42,11 @@ public class SIPUSH extends Instruction implements JVMInstruction {
     return getNext(ti);
   }
 
+  @Override
+  public boolean isThreadLocal (ThreadInfo ti) {
+    return true;
+  }
+
   @Override
   public int getLength() {
     return 3; // opcode, b1, b2
@@ -75,6 +75,11 @@ public abstract class SwitchInstruction extends Instruction implements JVMInstru
     return executeConditional(ti);
   }
 
+  @Override
+  public boolean isThreadLocal (ThreadInfo ti) {
+    return true;
+  }
+
   /** useful for symbolic execution modes */
   public Instruction executeAllBranches (SystemState ss, KernelState ks, ThreadInfo ti) {
     if (!ti.isFirstStepInsn()) {
@@ -0,0 +1,481 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf.listener;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.JPF;
+import gov.nasa.jpf.ListenerAdapter;
+import gov.nasa.jpf.jvm.bytecode.EXECUTENATIVE;
+import gov.nasa.jpf.jvm.bytecode.IINC;
+import gov.nasa.jpf.jvm.bytecode.NATIVERETURN;
+import gov.nasa.jpf.jvm.bytecode.SwitchInstruction;
+import gov.nasa.jpf.report.ConsolePublisher;
+import gov.nasa.jpf.report.Publisher;
+import gov.nasa.jpf.search.DFSearch;
+import gov.nasa.jpf.search.Search;
+import gov.nasa.jpf.util.JPFLogger;
+import gov.nasa.jpf.util.ObjectList;
+import gov.nasa.jpf.vm.ChoiceGenerator;
+import gov.nasa.jpf.vm.ElementInfo;
+import gov.nasa.jpf.vm.Instruction;
+import gov.nasa.jpf.vm.MJIEnv;
+import gov.nasa.jpf.vm.MethodInfo;
+import gov.nasa.jpf.vm.StackFrame;
+import gov.nasa.jpf.vm.StateSet;
+import gov.nasa.jpf.vm.ThreadInfo;
+import gov.nasa.jpf.vm.VM;
+import gov.nasa.jpf.vm.choice.IntIntervalGenerator;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.TreeSet;
+
+/**
+ * listener that reduces the data choices of Verify.getInt(min,max) by skipping
+ * values that lead to the same branch outcomes as an already explored value.
+ *
+ * Each returned choice value is tagged with an operand attribute that follows
+ * it through loads, stores, stack operations, calls, returns, field and int
+ * array element copies. As long as the value is only compared against values
+ * that are not derived from it (branches and switches), we record the
+ * comparisons it was involved in. Once the whole subtree of a value has been
+ * explored, subsequent values of the same CG that produce the same outcomes for
+ * all recorded comparisons would take exactly the same paths, and hence are
+ * skipped. If the value is used in any other way (arithmetic, conversions,
+ * array indices or sizes, native method arguments, comparisons with other
+ * tagged values) it "escapes", and is not used to skip other values.
+ *
+ * A value also escapes if it is still live when its subtree hits a state that
+ * was visited outside of that subtree, or if it was stored in the heap and a
+ * native method is called with a reference to an object or array that holds
+ * a tagged value (natives such as System.arraycopy() do not preserve
+ * attributes). Note that we only check directly referenced objects, i.e.
+ * natives that traverse the heap on their own are not covered.
+ *
+ * This relies on depth first search order, since the subtree of a value has to
+ * be complete before the CG is advanced. It is enabled by adding this class to
+ * the 'listener' property, e.g.
+ *
+ *   listener+=,gov.nasa.jpf.listener.DataChoiceReducer
+ *
+ * Skipped choices are reported at the end of the search.
+ */
+public class DataChoiceReducer extends ListenerAdapter {
+
+  static JPFLogger log = JPF.getLogger("gov.nasa.jpf.listener.DataChoiceReducer");
+
+  static final String VERIFY_CLASS = "gov.nasa.jpf.vm.Verify";
+  static final String GET_INT = "getInt(II)I";
+  static final String CG_ID = "verifyGetInt(II)";
+
+  // operand slots consumed by (non-special) standard bytecodes, -1 means the whole operand stack
+  static final byte[] consumedSlots = new byte[202];
+  static {
+    fill(46, 53, 2);    // xALOAD
+    fill(80, 86, 3);    // array stores other than IASTORE (narrowing or non-int)
+    consumedSlots[80] = consumedSlots[82] = 4;
+
+    for (int op = 96; op <= 115; op++) { // arithmetics
+      consumedSlots[op] = (byte) (((op - 96) % 2 == 0) ? 2 : 4);
+    }
+    fill(116, 119, 1);  // xNEG
+    consumedSlots[117] = consumedSlots[119] = 2;
+    fill(120, 125, 2);  // shifts
+    consumedSlots[121] = consumedSlots[123] = consumedSlots[125] = 3;
+    for (int op = 126; op <= 131; op++) { // logical ops
+      consumedSlots[op] = (byte) (((op - 126) % 2 == 0) ? 2 : 4);
+    }
+    fill(133, 147, 1);  // conversions
+    fill(136, 138, 2);
+    fill(142, 144, 2);
+    consumedSlots[148] = 4; // LCMP
+    fill(149, 150, 2);  // FCMPx
+    fill(151, 152, 4);  // DCMPx
+    fill(165, 166, 2);  // IF_ACMPxx
+    consumedSlots[186] = -1; // INVOKEDYNAMIC
+    fill(188, 195, 1);  // NEWARRAY .. MONITOREXIT
+    consumedSlots[197] = -1; // MULTIANEWARRAY
+    fill(198, 199, 1);  // IFNULL, IFNONNULL
+  }
+
+  static void fill (int first, int last, int n) {
+    for (int op = first; op <= last; op++) {
+      consumedSlots[op] = (byte) n;
+    }
+  }
+
+  /**
+   * the comparisons a choice value was involved in. We normalize them into
+   * 'v < k' thresholds and 'v == k' equalities
+   */
+  static class Signature {
+    int value;
+    TreeSet<Long> thresholds = new TreeSet<Long>();
+    HashSet<Integer> equalities = new HashSet<Integer>();
+
+    Signature (int value) {
+      this.value = value;
+    }
+
+    void addComparison (int relation, int other, boolean isLeft) {
+      switch (relation) {
+        case 0: case 1: // EQ, NE
+          equalities.add(other);
+          break;
+        case 2: case 3: // LT, GE
+          thresholds.add(isLeft ? (long) other : (long) other + 1);
+          break;
+        case 4: case 5: // GT, LE
+          thresholds.add(isLeft ? (long) other + 1 : (long) other);
+          break;
+      }
+    }
+
+    boolean hasSameOutcomes (int v) {
+      if (v == value) {
+        return true;
+      }
+      if (equalities.contains(v) || equalities.contains(value)) {
+        return false;
+      }
+
+      long lo = Math.min(v, value);
+      long hi = Math.max(v, value);
+      Long k = thresholds.higher(lo);
+      return (k == null || k > hi);
+    }
+  }
+
+  /**
+   * the reduction state of a single getInt() CG, which is also the attribute
+   * we use to tag its choice values
+   */
+  static class DataChoice {
+    ArrayList<Signature> representatives = new ArrayList<Signature>();
+
+    Signature current;
+    boolean isEscaped;
+    boolean isHeapTainted;
+    int firstStateId;
+
+    void startValue (int value, int stateId) {
+      current = new Signature(value);
+      isEscaped = false;
+      isHeapTainted = false;
+      firstStateId = stateId;
+    }
+
+    void finishValue () {
+      if (current != null && !isEscaped) {
+        representatives.add(current);
+      }
+      current = null;
+    }
+
+    boolean isEquivalent (int value) {
+      for (Signature sig : representatives) {
+        if (sig.hasSameOutcomes(value)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public String toString () {
+      return "DataChoice[" + ((current != null) ? current.value : "-") + ']';
+    }
+  }
+
+  protected boolean isDisabled;
+
+  // the DataChoices that have a value which is currently being explored
+  protected ArrayList<DataChoice> active = new ArrayList<DataChoice>();
+
+  // the DataChoice whose value has to be tagged when getInt() returns
+  protected DataChoice pending;
+  protected ThreadInfo pendingThread;
+
+  protected int nCGs;
+  protected int nExplored;
+  protected int nMerged;
+  protected int nEscaped;
+
+  public DataChoiceReducer (Config conf, JPF jpf) {
+    jpf.addPublisherExtension(ConsolePublisher.class, this);
+  }
+
+  protected boolean isReducible (ChoiceGenerator<?> cg) {
+    return (cg instanceof IntIntervalGenerator) && CG_ID.equals(cg.getId());
+  }
+
+  protected DataChoice getTag (Object attr) {
+    return ObjectList.getFirst(attr, DataChoice.class);
+  }
+
+  protected void escape (DataChoice dc) {
+    if (dc != null && dc.current != null && !dc.isEscaped) {
+      dc.isEscaped = true;
+      nEscaped++;
+    }
+  }
+
+  //--- SearchListener interface
+
+  @Override
+  public void searchStarted (Search search) {
+    if (!(search instanceof DFSearch)) {
+      log.warning("data choice reduction requires depth first search, disabled for ", search.getClass().getName());
+      isDisabled = true;
+    }
+  }
+
+  @Override
+  public void stateAdvanced (Search search) {
+    // matched end states don't cut off any exploration
+    if (!active.isEmpty() && !search.isNewState() && !search.isEndState()) {
+      int id = search.getStateId();
+
+      for (DataChoice dc : active) {
+        // matching a state within the subtree of the current value is safe since
+        // another value would match the corresponding state of its own subtree
+        if (id < dc.firstStateId && !dc.isEscaped) {
+          if (dc.isHeapTainted || isOnStack(search.getVM(), dc)) {
+            escape(dc);
+          }
+        }
+      }
+    }
+  }
+
+  protected boolean isOnStack (VM vm, DataChoice dc) {
+    for (ThreadInfo ti : vm.getThreadList().getThreads()) {
+      for (StackFrame frame = ti.getTopFrame(); frame != null; frame = frame.getPrevious()) {
+        Object[] attrs = frame.getSlotAttrs();
+        if (attrs != null) {
+          int top = frame.getTopPos();
+          for (int i = 0; i <= top; i++) {
+            if (attrs[i] != null && ObjectList.contains(attrs[i], dc)) {
+              return true;
+            }
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  //--- VMListener interface
+
+  @Override
+  public void choiceGeneratorAdvanced (VM vm, ChoiceGenerator<?> cg) {
+    if (isDisabled || !isReducible(cg)) {
+      return;
+    }
+
+    DataChoice dc = cg.getAttr(DataChoice.class);
+    if (dc == null) {
+      dc = new DataChoice();
+      cg.addAttr(dc);
+      nCGs++;
+
+    } else {
+      // in DFS order we only get here once the subtree of the previous value is done
+      dc.finishValue();
+      active.remove(dc);
+    }
+
+    int value = ((IntIntervalGenerator) cg).getNextChoice();
+    if (dc.isEquivalent(value)) {
+      log.fine("skipping equivalent choice ", value, " of ", cg);
+      vm.getSystemState().setIgnored(true);
+      nMerged++;
+
+    } else {
+      StateSet stateSet = vm.getStateSet();
+      dc.startValue(value, (stateSet != null) ? stateSet.size() : Integer.MAX_VALUE);
+      active.add(dc);
+      nExplored++;
+
+      pending = dc;
+      pendingThread = cg.getThreadInfo();
+    }
+  }
+
+  @Override
+  public void choiceGeneratorProcessed (VM vm, ChoiceGenerator<?> cg) {
+    DataChoice dc = cg.getAttr(DataChoice.class);
+    if (dc != null) {
+      dc.finishValue();
+      active.remove(dc);
+      dc.representatives.clear();
+    }
+  }
+
+  @Override
+  public void instructionExecuted (VM vm, ThreadInfo ti, Instruction nextInsn, Instruction executedInsn) {
+    if (pending != null && ti == pendingThread && executedInsn instanceof NATIVERETURN) {
+      MethodInfo mi = executedInsn.getMethodInfo();
+      if (mi != null && GET_INT.equals(mi.getUniqueName()) && VERIFY_CLASS.equals(mi.getClassName())) {
+        ti.getTopFrame().addOperandAttr(pending);
+        pending = null;
+        pendingThread = null;
+      }
+    }
+  }
+
+  @Override
+  public void executeInstruction (VM vm, ThreadInfo ti, Instruction insn) {
+    if (active.isEmpty()) {
+      return;
+    }
+
+    StackFrame frame = ti.getTopFrame();
+    int opcode = insn.getByteCode();
+
+    if (opcode == EXECUTENATIVE.OPCODE) {
+      checkNativeCall(vm, frame.getPrevious(), ((EXECUTENATIVE) insn).getExecutedMethod());
+      return;
+    }
+    if (!frame.hasAttrs() || opcode >= consumedSlots.length) {
+      return;
+    }
+
+    if (opcode >= 153 && opcode <= 158) {          // IFxx
+      DataChoice dc = getTag(frame.getOperandAttr());
+      if (dc != null && dc.current != null) {
+        dc.current.addComparison(opcode - 153, 0, true);
+      }
+
+    } else if (opcode >= 159 && opcode <= 164) {   // IF_ICMPxx
+      DataChoice left = getTag(frame.getOperandAttr(1));
+      DataChoice right = getTag(frame.getOperandAttr(0));
+      if (left != null && right != null) {
+        escape(left);
+        escape(right);
+      } else if (left != null && left.current != null) {
+        left.current.addComparison(opcode - 159, frame.peek(0), true);
+      } else if (right != null && right.current != null) {
+        right.current.addComparison(opcode - 159, frame.peek(1), false);
+      }
+
+    } else if (opcode == 170 || opcode == 171) {   // TABLESWITCH, LOOKUPSWITCH
+      DataChoice dc = getTag(frame.getOperandAttr());
+      if (dc != null && dc.current != null) {
+        for (int match : ((SwitchInstruction) insn).getMatches()) {
+          dc.current.equalities.add(match);
+        }
+      }
+
+    } else if (opcode == 132) {                    // IINC
+      escape(getTag(frame.getLocalAttr(((IINC) insn).getIndex())));
+
+    } else if (opcode == 79) {                     // IASTORE
+      escape(getTag(frame.getOperandAttr(1)));
+      setHeapTainted(getTag(frame.getOperandAttr(0)));
+
+    } else if (opcode == 179 || opcode == 181) {   // PUTSTATIC, PUTFIELD
+      setHeapTainted(getTag(frame.getOperandAttr(0)));
+      setHeapTainted(getTag(frame.getOperandAttr(1)));
+
+    } else {
+      // everything else is either a copy or a consumer that escapes
+      int n = consumedSlots[opcode];
+      if (n != 0) {
+        checkConsumed(frame, n);
+      }
+    }
+  }
+
+  protected void setHeapTainted (DataChoice dc) {
+    if (dc != null) {
+      dc.isHeapTainted = true;
+    }
+  }
+
+  protected void checkConsumed (StackFrame frame, int n) {
+    int depth = frame.getTopPos() - frame.getLocalVariableCount() + 1;
+    if (n < 0 || n > depth) {
+      n = depth;
+    }
+
+    for (int i = 0; i < n; i++) {
+      escape(getTag(frame.getOperandAttr(i)));
+    }
+  }
+
+  protected void checkNativeCall (VM vm, StackFrame caller, MethodInfo mi) {
+    if (caller == null) {
+      return;
+    }
+
+    // the arguments are still on the caller stack
+    int n = mi.getArgumentsSize();
+    if (caller.hasAttrs()) {
+      checkConsumed(caller, n);
+    }
+
+    // natives don't preserve attributes of the fields or array elements they
+    // read (e.g. System.arraycopy), so we conservatively check the objects
+    // that are directly referenced by arguments
+    if (hasHeapTaint()) {
+      for (int i = 0; i < n; i++) {
+        if (caller.isOperandRef(i)) {
+          int ref = caller.peek(i);
+          if (ref != MJIEnv.NULL) {
+            ElementInfo ei = vm.getHeap().get(ref);
+            if (ei != null && ei.hasFieldAttr(DataChoice.class)) {
+              escapeHeapTainted();
+              return;
+            }
+          }
+        }
+      }
+    }
+  }
+
+  protected boolean hasHeapTaint () {
+    for (DataChoice dc : active) {
+      if (dc.isHeapTainted && !dc.isEscaped) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  protected void escapeHeapTainted () {
+    for (DataChoice dc : active) {
+      if (dc.isHeapTainted) {
+        escape(dc);
+      }
+    }
+  }
+
+  //--- PublisherExtension interface
+
+  @Override
+  public void publishFinished (Publisher publisher) {
+    PrintWriter pw = publisher.getOut();
+    publisher.publishTopicStart("data choice reduction");
+    pw.println("choice generators: " + nCGs);
+    pw.println("explored choices:  " + nExplored);
+    pw.println("merged choices:    " + nMerged);
+    pw.println("escaped choices:   " + nEscaped);
+  }
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf.listener;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.JPF;
+import gov.nasa.jpf.JPFException;
+import gov.nasa.jpf.ListenerAdapter;
+import gov.nasa.jpf.annotation.JPFOption;
+import gov.nasa.jpf.annotation.JPFOptions;
+import gov.nasa.jpf.search.Search;
+import gov.nasa.jpf.util.JPFLogger;
+import gov.nasa.jpf.vm.ChoiceGenerator;
+import gov.nasa.jpf.vm.ThreadInfo;
+import gov.nasa.jpf.vm.VM;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.IdentityHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * a listener that records the explored state graph as a binary, append-only
+ * log of edges, to be converted into DOT or GraphML offline by
+ * gov.nasa.jpf.tool.StateGraphConverter.
+ *
+ * As opposed to StateSpaceDot, we don't format anything while the search is
+ * running. Records are put into fixed size buffers which are written by a
+ * background thread. The number of buffers is bounded, i.e. the search only
+ * blocks if the writer can't keep up with it.
+ *
+ * The log is a sequence of big endian records:
+ *   header  : int MAGIC, int VERSION
+ *   CG_TYPE : byte tag, int typeId, short len, byte[len] (UTF-8 class name)
+ *   EDGE    : byte tag, int stateId, int parentId, int typeId, int choiceIndex, int threadId, byte flags
+ *   ERROR   : byte tag, int stateId
+ * CG_TYPE records precede the first EDGE that refers to them, the parentId of
+ * the first EDGE is -1, and typeId is -1 if there is no CG for a transition
+ */
+@JPFOptions({
+  @JPFOption(type = "String", key = "state_graph.file", defaultValue = "jpf-state-graph.bin", comment = "file to log the state graph to"),
+  @JPFOption(type = "Int", key = "state_graph.buffer_size", defaultValue = "65536", comment = "size of write buffers [bytes]"),
+  @JPFOption(type = "Int", key = "state_graph.buffers", defaultValue = "4", comment = "number of write buffers")
+})
+public class StateGraphLogger extends ListenerAdapter {
+
+  public static final int MAGIC = 0x4a504647; // "JPFG"
+  public static final int VERSION = 1;
+
+  public static final byte CG_TYPE = 1;
+  public static final byte EDGE = 2;
+  public static final byte ERROR = 3;
+
+  // EDGE flags
+  public static final byte NEW = 1;
+  public static final byte END = 2;
+
+  static final int EDGE_SIZE = 22;
+  static final int ERROR_SIZE = 5;
+
+  static JPFLogger log = JPF.getLogger("gov.nasa.jpf.listener.StateGraphLogger");
+
+  // what we use to tell the writer there is nothing more to come
+  static final ByteBuffer EOF = ByteBuffer.allocate(0);
+
+  /**
+   * the background thread that does the I/O. It gets filled buffers from
+   * 'full', and returns them to 'free' once they are written
+   */
+  class Writer extends Thread {
+    FileChannel channel;
+    volatile IOException failure;
+
+    Writer (FileChannel channel) {
+      this.channel = channel;
+      setName("StateGraphLogger writer");
+      setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (true) {
+          ByteBuffer buf = full.take();
+          if (buf == EOF) {
+            break;
+          }
+
+          try {
+            if (failure == null) {
+              while (buf.hasRemaining()) {
+                channel.write(buf);
+              }
+            }
+          } catch (IOException iox) {
+            failure = iox; // we keep recycling buffers so that the search doesn't block
+          }
+
+          buf.clear();
+          free.put(buf);
+        }
+
+      } catch (InterruptedException ix) {
+        // we are done
+      } finally {
+        try {
+          channel.close();
+        } catch (IOException iox) {
+          if (failure == null) {
+            failure = iox;
+          }
+        }
+      }
+    }
+  }
+
+  protected String pathName;
+  protected VM vm;
+
+  protected ArrayBlockingQueue<ByteBuffer> full;
+  protected ArrayBlockingQueue<ByteBuffer> free;
+  protected ByteBuffer buf;
+  protected Writer writer;
+
+  protected IdentityHashMap<Class<?>,Integer> cgTypes = new IdentityHashMap<Class<?>,Integer>();
+
+  // the state we are currently in, i.e. the parent of the next edge
+  protected int curId = -1;
+
+  protected long nEdges;
+
+  public StateGraphLogger (Config config, JPF jpf) {
+    vm = jpf.getVM();
+    pathName = config.getString("state_graph.file", "jpf-state-graph.bin");
+
+    int bufSize = Math.max(config.getInt("state_graph.buffer_size", 65536), 1024);
+    int nBuffers = Math.max(config.getInt("state_graph.buffers", 4), 2);
+
+    full = new ArrayBlockingQueue<ByteBuffer>(nBuffers + 1); // +1 for EOF
+    free = new ArrayBlockingQueue<ByteBuffer>(nBuffers);
+    for (int i = 1; i < nBuffers; i++) {
+      free.add(ByteBuffer.allocate(bufSize));
+    }
+    buf = ByteBuffer.allocate(bufSize);
+  }
+
+  //--- buffer management
+
+  protected void handOff() {
+    if (writer.failure != null) {
+      throw new JPFException("writing state graph failed: " + writer.failure);
+    }
+
+    buf.flip();
+    try {
+      full.put(buf);
+      buf = free.take(); // this is where we block if the writer is too slow
+    } catch (InterruptedException ix) {
+      throw new JPFException("state graph logging interrupted");
+    }
+  }
+
+  protected void ensureCapacity (int n) {
+    if (buf.remaining() < n) {
+      handOff();
+    }
+  }
+
+  protected int getTypeId (ChoiceGenerator<?> cg) {
+    if (cg == null) {
+      return -1;
+    }
+
+    Class<?> cls = cg.getClass();
+    Integer id = cgTypes.get(cls);
+    if (id == null) {
+      id = cgTypes.size();
+      cgTypes.put(cls, id);
+
+      byte[] name = cls.getName().getBytes(StandardCharsets.UTF_8);
+      ensureCapacity(7 + name.length);
+      buf.put(CG_TYPE);
+      buf.putInt(id);
+      buf.putShort((short)name.length);
+      buf.put(name);
+    }
+
+    return id;
+  }
+
+  //--- the listener interface
+
+  @Override
+  public void searchStarted (Search search) {
+    try {
+      FileChannel channel = new FileOutputStream(pathName).getChannel();
+      writer = new Writer(channel);
+      writer.start();
+
+    } catch (IOException iox) {
+      throw new JPFException("cannot open state graph file: " + pathName);
+    }
+
+    buf.putInt(MAGIC);
+    buf.putInt(VERSION);
+    curId = search.getStateId();
+  }
+
+  @Override
+  public void stateAdvanced (Search search) {
+    int id = search.getStateId();
+
+    ChoiceGenerator<?> cg = vm.getChoiceGenerator();
+    int typeId = getTypeId(cg);
+    int choiceIndex = (cg != null) ? cg.getProcessedNumberOfChoices() - 1 : -1;
+
+    ThreadInfo ti = vm.getCurrentThread();
+    int threadId = (ti != null) ? ti.getId() : -1;
+
+    byte flags = 0;
+    if (search.isNewState()) {
+      flags |= NEW;
+    }
+    if (search.isEndState()) {
+      flags |= END;
+    }
+
+    ensureCapacity(EDGE_SIZE);
+    buf.put(EDGE);
+    buf.putInt(id);
+    buf.putInt(curId);
+    buf.putInt(typeId);
+    buf.putInt(choiceIndex);
+    buf.putInt(threadId);
+    buf.put(flags);
+
+    nEdges++;
+    curId = id;
+  }
+
+  @Override
+  public void stateBacktracked (Search search) {
+    curId = search.getStateId();
+  }
+
+  @Override
+  public void stateRestored (Search search) {
+    curId = search.getStateId();
+  }
+
+  @Override
+  public void propertyViolated (Search search) {
+    ensureCapacity(ERROR_SIZE);
+    buf.put(ERROR);
+    buf.putInt(search.getStateId());
+  }
+
+  @Override
+  public void searchFinished (Search search) {
+    if (writer == null) {
+      return;
+    }
+
+    try {
+      buf.flip();
+      full.put(buf);
+      full.put(EOF);
+      writer.join();
+
+    } catch (InterruptedException ix) {
+      log.warning("state graph logging interrupted");
+    }
+
+    if (writer.failure != null) {
+      log.warning("writing state graph failed: ", writer.failure);
+    } else {
+      log.info("state graph with ", nEdges, " edges written to ", pathName);
+    }
+    writer = null;
+  }
+}
@@ -368,6 +368,10 @@ public class ConsolePublisher extends Publisher {
     pw.println("elapsed time:       " + formatHMS(reporter.getElapsedTime()));
     pw.println("states:             new=" + stat.newStates + ",visited=" + stat.visitedStates
             + ",backtracked=" + stat.backtracked + ",end=" + stat.endStates);
+    if (stat.stateOmissionProbability >= 0) {
+      pw.println("state omissions:    probability=" + String.format("%.3g", stat.stateOmissionProbability)
+              + ",expected=" + String.format("%.3g", stat.expectedStateOmissions));
+    }
     pw.println("search:             maxDepth=" + stat.maxDepth + ",constraints=" + stat.constraints);
     pw.println("choice generators:  thread=" + stat.threadCGs
             + " (signal=" + stat.signalCGs + ",lock=" + stat.monitorCGs + ",sharedRef=" + stat.sharedAccessCGs
@@ -0,0 +1,460 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf.report;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.Error;
+import gov.nasa.jpf.JPFConfigException;
+import gov.nasa.jpf.search.Search;
+import gov.nasa.jpf.util.json.JSONEncoder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.List;
+
+/**
+ * a publisher that streams machine readable progress records as newline
+ * delimited JSON while the search is running, so that external tools can
+ * monitor (and kill) long runs.
+ *
+ * Every 'report.json.interval' ms we write a "progress" record with the
+ * state rate, current/max depth, heap usage and the Statistics counters. If
+ * the search did not advance since the last record (e.g. because it is in a
+ * long transition), the record has the current heap usage and elapsed time,
+ * the last known counters, and "stale":true.
+ * Each error gets an "error" record as soon as it is found, and there are
+ * "started" and "finished" records at the beginning and the end.
+ *
+ * Records go to the file 'report.json.file' (report.ndjson by default). If
+ * 'report.json.port' is set, we also serve the last progress record via
+ * HTTP at http://localhost:<port>/ and the last 'report.json.max_records'
+ * records at /records.
+ *
+ * The only thing the search thread does at runtime is to check a volatile
+ * flag when it advances, and to create a snapshot of the Statistics if our
+ * timer has set it. Formatting and I/O happen in the timer thread, which picks
+ * up the snapshot from a volatile field. We don't use Search.probeSearch() for
+ * this since that would also trigger the probe topics of all other publishers
+ */
+public class JSONPublisher extends Publisher {
+
+  /**
+   * what the search thread hands over to the timer thread
+   */
+  static class Snapshot {
+    long time;
+    Statistics stat;
+    int depth;
+    int nErrors;
+    long heapUsed;
+    long heapMax;
+  }
+
+  protected int interval;
+  protected int port;
+  protected String fileName;
+
+  protected volatile boolean isSnapshotRequested;
+  protected volatile Snapshot snapshot;
+  protected Snapshot lastSnapshot; // only accessed by the timer thread
+
+  protected Thread progressTimer;
+  protected HttpServer server;
+
+  // only used if we have a server
+  protected volatile String lastProgress;
+  protected ArrayDeque<String> records;
+  protected int maxRecords;
+
+  public JSONPublisher (Config conf, Reporter reporter){
+    super(conf, reporter);
+
+    interval = conf.getInt("report.json.interval", 1000);
+    port = conf.getInt("report.json.port", -1);
+    maxRecords = Math.max(1, conf.getInt("report.json.max_records", 1000));
+
+    fileName = conf.getString("report.json.file");
+    if (fileName == null && port < 0){
+      fileName = getReportFileName("report.json.file") + ".ndjson";
+    }
+  }
+
+  @Override
+  public String getName() {
+    return "json";
+  }
+
+  @Override
+  public boolean hasToReportStatistics() {
+    return true; // that's what we are for
+  }
+
+  //--- the channel
+
+  @Override
+  protected void openChannel(){
+    if (out == null && fileName != null) {
+      try {
+        out = new PrintWriter(fileName);
+      } catch (FileNotFoundException fnfx) {
+        throw new JPFConfigException("cannot open report.json.file: " + fileName, fnfx);
+      }
+    }
+
+    if (port >= 0 && server == null) {
+      records = new ArrayDeque<String>();
+      startServer();
+    }
+  }
+
+  @Override
+  protected void closeChannel() {
+    if (out != null){
+      out.close();
+      out = null;
+    }
+
+    if (server != null){
+      server.stop(0);
+      server = null;
+    }
+  }
+
+  protected void startServer() {
+    try {
+      server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    } catch (IOException iox) {
+      throw new JPFConfigException("cannot open report.json.port: " + port, iox);
+    }
+
+    server.createContext("/", new HttpHandler() {
+      @Override
+      public void handle (HttpExchange exchange) throws IOException {
+        String response;
+        if ("/records".equals(exchange.getRequestURI().getPath())) {
+          StringBuilder sb = new StringBuilder();
+          synchronized (JSONPublisher.this) {
+            for (String r : records) {
+              sb.append(r).append('\n');
+            }
+          }
+          response = sb.toString();
+        } else {
+          response = lastProgress;
+          if (response == null) {
+            response = "{}\n";
+          }
+        }
+
+        byte[] data = response.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+        exchange.sendResponseHeaders(200, data.length);
+        OutputStream os = exchange.getResponseBody();
+        os.write(data);
+        os.close();
+      }
+    });
+    server.start();
+  }
+
+  /**
+   * @return the port of the HTTP server, or -1 if there is none. If
+   * report.json.port is 0 this is the port the system has chosen for us
+   */
+  public int getPort() {
+    return (server != null) ? server.getAddress().getPort() : -1;
+  }
+
+  protected synchronized void writeRecord (String record) {
+    if (out != null) {
+      out.println(record);
+      out.flush();
+    }
+
+    if (records != null) {
+      if (records.size() >= maxRecords) {
+        records.removeFirst();
+      }
+      records.addLast(record);
+    }
+  }
+
+  //--- the timer thread
+
+  protected Thread createProgressTimer() {
+    Thread timer = new Thread( new Runnable(){
+      @Override
+      public void run(){
+        Search search = reporter.getSearch();
+
+        while (!search.isDone()){
+          isSnapshotRequested = true; // the snapshot comes with the next state
+          try {
+            Thread.sleep(interval);
+          } catch (InterruptedException ix) {
+            break; // search is finished
+          }
+
+          Snapshot s = snapshot;
+          if (!search.isDone()){
+            if (s != null && s != lastSnapshot){
+              publishProgress(s);
+            } else {
+              publishHeartbeat();
+            }
+          }
+        }
+      }
+    }, "json-progress");
+    timer.setDaemon(true);
+
+    return timer;
+  }
+
+  protected void publishProgress (Snapshot s) {
+    String record = getProgressRecord(s, lastSnapshot);
+    lastSnapshot = s;
+    writeProgressRecord(record);
+  }
+
+  /**
+   * there is no new snapshot, we still let the client know we are alive
+   */
+  protected void publishHeartbeat() {
+    writeProgressRecord(getHeartbeatRecord(lastSnapshot));
+  }
+
+  protected void writeProgressRecord (String record) {
+    if (server != null){
+      lastProgress = record + '\n';
+    }
+    writeRecord(record);
+  }
+
+  protected Snapshot createSnapshot() {
+    Snapshot s = new Snapshot();
+    Runtime rt = Runtime.getRuntime();
+
+    s.time = System.currentTimeMillis();
+    s.stat = reporter.getStatisticsSnapshot();
+    s.depth = reporter.getSearch().getDepth();
+    s.nErrors = reporter.getNumberOfErrors();
+    s.heapUsed = rt.totalMemory() - rt.freeMemory();
+    s.heapMax = rt.maxMemory();
+
+    return s;
+  }
+
+  //--- the records
+
+  protected String getProgressRecord (Snapshot s, Snapshot prev) {
+    Statistics stat = s.stat;
+    long elapsed = s.time - reporter.getStartDate().getTime();
+
+    long states = stat.newStates + stat.visitedStates;
+    double rate;
+    if (prev != null) {
+      long dt = s.time - prev.time;
+      rate = (dt > 0) ? ((states - prev.stat.newStates - prev.stat.visitedStates) * 1000.0 / dt) : 0;
+    } else {
+      rate = (elapsed > 0) ? (states * 1000.0 / elapsed) : 0;
+    }
+
+    JSONRecord r = new JSONRecord("progress", s.time);
+    r.add("elapsed", elapsed);
+    r.add("stale", false);
+    r.add("states_per_sec", Math.round(rate));
+    r.add("depth", s.depth);
+    r.add("max_depth", stat.maxDepth);
+    r.add("heap_used", s.heapUsed);
+    r.add("heap_max", s.heapMax);
+    r.add("errors", s.nErrors);
+    addStatistics(r, stat);
+
+    return r.toString();
+  }
+
+  /**
+   * a progress record for an interval in which the search did not advance.
+   * Heap usage and time are current, the rest is from the last snapshot (if any)
+   */
+  protected String getHeartbeatRecord (Snapshot last) {
+    long time = System.currentTimeMillis();
+    Runtime rt = Runtime.getRuntime();
+
+    JSONRecord r = new JSONRecord("progress", time);
+    r.add("elapsed", time - reporter.getStartDate().getTime());
+    r.add("stale", true);
+    r.add("states_per_sec", 0);
+    if (last != null) {
+      r.add("depth", last.depth);
+      r.add("max_depth", last.stat.maxDepth);
+    }
+    r.add("heap_used", rt.totalMemory() - rt.freeMemory());
+    r.add("heap_max", rt.maxMemory());
+    if (last != null) {
+      r.add("errors", last.nErrors);
+      addStatistics(r, last.stat);
+    }
+
+    return r.toString();
+  }
+
+  protected void addStatistics (JSONRecord r, Statistics stat) {
+    r.add("new_states", stat.newStates);
+    r.add("visited_states", stat.visitedStates);
+    r.add("backtracked", stat.backtracked);
+    r.add("end_states", stat.endStates);
+    r.add("restored", stat.restored);
+    r.add("constraints", stat.constraints);
+    r.add("insns", stat.insns);
+    r.add("gc_cycles", stat.gcCycles);
+    r.add("new_objects", stat.nNewObjects);
+    r.add("released_objects", stat.nReleasedObjects);
+    r.add("max_live_objects", stat.maxLiveObjects);
+    r.add("thread_cgs", stat.threadCGs);
+    r.add("data_cgs", stat.dataCGs);
+  }
+
+  protected String getErrorRecord (Error e) {
+    JSONRecord r = new JSONRecord("error", System.currentTimeMillis());
+    r.add("id", e.getId());
+    r.add("property", e.getProperty().getClass().getName());
+    r.add("description", e.getDescription());
+    r.add("details", e.getDetails());
+    r.add("depth", reporter.getSearch().getDepth());
+    return r.toString();
+  }
+
+  //--- the publisher interface
+
+  @Override
+  public void publishStart() {
+    super.publishStart();
+
+    JSONRecord r = new JSONRecord("started", System.currentTimeMillis());
+    r.add("sut", reporter.getVM().getSUTName());
+    writeRecord(r.toString());
+
+    if (interval > 0) {
+      progressTimer = createProgressTimer();
+      progressTimer.start();
+    }
+  }
+
+  /**
+   * this is called from Reporter.stateAdvanced(), i.e. by the search thread
+   */
+  @Override
+  public void publishTransition() {
+    if (isSnapshotRequested){
+      isSnapshotRequested = false;
+      snapshot = createSnapshot();
+    }
+    super.publishTransition();
+  }
+
+  @Override
+  public void publishPropertyViolation() {
+    Error e = reporter.getCurrentError();
+    if (e != null) {
+      writeRecord(getErrorRecord(e));
+    }
+    super.publishPropertyViolation();
+  }
+
+  @Override
+  public void publishFinished() {
+    if (progressTimer != null){
+      progressTimer.interrupt();
+      try {
+        progressTimer.join();
+      } catch (InterruptedException ix) {
+        // we are done anyways
+      }
+      progressTimer = null;
+    }
+
+    super.publishFinished();
+
+    Statistics stat = reporter.getStatistics();
+    long elapsed = reporter.getElapsedTime();
+    List<Error> errors = reporter.getErrors();
+
+    JSONRecord r = new JSONRecord("finished", System.currentTimeMillis());
+    r.add("elapsed", elapsed);
+    r.add("errors", errors.size());
+    if (stat != null){
+      r.add("max_depth", stat.maxDepth);
+      r.add("max_memory", stat.maxUsed);
+      addStatistics(r, stat);
+    }
+    writeRecord(r.toString());
+  }
+
+
+  /**
+   * a minimal builder for flat JSON objects
+   */
+  protected static class JSONRecord {
+    StringBuilder sb = new StringBuilder();
+
+    JSONRecord (String event, long time) {
+      sb.append('{');
+      add("event", event);
+      add("time", time);
+    }
+
+    void addKey (String key) {
+      if (sb.length() > 1) {
+        sb.append(',');
+      }
+      sb.append('"').append(key).append("\":");
+    }
+
+    void add (String key, long v) {
+      addKey(key);
+      sb.append(v);
+    }
+
+    void add (String key, boolean b) {
+      addKey(key);
+      sb.append(b);
+    }
+
+    void add (String key, String s) {
+      addKey(key);
+      JSONEncoder.appendQuoted(sb, s);
+    }
+
+    @Override
+    public String toString() {
+      return sb.toString() + '}';
+    }
+  }
+}
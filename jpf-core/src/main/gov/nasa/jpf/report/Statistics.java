@@ -31,6 +31,7 @@ import gov.nasa.jpf.vm.Instruction;
 import gov.nasa.jpf.vm.ThreadInfo;
 import gov.nasa.jpf.vm.VM;
 import gov.nasa.jpf.vm.MethodInfo;
+import gov.nasa.jpf.vm.StateSet;
 import gov.nasa.jpf.vm.ThreadChoiceGenerator;
 
 /**
@@ -74,6 +75,10 @@ public class Statistics extends ListenerAdapter implements Cloneable {
   public long nReleasedObjects = 0;
   public int maxLiveObjects = 0;
 
+  // only set if we use a probabilistic state set (-1 otherwise)
+  public double stateOmissionProbability = -1;
+  public double expectedStateOmissions = -1;
+
   @Override
   public Statistics clone() {
     try {
@@ -185,4 +190,22 @@ public class Statistics extends ListenerAdapter implements Cloneable {
     constraints++;
   }
 
+  @Override
+  public void searchProbed (Search search){
+    updateStateStorage(search);
+  }
+
+  @Override
+  public void searchFinished (Search search){
+    updateStateStorage(search);
+  }
+
+  protected void updateStateStorage (Search search){
+    StateSet stateSet = search.getVM().getStateSet();
+    if (stateSet != null){
+      stateOmissionProbability = stateSet.getOmissionProbability();
+      expectedStateOmissions = stateSet.getExpectedOmissions();
+    }
+  }
+
 }
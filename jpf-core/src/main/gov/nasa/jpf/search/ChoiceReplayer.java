@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf.search;
+
+import gov.nasa.jpf.ListenerAdapter;
+import gov.nasa.jpf.vm.ChoiceGenerator;
+import gov.nasa.jpf.vm.VM;
+
+/**
+ * a listener that selects choices from a given trace of choice indices (and
+ * optionally CG class names), which is used by searches that have to re-execute
+ * a path from the initial state because they can't keep (or can't transfer)
+ * the RestorableVMState of its end state.
+ *
+ * Replay is done with normal Search.forward() calls until hasMoreChoices()
+ * returns false. If the trace doesn't fit the CGs we encounter, we stop
+ * selecting and report a mismatch
+ */
+public class ChoiceReplayer extends ListenerAdapter {
+
+  protected String[] cgClassNames; // optional
+  protected int[] choiceIndices;
+  protected int idx;
+  protected boolean mismatch;
+
+  public ChoiceReplayer (String[] cgClassNames, int[] choiceIndices) {
+    reset(cgClassNames, choiceIndices);
+  }
+
+  public ChoiceReplayer () {
+    this(null, new int[0]);
+  }
+
+  public void reset (String[] cgClassNames, int[] choiceIndices) {
+    this.cgClassNames = cgClassNames;
+    this.choiceIndices = choiceIndices;
+    idx = 0;
+    mismatch = false;
+  }
+
+  public boolean hasMoreChoices() {
+    return !mismatch && (idx < choiceIndices.length);
+  }
+
+  public boolean isMismatch() {
+    return mismatch;
+  }
+
+  /**
+   * the choice trace of the current VM state, i.e. the processed choice index
+   * of each CG in the current path
+   */
+  public static int[] getChoiceTrace (VM vm) {
+    ChoiceGenerator<?>[] cgs = vm.getChoiceGenerators();
+    if (cgs == null) { // initial state
+      return new int[0];
+    }
+
+    int[] trace = new int[cgs.length];
+    for (int i = 0; i < cgs.length; i++) {
+      trace[i] = cgs[i].getProcessedNumberOfChoices() - 1;
+    }
+    return trace;
+  }
+
+  @Override
+  public void choiceGeneratorAdvanced (VM vm, ChoiceGenerator<?> cg) {
+    if (hasMoreChoices()) {
+      int choice = choiceIndices[idx];
+
+      if ((cgClassNames == null || cg.getClass().getName().equals(cgClassNames[idx]))
+              && (choice < cg.getTotalNumberOfChoices())) {
+        cg.select(choice);
+        idx++;
+      } else {
+        mismatch = true;
+      }
+    }
+  }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf.search.dpor;
+
+import java.util.Arrays;
+
+/**
+ * a set of memory accesses of transitions, encoded as longs so that we can
+ * store and merge them without allocating objects per access. The encoding is
+ *
+ *   [63..32] object reference
+ *   [31..30] location kind (instance field, static field, array element, whole object)
+ *   [29..10] field or element index
+ *   [ 9.. 2] thread id
+ *   [ 1.. 0] access type (read, write, lock)
+ *
+ * i.e. sorted access arrays are grouped by location. Indices and thread ids that
+ * don't fit are folded, which only can produce spurious (conservative) conflicts
+ * since we treat the folded thread id as different from all others
+ */
+public class AccessSet {
+
+  public static final int FIELD = 0;
+  public static final int STATIC = 1;
+  public static final int ELEMENT = 2;
+  public static final int OBJECT = 3;  // lock ops, native calls and thread lifecycle
+
+  // slots of OBJECT locations
+  public static final int ANY = 0;        // the object as a whole
+  public static final int LIFECYCLE = 1;  // start, termination, join etc. of thread objects
+
+  public static final int READ = 1;
+  public static final int WRITE = 2;
+  public static final int LOCK = 3;
+
+  public static final int UNKNOWN_THREAD = 0xff;
+
+  static final long[] EMPTY = new long[0];
+
+  public static long getAccess (int ref, int kind, int slot, int type) {
+    return ((long)ref << 32) | ((long)kind << 30) | ((long)(slot & 0xfffff) << 10) | type;
+  }
+
+  public static long setThread (long access, int tid) {
+    if (tid < 0 || tid > UNKNOWN_THREAD) {
+      tid = UNKNOWN_THREAD;
+    }
+    return (access & ~0x3fcL) | (tid << 2);
+  }
+
+  public static long getLocation (long access) {
+    return access >>> 10;
+  }
+
+  public static int getThread (long access) {
+    return (int)(access >>> 2) & 0xff;
+  }
+
+  public static int getType (long access) {
+    return (int)access & 3;
+  }
+
+  public static boolean isSameThread (int tid, int otherTid) {
+    return (tid == otherTid) && (tid != UNKNOWN_THREAD);
+  }
+
+  /**
+   * does an access of type 'type' conflict with one of the access types in
+   * the bit mask 'typeMask' (bit n set for type n) of the same location.
+   * Writes conflict with everything, locks with other locks
+   */
+  public static boolean isConflict (int typeMask, int type) {
+    if (type == WRITE) {
+      return typeMask != 0;
+    } else if ((typeMask & (1<<WRITE)) != 0) {
+      return true;
+    } else {
+      return (type == LOCK) && ((typeMask & (1<<LOCK)) != 0);
+    }
+  }
+
+  /**
+   * bit mask of the access types of a location within a sorted access array,
+   * starting at index i
+   */
+  public static int getTypeMask (long[] accesses, int i) {
+    long loc = getLocation(accesses[i]);
+    int mask = 0;
+    for (; i < accesses.length && getLocation(accesses[i]) == loc; i++) {
+      mask |= 1 << getType(accesses[i]);
+    }
+    return mask;
+  }
+
+  /**
+   * bit mask of the access types of 'loc' within a sorted access array, or 0 if
+   * the location is not accessed
+   */
+  public static int findTypeMask (long[] accesses, long loc) {
+    int lo = 0, hi = accesses.length;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (getLocation(accesses[mid]) < loc) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+
+    if (lo < accesses.length && getLocation(accesses[lo]) == loc) {
+      return getTypeMask(accesses, lo);
+    } else {
+      return 0;
+    }
+  }
+
+  //--- the open addressing hash set
+
+  long[] table; // 0 is the empty marker, which is not a valid access (type > 0)
+  int size;
+
+  public AccessSet () {
+    table = new long[16];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  public void clear() {
+    if (size > 0) {
+      Arrays.fill(table, 0L);
+      size = 0;
+    }
+  }
+
+  static int hash (long x) {
+    x *= 0x9E3779B97F4A7C15L;
+    return (int)(x ^ (x >>> 32));
+  }
+
+  public void add (long x) {
+    int mask = table.length - 1;
+    int i = hash(x) & mask;
+    while (true) {
+      long y = table[i];
+      if (y == x) {
+        return;
+      } else if (y == 0) {
+        table[i] = x;
+        if (++size > (table.length >> 1)) {
+          grow();
+        }
+        return;
+      }
+      i = (i + 1) & mask;
+    }
+  }
+
+  public void addAll (long[] xs) {
+    for (long x : xs) {
+      add(x);
+    }
+  }
+
+  protected void grow() {
+    long[] old = table;
+    table = new long[old.length * 2];
+    size = 0;
+    for (long x : old) {
+      if (x != 0) {
+        add(x);
+      }
+    }
+  }
+
+  public long[] toSortedArray() {
+    int n = size();
+    if (n == 0) {
+      return EMPTY;
+    }
+
+    long[] a = new long[n];
+    int j = 0;
+    for (long x : table) {
+      if (x != 0) {
+        a[j++] = x;
+      }
+    }
+
+    Arrays.sort(a);
+    return a;
+  }
+
+  /**
+   * sorted array of our accesses, with the thread id set to 'tid'
+   */
+  public long[] toSortedArray (int tid) {
+    long[] a = toSortedArray();
+    for (int i = 0; i < a.length; i++) {
+      a[i] = setThread(a[i], tid);
+    }
+    return a; // setting the same thread doesn't change the order
+  }
+}
@@ -0,0 +1,759 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf.search.dpor;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.JPF;
+import gov.nasa.jpf.ListenerAdapter;
+import gov.nasa.jpf.jvm.bytecode.JVMArrayElementInstruction;
+import gov.nasa.jpf.search.DFSearch;
+import gov.nasa.jpf.util.IntVector;
+import gov.nasa.jpf.util.JPFLogger;
+import gov.nasa.jpf.util.ObjVector;
+import gov.nasa.jpf.vm.ChoiceGenerator;
+import gov.nasa.jpf.vm.ElementInfo;
+import gov.nasa.jpf.vm.Instruction;
+import gov.nasa.jpf.vm.MJIEnv;
+import gov.nasa.jpf.vm.MethodInfo;
+import gov.nasa.jpf.vm.NativeStackFrame;
+import gov.nasa.jpf.vm.StackFrame;
+import gov.nasa.jpf.vm.SystemState;
+import gov.nasa.jpf.vm.ThreadChoiceGenerator;
+import gov.nasa.jpf.vm.ThreadInfo;
+import gov.nasa.jpf.vm.Types;
+import gov.nasa.jpf.vm.VM;
+import gov.nasa.jpf.vm.bytecode.FieldInstruction;
+import gov.nasa.jpf.vm.bytecode.InstanceFieldInstruction;
+import gov.nasa.jpf.vm.choice.ThreadChoiceFromSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+
+/**
+ * depth first search with dynamic partial order reduction (DPOR, Flanagan and
+ * Godefroid 2005).
+ *
+ * We record the reads, writes and lock operations of each transition, compute
+ * the happens-before order of the current path with vector clocks, and only
+ * explore the scheduling choices that are required to reverse races, i.e.
+ * dependent transitions of different threads that are not ordered by
+ * happens-before. All other choices of ThreadChoiceFromSets are skipped, which
+ * prunes interleavings of transitions that provably commute. The initial
+ * (backtrack) set of a scheduling point is its first choice.
+ *
+ * Since we also do state matching, races with the part of the state space below
+ * a visited state have to be found without re-executing it. Each fully explored
+ * state therefore keeps a summary of all accesses that were executed in its
+ * subtree, which we check against the current path when we match the state.
+ * Matching a state that is still on the path (a cycle) makes us fully expand
+ * the scheduling points of that cycle.
+ *
+ * Accesses are recorded for everything the SUT executes (not just shared objects),
+ * including native (MJI) methods, which we treat as writing to all objects they
+ * get as arguments (java.lang.Thread natives only to the life cycle of the
+ * thread objects). Scheduling points that are not plain ThreadChoiceFromSets
+ * (e.g. cascaded CGs) are always fully explored.
+ *
+ * Note that we don't use sleep sets, which would require re-exploring matched
+ * states with smaller sleep sets
+ */
+public class DPORSearch extends DFSearch {
+
+  static JPFLogger log = JPF.getLogger("gov.nasa.jpf.search.dpor");
+
+  // frame kinds
+  static final int UNKNOWN = 0;
+  static final int NONE = 1;        // no scheduling point in this state
+  static final int FULL = 2;        // scheduling point we don't reduce
+  static final int CONTROLLED = 3;  // scheduling point with backtrack set
+
+  static final int[] NO_CLOCK = new int[0];
+
+  /**
+   * what we know about a state once we have explored everything below it
+   */
+  static class Summary {
+    long[] accesses;
+    int[] links; // ids of states that were on the path when we reached them from here
+
+    Summary (long[] accesses, int[] links) {
+      this.accesses = accesses;
+      this.links = links;
+    }
+  }
+
+  /**
+   * a state on the current path, together with the transition we currently
+   * execute from it
+   */
+  static class Frame {
+    int stateId;
+
+    int kind = UNKNOWN;
+    ThreadChoiceFromSet cg; // if CONTROLLED
+    BitSet backtrack = new BitSet();
+    BitSet done = new BitSet();
+    boolean needsReset;
+
+    // the current outgoing transition
+    int tid = -1;
+    long[] accesses = AccessSet.EMPTY;
+    int[] clock = NO_CLOCK;
+    IntVector started;
+
+    // everything that was executed from here so far
+    AccessSet summary = new AccessSet();
+    IntVector links;
+
+    Frame (int stateId) {
+      this.stateId = stateId;
+    }
+
+    boolean isEnabled (int tid) {
+      for (ThreadInfo ti : cg.getAllThreadChoices()) {
+        if (ti.getId() == tid) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    boolean addBacktrack (int tid) {
+      if (!backtrack.get(tid)) {
+        backtrack.set(tid);
+
+        if (!done.get(tid)) {
+          // if we already passed this choice we have to re-iterate the CG once
+          // we get back here (we can't reset it while it is on the path)
+          ThreadInfo[] choices = cg.getAllThreadChoices();
+          int current = cg.getProcessedNumberOfChoices() - 1;
+          for (int i = 0; i < current; i++) {
+            if (choices[i].getId() == tid) {
+              needsReset = true;
+              break;
+            }
+          }
+        }
+        return true;
+      }
+      return false;
+    }
+
+    int addAllBacktracks () {
+      int n = 0;
+      for (ThreadInfo ti : cg.getAllThreadChoices()) {
+        if (addBacktrack(ti.getId())) {
+          n++;
+        }
+      }
+      return n;
+    }
+
+    void addLink (int id) {
+      if (id != stateId) {
+        if (links == null) {
+          links = new IntVector(4);
+        }
+        links.addIfAbsent(id);
+      }
+    }
+
+    void resetTransition() {
+      tid = -1;
+      accesses = AccessSet.EMPTY;
+      clock = NO_CLOCK;
+      started = null;
+    }
+  }
+
+  /**
+   * the VM listener that records what the current transition does
+   */
+  class AccessTracker extends ListenerAdapter {
+
+    @Override
+    public void choiceGeneratorAdvanced (VM vm, ChoiceGenerator<?> cg) {
+      if (current != null && !isExecuting) {
+        selectChoice(current, cg);
+      }
+    }
+
+    @Override
+    public void executeInstruction (VM vm, ThreadInfo ti, Instruction insn) {
+      isExecuting = true;
+    }
+
+    @Override
+    public void instructionExecuted (VM vm, ThreadInfo ti, Instruction nextInsn, Instruction insn) {
+      if (current == null) {
+        return;
+      }
+
+      if (insn instanceof FieldInstruction) {
+        if (insn.isCompleted(ti)) {
+          FieldInstruction finsn = (FieldInstruction) insn;
+          int type = finsn.isRead() ? AccessSet.READ : AccessSet.WRITE;
+          int slot = finsn.getFieldInfo().getFieldIndex();
+
+          if (finsn instanceof InstanceFieldInstruction) {
+            int ref = ((InstanceFieldInstruction) finsn).getLastThis();
+            if (ref != MJIEnv.NULL) {
+              addAccess(ref, AccessSet.FIELD, slot, type);
+              addAccess(ref, AccessSet.OBJECT, AccessSet.ANY, AccessSet.READ);
+            }
+          } else {
+            ElementInfo ei = finsn.getLastElementInfo();
+            if (ei != null) {
+              addAccess(ei.getObjectRef(), AccessSet.STATIC, slot, type);
+            }
+          }
+        }
+
+      } else if (insn instanceof JVMArrayElementInstruction) {
+        if (insn.isCompleted(ti)) {
+          JVMArrayElementInstruction ainsn = (JVMArrayElementInstruction) insn;
+          int ref = ainsn.getArrayRef(ti);
+          if (ref != MJIEnv.NULL) {
+            int type = ainsn.isRead() ? AccessSet.READ : AccessSet.WRITE;
+            addAccess(ref, AccessSet.ELEMENT, ainsn.getIndex(ti), type);
+            addAccess(ref, AccessSet.OBJECT, AccessSet.ANY, AccessSet.READ);
+          }
+        }
+      }
+    }
+
+    @Override
+    public void methodEntered (VM vm, ThreadInfo ti, MethodInfo mi) {
+      if (current != null && mi.isMJI() && !isIgnoredNative(mi)) {
+        StackFrame frame = ti.getTopFrame();
+        if (frame instanceof NativeStackFrame && frame.getMethodInfo() == mi) {
+          Object[] args = ((NativeStackFrame) frame).getArguments();
+          if (args != null) {
+            // Thread natives only depend on the life cycle of their thread objects
+            int slot = mi.getClassInfo().getName().equals("java.lang.Thread") ?
+                                                  AccessSet.LIFECYCLE : AccessSet.ANY;
+
+            // args[0] is the MJIEnv, args[1] the 'this' or class object reference
+            if (!mi.isStatic()) {
+              addObjectWrite(args[1], slot);
+            }
+
+            byte[] argTypes = mi.getArgumentTypes();
+            for (int i = 0; i < argTypes.length && i + 2 < args.length; i++) {
+              if (argTypes[i] == Types.T_REFERENCE || argTypes[i] == Types.T_ARRAY) {
+                addObjectWrite(args[i + 2], slot);
+              }
+            }
+          }
+        }
+      }
+    }
+
+    void addObjectWrite (Object ref, int slot) {
+      if (ref instanceof Integer && (Integer)ref != MJIEnv.NULL) {
+        addAccess((Integer)ref, AccessSet.OBJECT, slot, AccessSet.WRITE);
+      }
+    }
+
+    @Override
+    public void objectLocked (VM vm, ThreadInfo ti, ElementInfo ei) {
+      addLockAccess(ei);
+    }
+
+    @Override
+    public void objectUnlocked (VM vm, ThreadInfo ti, ElementInfo ei) {
+      addLockAccess(ei);
+    }
+
+    @Override
+    public void objectWait (VM vm, ThreadInfo ti, ElementInfo ei) {
+      addLockAccess(ei);
+    }
+
+    void addLockAccess (ElementInfo ei) {
+      if (current != null) {
+        addAccess(ei.getObjectRef(), AccessSet.OBJECT, AccessSet.ANY, AccessSet.LOCK);
+      }
+    }
+
+    @Override
+    public void threadStarted (VM vm, ThreadInfo ti) {
+      if (current != null) {
+        if (started == null) {
+          started = new IntVector(4);
+        }
+        started.add(ti.getId());
+      }
+    }
+
+    @Override
+    public void threadTerminated (VM vm, ThreadInfo ti) {
+      // conflicts with join(), isAlive() etc. of other threads
+      if (current != null) {
+        addAccess(ti.getThreadObjectRef(), AccessSet.OBJECT, AccessSet.LIFECYCLE, AccessSet.WRITE);
+      }
+    }
+  }
+
+  protected ArrayList<Frame> frames = new ArrayList<Frame>();
+
+  // the depths of path transitions that accessed a location
+  protected HashMap<Long,IntVector> locIndex = new HashMap<Long,IntVector>();
+
+  // summaries of fully explored states, and depth+1 of states on the path
+  protected ObjVector<Summary> summaries = new ObjVector<Summary>();
+  protected IntVector pathDepths = new IntVector();
+
+  // recorded data of the transition that is currently executed
+  protected Frame current;
+  protected boolean isExecuting;
+  protected AccessSet accesses = new AccessSet();
+  protected IntVector started;
+
+  // statistics
+  protected long nPrunedChoices;
+  protected long nBacktrackPoints;
+  protected long nCycles;
+
+  public DPORSearch (Config config, VM vm) {
+    super(config, vm);
+
+    vm.addListener(new AccessTracker());
+  }
+
+  public long getNumberOfPrunedChoices() {
+    return nPrunedChoices;
+  }
+
+  @Override
+  public void search () {
+    super.search();
+
+    log.info("pruned thread choices: ", nPrunedChoices, ", backtrack points: ", nBacktrackPoints,
+             ", cycles: ", nCycles);
+  }
+
+  //--- the search hooks
+
+  @Override
+  protected boolean forward () {
+    int d = depth;
+    Frame f;
+
+    if (frames.size() <= d) { // new state
+      f = new Frame(vm.getStateId());
+      frames.add(f);
+      setPathDepth(f.stateId, d);
+
+    } else {
+      f = frames.get(d);
+      if (f.needsReset) {
+        f.cg.reset();
+        f.needsReset = false;
+      }
+    }
+
+    current = f;
+    isExecuting = false;
+    accesses.clear();
+    started = null;
+
+    boolean ret;
+    try {
+      ret = super.forward();
+    } finally {
+      current = null;
+    }
+
+    if (ret) {
+      transitionExecuted(f, d);
+    }
+
+    return ret;
+  }
+
+  @Override
+  protected boolean backtrack () {
+    int d = depth; // the depth of the state we leave
+
+    if (super.backtrack()) {
+      Summary child = null;
+      if (frames.size() > d) {
+        child = finishState(frames.remove(d));
+      }
+
+      Frame parent = frames.get(d - 1);
+      if (child != null) {
+        parent.summary.addAll(child.accesses);
+        if (child.links != null) {
+          for (int id : child.links) {
+            parent.addLink(id);
+          }
+        }
+      }
+
+      removeFromIndex(d - 1, parent.accesses);
+      parent.resetTransition();
+      return true;
+
+    } else {
+      return false;
+    }
+  }
+
+  //--- scheduling point processing
+
+  protected void selectChoice (Frame f, ChoiceGenerator<?> cg) {
+    SystemState ss = vm.getSystemState();
+
+    if (f.kind == UNKNOWN) {
+      ThreadChoiceGenerator tcg = ss.getCurrentSchedulingPoint();
+      if (tcg == null) {
+        f.kind = NONE;
+      } else {
+        if (tcg instanceof ThreadChoiceFromSet && tcg == ss.getChoiceGenerator()
+            && !tcg.isCascaded() && tcg.getCascadedParent() == null) {
+          f.kind = CONTROLLED;
+          f.cg = (ThreadChoiceFromSet) tcg;
+        } else {
+          f.kind = FULL;
+        }
+      }
+    }
+
+    if (f.kind == CONTROLLED && cg == f.cg) {
+      ThreadInfo ti = f.cg.getNextChoice();
+      if (ti != null) {
+        int tid = ti.getId();
+
+        if (f.done.isEmpty() && f.backtrack.isEmpty()) {
+          f.backtrack.set(tid); // the initial backtrack set
+        }
+
+        if (f.done.get(tid) || !f.backtrack.get(tid)) {
+          ss.setIgnored(true); // skip this choice
+        } else {
+          f.done.set(tid);
+        }
+      }
+    }
+  }
+
+  /**
+   * add a backtrack point for thread 'tid' to the scheduling point before
+   * the transition at depth 'j', or all choices if 'tid' was not enabled there
+   */
+  protected void addBacktrack (int j, int tid) {
+    boolean addAll = (tid == AccessSet.UNKNOWN_THREAD);
+
+    for (int k = j; k >= 0; k--) {
+      Frame f = frames.get(k);
+
+      if (f.kind == CONTROLLED) {
+        if (!addAll && f.isEnabled(tid)) {
+          if (f.addBacktrack(tid)) {
+            nBacktrackPoints++;
+          }
+        } else {
+          nBacktrackPoints += f.addAllBacktracks();
+        }
+        return;
+
+      } else if (f.kind == FULL) {
+        return; // everything gets explored there anyways
+      }
+
+      // no scheduling point before this transition, we have to reorder earlier
+      // (which also reorders the transitions in between)
+      addAll = true;
+    }
+  }
+
+  //--- transition processing
+
+  protected void addAccess (int ref, int kind, int slot, int type) {
+    accesses.add(AccessSet.getAccess(ref, kind, slot, type));
+  }
+
+  protected void transitionExecuted (Frame f, int d) {
+    int tid = vm.getCurrentThread().getId();
+
+    f.tid = tid;
+    f.accesses = accesses.toSortedArray(tid);
+    f.started = started;
+    f.summary.addAll(f.accesses);
+
+    int[] cp = getThreadClock(tid, d);
+    int[] c = Arrays.copyOf(cp, Math.max(cp.length, tid + 1));
+
+    long[] a = f.accesses;
+    for (int i = 0; i < a.length; ) {
+      long loc = AccessSet.getLocation(a[i]);
+      c = checkRaces(d, tid, loc, getStrongestType(AccessSet.getTypeMask(a, i)), cp, c);
+
+      do {
+        i++;
+      } while (i < a.length && AccessSet.getLocation(a[i]) == loc);
+    }
+
+    c[tid] = d + 1;
+    f.clock = c;
+    addToIndex(d, a);
+
+    if (!vm.isIgnoredState() && !vm.isNewState()) {
+      visitedStateReached(d, vm.getStateId(), new BitSet());
+    }
+  }
+
+  static int getStrongestType (int typeMask) {
+    if ((typeMask & (1 << AccessSet.WRITE)) != 0) {
+      return AccessSet.WRITE;
+    } else if ((typeMask & (1 << AccessSet.LOCK)) != 0) {
+      return AccessSet.LOCK;
+    } else {
+      return AccessSet.READ;
+    }
+  }
+
+  /**
+   * check the access of the transition at depth 'd' to 'loc' against the
+   * previous transitions on the path. If the last dependent transition of
+   * another thread is not happens-before ordered with it, we have a race and
+   * add a backtrack point. Returns the updated clock of the transition
+   */
+  protected int[] checkRaces (int d, int tid, long loc, int type, int[] cp, int[] c) {
+    IntVector js = locIndex.get(loc);
+    if (js != null) {
+      boolean isRace = false;
+
+      for (int k = js.size() - 1; k >= 0; k--) {
+        int j = js.get(k);
+        Frame fj = frames.get(j);
+        int mask = AccessSet.findTypeMask(fj.accesses, loc);
+
+        if (fj.tid != tid && AccessSet.isConflict(mask, type)) {
+          if (!isRace && !happensBefore(j, fj.tid, cp)) {
+            addBacktrack(j, tid);
+            isRace = true;
+          }
+          c = join(c, fj.clock);
+        }
+
+        // everything before a write (or a lock if this is one) is ordered with it
+        if ((mask & (1 << AccessSet.WRITE)) != 0
+            || (type == AccessSet.LOCK && (mask & (1 << AccessSet.LOCK)) != 0)) {
+          break;
+        }
+      }
+    }
+
+    return c;
+  }
+
+  static boolean happensBefore (int j, int tid, int[] clock) {
+    return (tid < clock.length) && (clock[tid] > j);
+  }
+
+  static int[] join (int[] c, int[] other) {
+    if (other.length > c.length) {
+      c = Arrays.copyOf(c, other.length);
+    }
+    for (int i = 0; i < other.length; i++) {
+      if (other[i] > c[i]) {
+        c[i] = other[i];
+      }
+    }
+    return c;
+  }
+
+  /**
+   * the clock of the last transition of thread 'tid' before depth 'd', or of
+   * the transition that started it
+   */
+  protected int[] getThreadClock (int tid, int d) {
+    for (int k = d - 1; k >= 0; k--) {
+      Frame f = frames.get(k);
+      if (f.tid == tid || (f.started != null && f.started.contains(tid))) {
+        return f.clock;
+      }
+    }
+    return NO_CLOCK;
+  }
+
+  protected void addToIndex (int d, long[] a) {
+    long lastLoc = -1;
+    for (long x : a) {
+      long loc = AccessSet.getLocation(x);
+      if (loc != lastLoc) {
+        IntVector js = locIndex.get(loc);
+        if (js == null) {
+          js = new IntVector(8);
+          locIndex.put(loc, js);
+        }
+        js.add(d);
+        lastLoc = loc;
+      }
+    }
+  }
+
+  protected void removeFromIndex (int d, long[] a) {
+    long lastLoc = -1;
+    for (long x : a) {
+      long loc = AccessSet.getLocation(x);
+      if (loc != lastLoc) {
+        IntVector js = locIndex.get(loc);
+        if (js.size() == 1) {
+          locIndex.remove(loc);
+        } else {
+          js.setSize(js.size() - 1);
+        }
+        lastLoc = loc;
+      }
+    }
+  }
+
+  //--- visited states
+
+  protected void setPathDepth (int stateId, int d) {
+    if (stateId >= 0) {
+      if (stateId >= pathDepths.size()) {
+        pathDepths.setSize(stateId + 1);
+      }
+      pathDepths.set(stateId, d + 1);
+    }
+  }
+
+  protected int getPathDepth (int stateId) {
+    if (stateId >= 0 && stateId < pathDepths.size()) {
+      return pathDepths.get(stateId) - 1;
+    } else {
+      return -1;
+    }
+  }
+
+  protected Summary finishState (Frame f) {
+    int[] links = null;
+    if (f.links != null) {
+      links = f.links.toArray();
+    }
+    Summary s = new Summary(f.summary.toSortedArray(), links);
+
+    if (f.stateId >= 0) {
+      summaries.set(f.stateId, s);
+      pathDepths.set(f.stateId, 0);
+    }
+
+    if (f.kind == CONTROLLED) {
+      nPrunedChoices += f.cg.getTotalNumberOfChoices() - f.done.cardinality();
+    }
+
+    return s;
+  }
+
+  /**
+   * the transition at depth 'd' took us into an already known state. Check
+   * what we could execute from there against our current path
+   */
+  protected void visitedStateReached (int d, int stateId, BitSet seen) {
+    seen.set(stateId);
+
+    int k = getPathDepth(stateId);
+    if (k >= 0) {
+      // a cycle - we don't know yet what can happen from there, so we fully
+      // expand the cycle and make its states inherit the summary of stateId
+      nCycles++;
+      for (int j = k; j <= d; j++) {
+        Frame f = frames.get(j);
+        if (f.kind == CONTROLLED) {
+          nBacktrackPoints += f.addAllBacktracks();
+        }
+        if (j > k) {
+          f.addLink(stateId);
+        }
+      }
+
+    } else {
+      Summary s = summaries.get(stateId);
+      if (s != null) {
+        checkSummaryRaces(d, s.accesses);
+        frames.get(d).summary.addAll(s.accesses);
+
+        if (s.links != null) {
+          for (int id : s.links) {
+            if (!seen.get(id)) {
+              visitedStateReached(d, id, seen);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * treat all accesses of a summary as if they would be executed next. Since we
+   * don't know about the happens-before relations that are established on the
+   * way to them, we add backtrack points for all unordered conflicts
+   */
+  protected void checkSummaryRaces (int d, long[] a) {
+    int[][] clocks = new int[AccessSet.UNKNOWN_THREAD + 1][];
+
+    for (int i = 0; i < a.length; ) {
+      long locThread = a[i] >>> 2;
+      int typeMask = 0;
+      do {
+        typeMask |= 1 << AccessSet.getType(a[i]);
+        i++;
+      } while (i < a.length && (a[i] >>> 2) == locThread);
+
+      long loc = AccessSet.getLocation(a[i-1]);
+      int tid = AccessSet.getThread(a[i-1]);
+      int type = getStrongestType(typeMask);
+
+      IntVector js = locIndex.get(loc);
+      if (js != null) {
+        int[] cq = clocks[tid];
+        if (cq == null) {
+          cq = (tid == AccessSet.UNKNOWN_THREAD) ? NO_CLOCK : getThreadClock(tid, d + 1);
+          clocks[tid] = cq;
+        }
+
+        for (int k = js.size() - 1; k >= 0; k--) {
+          int j = js.get(k);
+          Frame fj = frames.get(j);
+
+          if (!AccessSet.isSameThread(Math.min(fj.tid, AccessSet.UNKNOWN_THREAD), tid)
+              && AccessSet.isConflict(AccessSet.findTypeMask(fj.accesses, loc), type)
+              && !happensBefore(j, fj.tid, cq)) {
+            addBacktrack(j, tid);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * natives that don't modify objects other threads could see
+   */
+  protected boolean isIgnoredNative (MethodInfo mi) {
+    String clsName = mi.getClassInfo().getName();
+    return clsName.equals("java.lang.Object") || clsName.equals("java.lang.String")
+        || clsName.equals("java.lang.Class");
+  }
+}
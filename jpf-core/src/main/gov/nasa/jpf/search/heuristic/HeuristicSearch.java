@@ -18,7 +18,10 @@
 package gov.nasa.jpf.search.heuristic;
 
 import gov.nasa.jpf.Config;
+import gov.nasa.jpf.JPFException;
+import gov.nasa.jpf.search.ChoiceReplayer;
 import gov.nasa.jpf.search.Search;
+import gov.nasa.jpf.vm.RestorableVMState;
 import gov.nasa.jpf.vm.VM;
 
 import java.util.ArrayList;
@@ -40,6 +43,10 @@ public abstract class HeuristicSearch extends Search {
   protected List<HeuristicState> childStates;
   
   protected boolean isPathSensitive = false;  
+
+  // in case we have to replay queued states
+  protected RestorableVMState initState;
+  protected ChoiceReplayer replayer;
   
   /*
    * do we use A* adaptation of state priorities, i.e. have a
@@ -164,7 +171,12 @@ public abstract class HeuristicSearch extends Search {
 
   
   private void restoreState (HeuristicState hState) {    
-    vm.restoreState(hState.getVMState());
+    RestorableVMState vmState = hState.getVMState();
+    if (vmState != null) {
+      vm.restoreState(vmState);
+    } else {
+      replayState(hState);
+    }
 
     // note we have to query the depth from the VM because the state is taken from the queue
     // and we have no idea when it was entered there
@@ -172,6 +184,40 @@ public abstract class HeuristicSearch extends Search {
     notifyStateRestored();
   }
    
+  /**
+   * re-execute the path to a queued state that had to drop its VM state
+   * (e.g. because it was spilled to disk)
+   */
+  protected void replayState (HeuristicState hState) {
+    int[] trace = hState.getChoiceTrace();
+    if (trace == null || initState == null) {
+      throw new JPFException("no VM state or choice trace for queued state " + hState.getStateId());
+    }
+
+    if (replayer == null) {
+      replayer = new ChoiceReplayer();
+      vm.addListener(replayer);
+    }
+
+    vm.restoreState(initState);
+    replayer.reset(null, trace);
+    while (replayer.hasMoreChoices()) {
+      if (!forward()) {
+        break;
+      }
+    }
+
+    if (replayer.hasMoreChoices() || replayer.isMismatch()) {
+      throw new JPFException("failed to replay queued state " + hState.getStateId());
+    }
+
+    // this can happen if the state differs in things that are not serialized
+    // (e.g. sharedness info), in which case we continue with the state we got
+    if (vm.getStateId() != hState.getStateId()) {
+      log.warning("replay of queued state ", hState.getStateId(), " ended in state ", vm.getStateId());
+    }
+  }
+
   @Override
   public void search () {
         
@@ -181,6 +227,7 @@ public abstract class HeuristicSearch extends Search {
     // kind of stupid, but we need to get it out of the queue, and we
     // don't have to restore it since it's the first one
     parentState = getNextQueuedState();
+    initState = parentState.getVMState();
     
     done = false;
     notifySearchStarted();
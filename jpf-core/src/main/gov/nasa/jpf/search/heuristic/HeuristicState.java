@@ -30,15 +30,112 @@ public abstract class HeuristicState {
   
   protected RestorableVMState vmState;
   protected int     stateId;
+
+  // optional choice indices from the initial state, in case we have to
+  // drop the vmState and replay the path later-on
+  protected int[]   choiceTrace;
+
+  // the same as a varint encoded byte array, for 'cold' states that are
+  // compacted while they are queued
+  protected byte[]  packedTrace;
     
   public HeuristicState (VM vm) {
     stateId = vm.getStateId();
-    vmState = vm.getRestorableState();
+    vmState = vm.getCompactRestorableState();
+  }
+
+  /**
+   * a state that has to be replayed from the initial state
+   */
+  protected HeuristicState (int stateId, int[] choiceTrace) {
+    this.stateId = stateId;
+    this.choiceTrace = choiceTrace;
   }
   
   public RestorableVMState getVMState () {
     return vmState;
   }
+
+  public int[] getChoiceTrace() {
+    if (choiceTrace == null && packedTrace != null) {
+      return unpack(packedTrace);
+    }
+    return choiceTrace;
+  }
+
+  public void setChoiceTrace (int[] choiceTrace) {
+    this.choiceTrace = choiceTrace;
+    packedTrace = null;
+  }
+
+  public boolean isCompact() {
+    return packedTrace != null;
+  }
+
+  /**
+   * drop everything that can be recomputed by replaying the choice trace,
+   * which has to be set before. Choice indices are mostly small, so we store
+   * them with a variable length encoding
+   */
+  public void compact() {
+    if (choiceTrace != null) {
+      packedTrace = pack(choiceTrace);
+      choiceTrace = null;
+      vmState = null;
+    }
+  }
+
+  static byte[] pack (int[] trace) {
+    int len = 0;
+    for (int c : trace) {
+      len += getPackedLength(c);
+    }
+
+    byte[] b = new byte[len];
+    int j = 0;
+    for (int c : trace) {
+      while ((c & ~0x7f) != 0) {
+        b[j++] = (byte) ((c & 0x7f) | 0x80);
+        c >>>= 7;
+      }
+      b[j++] = (byte) c;
+    }
+
+    return b;
+  }
+
+  static int getPackedLength (int c) {
+    int n = 1;
+    while ((c & ~0x7f) != 0) {
+      c >>>= 7;
+      n++;
+    }
+    return n;
+  }
+
+  static int[] unpack (byte[] b) {
+    int n = 0;
+    for (byte x : b) {
+      if (x >= 0) { // last byte of a value
+        n++;
+      }
+    }
+
+    int[] trace = new int[n];
+    int c = 0, shift = 0;
+    for (int i = 0, j = 0; i < b.length; i++) {
+      c |= (b[i] & 0x7f) << shift;
+      if (b[i] >= 0) {
+        trace[j++] = c;
+        c = 0;
+        shift = 0;
+      } else {
+        shift += 7;
+      }
+    }
+
+    return trace;
+  }
   
   public int getStateId() {
     return stateId;
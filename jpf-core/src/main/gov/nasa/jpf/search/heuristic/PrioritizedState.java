@@ -34,14 +34,21 @@ public class PrioritizedState extends HeuristicState implements Comparable<Prior
     this.heuristicValue = heuristicValue;
   }
 
+  public PrioritizedState(int stateId, int heuristicValue, int[] choiceTrace) {
+    super(stateId, choiceTrace);
+
+    this.heuristicValue = heuristicValue;
+  }
+
   public int getPriority () {
     return heuristicValue;
   }
 
   /*
-   * NOTE - since we can't use the Java 1.6 pollFirst()/pollLast() yet,
-   * we have to use remove(o), which in turn requires "compareTo(a) == 0" to
-   * be identical to "equals(o) == true", so we should implement both
+   * NOTE - StaticPriorityQueue doesn't use compareTo() anymore (it uses the
+   * same order encoded into long keys), but sorted collections require
+   * "compareTo(a) == 0" to be identical to "equals(o) == true", so we
+   * still implement both
    */
   @Override
   public int compareTo (PrioritizedState o) {
@@ -19,6 +19,7 @@
 package gov.nasa.jpf.search.heuristic;
 
 import gov.nasa.jpf.Config;
+import gov.nasa.jpf.search.ChoiceReplayer;
 import gov.nasa.jpf.util.Predicate;
 import gov.nasa.jpf.vm.ThreadInfo;
 import gov.nasa.jpf.vm.VM;
@@ -72,6 +73,9 @@ public abstract class SimplePriorityHeuristic extends HeuristicSearch {
     }
     
     PrioritizedState hState = new PrioritizedState(vm,heuristicValue);
+    if (queue.needsChoiceTraces()) {
+      hState.setChoiceTrace(ChoiceReplayer.getChoiceTrace(vm));
+    }
     
     queue.add(hState);
     
@@ -81,21 +85,11 @@ public abstract class SimplePriorityHeuristic extends HeuristicSearch {
   @Override
   protected HeuristicState getNextQueuedState () {
     
-    //HeuristicState hState = queue.pollFirst();  // only Java 1.6
-    //if (isBeanSearch) { queue.clear(); }
-    //return hState;
-
-    if (queue.size() == 0) {                      // the dreaded Java 1.5 version
-      return null;
-    }
-    HeuristicState hState = queue.first();
-    
+    HeuristicState hState = queue.pollFirst();
     if (isBeamSearch) {
       queue.clear();
-    } else {
-      queue.remove(hState);      
     }
-    
+
     return hState;
   }
 
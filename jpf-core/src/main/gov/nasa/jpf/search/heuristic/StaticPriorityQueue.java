@@ -19,30 +19,344 @@
 package gov.nasa.jpf.search.heuristic;
 
 import gov.nasa.jpf.Config;
+import gov.nasa.jpf.JPFException;
 
-import java.util.Iterator;
-import java.util.TreeSet;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
 
 /**
  * container for statically prioritized states, based on bounded
- * RB trees
- * 
- * TreeSet is a better choice than PriorityQueue since the size
- * constraint means we have to remove elements from both ends, which
- * is inefficient with heaps. A simple (binary) sorted array using
- * block copy can be more efficient, but that very much depends on
- * queue size and processor, so it's not really worth the trouble
- * 
- * <2do> this needs to be re-evaluated in light of the stupid fact
- * that pollFirst()/pollLast() are only in Java 1.6 and we can't switch
- * yet (no Java 1.6 for PPC), which forces us to do some shuffling to
- * make remove(last()) work as expected
+ * min-max heaps
+ *
+ * The size constraint means we have to remove elements from both ends, which
+ * a min-max heap (alternating min and max levels) supports in O(log n) for
+ * both polling the best and evicting the worst state, without the node
+ * allocation of a TreeSet. We keep the priority and state id of each entry as
+ * a single long key in a separate array, so that sifting doesn't have to
+ * dereference the states or call comparators.
+ *
+ * Since the RestorableVMStates of queued states can be large, we can limit
+ * the number of 'hot' states that keep them with 'search.heuristic.hot_states'.
+ * The remaining (lower priority) states within the queue limit are kept 'cold',
+ * i.e. only with a packed choice trace from the initial state that is replayed
+ * once they get polled.
+ *
+ * If 'search.heuristic.queue_spill' is set, states that don't fit into the
+ * queue are not discarded but written to a temp file as choice traces.
+ * Spilled states are read back as soon as the best of them has a higher
+ * priority than the best in-memory state, so the overall processing order is
+ * the same as with an unbounded queue
  */
-@SuppressWarnings("serial")
-public class StaticPriorityQueue extends TreeSet<PrioritizedState> {
+public class StaticPriorityQueue {
+
+  static final int INITIAL_CAPACITY = 64;
+
+  /**
+   * the disk backed overflow of the queue. Entries are unsorted, we only
+   * keep track of the best key
+   */
+  static class Overflow {
+    File file;
+    DataOutputStream out;
+    int count;
+    long minKey = Long.MAX_VALUE;
+
+    void add (long key, PrioritizedState s) {
+      try {
+        if (out == null) {
+          file = File.createTempFile("jpf-queue", ".bin");
+          file.deleteOnExit();
+          out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream(file), 65536));
+        }
+
+        int[] trace = s.getChoiceTrace();
+        out.writeLong(key);
+        out.writeInt(trace.length);
+        for (int c : trace) {
+          out.writeInt(c);
+        }
+
+        count++;
+        if (key < minKey) {
+          minKey = key;
+        }
+
+      } catch (IOException iox) {
+        throw new JPFException("spilling heuristic queue failed: " + iox);
+      }
+    }
+
+    DataInputStream openForReading() throws IOException {
+      out.close();
+      out = null;
+      return new DataInputStream( new BufferedInputStream( new FileInputStream(file), 65536));
+    }
+
+    void delete() {
+      if (out != null) {
+        try {
+          out.close();
+        } catch (IOException iox) {
+          // nothing we can do
+        }
+        out = null;
+      }
+      if (file != null) {
+        file.delete();
+        file = null;
+      }
+      count = 0;
+      minKey = Long.MAX_VALUE;
+    }
+  }
+
+  /**
+   * the bounded min-max heap we use for hot and cold states
+   */
+  static class MinMaxHeap {
+    final int maxSize;
+
+    PrioritizedState[] states;
+    long[] keys;
+    int size;
+
+    MinMaxHeap (int maxSize) {
+      this.maxSize = maxSize;
+
+      int capacity = Math.min(INITIAL_CAPACITY, Math.max(maxSize, 1));
+      states = new PrioritizedState[capacity];
+      keys = new long[capacity];
+    }
+
+    boolean isFull() {
+      return size >= maxSize;
+    }
+
+    long getMinKey() {
+      return (size > 0) ? keys[0] : Long.MAX_VALUE;
+    }
+
+    long getMaxKey() {
+      return (size > 0) ? keys[getMaxIndex()] : Long.MIN_VALUE;
+    }
+
+    int getMaxIndex() {
+      if (size < 3) {
+        return size - 1; // root (size 1) or its only child
+      } else {
+        return (keys[1] > keys[2]) ? 1 : 2;
+      }
+    }
+
+    PrioritizedState getMax() {
+      return (size > 0) ? states[getMaxIndex()] : null;
+    }
+
+    PrioritizedState pollMin() {
+      return (size > 0) ? removeAt(0) : null;
+    }
+
+    PrioritizedState pollMax() {
+      return (size > 0) ? removeAt(getMaxIndex()) : null;
+    }
+
+    void clear() {
+      Arrays.fill(states, 0, size, null);
+      size = 0;
+    }
+
+    static boolean isMinLevel (int i) {
+      return ((31 - Integer.numberOfLeadingZeros(i + 1)) & 1) == 0;
+    }
+
+    void swap (int i, int j) {
+      long k = keys[i];
+      keys[i] = keys[j];
+      keys[j] = k;
+
+      PrioritizedState s = states[i];
+      states[i] = states[j];
+      states[j] = s;
+    }
+
+    void insert (long key, PrioritizedState s) {
+      if (size == keys.length) {
+        int newCapacity = (int) Math.min((long)keys.length * 2, maxSize);
+        keys = Arrays.copyOf(keys, newCapacity);
+        states = Arrays.copyOf(states, newCapacity);
+      }
+
+      int i = size++;
+      keys[i] = key;
+      states[i] = s;
+
+      bubbleUp(i);
+    }
+
+    /**
+     * we only remove the min (root) or max element, i.e. the element we move
+     * into its place can't violate the heap order upwards
+     */
+    PrioritizedState removeAt (int i) {
+      PrioritizedState s = states[i];
+      int last = --size;
+
+      if (i != last) {
+        keys[i] = keys[last];
+        states[i] = states[last];
+      }
+      states[last] = null;
+
+      if (i < size) {
+        trickleDown(i);
+      }
+
+      return s;
+    }
+
+    void bubbleUp (int i) {
+      if (i > 0) {
+        int p = (i - 1) / 2;
+
+        if (isMinLevel(i)) {
+          if (keys[i] > keys[p]) {
+            swap(i, p);
+            bubbleUpMax(p);
+          } else {
+            bubbleUpMin(i);
+          }
+
+        } else {
+          if (keys[i] < keys[p]) {
+            swap(i, p);
+            bubbleUpMin(p);
+          } else {
+            bubbleUpMax(i);
+          }
+        }
+      }
+    }
+
+    void bubbleUpMin (int i) {
+      while (i > 2) {
+        int g = ((i - 1) / 2 - 1) / 2;
+        if (keys[i] < keys[g]) {
+          swap(i, g);
+          i = g;
+        } else {
+          break;
+        }
+      }
+    }
+
+    void bubbleUpMax (int i) {
+      while (i > 2) {
+        int g = ((i - 1) / 2 - 1) / 2;
+        if (keys[i] > keys[g]) {
+          swap(i, g);
+          i = g;
+        } else {
+          break;
+        }
+      }
+    }
+
+    void trickleDown (int i) {
+      if (isMinLevel(i)) {
+        trickleDownMin(i);
+      } else {
+        trickleDownMax(i);
+      }
+    }
+
+    /**
+     * index of the min (or max) of the children and grandchildren of i, or -1
+     * if there are none
+     */
+    int getDescendant (int i, boolean isMin) {
+      int c = 2 * i + 1;
+      if (c >= size) {
+        return -1;
+      }
+
+      int m = c;
+      if (c + 1 < size && (isMin ? keys[c + 1] < keys[m] : keys[c + 1] > keys[m])) {
+        m = c + 1;
+      }
+
+      int end = Math.min(4 * i + 7, size); // end of grandchildren
+      for (int j = 4 * i + 3; j < end; j++) {
+        if (isMin ? keys[j] < keys[m] : keys[j] > keys[m]) {
+          m = j;
+        }
+      }
+
+      return m;
+    }
+
+    void trickleDownMin (int i) {
+      int m;
+      while ((m = getDescendant(i, true)) >= 0) {
+        if (m > 2 * i + 2) { // grandchild
+          if (keys[m] < keys[i]) {
+            swap(i, m);
+            int p = (m - 1) / 2;
+            if (keys[m] > keys[p]) {
+              swap(m, p);
+            }
+            i = m;
+          } else {
+            break;
+          }
+
+        } else { // child
+          if (keys[m] < keys[i]) {
+            swap(i, m);
+          }
+          break;
+        }
+      }
+    }
+
+    void trickleDownMax (int i) {
+      int m;
+      while ((m = getDescendant(i, false)) >= 0) {
+        if (m > 2 * i + 2) { // grandchild
+          if (keys[m] > keys[i]) {
+            swap(i, m);
+            int p = (m - 1) / 2;
+            if (keys[m] < keys[p]) {
+              swap(m, p);
+            }
+            i = m;
+          } else {
+            break;
+          }
+
+        } else { // child
+          if (keys[m] > keys[i]) {
+            swap(i, m);
+          }
+          break;
+        }
+      }
+    }
+  }
 
   int maxQueueSize;
-  
+
+  MinMaxHeap hot;
+  MinMaxHeap cold;   // null if all queued states are hot
+  Overflow overflow; // null if we don't spill
+
   public StaticPriorityQueue (Config config) {
     // unbound queues are pretty pointless - we could probably better use
     // DFSearch in this case
@@ -50,41 +364,236 @@ public class StaticPriorityQueue extends TreeSet<PrioritizedState> {
     if (maxQueueSize < 0){
       maxQueueSize = Integer.MAX_VALUE;
     }
+
+    if (config.getBoolean("search.heuristic.queue_spill", false) && maxQueueSize < Integer.MAX_VALUE) {
+      overflow = new Overflow();
+      if (maxQueueSize < 1) {
+        maxQueueSize = 1;  // we need at least the initial state in memory
+      }
+    }
+
+    int maxHot = config.getInt("search.heuristic.hot_states", -1);
+    if (maxHot < 0 || maxHot >= maxQueueSize) {
+      maxHot = maxQueueSize;
+    } else {
+      if (maxHot < 1) {
+        maxHot = 1;  // the initial state is always hot
+      }
+      cold = new MinMaxHeap(maxQueueSize - maxHot);
+    }
+
+    hot = new MinMaxHeap(maxHot);
+  }
+
+  /**
+   * priority first, state id second. Note that lower values represent higher
+   * priorities, and we have to map the signed state id into the lower 32 bits
+   */
+  static long getKey (PrioritizedState s) {
+    return ((long)s.heuristicValue << 32) | ((s.stateId ^ Integer.MIN_VALUE) & 0xffffffffL);
+  }
+
+  /**
+   * does this queue keep states that exceed the queue limit
+   */
+  public boolean isSpilling() {
+    return overflow != null;
+  }
+
+  /**
+   * do we need choice traces of queued states, i.e. do we spill or keep cold
+   * states
+   */
+  public boolean needsChoiceTraces() {
+    return (overflow != null) || (cold != null);
+  }
+
+  public int size() {
+    int n = hot.size;
+    if (cold != null) {
+      n += cold.size;
+    }
+    if (overflow != null) {
+      n += overflow.count;
+    }
+    return n;
+  }
+
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  public int getNumberOfColdStates() {
+    return (cold != null) ? cold.size : 0;
   }
-    
-  @Override
+
+  public int getNumberOfSpilledStates() {
+    return (overflow != null) ? overflow.count : 0;
+  }
+
   public boolean add (PrioritizedState s) {
-    if (size() < maxQueueSize) { // limit not yet reached
-      return super.add(s);
-      
+    long key = getKey(s);
+
+    if (!hot.isFull()) { // limit not yet reached
+      hot.insert(key, s);
+      return true;
+
+    } else if (key < hot.getMaxKey()) {
+      long lastKey = hot.getMaxKey();
+      PrioritizedState last = hot.pollMax();
+      hot.insert(key, s);
+      addCold(lastKey, last);
+      return true;
+
     } else {
-      PrioritizedState last = last();
-      if (s.compareTo(last) < 0) {
-        //pollLast();   // that's only Java 1.6
-        remove(last);
-        
-        return super.add(s);
-        
-      } else {
-        // don't add with this priority value
-        return false;
+      return addCold(key, s);
+    }
+  }
+
+  protected boolean addCold (long key, PrioritizedState s) {
+    if (cold != null && s.getChoiceTrace() != null) {
+      if (!cold.isFull()) {
+        s.compact();
+        cold.insert(key, s);
+        return true;
+
+      } else if (key < cold.getMaxKey()) {
+        long lastKey = cold.getMaxKey();
+        PrioritizedState last = cold.pollMax();
+        s.compact();
+        cold.insert(key, s);
+        spill(lastKey, last);
+        return true;
       }
     }
+
+    // don't add with this priority value (unless we spill)
+    return spill(key, s);
+  }
+
+  protected boolean spill (long key, PrioritizedState s) {
+    if (overflow != null && s.getChoiceTrace() != null) {
+      overflow.add(key, s);
+      return true;
+    } else {
+      return false;
+    }
   }
-  
+
   public boolean isQueueLimitReached() {
-    return size() >= maxQueueSize;
+    // if we spill we don't lose states
+    return (overflow == null) && (size() >= maxQueueSize);
+  }
+
+  protected MinMaxHeap getFirstHeap() {
+    if (cold != null && cold.getMinKey() < hot.getMinKey()) {
+      return cold;
+    } else {
+      return hot;
+    }
+  }
+
+  /**
+   * return, but don't remove the highest priority (lowest value) state
+   */
+  public PrioritizedState first() {
+    refillIfRequired();
+
+    MinMaxHeap heap = getFirstHeap();
+    return (heap.size > 0) ? heap.states[0] : null;
+  }
+
+  /**
+   * return, but don't remove the lowest priority in-memory state
+   */
+  public PrioritizedState last() {
+    MinMaxHeap heap = (cold != null && cold.getMaxKey() > hot.getMaxKey()) ? cold : hot;
+    return heap.getMax();
+  }
+
+  public PrioritizedState pollFirst() {
+    refillIfRequired();
+    return getFirstHeap().pollMin();
+  }
+
+  public PrioritizedState pollLast() {
+    MinMaxHeap heap = (cold != null && cold.getMaxKey() > hot.getMaxKey()) ? cold : hot;
+    return heap.pollMax();
+  }
+
+  public void clear() {
+    hot.clear();
+    if (cold != null) {
+      cold.clear();
+    }
+    if (overflow != null) {
+      overflow.delete();
+    }
   }
-  
+
+  //--- spilled state processing
+
+  protected void refillIfRequired() {
+    if (overflow != null && overflow.count > 0) {
+      long minKey = hot.getMinKey();
+      if (cold != null) {
+        minKey = Math.min(minKey, cold.getMinKey());
+      }
+
+      if (overflow.minKey < minKey) {
+        refill();
+      }
+    }
+  }
+
+  /**
+   * merge the spilled states with the in-memory ones, keeping the best
+   * maxQueueSize of them in memory and spilling the rest into a new overflow
+   */
+  protected void refill() {
+    Overflow spilled = overflow;
+    overflow = new Overflow();
+
+    try (DataInputStream in = spilled.openForReading()) {
+      for (int i = 0; i < spilled.count; i++) {
+        long key = in.readLong();
+        int[] trace = new int[in.readInt()];
+        for (int j = 0; j < trace.length; j++) {
+          trace[j] = in.readInt();
+        }
+
+        int heuristicValue = (int) (key >> 32);
+        int stateId = (int) key ^ Integer.MIN_VALUE;
+        add( new PrioritizedState(stateId, heuristicValue, trace));
+      }
+
+    } catch (EOFException eofx) {
+      throw new JPFException("truncated heuristic queue spill file");
+    } catch (IOException iox) {
+      throw new JPFException("reading heuristic queue spill file failed: " + iox);
+
+    } finally {
+      spilled.delete();
+    }
+  }
+
   // for debugging purposes
   void dump() {
-    int i=0;
     System.err.print('[');
-    for (Iterator<PrioritizedState> it=iterator(); it.hasNext();) {
-      if (i++ > 0) {
+    for (int i=0; i<hot.size; i++) {
+      if (i > 0) {
         System.err.print(',');
       }
-      System.err.print(it.next());
+      System.err.print(hot.states[i]);
+    }
+    if (cold != null) {
+      System.err.print(" | ");
+      for (int i=0; i<cold.size; i++) {
+        if (i > 0) {
+          System.err.print(',');
+        }
+        System.err.print(cold.states[i]);
+      }
     }
     System.err.println(']');
   }
@@ -0,0 +1,289 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf.search.parallel;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * the state queue of a level synchronous parallel breadth first search, which
+ * is shared between the worker JPFs.
+ *
+ * Since VM states can't be passed between workers, frontier entries are choice
+ * traces from the initial state. Each worker has its own queue for the entries
+ * it created (which it can restore without replaying the trace), but takes
+ * entries from other workers once its own queue is empty.
+ *
+ * Workers synchronize at the end of each level through a Phaser - the next
+ * level is only started once all entries of the current level are expanded. If
+ * the next level gets larger than the configured memory limit, the remaining
+ * entries are spilled to a temp file that is read back when that level gets
+ * processed.
+ *
+ * Like ParallelSearchContext, this class is loaded by the parent loader and
+ * only uses system types (and its own nested classes)
+ */
+public class Frontier {
+
+  public static class Entry {
+    public final int stateId;
+    public final int owner;      // the worker that created the entry (-1 for none)
+    public final int[] trace;    // choice indices from the initial state
+
+    public Entry (int stateId, int owner, int[] trace) {
+      this.stateId = stateId;
+      this.owner = owner;
+      this.trace = trace;
+    }
+  }
+
+  protected final ParallelSearchContext context;
+  protected final int memoryLimit;
+
+  protected List<ConcurrentLinkedDeque<Entry>> current;
+  protected List<ConcurrentLinkedDeque<Entry>> next;
+  protected final AtomicInteger nNext = new AtomicInteger(); // in-memory entries of next level
+
+  // spilled entries of the next and the current level
+  protected File spillFile;
+  protected DataOutputStream spillOut;
+  protected long nSpilled;
+  protected File readFile;
+  protected volatile DataInputStream spillIn;
+
+  protected int level;
+  protected long maxLevelSize;
+
+  protected final Phaser phaser;
+
+  @SuppressWarnings("unchecked")
+  public Frontier (ParallelSearchContext context, int nWorkers, int memoryLimit) {
+    this.context = context;
+    this.memoryLimit = memoryLimit;
+
+    current = new ArrayList<ConcurrentLinkedDeque<Entry>>(nWorkers);
+    next = new ArrayList<ConcurrentLinkedDeque<Entry>>(nWorkers);
+    for (int i = 0; i < nWorkers; i++) {
+      current.add( new ConcurrentLinkedDeque<Entry>());
+      next.add( new ConcurrentLinkedDeque<Entry>());
+    }
+
+    // the initial state, which is not created by any worker
+    current.get(0).add( new Entry(-1, -1, new int[0]));
+
+    // workers register themselves, so that a worker that fails to start doesn't block the others
+    phaser = new Phaser() {
+      @Override
+      protected boolean onAdvance (int phase, int registeredParties) {
+        return (registeredParties == 0) || !nextLevel();
+      }
+    };
+  }
+
+  public int getLevel() {
+    return level;
+  }
+
+  public long getMaxLevelSize() {
+    return maxLevelSize;
+  }
+
+  //--- level synchronization
+
+  /**
+   * answer false if the search is already finished
+   */
+  public boolean register() {
+    return phaser.register() >= 0;
+  }
+
+  public void deregister() {
+    if (!phaser.isTerminated()) {
+      phaser.arriveAndDeregister();
+    }
+  }
+
+  /**
+   * wait until all workers are done with the current level. Answer false if
+   * there is no next level
+   */
+  public boolean awaitNextLevel() {
+    phaser.arriveAndAwaitAdvance();
+    return !phaser.isTerminated();
+  }
+
+  /**
+   * called by the last worker that finishes a level, all others are blocked
+   */
+  protected boolean nextLevel() {
+    long size = nNext.get() + nSpilled;
+    if (context.isTerminated() || size == 0) {
+      closeSpillFiles();
+      return false;
+    }
+
+    List<ConcurrentLinkedDeque<Entry>> q = current;
+    current = next;
+    next = q;
+    nNext.set(0);
+
+    closeRead();
+    if (spillOut != null) {
+      try {
+        spillOut.close();
+        spillIn = new DataInputStream( new BufferedInputStream( new FileInputStream(spillFile), 65536));
+        readFile = spillFile;
+      } catch (IOException iox) {
+        context.addFailure("frontier spill failed: " + iox);
+        return false;
+      }
+      spillOut = null;
+      spillFile = null;
+      nSpilled = 0;
+    }
+
+    if (size > maxLevelSize) {
+      maxLevelSize = size;
+    }
+    level++;
+    return true;
+  }
+
+  //--- the queues
+
+  /**
+   * add an entry to the next level. Answer true if it is kept in memory
+   */
+  public boolean add (int workerId, Entry e) {
+    if (nNext.incrementAndGet() <= memoryLimit) {
+      next.get(workerId).add(e);
+      return true;
+
+    } else {
+      nNext.decrementAndGet();
+      spill(e);
+      return false;
+    }
+  }
+
+  /**
+   * get the next entry of the current level. We first take our own entries,
+   * then the ones of other workers (from the other end), and finally spilled ones
+   */
+  public Entry poll (int workerId) {
+    Entry e = current.get(workerId).pollFirst();
+
+    if (e == null) {
+      int n = current.size();
+      for (int i = 1; i < n; i++) {
+        e = current.get((workerId + i) % n).pollLast();
+        if (e != null) {
+          return e;
+        }
+      }
+
+      if (spillIn != null) {
+        e = readSpilled();
+      }
+    }
+
+    return e;
+  }
+
+  //--- spilling
+
+  protected synchronized void spill (Entry e) {
+    try {
+      if (spillOut == null) {
+        spillFile = File.createTempFile("jpf-frontier", ".bin");
+        spillFile.deleteOnExit();
+        spillOut = new DataOutputStream( new BufferedOutputStream( new FileOutputStream(spillFile), 65536));
+      }
+
+      spillOut.writeInt(e.stateId);
+      spillOut.writeInt(e.trace.length);
+      for (int c : e.trace) {
+        spillOut.writeInt(c);
+      }
+      nSpilled++;
+
+    } catch (IOException iox) {
+      context.addFailure("frontier spill failed: " + iox);
+    }
+  }
+
+  protected synchronized Entry readSpilled() {
+    if (spillIn != null) {
+      try {
+        int stateId = spillIn.readInt();
+        int[] trace = new int[spillIn.readInt()];
+        for (int i = 0; i < trace.length; i++) {
+          trace[i] = spillIn.readInt();
+        }
+        return new Entry(stateId, -1, trace);
+
+      } catch (EOFException eofx) {
+        closeRead();
+      } catch (IOException iox) {
+        context.addFailure("reading frontier spill failed: " + iox);
+        closeRead();
+      }
+    }
+
+    return null;
+  }
+
+  protected synchronized void closeRead() {
+    if (spillIn != null) {
+      try {
+        spillIn.close();
+      } catch (IOException iox) {
+        // nothing we can do
+      }
+      spillIn = null;
+      readFile.delete();
+      readFile = null;
+    }
+  }
+
+  protected synchronized void closeSpillFiles() {
+    closeRead();
+    if (spillOut != null) {
+      try {
+        spillOut.close();
+      } catch (IOException iox) {
+        // nothing we can do
+      }
+      spillOut = null;
+      spillFile.delete();
+      spillFile = null;
+    }
+  }
+}
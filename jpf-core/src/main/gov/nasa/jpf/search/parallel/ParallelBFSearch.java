@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf.search.parallel;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.util.ConcurrentFingerprintTable;
+import gov.nasa.jpf.vm.VM;
+
+/**
+ * a level synchronous breadth first search that uses several worker JPFs running
+ * in parallel threads of the host VM.
+ *
+ * All workers expand the states of the current level (taken from a shared
+ * Frontier), and match their successors against a visited set that is shared
+ * by all of them (a SplitStateSet with a split depth of 0). New states are
+ * queued for the next level, which is started once all workers are done with
+ * the current one. Since frontier entries are choice traces, the next level can
+ * be spilled to disk if it gets too large to be kept in memory.
+ *
+ * As with the sequential BFSHeuristic, the first error we find is reported with
+ * a shortest path (within the granularity of a level).
+ *
+ * Configuration:
+ *   search.parallel.workers        - number of worker JPFs (default: available processors)
+ *   search.parallel.frontier_limit - max number of in-memory entries per level (default: 100000)
+ *   vm.storage.expected_states     - initial capacity of the shared visited set
+ */
+public class ParallelBFSearch extends ParallelDFSearch {
+
+  static final String[] SHARED_CLASSES = { ParallelSearchContext.class.getName(),
+                                           ConcurrentFingerprintTable.class.getName(),
+                                           Frontier.class.getName() };
+
+  protected int frontierLimit;
+
+  public ParallelBFSearch (Config config, VM vm) {
+    super(config, vm);
+
+    splitDepth = 0; // all states are shared
+    frontierLimit = config.getInt("search.parallel.frontier_limit", 100000);
+    if (frontierLimit < 1) {
+      frontierLimit = 1;
+    }
+  }
+
+  @Override
+  protected ParallelSearchContext createContext() {
+    ParallelSearchContext context = super.createContext();
+    context.setFrontier( new Frontier(context, nWorkers, frontierLimit));
+    return context;
+  }
+
+  @Override
+  protected String[] getSharedClasses() {
+    return SHARED_CLASSES;
+  }
+
+  @Override
+  protected String[] getWorkerConfig (ParallelSearchContext context, int workerId) {
+    return new String[] {
+      "search.class=" + WorkerBFSearch.class.getName(),
+      "vm.storage.class=" + SplitStateSet.class.getName(),
+      "search.parallel.context=" + context.getId(),
+      "search.parallel.worker_id=" + workerId,
+      "vm.tree_output=false"
+    };
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf.search.parallel;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.vm.VM;
+
+/**
+ * a parallel depth first search for programs that start with data
+ * nondeterminism, such as Verify.getInt() calls at the beginning of main().
+ *
+ * The choices of the first data CG are farmed out to the worker JPFs, i.e. each
+ * worker explores the complete subtrees of the choice values it claimed (see
+ * WorkerChoiceSearch). Workers share the visited set for all states below this
+ * root CG, and their statistics and errors are merged the same way as for the
+ * ParallelDFSearch.
+ *
+ * If the program does not start with a data CG, this is the same as a
+ * ParallelDFSearch.
+ *
+ * Configuration:
+ *   search.parallel.workers     - number of worker JPFs (default: available processors)
+ *   search.parallel.split_depth - fallback split depth if the first CG is a thread CG (default: 8)
+ *   vm.storage.expected_states  - initial capacity of the shared visited set
+ */
+public class ParallelChoiceSearch extends ParallelDFSearch {
+
+  public ParallelChoiceSearch (Config config, VM vm) {
+    super(config, vm);
+  }
+
+  @Override
+  protected String[] getWorkerConfig (ParallelSearchContext context, int workerId) {
+    return new String[] {
+      "search.class=" + WorkerChoiceSearch.class.getName(),
+      "vm.storage.class=" + SplitStateSet.class.getName(),
+      "search.parallel.context=" + context.getId(),
+      "search.parallel.worker_id=" + workerId,
+      "vm.tree_output=false"
+    };
+  }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf.search.parallel;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.GenericProperty;
+import gov.nasa.jpf.IsolatedJPF;
+import gov.nasa.jpf.JPFException;
+import gov.nasa.jpf.report.Statistics;
+import gov.nasa.jpf.search.ChoiceReplayer;
+import gov.nasa.jpf.search.Search;
+import gov.nasa.jpf.util.ConcurrentFingerprintTable;
+import gov.nasa.jpf.vm.RestorableVMState;
+import gov.nasa.jpf.vm.VM;
+
+import java.util.List;
+
+/**
+ * a depth first search that uses several worker JPFs running in parallel
+ * threads of the host VM.
+ *
+ * Each worker is an isolated JPF (with its own VM and classloader) executing a
+ * WorkerDFSearch. All workers explore the top of the state space up to
+ * 'search.parallel.split_depth' on their own, below that they share a visited
+ * set, i.e. the first worker that reaches a state at or below the split depth
+ * owns its subtree. Workers that are busy in deep subtrees therefore don't
+ * claim new ones, which balances the load without having to exchange VM states
+ * (which are bound to the VM that created them).
+ *
+ * Property violations found by workers are reported as choice traces, which
+ * are replayed in our own VM so that the error (including its path) is reported
+ * through the normal Search.error() and publisher mechanism.
+ *
+ * Configuration:
+ *   search.parallel.workers     - number of worker JPFs (default: available processors)
+ *   search.parallel.split_depth - depth at which workers start to share states (default: 8)
+ *   vm.storage.expected_states  - initial capacity of the shared visited set
+ */
+public class ParallelDFSearch extends Search {
+
+  static final String[] SHARED_CLASSES = { ParallelSearchContext.class.getName(),
+                                            ConcurrentFingerprintTable.class.getName() };
+
+  protected int nWorkers;
+  protected int splitDepth;
+  protected int expectedStates;
+
+  /**
+   * what we report if we can't reproduce a worker error in our own VM
+   */
+  static class WorkerErrorProperty extends GenericProperty {
+    ParallelSearchContext.ErrorTrace trace;
+
+    WorkerErrorProperty (ParallelSearchContext.ErrorTrace trace) {
+      this.trace = trace;
+    }
+
+    @Override
+    public boolean check (Search search, VM vm) {
+      return true;
+    }
+
+    @Override
+    public String getErrorMessage() {
+      return trace.details;
+    }
+
+    @Override
+    public String getExplanation() {
+      return "reported by worker " + trace.workerId + " for " + trace.propertyClassName + ", trace replay failed";
+    }
+  }
+
+  public ParallelDFSearch (Config config, VM vm) {
+    super(config, vm);
+
+    nWorkers = config.getInt("search.parallel.workers", Runtime.getRuntime().availableProcessors());
+    if (nWorkers < 1) {
+      nWorkers = 1;
+    }
+    splitDepth = config.getInt("search.parallel.split_depth", 8);
+    expectedStates = config.getInt("vm.storage.expected_states", 0);
+  }
+
+  @Override
+  public boolean supportsBacktrack() {
+    return false; // not on the level of this search object, only the workers do
+  }
+
+  @Override
+  public void search() {
+    depth = 0;
+    notifySearchStarted();
+
+    ParallelSearchContext context = createContext();
+    ParallelSearchContext.register(context);
+    try {
+      runWorkers(context);
+    } finally {
+      ParallelSearchContext.unregister(context);
+    }
+
+    List<String> failures = context.getFailures();
+    if (!failures.isEmpty()) {
+      throw new JPFException("parallel search worker failed: " + failures.get(0));
+    }
+
+    mergeStatistics(context);
+
+    for (String constraint : context.getConstraintHits()) {
+      notifySearchConstraintHit(constraint);
+    }
+
+    replayErrors(context);
+
+    notifySearchFinished();
+  }
+
+  protected ParallelSearchContext createContext() {
+    return new ParallelSearchContext(splitDepth, expectedStates);
+  }
+
+  protected String[] getSharedClasses() {
+    return SHARED_CLASSES;
+  }
+
+  protected String[] getWorkerConfig (ParallelSearchContext context, int workerId) {
+    return new String[] {
+      "search.class=" + WorkerDFSearch.class.getName(),
+      "vm.storage.class=" + SplitStateSet.class.getName(),
+      "search.parallel.context=" + context.getId(),
+      "search.parallel.worker_id=" + workerId,
+      "vm.tree_output=false"
+    };
+  }
+
+  protected void runWorkers (final ParallelSearchContext context) {
+    Thread[] workers = new Thread[nWorkers];
+
+    for (int i = 0; i < nWorkers; i++) {
+      final int workerId = i;
+      workers[i] = new Thread( new Runnable() {
+        @Override
+        public void run() {
+          try {
+            IsolatedJPF jpf = new IsolatedJPF(config, getSharedClasses(), getWorkerConfig(context, workerId));
+            jpf.run();
+          } catch (Throwable t) {
+            context.addFailure("worker " + workerId + ": " + t);
+          }
+        }
+      }, "jpf-worker-" + i);
+
+      workers[i].setDaemon(true);
+      workers[i].start();
+    }
+
+    for (Thread t : workers) {
+      try {
+        t.join();
+      } catch (InterruptedException ix) {
+        context.terminate();
+        Thread.currentThread().interrupt();
+        break;
+      }
+    }
+  }
+
+  protected void mergeStatistics (ParallelSearchContext context) {
+    if (reporter != null) {
+      Statistics stat = reporter.getStatistics();
+      if (stat != null) {
+        for (long[] counters : context.getWorkerCounters()) {
+          WorkerDFSearch.addCounters(stat, counters);
+        }
+      }
+    }
+  }
+
+  /**
+   * re-execute the worker error traces in our own VM, so that we report
+   * them with a proper path and thread snapshot
+   */
+  protected void replayErrors (ParallelSearchContext context) {
+    RestorableVMState initialState = null;
+
+    for (ParallelSearchContext.ErrorTrace trace : context.getErrors()) {
+      if (initialState == null) {
+        initialState = vm.getRestorableState();
+      } else {
+        vm.restoreState(initialState);
+        depth = 0;
+      }
+
+      if (!replay(trace)) {
+        error( new WorkerErrorProperty(trace), vm.getClonedPath(), vm.getThreadList());
+        notifyPropertyViolated();
+      }
+
+      if (!getAllErrors) {
+        break;
+      }
+    }
+  }
+
+  protected boolean replay (ParallelSearchContext.ErrorTrace trace) {
+    ChoiceReplayer replayer = new ChoiceReplayer(trace.cgClassNames, trace.choiceIndices);
+    vm.addListener(replayer);
+
+    try {
+      while (replayer.hasMoreChoices()) {
+        if (!forward()) {
+          break;
+        }
+        depth++;
+        notifyStateAdvanced();
+
+        if (currentError != null) {
+          notifyPropertyViolated();
+          return true;
+        }
+      }
+    } finally {
+      vm.removeListener(replayer);
+    }
+
+    return false;
+  }
+}
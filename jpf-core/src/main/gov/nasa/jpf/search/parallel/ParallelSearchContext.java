@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf.search.parallel;
+
+import gov.nasa.jpf.util.ConcurrentFingerprintTable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * the data that is shared between the worker JPFs of a parallel search and the
+ * search that started them.
+ *
+ * Workers run in their own IsolatingClassLoaders, i.e. this class is loaded
+ * by the parent loader and therefore must not use any JPF type that isn't
+ * shared as well (only system types, its own nested classes and the
+ * ConcurrentFingerprintTable). Workers look up their context through
+ * the id that is passed to them as the 'search.parallel.context' config value
+ */
+public class ParallelSearchContext {
+
+  static final ConcurrentHashMap<String,ParallelSearchContext> contexts = new ConcurrentHashMap<String,ParallelSearchContext>();
+  static final AtomicInteger nextContextId = new AtomicInteger();
+
+  /**
+   * what a worker reports back for a property violation. The choice trace can
+   * be replayed to reproduce the error in another VM
+   */
+  public static class ErrorTrace {
+    public final int workerId;
+    public final String[] cgClassNames;
+    public final int[] choiceIndices;
+    public final String propertyClassName;
+    public final String details;
+
+    public ErrorTrace (int workerId, String[] cgClassNames, int[] choiceIndices, String propertyClassName, String details) {
+      this.workerId = workerId;
+      this.cgClassNames = cgClassNames;
+      this.choiceIndices = choiceIndices;
+      this.propertyClassName = propertyClassName;
+      this.details = details;
+    }
+  }
+
+  protected final String id;
+  protected final int splitDepth;
+
+  // the shared visited set - state fingerprints to (globally unique) state ids
+  protected final ConcurrentFingerprintTable visited;
+  protected final AtomicInteger nextStateId = new AtomicInteger();
+
+  // the next unclaimed choice of a partitioned root CG (see WorkerChoiceSearch)
+  protected final AtomicInteger nextChoice = new AtomicInteger();
+
+  protected final AtomicBoolean terminated = new AtomicBoolean();
+  protected final ConcurrentLinkedQueue<ErrorTrace> errors = new ConcurrentLinkedQueue<ErrorTrace>();
+  protected final ConcurrentLinkedQueue<long[]> workerCounters = new ConcurrentLinkedQueue<long[]>();
+  protected final ConcurrentLinkedQueue<String> failures = new ConcurrentLinkedQueue<String>();
+  protected final Set<String> constraints = ConcurrentHashMap.newKeySet();
+
+  // the shared state queue of a breadth first search (null for depth first)
+  protected Frontier frontier;
+
+  public ParallelSearchContext (int splitDepth, int expectedStates) {
+    this.splitDepth = splitDepth;
+    visited = new ConcurrentFingerprintTable(expectedStates);
+    id = "psc" + nextContextId.incrementAndGet();
+  }
+
+  //--- the registry
+
+  public static void register (ParallelSearchContext ctx) {
+    contexts.put(ctx.id, ctx);
+  }
+
+  public static void unregister (ParallelSearchContext ctx) {
+    contexts.remove(ctx.id);
+  }
+
+  public static ParallelSearchContext get (String id) {
+    return (id != null) ? contexts.get(id) : null;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public int getSplitDepth() {
+    return splitDepth;
+  }
+
+  public void setFrontier (Frontier frontier) {
+    this.frontier = frontier;
+  }
+
+  public Frontier getFrontier() {
+    return frontier;
+  }
+
+  //--- the shared state space
+
+  /**
+   * reserve a globally unique state id that can be used for the next new state
+   */
+  public int reserveStateId() {
+    return nextStateId.getAndIncrement();
+  }
+
+  /**
+   * add a state fingerprint if it isn't known yet. Answer the id of the state,
+   * which is the provided (reserved) newId if the state was new
+   */
+  public int addState (long fingerprint, int newId) {
+    return visited.getOrAdd(fingerprint, newId);
+  }
+
+  public int getNumberOfSharedStates() {
+    return visited.size();
+  }
+
+  /**
+   * claim the next choice index of a root CG that is partitioned between
+   * workers. Each index is handed out exactly once
+   */
+  public int claimChoice() {
+    return nextChoice.getAndIncrement();
+  }
+
+  //--- termination and results
+
+  public void terminate() {
+    terminated.set(true);
+  }
+
+  public boolean isTerminated() {
+    return terminated.get();
+  }
+
+  public void addError (ErrorTrace trace) {
+    errors.add(trace);
+  }
+
+  public List<ErrorTrace> getErrors() {
+    return new ArrayList<ErrorTrace>(errors);
+  }
+
+  public void addWorkerCounters (long[] counters) {
+    workerCounters.add(counters);
+  }
+
+  public List<long[]> getWorkerCounters() {
+    return new ArrayList<long[]>(workerCounters);
+  }
+
+  public void addConstraintHit (String details) {
+    constraints.add(details);
+  }
+
+  public List<String> getConstraintHits() {
+    return new ArrayList<String>(constraints);
+  }
+
+  public void addFailure (String details) {
+    failures.add(details);
+    terminate();
+  }
+
+  public List<String> getFailures() {
+    return new ArrayList<String>(failures);
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf.search.parallel;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.JPFConfigException;
+import gov.nasa.jpf.search.Search;
+import gov.nasa.jpf.vm.JenkinsStateSet;
+import gov.nasa.jpf.vm.SerializingStateSet;
+import gov.nasa.jpf.vm.VM;
+
+import java.util.HashMap;
+
+/**
+ * the StateSet of a parallel search worker. States above the split depth are
+ * matched locally, i.e. each worker explores the whole top of the state space
+ * on its own. States at or below the split depth are matched against the
+ * visited set that is shared by all workers, which means the first worker to
+ * reach such a state owns its subtree, and all others backtrack.
+ *
+ * State ids are globally unique - we reserve the id of the next new state
+ * upfront, which is what we report as our size() (VM.forward() uses this to
+ * determine if the state was new)
+ */
+public class SplitStateSet extends SerializingStateSet {
+
+  protected ParallelSearchContext context;
+  protected int splitDepth;
+  protected VM vm;
+  protected Search search;
+
+  protected HashMap<Long,Integer> localStates = new HashMap<Long,Integer>();
+  protected int nextId;
+
+  public SplitStateSet (Config config) {
+    context = ParallelSearchContext.get( config.getString("search.parallel.context"));
+    if (context == null) {
+      throw new JPFConfigException("SplitStateSet can only be used by parallel search workers");
+    }
+
+    splitDepth = context.getSplitDepth();
+    nextId = context.reserveStateId();
+  }
+
+  @Override
+  public void attach (VM vm) {
+    super.attach(vm);
+    this.vm = vm; // the search doesn't exist yet, we get it lazily
+  }
+
+  @Override
+  public int size() {
+    return nextId;
+  }
+
+  protected int getNewStateDepth() {
+    if (search == null) {
+      search = vm.getSearch();
+    }
+    // we get called from within VM.forward(), i.e. before the search increments its depth
+    return (search != null) ? search.getDepth() + 1 : 0;
+  }
+
+  protected int getSplitDepth() {
+    // workers might determine their split depth while they search
+    if (search instanceof WorkerDFSearch) {
+      return ((WorkerDFSearch)search).getSplitDepth();
+    }
+    return splitDepth;
+  }
+
+  @Override
+  protected int add (int[] state) {
+    long fp = JenkinsStateSet.longLookup3Hash(state);
+    int id;
+
+    if (getNewStateDepth() < getSplitDepth()) {
+      Integer localId = localStates.get(fp);
+      if (localId != null) {
+        return localId;
+      }
+      id = nextId;
+      localStates.put(fp, id);
+
+    } else {
+      id = context.addState(fp, nextId);
+      if (id != nextId) {
+        return id; // already visited by us or somebody else
+      }
+    }
+
+    nextId = context.reserveStateId();
+    return id;
+  }
+}
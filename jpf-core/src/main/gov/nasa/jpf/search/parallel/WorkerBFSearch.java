@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf.search.parallel;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.Error;
+import gov.nasa.jpf.JPFConfigException;
+import gov.nasa.jpf.JPFException;
+import gov.nasa.jpf.Property;
+import gov.nasa.jpf.report.Reporter;
+import gov.nasa.jpf.report.Statistics;
+import gov.nasa.jpf.search.ChoiceReplayer;
+import gov.nasa.jpf.search.Search;
+import gov.nasa.jpf.vm.ChoiceGenerator;
+import gov.nasa.jpf.vm.Path;
+import gov.nasa.jpf.vm.RestorableVMState;
+import gov.nasa.jpf.vm.ThreadList;
+import gov.nasa.jpf.vm.VM;
+
+import java.util.HashMap;
+
+/**
+ * the search that is executed by each (isolated) worker JPF of a ParallelBFSearch.
+ *
+ * Workers take entries of the current level from the shared Frontier, restore
+ * (or replay) their states, and add all new successor states to the next level.
+ * A SplitStateSet with a split depth of 0 makes sure that each state is only
+ * queued by the first worker that reaches it.
+ *
+ * We keep the RestorableVMStates of the entries we queued, so that we don't have
+ * to replay them if we get them back (which is the normal case unless entries
+ * are stolen by other workers or spilled to disk)
+ */
+public class WorkerBFSearch extends Search {
+
+  protected ParallelSearchContext context;
+  protected Frontier frontier;
+  protected int workerId;
+
+  // the counters we hand back to the ParallelBFSearch when we are done
+  protected Statistics stat;
+
+  protected RestorableVMState initState;
+  protected ChoiceReplayer replayer;
+
+  // the restorable states of the entries we queued for the current and the next level
+  protected HashMap<Integer,RestorableVMState> currentStates = new HashMap<Integer,RestorableVMState>();
+  protected HashMap<Integer,RestorableVMState> nextStates = new HashMap<Integer,RestorableVMState>();
+
+  public WorkerBFSearch (Config config, VM vm) {
+    super(config, vm);
+
+    context = ParallelSearchContext.get( config.getString("search.parallel.context"));
+    if (context == null || context.getFrontier() == null) {
+      throw new JPFConfigException("WorkerBFSearch can only be used by parallel breadth first search workers");
+    }
+    frontier = context.getFrontier();
+    workerId = config.getInt("search.parallel.worker_id", 0);
+  }
+
+  public int getWorkerId() {
+    return workerId;
+  }
+
+  @Override
+  public void setReporter (Reporter reporter) {
+    super.setReporter(reporter);
+
+    // we only collect statistics, publishing is done by the ParallelBFSearch.
+    // Make sure there is a Statistics listener even if the worker config doesn't
+    // have a publisher that needs one
+    reporter.getPublishers().clear();
+    stat = reporter.getRegisteredStatistics();
+  }
+
+  @Override
+  public boolean supportsBacktrack() {
+    return false;
+  }
+
+  @Override
+  public void search() {
+    depth = 0;
+    initState = vm.getRestorableState();
+
+    replayer = new ChoiceReplayer();
+    vm.addListener(replayer);
+
+    notifySearchStarted();
+
+    if (frontier.register()) {
+      try {
+        do {
+          Frontier.Entry e;
+          while (!done && (e = frontier.poll(workerId)) != null) {
+            if (context.isTerminated()) {
+              terminate();
+            } else {
+              expand(e);
+            }
+          }
+
+          HashMap<Integer,RestorableVMState> states = currentStates;
+          currentStates = nextStates;
+          nextStates = states;
+          nextStates.clear();
+
+        } while (frontier.awaitNextLevel());
+
+      } finally {
+        frontier.deregister();
+      }
+    }
+
+    notifySearchFinished();
+  }
+
+  protected void restore (Frontier.Entry e) {
+    RestorableVMState state = (e.owner == workerId) ? currentStates.remove(e.stateId) : null;
+
+    if (state != null) {
+      vm.restoreState(state);
+
+    } else {
+      vm.restoreState(initState);
+      replayer.reset(null, e.trace);
+
+      while (replayer.hasMoreChoices()) {
+        if (!forward()) {
+          break;
+        }
+      }
+      if (replayer.isMismatch() || replayer.hasMoreChoices()) {
+        throw new JPFException("failed to replay frontier state " + e.stateId);
+      }
+    }
+
+    depth = vm.getPathLength();
+    notifyStateRestored();
+  }
+
+  /**
+   * generate all successors of the state of this entry, and queue the new ones
+   * for the next level
+   */
+  protected void expand (Frontier.Entry e) {
+    restore(e);
+
+    while (!done) {
+      if (!forward()) {
+        notifyStateProcessed();
+        return;
+      }
+
+      depth++;
+      notifyStateAdvanced();
+
+      if (currentError != null) {
+        notifyPropertyViolated();
+        if (hasPropertyTermination()) {
+          return;
+        }
+
+      } else if (!isEndState() && !isIgnoredState() && isNewState()) {
+        if (depth >= depthLimit) {
+          notifySearchConstraintHit("depth limit reached: " + depthLimit);
+
+        } else {
+          int id = vm.getStateId();
+          if (frontier.add(workerId, new Frontier.Entry(id, workerId, ChoiceReplayer.getChoiceTrace(vm)))) {
+            nextStates.put(id, vm.getCompactRestorableState());
+          }
+          notifyStateStored();
+        }
+      }
+
+      backtrack();
+      depth--;
+      notifyStateBacktracked();
+    }
+  }
+
+  @Override
+  public void error (Property property, Path path, ThreadList threadList) {
+    super.error(property, path, threadList);
+
+    ChoiceGenerator<?>[] cgs = vm.getChoiceGenerators();
+    String[] cgClassNames = new String[cgs.length];
+    int[] choiceIndices = new int[cgs.length];
+    for (int i = 0; i < cgs.length; i++) {
+      cgClassNames[i] = cgs[i].getClass().getName();
+      choiceIndices[i] = cgs[i].getProcessedNumberOfChoices() - 1;
+    }
+
+    Error err = getCurrentError();
+    context.addError( new ParallelSearchContext.ErrorTrace( workerId, cgClassNames, choiceIndices,
+                                                            property.getClass().getName(), err.getDetails()));
+    if (!getAllErrors) {
+      context.terminate();
+    }
+  }
+
+  @Override
+  public void notifySearchConstraintHit (String details) {
+    super.notifySearchConstraintHit(details);
+    context.addConstraintHit(details);
+  }
+
+  @Override
+  protected void notifySearchFinished() {
+    super.notifySearchFinished();
+
+    if (stat != null) {
+      context.addWorkerCounters( WorkerDFSearch.getCounters(stat));
+    }
+  }
+}
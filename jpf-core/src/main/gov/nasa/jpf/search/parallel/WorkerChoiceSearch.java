@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf.search.parallel;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.ListenerAdapter;
+import gov.nasa.jpf.vm.ChoiceGenerator;
+import gov.nasa.jpf.vm.ThreadChoiceGenerator;
+import gov.nasa.jpf.vm.VM;
+
+/**
+ * the worker search of a ParallelChoiceSearch.
+ *
+ * All workers execute the (deterministic) prefix of the program up to the first
+ * CG that has more than one choice. If this is a data CG (e.g. from a top level
+ * Verify.getInt()), its choices are claimed one at a time through the shared
+ * context, and each worker only explores the subtrees of the choices it claimed.
+ * States below the root CG are matched against the shared visited set.
+ *
+ * If the first CG with several choices is a thread CG, we fall back to the
+ * normal split depth partitioning of the WorkerDFSearch
+ */
+public class WorkerChoiceSearch extends WorkerDFSearch {
+
+  protected ChoiceGenerator<?> rootCg;
+  protected boolean isRootDetermined;
+  protected int splitDepth = Integer.MAX_VALUE; // everything is local until we know the root
+
+  protected int claimedChoice = -1;
+
+  class RootChoiceSplitter extends ListenerAdapter {
+
+    @Override
+    public void choiceGeneratorSet (VM vm, ChoiceGenerator<?> cg) {
+      if (!isRootDetermined && cg.getTotalNumberOfChoices() > 1) {
+        isRootDetermined = true;
+
+        if (cg instanceof ThreadChoiceGenerator) {
+          splitDepth = context.getSplitDepth();
+        } else {
+          // we are at the beginning of the transition out of the root state
+          rootCg = cg;
+          splitDepth = depth + 1;
+        }
+      }
+    }
+
+    @Override
+    public void choiceGeneratorAdvanced (VM vm, ChoiceGenerator<?> cg) {
+      if (cg == rootCg) {
+        int idx = cg.getProcessedNumberOfChoices() - 1;
+
+        if (claimedChoice < 0) {
+          claimedChoice = context.claimChoice();
+        }
+
+        if (idx == claimedChoice) {
+          claimedChoice = -1; // claim a new one once we come back here
+        } else {
+          vm.getSystemState().setIgnored(true);
+        }
+      }
+    }
+  }
+
+  public WorkerChoiceSearch (Config config, VM vm) {
+    super(config, vm);
+  }
+
+  @Override
+  public int getSplitDepth() {
+    return splitDepth;
+  }
+
+  @Override
+  public void search () {
+    vm.addListener( new RootChoiceSplitter());
+    super.search();
+  }
+}
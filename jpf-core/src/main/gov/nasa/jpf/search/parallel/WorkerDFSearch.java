@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf.search.parallel;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.Error;
+import gov.nasa.jpf.JPFConfigException;
+import gov.nasa.jpf.Property;
+import gov.nasa.jpf.report.Reporter;
+import gov.nasa.jpf.report.Statistics;
+import gov.nasa.jpf.search.DFSearch;
+import gov.nasa.jpf.vm.ChoiceGenerator;
+import gov.nasa.jpf.vm.Path;
+import gov.nasa.jpf.vm.ThreadList;
+import gov.nasa.jpf.vm.VM;
+
+/**
+ * the DFSearch that is executed by each (isolated) worker JPF of a ParallelDFSearch.
+ *
+ * This is a normal depth first search that uses a SplitStateSet, stops as soon
+ * as the shared context is terminated, and reports errors, constraint hits and
+ * statistics back through the shared context. Workers don't publish anything
+ * themselves, reporting is done by the ParallelDFSearch that started them
+ */
+public class WorkerDFSearch extends DFSearch {
+
+  protected ParallelSearchContext context;
+  protected int workerId;
+
+  // the counters we hand back to the ParallelDFSearch when we are done
+  protected Statistics stat;
+
+  public WorkerDFSearch (Config config, VM vm) {
+    super(config, vm);
+
+    context = ParallelSearchContext.get( config.getString("search.parallel.context"));
+    if (context == null) {
+      throw new JPFConfigException("WorkerDFSearch can only be used by parallel search workers");
+    }
+    workerId = config.getInt("search.parallel.worker_id", 0);
+  }
+
+  public int getWorkerId() {
+    return workerId;
+  }
+
+  /**
+   * states at or below this depth are matched against the shared visited set
+   */
+  public int getSplitDepth() {
+    return context.getSplitDepth();
+  }
+
+  @Override
+  public void setReporter (Reporter reporter) {
+    super.setReporter(reporter);
+
+    // we only collect statistics, publishing is done by the ParallelDFSearch.
+    // Make sure there is a Statistics listener even if the worker config doesn't
+    // have a publisher that needs one
+    reporter.getPublishers().clear();
+    stat = reporter.getRegisteredStatistics();
+  }
+
+  @Override
+  protected boolean forward() {
+    if (context.isTerminated()) {
+      terminate();
+      return false;
+    }
+
+    return super.forward();
+  }
+
+  @Override
+  public void error (Property property, Path path, ThreadList threadList) {
+    super.error(property, path, threadList);
+
+    // all workers explore the top of the state space, only one of them reports it
+    // (note that we are still in forward(), i.e. the depth is not incremented yet)
+    if ((depth + 1 < getSplitDepth()) && (workerId > 0)) {
+      return;
+    }
+
+    ChoiceGenerator<?>[] cgs = vm.getChoiceGenerators();
+    String[] cgClassNames = new String[cgs.length];
+    int[] choiceIndices = new int[cgs.length];
+    for (int i = 0; i < cgs.length; i++) {
+      cgClassNames[i] = cgs[i].getClass().getName();
+      choiceIndices[i] = cgs[i].getProcessedNumberOfChoices() - 1;
+    }
+
+    Error e = getCurrentError();
+    context.addError( new ParallelSearchContext.ErrorTrace( workerId, cgClassNames, choiceIndices,
+                                                            property.getClass().getName(), e.getDetails()));
+    if (!getAllErrors) {
+      context.terminate();
+    }
+  }
+
+  @Override
+  public void notifySearchConstraintHit (String details) {
+    super.notifySearchConstraintHit(details);
+    context.addConstraintHit(details);
+  }
+
+  @Override
+  protected void notifySearchFinished() {
+    super.notifySearchFinished();
+
+    if (stat != null) {
+      context.addWorkerCounters( getCounters(stat));
+    }
+  }
+
+  //--- Statistics exchange (we can't pass Statistics objects between isolated JPFs)
+
+  public static long[] getCounters (Statistics stat) {
+    return new long[] {
+      stat.maxUsed, stat.newStates, stat.backtracked, stat.restored, stat.processed,
+      stat.constraints, stat.visitedStates, stat.endStates, stat.maxDepth, stat.gcCycles,
+      stat.insns, stat.threadCGs, stat.sharedAccessCGs, stat.monitorCGs, stat.signalCGs,
+      stat.threadApiCGs, stat.breakTransitionCGs, stat.dataCGs, stat.nNewObjects,
+      stat.nReleasedObjects, stat.maxLiveObjects
+    };
+  }
+
+  public static void addCounters (Statistics stat, long[] c) {
+    stat.maxUsed = Math.max(stat.maxUsed, c[0]);
+    stat.newStates += c[1];
+    stat.backtracked += c[2];
+    stat.restored += c[3];
+    stat.processed += (int) c[4];
+    stat.constraints += (int) c[5];
+    stat.visitedStates += c[6];
+    stat.endStates += c[7];
+    stat.maxDepth = Math.max(stat.maxDepth, (int) c[8]);
+    stat.gcCycles += (int) c[9];
+    stat.insns += c[10];
+    stat.threadCGs += (int) c[11];
+    stat.sharedAccessCGs += (int) c[12];
+    stat.monitorCGs += (int) c[13];
+    stat.signalCGs += (int) c[14];
+    stat.threadApiCGs += (int) c[15];
+    stat.breakTransitionCGs += (int) c[16];
+    stat.dataCGs += (int) c[17];
+    stat.nNewObjects += c[18];
+    stat.nReleasedObjects += c[19];
+    stat.maxLiveObjects = Math.max(stat.maxLiveObjects, (int) c[20]);
+  }
+}
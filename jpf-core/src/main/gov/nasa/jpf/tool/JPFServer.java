@@ -0,0 +1,422 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf.tool;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.IsolatedJPF;
+import gov.nasa.jpf.IsolatingClassLoader;
+import gov.nasa.jpf.JPFConfigException;
+import gov.nasa.jpf.JPFShell;
+import gov.nasa.jpf.util.json.JSONEncoder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.reflect.Field;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * a JPFShell that keeps running as a local server, and executes verification
+ * jobs it receives over a loopback socket. This avoids paying host VM startup,
+ * JIT warm-up and loading of JPF classes for each of many small jobs.
+ *
+ * Jobs run concurrently in a fixed number of worker threads. Each worker keeps
+ * its own IsolatingClassLoader, i.e. consecutive jobs of the same worker re-use
+ * the already loaded (and compiled) JPF classes, but never share statics with
+ * jobs of other workers. Each job gets its own IsolatedJPF and hence its own
+ * VM and ClassInfos (set jvm.class_cache to also avoid repeated classfile lookups).
+ *
+ * Each line that is received is a job, with the same arguments as a jpf command
+ * line, e.g. "+search.class=.search.heuristic.BFSHeuristic Racer". Arguments that
+ * contain whitespace have to be enclosed in double quotes. Job arguments
+ * are appended to the server's own config arguments. Results are streamed back
+ * over the same connection as JSON objects, one per line:
+ *
+ *   {"job":1,"status":"queued","args":[..]}
+ *   {"job":1,"status":"finished","elapsed":1234,"errors":[..],"newStates":..,..}
+ *   {"job":1,"status":"failed","elapsed":12,"message":".."}
+ *
+ * A "shutdown" line stops accepting jobs, and terminates the server once all
+ * queued jobs are finished. Jobs that are received after that immediately get a
+ * "failed" reply.
+ *
+ * Usage:
+ *   jpf +shell=gov.nasa.jpf.tool.JPFServer [+server.port=<n>] [+server.workers=<n>]
+ *
+ * Configuration:
+ *   server.port    - loopback port to listen on (default 0, which picks a free port)
+ *   server.workers - number of concurrently executed jobs (default: number of cpus)
+ */
+public class JPFServer implements JPFShell {
+
+  static final String SHUTDOWN = "shutdown";
+
+  // statistics fields we report for each job
+  static final String[] STATISTICS = {
+    "newStates", "visitedStates", "backtracked", "endStates", "maxDepth", "insns"
+  };
+
+  // jobs only collect statistics, we do the reporting
+  static final String[] JOB_CONFIG = {
+    "report.statistics=true",
+    "report.console.start=",
+    "report.console.transition=",
+    "report.console.constraint=",
+    "report.console.probe=",
+    "report.console.property_violation=",
+    "report.console.finished="
+  };
+
+  /**
+   * a client connection, which can have any number of pending jobs
+   */
+  class Connection implements Runnable {
+    Socket socket;
+    PrintWriter out;
+
+    // we keep the socket open until all jobs of this connection are done
+    int nPending;
+    boolean isInputDone;
+
+    Connection (Socket socket) throws IOException {
+      this.socket = socket;
+      out = new PrintWriter( new OutputStreamWriter( socket.getOutputStream(), StandardCharsets.UTF_8), true);
+    }
+
+    synchronized void send (String msg) {
+      out.println(msg);
+    }
+
+    synchronized void jobQueued (Job job) {
+      nPending++;
+      send("{\"job\":" + job.id + ",\"status\":\"queued\",\"args\":" + JSONEncoder.quote(job.args) + '}');
+    }
+
+    synchronized void jobDone (String result) {
+      send(result);
+      nPending--;
+      closeIfDone();
+    }
+
+    synchronized void inputDone () {
+      isInputDone = true;
+      closeIfDone();
+    }
+
+    void closeIfDone () {
+      if (isInputDone && nPending == 0) {
+        try {
+          socket.close();
+        } catch (IOException iox) {
+          // nothing we can do
+        }
+      }
+    }
+
+    @Override
+    public void run() {
+      try {
+        BufferedReader in = new BufferedReader( new InputStreamReader( socket.getInputStream(), StandardCharsets.UTF_8));
+        String line;
+        while ((line = in.readLine()) != null) {
+          line = line.trim();
+          if (line.isEmpty()) {
+            continue;
+          }
+          if (line.equals(SHUTDOWN)) {
+            shutdown();
+            break;
+          }
+
+          Job job = new Job(jobIds.incrementAndGet(), this, splitArgs(line));
+          if (isShutdown) {
+            // another connection has shut us down, don't leave the client waiting
+            send( getFailure(job, 0, "server is shutting down"));
+            continue;
+          }
+
+          jobQueued(job);
+          try {
+            executor.execute(job);
+          } catch (RejectedExecutionException rx) {
+            jobDone( getFailure(job, 0, "server is shutting down"));
+          }
+        }
+      } catch (IOException iox) {
+        // client went away, pending results of this connection are dropped
+      } finally {
+        inputDone();
+      }
+    }
+  }
+
+  class Job implements Runnable {
+    int id;
+    Connection connection;
+    String[] args;
+
+    Job (int id, Connection connection, String[] args) {
+      this.id = id;
+      this.connection = connection;
+      this.args = args;
+    }
+
+    @Override
+    public void run() {
+      long t0 = System.currentTimeMillis();
+      try {
+        Config jobConfig = new Config( getJobArgs(args));
+        IsolatedJPF jpf = new IsolatedJPF( getWorkerClassLoader(jobConfig), jobConfig, JOB_CONFIG);
+        jpf.run();
+
+        long elapsed = System.currentTimeMillis() - t0;
+        connection.jobDone( getResult(this, jpf, elapsed));
+
+      } catch (Throwable t) {
+        long elapsed = System.currentTimeMillis() - t0;
+        connection.jobDone( getFailure(this, elapsed, t.toString()));
+      }
+    }
+  }
+
+  protected Config config;
+  protected int port;
+  protected int nWorkers;
+
+  protected ServerSocket serverSocket;
+  protected ExecutorService executor;
+  protected AtomicInteger jobIds = new AtomicInteger();
+  protected volatile boolean isShutdown;
+
+  // each worker thread re-uses its loader for consecutive jobs
+  protected ThreadLocal<IsolatingClassLoader> workerLoader = new ThreadLocal<IsolatingClassLoader>();
+
+  public JPFServer (Config config) {
+    this.config = config;
+
+    port = config.getInt("server.port", 0);
+    nWorkers = config.getInt("server.workers", Runtime.getRuntime().availableProcessors());
+    if (nWorkers < 1) {
+      nWorkers = 1;
+    }
+  }
+
+  @Override
+  public void start (String[] args) {
+    try {
+      open();
+      System.out.println("JPF server listening on port " + getPort() + " with " + nWorkers + " workers");
+      serve();
+
+    } catch (IOException iox) {
+      System.err.println("JPF server failed: " + iox);
+    } catch (JPFConfigException cx) {
+      System.err.println(cx.getMessage());
+    }
+  }
+
+  public void open() throws IOException {
+    serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+
+    AtomicInteger nThreads = new AtomicInteger();
+    executor = Executors.newFixedThreadPool(nWorkers, (r) -> {
+      Thread t = new Thread(r, "jpf-server-" + nThreads.getAndIncrement());
+      t.setDaemon(true);
+      return t;
+    });
+  }
+
+  public int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  /**
+   * accept connections until we get shut down, then wait for all queued jobs
+   */
+  public void serve() throws IOException {
+    try {
+      while (!serverSocket.isClosed()) {
+        Socket socket;
+        try {
+          socket = serverSocket.accept();
+        } catch (SocketException sx) {
+          break; // closed by shutdown
+        }
+
+        Thread t = new Thread( new Connection(socket), "jpf-server-connection");
+        t.setDaemon(true);
+        t.start();
+      }
+
+    } finally {
+      executor.shutdown();
+      try {
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException ix) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  public void shutdown() {
+    isShutdown = true;
+    try {
+      serverSocket.close();
+    } catch (IOException iox) {
+      // nothing we can do
+    }
+  }
+
+  /**
+   * split a job line into arguments. Arguments are separated by whitespace,
+   * unless it is enclosed in double quotes (e.g. "+my.key=a b"). Inside of
+   * quotes, '\"' and '\\' stand for a literal quote and backslash
+   */
+  static String[] splitArgs (String line) {
+    ArrayList<String> list = new ArrayList<String>();
+    StringBuilder sb = new StringBuilder();
+    boolean inArg = false;
+    boolean inQuotes = false;
+
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+
+      if (inQuotes) {
+        if (c == '"') {
+          inQuotes = false;
+        } else if (c == '\\' && i+1 < line.length() && (line.charAt(i+1) == '"' || line.charAt(i+1) == '\\')) {
+          sb.append(line.charAt(++i));
+        } else {
+          sb.append(c);
+        }
+
+      } else if (Character.isWhitespace(c)) {
+        if (inArg) {
+          list.add(sb.toString());
+          sb.setLength(0);
+          inArg = false;
+        }
+
+      } else {
+        inArg = true;
+        if (c == '"') {
+          inQuotes = true;
+        } else {
+          sb.append(c);
+        }
+      }
+    }
+    if (inArg) {
+      list.add(sb.toString());
+    }
+
+    return list.toArray(new String[list.size()]);
+  }
+
+  /**
+   * the server config args (minus the shell) followed by the job args
+   */
+  protected String[] getJobArgs (String[] args) {
+    ArrayList<String> list = new ArrayList<String>();
+
+    String[] serverArgs = config.getArgs();
+    if (serverArgs != null) {
+      for (String a : serverArgs) {
+        if (a != null && a.startsWith("+") && !a.startsWith("+shell=") && !a.startsWith("+server.")) {
+          list.add(a);
+        }
+      }
+    }
+    list.addAll(Arrays.asList(args));
+
+    return list.toArray(new String[list.size()]);
+  }
+
+  /**
+   * the loader of the current worker thread, unless the job needs a different
+   * native_classpath
+   */
+  protected IsolatingClassLoader getWorkerClassLoader (Config jobConfig) {
+    IsolatingClassLoader loader = workerLoader.get();
+
+    if (loader == null || !Arrays.equals(loader.getURLs(), IsolatedJPF.getIsolationPath(jobConfig))) {
+      loader = IsolatedJPF.createClassLoader(jobConfig);
+      workerLoader.set(loader);
+    }
+
+    return loader;
+  }
+
+  protected String getResult (Job job, IsolatedJPF jpf, long elapsed) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("{\"job\":").append(job.id);
+
+    Object stat = jpf.getStatistics();
+    if (stat == null || getLong(stat, "newStates") == 0) {
+      // there always is an initial state if the search did run
+      sb.append(",\"status\":\"failed\"");
+      sb.append(",\"elapsed\":").append(elapsed);
+      sb.append(",\"message\":\"JPF did not run, check the server log\"");
+
+    } else {
+      sb.append(",\"status\":\"finished\"");
+      sb.append(",\"elapsed\":").append(elapsed);
+      sb.append(",\"errors\":").append( JSONEncoder.quote(jpf.getErrorDescriptions()));
+
+      for (String fieldName : STATISTICS) {
+        long v = getLong(stat, fieldName);
+        if (v >= 0) {
+          sb.append(",\"").append(fieldName).append("\":").append(v);
+        }
+      }
+    }
+
+    sb.append('}');
+    return sb.toString();
+  }
+
+  protected String getFailure (Job job, long elapsed, String msg) {
+    return "{\"job\":" + job.id + ",\"status\":\"failed\",\"elapsed\":" + elapsed
+            + ",\"message\":" + JSONEncoder.quote(msg) + '}';
+  }
+
+  /**
+   * value of a public statistics field, or -1 if there is no such field
+   */
+  static long getLong (Object stat, String fieldName) {
+    try {
+      Field f = stat.getClass().getField(fieldName);
+      return f.getLong(stat);
+    } catch (ReflectiveOperationException rox) {
+      return -1;
+    }
+  }
+}
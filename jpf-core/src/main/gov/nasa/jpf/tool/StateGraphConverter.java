@@ -0,0 +1,439 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf.tool;
+
+import gov.nasa.jpf.listener.StateGraphLogger;
+import gov.nasa.jpf.util.IntVector;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+
+/**
+ * offline tool to convert state graph logs that were written by
+ * gov.nasa.jpf.listener.StateGraphLogger into DOT or GraphML.
+ *
+ * Since logs of large searches produce graphs that can't be rendered anymore,
+ * we can restrict the output to states below a given id, or to the paths that
+ * lead to property violations. The state id restriction is applied while we
+ * read the log, i.e. we don't have to keep the edges of the whole log in memory
+ */
+public class StateGraphConverter {
+
+  /**
+   * the contents of a state graph log
+   */
+  public static class StateGraph {
+    public final ArrayList<String> cgTypes = new ArrayList<String>();
+
+    // the edges, in order of the log
+    public final IntVector stateIds = new IntVector(4096);
+    public final IntVector parentIds = new IntVector(4096);
+    public final IntVector typeIds = new IntVector(4096);
+    public final IntVector choiceIndices = new IntVector(4096);
+    public final IntVector threadIds = new IntVector(4096);
+    public final IntVector flags = new IntVector(4096);
+
+    public final IntVector errorIds = new IntVector();
+
+    public int maxStateId = -1;
+
+    public int getNumberOfEdges() {
+      return stateIds.size();
+    }
+
+    public boolean isNewEdge (int i) {
+      return (flags.get(i) & StateGraphLogger.NEW) != 0;
+    }
+
+    public boolean isEndEdge (int i) {
+      return (flags.get(i) & StateGraphLogger.END) != 0;
+    }
+
+    public String getCGType (int i) {
+      int typeId = typeIds.get(i);
+      return (typeId >= 0) ? cgTypes.get(typeId) : null;
+    }
+
+    public void addEdge (int stateId, int parentId, int typeId, int choiceIndex, int threadId, int flag) {
+      stateIds.add(stateId);
+      parentIds.add(parentId);
+      typeIds.add(typeId);
+      choiceIndices.add(choiceIndex);
+      threadIds.add(threadId);
+      flags.add(flag);
+
+      if (stateId > maxStateId) {
+        maxStateId = stateId;
+      }
+    }
+  }
+
+  public static StateGraph read (String pathName) throws IOException {
+    return read(pathName, -1);
+  }
+
+  /**
+   * read a log, only keeping the edges between states with ids below maxStates
+   * (all edges if maxStates is negative)
+   */
+  public static StateGraph read (String pathName, int maxStates) throws IOException {
+    StateGraph g = new StateGraph();
+
+    try (DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream(pathName), 65536))) {
+      if (in.readInt() != StateGraphLogger.MAGIC) {
+        throw new IOException("not a state graph log: " + pathName);
+      }
+      int version = in.readInt();
+      if (version != StateGraphLogger.VERSION) {
+        throw new IOException("unsupported state graph log version: " + version);
+      }
+
+      while (true) {
+        int tag = in.read();
+        if (tag < 0) {
+          break;
+        }
+
+        try {
+          switch (tag) {
+            case StateGraphLogger.CG_TYPE:
+              int typeId = in.readInt();
+              byte[] name = new byte[in.readShort()];
+              in.readFully(name);
+              if (typeId != g.cgTypes.size()) {
+                throw new IOException("inconsistent CG type id: " + typeId);
+              }
+              g.cgTypes.add(new String(name, StandardCharsets.UTF_8));
+              break;
+
+            case StateGraphLogger.EDGE:
+              // don't add anything before we have the whole record, the log
+              // might be truncated within it
+              int id = in.readInt();
+              int parentId = in.readInt();
+              int edgeTypeId = in.readInt();
+              int choiceIndex = in.readInt();
+              int threadId = in.readInt();
+              byte flag = in.readByte();
+
+              if (maxStates < 0 || (id < maxStates && parentId < maxStates)) {
+                g.addEdge(id, parentId, edgeTypeId, choiceIndex, threadId, flag);
+              }
+              break;
+
+            case StateGraphLogger.ERROR:
+              g.errorIds.add(in.readInt());
+              break;
+
+            default:
+              throw new IOException("unknown state graph record: " + tag);
+          }
+        } catch (EOFException eofx) {
+          break; // truncated log (e.g. JPF was killed), use what we have
+        }
+      }
+    }
+
+    return g;
+  }
+
+  //--- filters
+
+  /**
+   * all edges between states with ids below maxStates
+   */
+  public static BitSet selectStates (StateGraph g, int maxStates) {
+    int n = g.getNumberOfEdges();
+    BitSet sel = new BitSet(n);
+
+    for (int i = 0; i < n; i++) {
+      if (g.stateIds.get(i) < maxStates && g.parentIds.get(i) < maxStates) {
+        sel.set(i);
+      }
+    }
+
+    return sel;
+  }
+
+  /**
+   * the edges of the (spanning tree) paths from the initial state to all error
+   * states
+   */
+  public static BitSet selectErrorPaths (StateGraph g) {
+    int n = g.getNumberOfEdges();
+    int[] treeEdge = new int[g.maxStateId + 1];
+    for (int i = 0; i < n; i++) {
+      if (g.isNewEdge(i)) {
+        treeEdge[g.stateIds.get(i)] = i + 1; // 0 means none
+      }
+    }
+
+    BitSet sel = new BitSet(n);
+    for (int k = 0; k < g.errorIds.size(); k++) {
+      int id = g.errorIds.get(k);
+
+      while (id >= 0 && id <= g.maxStateId && treeEdge[id] > 0) {
+        int i = treeEdge[id] - 1;
+        if (sel.get(i)) {
+          break; // rest of the path is already selected
+        }
+        sel.set(i);
+        id = g.parentIds.get(i);
+      }
+    }
+
+    return sel;
+  }
+
+  //--- output
+
+  static String getNodeName (int id) {
+    return (id < 0) ? "init" : ("st" + id);
+  }
+
+  static String getEdgeLabel (StateGraph g, int i) {
+    StringBuilder sb = new StringBuilder();
+    String type = g.getCGType(i);
+
+    if (type != null) {
+      sb.append(type.substring(type.lastIndexOf('.') + 1));
+      sb.append(':');
+      sb.append(g.choiceIndices.get(i));
+      sb.append(' ');
+    }
+    sb.append('T');
+    sb.append(g.threadIds.get(i));
+
+    return sb.toString();
+  }
+
+  static BitSet getEndStates (StateGraph g) {
+    BitSet ends = new BitSet(g.maxStateId + 1);
+    for (int i = 0; i < g.getNumberOfEdges(); i++) {
+      if (g.isEndEdge(i)) {
+        ends.set(g.stateIds.get(i));
+      }
+    }
+    return ends;
+  }
+
+  static BitSet getErrorStates (StateGraph g) {
+    BitSet errors = new BitSet(g.maxStateId + 1);
+    for (int k = 0; k < g.errorIds.size(); k++) {
+      int id = g.errorIds.get(k);
+      if (id >= 0) {
+        errors.set(id);
+      }
+    }
+    return errors;
+  }
+
+  /**
+   * the states that are connected by selected edges (+1, for the init state)
+   */
+  static BitSet getSelectedStates (StateGraph g, BitSet sel) {
+    BitSet states = new BitSet(g.maxStateId + 2);
+    for (int i = sel.nextSetBit(0); i >= 0; i = sel.nextSetBit(i + 1)) {
+      states.set(g.stateIds.get(i) + 1);
+      states.set(g.parentIds.get(i) + 1);
+    }
+    return states;
+  }
+
+  public static void writeDot (StateGraph g, BitSet sel, PrintWriter pw) {
+    BitSet ends = getEndStates(g);
+    BitSet errors = getErrorStates(g);
+    BitSet states = getSelectedStates(g, sel);
+
+    pw.println("digraph jpf_state_space {");
+
+    for (int j = states.nextSetBit(0); j >= 0; j = states.nextSetBit(j + 1)) {
+      int id = j - 1;
+      pw.print("  ");
+      pw.print(getNodeName(id));
+
+      if (id < 0) {
+        pw.println(" [label=\"init\",shape=point];");
+      } else if (errors.get(id)) {
+        pw.println(" [label=\"" + id + "\",shape=diamond,color=red];");
+      } else if (ends.get(id)) {
+        pw.println(" [label=\"" + id + "\",shape=egg,color=green];");
+      } else {
+        pw.println(" [label=\"" + id + "\",shape=circle,color=black];");
+      }
+    }
+
+    for (int i = sel.nextSetBit(0); i >= 0; i = sel.nextSetBit(i + 1)) {
+      pw.print("  ");
+      pw.print(getNodeName(g.parentIds.get(i)));
+      pw.print(" -> ");
+      pw.print(getNodeName(g.stateIds.get(i)));
+      pw.print(" [label=\"");
+      pw.print(getEdgeLabel(g, i));
+      if (g.isNewEdge(i)) {
+        pw.println("\"];");
+      } else {
+        pw.println("\",style=dashed];");
+      }
+    }
+
+    pw.println("}");
+  }
+
+  public static void writeGraphML (StateGraph g, BitSet sel, PrintWriter pw) {
+    BitSet ends = getEndStates(g);
+    BitSet errors = getErrorStates(g);
+    BitSet states = getSelectedStates(g, sel);
+
+    pw.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+    pw.println("<graphml xmlns=\"http://graphml.graphdrawing.org/xmlns\">");
+    pw.println("  <key id=\"kind\" for=\"node\" attr.name=\"kind\" attr.type=\"string\"/>");
+    pw.println("  <key id=\"cg\" for=\"edge\" attr.name=\"cg\" attr.type=\"string\"/>");
+    pw.println("  <key id=\"choice\" for=\"edge\" attr.name=\"choice\" attr.type=\"int\"/>");
+    pw.println("  <key id=\"thread\" for=\"edge\" attr.name=\"thread\" attr.type=\"int\"/>");
+    pw.println("  <key id=\"new\" for=\"edge\" attr.name=\"new\" attr.type=\"boolean\"/>");
+    pw.println("  <graph id=\"jpf_state_space\" edgedefault=\"directed\">");
+
+    for (int j = states.nextSetBit(0); j >= 0; j = states.nextSetBit(j + 1)) {
+      int id = j - 1;
+      String kind;
+      if (id < 0) {
+        kind = "init";
+      } else if (errors.get(id)) {
+        kind = "error";
+      } else if (ends.get(id)) {
+        kind = "end";
+      } else {
+        kind = "state";
+      }
+
+      pw.println("    <node id=\"" + getNodeName(id) + "\"><data key=\"kind\">" + kind + "</data></node>");
+    }
+
+    for (int i = sel.nextSetBit(0); i >= 0; i = sel.nextSetBit(i + 1)) {
+      pw.print("    <edge source=\"" + getNodeName(g.parentIds.get(i)) + "\" target=\"" + getNodeName(g.stateIds.get(i)) + "\">");
+      String type = g.getCGType(i);
+      if (type != null) {
+        pw.print("<data key=\"cg\">" + type + "</data>");
+        pw.print("<data key=\"choice\">" + g.choiceIndices.get(i) + "</data>");
+      }
+      pw.print("<data key=\"thread\">" + g.threadIds.get(i) + "</data>");
+      pw.print("<data key=\"new\">" + g.isNewEdge(i) + "</data>");
+      pw.println("</edge>");
+    }
+
+    pw.println("  </graph>");
+    pw.println("</graphml>");
+  }
+
+  //--- the command line interface
+
+  static void showUsage() {
+    System.out.println("usage:   'StateGraphConverter [<option>..] <log-file>'");
+    System.out.println("options:  -dot             : DOT output (default)");
+    System.out.println("          -graphml         : GraphML output");
+    System.out.println("          -max-states <n>  : only states with ids below n");
+    System.out.println("          -error-paths     : only paths that lead to property violations");
+    System.out.println("          -o <file>        : output file (default is stdout)");
+  }
+
+  public static void main (String[] args) {
+    boolean graphML = false;
+    boolean errorPaths = false;
+    int maxStates = -1;
+    String outFile = null;
+    String logFile = null;
+
+    try {
+      for (int i = 0; i < args.length; i++) {
+        String arg = args[i];
+
+        if ("-dot".equals(arg)) {
+          graphML = false;
+        } else if ("-graphml".equals(arg)) {
+          graphML = true;
+        } else if ("-error-paths".equals(arg)) {
+          errorPaths = true;
+        } else if ("-max-states".equals(arg)) {
+          maxStates = Integer.parseInt(args[++i]);
+        } else if ("-o".equals(arg)) {
+          outFile = args[++i];
+        } else if (arg.charAt(0) != '-' && logFile == null) {
+          logFile = arg;
+        } else {
+          System.err.println("unknown option: " + arg);
+          showUsage();
+          return;
+        }
+      }
+    } catch (ArrayIndexOutOfBoundsException | NumberFormatException x) {
+      System.err.println("illegal option value: " + x.getMessage());
+      showUsage();
+      return;
+    }
+
+    if (logFile == null) {
+      showUsage();
+      return;
+    }
+
+    try {
+      StateGraph g = read(logFile, maxStates);
+
+      BitSet sel;
+      if (errorPaths) {
+        sel = selectErrorPaths(g);
+      } else {
+        sel = new BitSet(g.getNumberOfEdges());
+        sel.set(0, g.getNumberOfEdges());
+      }
+
+      PrintWriter pw;
+      if (outFile != null) {
+        pw = new PrintWriter( new BufferedWriter( new FileWriter(outFile)));
+      } else {
+        pw = new PrintWriter( new OutputStreamWriter(System.out));
+      }
+
+      if (graphML) {
+        writeGraphML(g, sel, pw);
+      } else {
+        writeDot(g, sel, pw);
+      }
+
+      if (outFile != null) {
+        pw.close();
+      } else {
+        pw.flush();
+      }
+
+    } catch (IOException iox) {
+      System.err.println("error converting state graph: " + iox.getMessage());
+    }
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * an OutputStream that writes to another stream from a background thread.
+ *
+ * Data is collected in a buffer that is handed over to the writer thread once
+ * it is full or flush() is called, i.e. writers only block if the background
+ * thread falls behind by more than 'maxPending' buffers. close() waits until all
+ * data is written. Write errors of the background thread are reported by the
+ * next write(), flush() or close() call
+ */
+public class AsyncOutputStream extends OutputStream {
+
+  static final byte[] EOS = new byte[0];
+
+  protected final OutputStream out;
+  protected final BlockingQueue<byte[]> queue;
+  protected final Thread writer;
+
+  protected byte[] buf;
+  protected int count;
+
+  protected volatile IOException failure;
+  protected boolean isClosed;
+
+  public AsyncOutputStream (OutputStream out, int bufferSize, int maxPending) {
+    this.out = out;
+    buf = new byte[bufferSize];
+    queue = new ArrayBlockingQueue<byte[]>(maxPending);
+
+    writer = new Thread( new Runnable() {
+      @Override
+      public void run() {
+        writeQueued();
+      }
+    }, "async-output");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  public AsyncOutputStream (OutputStream out) {
+    this(out, 64*1024, 16);
+  }
+
+  protected void writeQueued() {
+    try {
+      while (true) {
+        byte[] b = queue.take();
+        if (b == EOS) {
+          break;
+        }
+        if (failure == null) {
+          try {
+            out.write(b);
+          } catch (IOException iox) {
+            failure = iox;
+          }
+        }
+      }
+    } catch (InterruptedException ix) {
+      // nothing we can do, just terminate
+    }
+  }
+
+  protected void checkFailure() throws IOException {
+    if (failure != null) {
+      throw failure;
+    }
+    if (isClosed) {
+      throw new IOException("stream closed");
+    }
+  }
+
+  protected void enqueue (byte[] b) throws IOException {
+    try {
+      queue.put(b);
+    } catch (InterruptedException ix) {
+      Thread.currentThread().interrupt();
+      throw new IOException("interrupted while queuing output");
+    }
+  }
+
+  protected void handOver() throws IOException {
+    if (count > 0) {
+      byte[] b = new byte[count];
+      System.arraycopy(buf, 0, b, 0, count);
+      count = 0;
+      enqueue(b);
+    }
+  }
+
+  @Override
+  public void write (int b) throws IOException {
+    checkFailure();
+    if (count == buf.length) {
+      handOver();
+    }
+    buf[count++] = (byte)b;
+  }
+
+  @Override
+  public void write (byte[] b, int off, int len) throws IOException {
+    checkFailure();
+    while (len > 0) {
+      if (count == buf.length) {
+        handOver();
+      }
+      int n = Math.min(len, buf.length - count);
+      System.arraycopy(b, off, buf, count, n);
+      count += n;
+      off += n;
+      len -= n;
+    }
+  }
+
+  /**
+   * hand over what we have buffered to the writer thread. Note this does not
+   * wait for the data to be written
+   */
+  @Override
+  public void flush() throws IOException {
+    checkFailure();
+    handOver();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (!isClosed) {
+      try {
+        handOver();
+        enqueue(EOS);
+        writer.join();
+      } catch (InterruptedException ix) {
+        Thread.currentThread().interrupt();
+      } finally {
+        isClosed = true;
+        out.close();
+      }
+
+      if (failure != null) {
+        throw failure;
+      }
+    }
+  }
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gov.nasa.jpf.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * a lock free hash table that maps long fingerprints to (non-negative) int ids,
+ * which can be used concurrently by several threads to match states.
+ *
+ * This is an open addressed table with linear probing that uses CAS to claim
+ * slots. There are no deletions, and the only operation is 'getOrAdd', i.e.
+ * the put-if-absent that state matching needs.
+ *
+ * Resizing is incremental: if a table gets too full we install a table with
+ * twice the capacity, which gets all new entries. Every subsequent getOrAdd
+ * migrates a chunk of the old table, and looks up keys in the old table that
+ * are not migrated yet. Threads that are still inserting into a table that
+ * was already superseded forward their entry to the next table, which is the
+ * one that decides about the id of a key.
+ *
+ * Note that we use 0 to mark empty slots, i.e. a 0 fingerprint is mapped to
+ * another value. This only adds a (tiny) collision probability, which we have
+ * to accept for fingerprints anyways.
+ *
+ * This class only uses system types so that it can be shared between JPFs
+ * that are loaded by different class loaders
+ */
+public class ConcurrentFingerprintTable {
+
+  static final float MAX_LOAD = 0.5f;
+  static final int MIN_CAPACITY = 1024;
+  static final int MIGRATION_CHUNK = 256;
+
+  static final long ZERO_KEY = 0x9e3779b97f4a7c15L;
+
+  static class Table {
+    static final AtomicReferenceFieldUpdater<Table,Table> NEXT =
+        AtomicReferenceFieldUpdater.newUpdater(Table.class, Table.class, "next");
+
+    final AtomicLongArray keys;
+    final AtomicIntegerArray values; // id+1, 0 means not published yet
+    final int mask;
+    final int threshold;
+    final AtomicInteger count = new AtomicInteger();
+
+    volatile Table next;  // set once we are full
+    volatile Table prev;  // the table we migrate from, reset once that is done
+
+    final AtomicInteger migrationCursor = new AtomicInteger();
+    final AtomicInteger migrated = new AtomicInteger();
+
+    Table (int capacity, Table prev) {
+      keys = new AtomicLongArray(capacity);
+      values = new AtomicIntegerArray(capacity);
+      mask = capacity - 1;
+      threshold = (int) (capacity * MAX_LOAD);
+      this.prev = prev;
+    }
+
+    int capacity() {
+      return mask + 1;
+    }
+
+    int waitForValue (int idx) {
+      int v;
+      while ((v = values.get(idx)) == 0) {
+        Thread.onSpinWait(); // the inserting thread is between the key CAS and the value store
+      }
+      return v - 1;
+    }
+
+    /**
+     * answer the id stored in this table, or -1 if the key isn't in here
+     */
+    int get (long key) {
+      int idx = hash(key) & mask;
+      for (int i = 0; i <= mask; i++) {
+        long k = keys.get(idx);
+        if (k == key) {
+          return waitForValue(idx);
+        } else if (k == 0) {
+          return -1;
+        }
+        idx = (idx + 1) & mask;
+      }
+      return -1;
+    }
+  }
+
+  protected volatile Table current;
+
+  public ConcurrentFingerprintTable() {
+    this(0);
+  }
+
+  /**
+   * create a table that can hold 'expectedSize' entries without resizing
+   */
+  public ConcurrentFingerprintTable (int expectedSize) {
+    current = new Table(getCapacity(expectedSize), null);
+  }
+
+  static int getCapacity (int expectedSize) {
+    long minCapacity = (long) (expectedSize / MAX_LOAD) + 1;
+    int capacity = MIN_CAPACITY;
+    while (capacity < minCapacity && capacity < (1 << 30)) {
+      capacity <<= 1;
+    }
+    return capacity;
+  }
+
+  static int hash (long key) {
+    // the fingerprints should already be good hashes, we just fold them
+    long h = key ^ (key >>> 32);
+    return (int) h ^ ((int) h >>> 16);
+  }
+
+  /**
+   * answer the id that is stored for 'key', or store and return 'newId'
+   * if there is none yet. Only one of several concurrent callers with the
+   * same key will get its own newId back
+   */
+  public int getOrAdd (long key, int newId) {
+    if (key == 0) {
+      key = ZERO_KEY;
+    }
+
+    Table t = current;
+    Table p = t.prev;
+
+    if (p != null) {
+      migrateChunk(t, p);
+
+      // not yet migrated entries are still only in the old table
+      int id = p.get(key);
+      if (id >= 0) {
+        newId = id;
+      }
+    }
+
+    return put(t, key, newId);
+  }
+
+  /**
+   * answer the id for 'key' without adding it, or -1 if it is unknown
+   */
+  public int get (long key) {
+    if (key == 0) {
+      key = ZERO_KEY;
+    }
+
+    Table t = current;
+    int id = t.get(key);
+    if (id < 0) {
+      Table p = t.prev;
+      if (p != null) {
+        id = p.get(key);
+      }
+    }
+    return id;
+  }
+
+  /**
+   * the number of entries. Note this is only accurate if there are no
+   * concurrent modifications
+   */
+  public int size() {
+    Table t = current;
+    int n = t.count.get();
+    Table p = t.prev;
+    if (p != null) {
+      // count the old entries that are not migrated yet
+      for (int i = 0; i < p.capacity(); i++) {
+        long k = p.keys.get(i);
+        if (k != 0 && t.get(k) < 0) {
+          n++;
+        }
+      }
+    }
+    return n;
+  }
+
+  public int getCapacity() {
+    return current.capacity();
+  }
+
+  //--- internals
+
+  protected int put (Table t, long key, int newId) {
+    int mask = t.mask;
+    int idx = hash(key) & mask;
+
+    for (int i = 0; i <= mask; i++) {
+      long k = t.keys.get(idx);
+
+      if (k == 0) {
+        if (t.keys.compareAndSet(idx, 0, key)) {
+          t.values.set(idx, newId + 1);
+
+          // if we are still migrating, the next insert after that will resize
+          if (t.count.incrementAndGet() >= t.threshold && t.prev == null) {
+            resize(t);
+          }
+          return forward(t, key, newId);
+        }
+        k = t.keys.get(idx); // somebody else got the slot first, re-check
+      }
+
+      if (k == key) {
+        return forward(t, key, t.waitForValue(idx));
+      }
+
+      idx = (idx + 1) & mask;
+    }
+
+    // we are full, which can only happen for a superseded table
+    resize(t);
+    return put(t.next, key, newId);
+  }
+
+  /**
+   * if 't' was already superseded, the next table determines the id
+   */
+  protected int forward (Table t, long key, int id) {
+    Table nt = t.next;
+    return (nt != null) ? put(nt, key, id) : id;
+  }
+
+  protected void resize (Table t) {
+    if (t.next != null) {
+      return;
+    }
+
+    // we don't resize before the previous migration is finished
+    Table p;
+    while ((p = t.prev) != null) {
+      if (!migrateChunk(t, p)) {
+        Thread.onSpinWait(); // all chunks are claimed, but somebody is still working on one
+      }
+    }
+
+    if (t.next == null) {
+      Table nt = new Table(t.capacity() << 1, t);
+      if (Table.NEXT.compareAndSet(t, null, nt)) {
+        current = nt;
+      }
+    }
+  }
+
+  /**
+   * move the next unclaimed chunk of 'p' into 't'. Answer false if there
+   * was no more chunk to claim
+   */
+  protected boolean migrateChunk (Table t, Table p) {
+    int capacity = p.capacity();
+    int start = p.migrationCursor.getAndAdd(MIGRATION_CHUNK);
+    if (start >= capacity) {
+      return false;
+    }
+
+    int end = Math.min(start + MIGRATION_CHUNK, capacity);
+    for (int i = start; i < end; i++) {
+      long k = p.keys.get(i);
+      if (k != 0) {
+        put(t, k, p.waitForValue(i));
+      }
+    }
+
+    if (p.migrated.addAndGet(end - start) == capacity) {
+      t.prev = null;
+    }
+    return true;
+  }
+}
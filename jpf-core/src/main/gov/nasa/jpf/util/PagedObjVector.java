@@ -0,0 +1,280 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gov.nasa.jpf.util;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * an ObjVector alternative that stores its elements in fixed size pages, and
+ * supports copy-on-write snapshots of them.
+ *
+ * Taking a snapshot only copies the page directory and marks all pages as
+ * shared. The first set() into a shared page copies this page, i.e. the cost
+ * of storing and restoring is proportional to the number of pages plus the
+ * number of pages that were written to in between, not to the number of
+ * elements. Pages that only contain null elements are not allocated.
+ *
+ * Like ObjVector, size is the highest set index + 1, but it does not shrink
+ * when elements are set to null
+ */
+public class PagedObjVector<E> implements Iterable<E> {
+
+  public static final int DEFAULT_PAGE_BITS = 8;
+
+  /**
+   * the stored page directory. Pages referenced from a snapshot are never
+   * modified again
+   */
+  public static class Snapshot<E> {
+    final Object[][] pages;
+    final int size;
+
+    Snapshot (Object[][] pages, int size) {
+      this.pages = pages;
+      this.size = size;
+    }
+  }
+
+  protected final int pageBits;
+  protected final int pageSize;
+  protected final int pageMask;
+
+  protected Object[][] pages;
+
+  // which pages we can modify in place, i.e. which ones are not referenced from a snapshot
+  protected boolean[] isOwned;
+
+  protected int size;
+
+  public PagedObjVector (int pageBits) {
+    this.pageBits = pageBits;
+    pageSize = 1 << pageBits;
+    pageMask = pageSize - 1;
+
+    pages = new Object[16][];
+    isOwned = new boolean[16];
+  }
+
+  public PagedObjVector () {
+    this(DEFAULT_PAGE_BITS);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int getPageSize() {
+    return pageSize;
+  }
+
+  public int getPageBits() {
+    return pageBits;
+  }
+
+  @SuppressWarnings("unchecked")
+  public E get (int idx) {
+    int pi = idx >>> pageBits;
+    if (pi < pages.length) {
+      Object[] page = pages[pi];
+      if (page != null) {
+        return (E) page[idx & pageMask];
+      }
+    }
+    return null;
+  }
+
+  public void set (int idx, E v) {
+    int pi = idx >>> pageBits;
+
+    if (pi >= pages.length) {
+      if (v == null) {
+        return; // nothing to do, everything beyond our pages is null
+      }
+      int newLength = pages.length * 2;
+      while (newLength <= pi) {
+        newLength *= 2;
+      }
+      pages = Arrays.copyOf(pages, newLength);
+      isOwned = Arrays.copyOf(isOwned, newLength);
+    }
+
+    Object[] page = pages[pi];
+    if (page == null) {
+      if (v == null) {
+        return;
+      }
+      page = new Object[pageSize];
+      pages[pi] = page;
+      isOwned[pi] = true;
+
+    } else if (!isOwned[pi]) {
+      // first write since the last snapshot, copy the page
+      page = page.clone();
+      pages[pi] = page;
+      isOwned[pi] = true;
+    }
+
+    page[idx & pageMask] = v;
+
+    if (idx >= size) {
+      size = idx + 1;
+    }
+  }
+
+  public E remove (int idx) {
+    E e = get(idx);
+    if (e != null) {
+      set(idx, null);
+    }
+    return e;
+  }
+
+  //--- snapshots
+
+  public Snapshot<E> getSnapshot() {
+    int nPages = (size + pageMask) >>> pageBits;
+    Arrays.fill(isOwned, 0, nPages, false);
+
+    return new Snapshot<E>(Arrays.copyOf(pages, nPages), size);
+  }
+
+  public void restore (Snapshot<E> snap) {
+    restore(snap, null);
+  }
+
+  /**
+   * restore a snapshot, and add the indices of all pages that are different
+   * from our current ones to 'changedPages'. All other pages hold the same
+   * elements as before
+   */
+  public void restore (Snapshot<E> snap, IntVector changedPages) {
+    Object[][] snapPages = snap.pages;
+    int nPages = snapPages.length;
+
+    if (changedPages != null) {
+      int nCurrent = (size + pageMask) >>> pageBits;
+      int n = Math.max(nPages, nCurrent);
+      for (int pi = 0; pi < n; pi++) {
+        Object[] page = (pi < pages.length) ? pages[pi] : null;
+        Object[] snapPage = (pi < nPages) ? snapPages[pi] : null;
+        if (page != snapPage) {
+          changedPages.add(pi);
+        }
+      }
+    }
+
+    if (nPages > pages.length) {
+      pages = Arrays.copyOf(snapPages, Math.max(nPages, pages.length * 2));
+      isOwned = new boolean[pages.length];
+
+    } else {
+      int nCurrent = (size + pageMask) >>> pageBits;
+      System.arraycopy(snapPages, 0, pages, 0, nPages);
+      if (nCurrent > nPages) {
+        Arrays.fill(pages, nPages, nCurrent, null);
+      }
+      Arrays.fill(isOwned, 0, Math.max(nPages, nCurrent), false);
+    }
+
+    size = snap.size;
+  }
+
+  //--- iteration
+
+  class NonNullIterator implements Iterator<E>, Iterable<E> {
+    int next = nextIndex(0);
+    int last = -1;
+
+    int nextIndex (int i) {
+      while (i < size) {
+        Object[] page = pages[i >>> pageBits];
+        if (page == null) { // skip the whole page
+          i = (i + pageSize) & ~pageMask;
+        } else {
+          if (page[i & pageMask] != null) {
+            return i;
+          }
+          i++;
+        }
+      }
+      return -1;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next >= 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E next() {
+      if (next < 0) {
+        throw new NoSuchElementException();
+      }
+
+      E e = (E) pages[next >>> pageBits][next & pageMask];
+      last = next;
+      next = nextIndex(next + 1);
+      return e;
+    }
+
+    @Override
+    public void remove() {
+      if (last < 0) {
+        throw new IllegalStateException("no element to remove");
+      }
+      PagedObjVector.this.remove(last);
+      last = -1;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+      return this;
+    }
+  }
+
+  /**
+   * iterate over all non-null elements. Elements can be set or removed while iterating,
+   * either directly or with Iterator.remove()
+   */
+  @Override
+  public Iterator<E> iterator() {
+    return new NonNullIterator();
+  }
+
+  public Iterable<E> elements() {
+    return new NonNullIterator();
+  }
+
+  public void process (Processor<E> processor) {
+    for (int pi = 0; pi < pages.length; pi++) {
+      Object[] page = pages[pi];
+      if (page != null) {
+        for (int i = 0; i < page.length; i++) {
+          @SuppressWarnings("unchecked")
+          E e = (E) page[i];
+          if (e != null) {
+            processor.process(e);
+          }
+        }
+      }
+    }
+  }
+}
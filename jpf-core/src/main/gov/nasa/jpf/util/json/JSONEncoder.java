@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf.util.json;
+
+/**
+ * minimal JSON encoding for the records we write (reports, server replies).
+ * This is the counterpart of JSONLexer string parsing, i.e. we only have to
+ * take care of quoting and escaping
+ */
+public class JSONEncoder {
+
+  public static void appendQuoted (StringBuilder sb, String s) {
+    if (s == null) {
+      sb.append("null");
+      return;
+    }
+
+    sb.append('"');
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      switch (c) {
+        case '"':  sb.append("\\\""); break;
+        case '\\': sb.append("\\\\"); break;
+        case '\n': sb.append("\\n"); break;
+        case '\r': sb.append("\\r"); break;
+        case '\t': sb.append("\\t"); break;
+        default:
+          if (c < 0x20) {
+            sb.append(String.format("\\u%04x", (int)c));
+          } else {
+            sb.append(c);
+          }
+      }
+    }
+    sb.append('"');
+  }
+
+  public static String quote (String s) {
+    StringBuilder sb = new StringBuilder((s != null) ? s.length() + 2 : 4);
+    appendQuoted(sb, s);
+    return sb.toString();
+  }
+
+  public static String quote (String[] a) {
+    StringBuilder sb = new StringBuilder();
+    sb.append('[');
+    for (int i = 0; i < a.length; i++) {
+      if (i > 0) {
+        sb.append(',');
+      }
+      appendQuoted(sb, a[i]);
+    }
+    sb.append(']');
+    return sb.toString();
+  }
+}
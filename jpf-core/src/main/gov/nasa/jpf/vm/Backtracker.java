@@ -31,4 +31,14 @@ public interface Backtracker {
   // the general restore interface
   RestorableState getRestorableState();
   void restoreState (RestorableState bs);
+
+  /**
+   * a restorable state that doesn't keep the backtrack data of its path, i.e.
+   * once it is restored we can't backtrack beyond it. This is all that is
+   * required by searches that only restore states to generate their successors
+   * (like HeuristicSearch), and can be a lot smaller
+   */
+  default RestorableState getCompactRestorableState() {
+    return getRestorableState();
+  }
 }
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf.vm;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.JPFConfigException;
+
+import java.util.Arrays;
+
+/**
+ * a bit-state hashing (supertrace) StateSet, which trades complete coverage
+ * for a fixed amount of memory.
+ *
+ * We don't store fingerprints, only set k bits per state in a bit array.
+ * The bit positions are derived from the Jenkins hash of the serialized state
+ * by means of double hashing. A state is considered to be visited if all of
+ * its k bits are already set, which is wrong with a probability that grows
+ * with the fill ratio of the bit array - such states are omitted from the
+ * search. We keep track of the fill ratio, so that we can estimate the
+ * omission probability at the end of the search (see Statistics).
+ *
+ * Revisited states get the id of the last stored state that hashed to the same
+ * slot of a (fixed size) id table, so that listeners and searches that track
+ * state ids (e.g. NoStateCycles or DPORSearch) see real ids. This id is wrong
+ * if another state was stored in the same slot later on, i.e. ids of revisited
+ * states are approximations just like the matching itself. If all bits of a
+ * state are set but its id slot is still empty, it can't have been stored
+ * before, and we treat it as a new state. Since ids can be wrong, this set
+ * can't be used with search.match_depth
+ *
+ * Configuration:
+ *   vm.storage.bitstate.size     - size of the bit array in bytes, rounded down
+ *                                  to a power of two (default: 64M)
+ *   vm.storage.bitstate.hashes   - number of bits per state (default: 3)
+ *   vm.storage.bitstate.id_table - size of the id table in bytes, rounded down
+ *                                  to a power of two (default: 16M)
+ */
+public class BitStateSet extends SerializingStateSet {
+
+  static final long MIN_SIZE = 8;
+  static final int MAX_HASHES = 16;
+
+  protected long[] bits;
+  protected long mask;    // bit index mask
+  protected int nHashes;
+
+  protected long nSetBits;
+  protected int nextId;
+
+  // the id of the last state that was stored in each slot, -1 if none
+  protected int[] ids;
+  protected int idMask;
+
+  // sum of the omission probabilities of all states we stored
+  protected double expectedOmissions;
+
+  public BitStateSet (Config config) {
+    long size = config.getMemorySize("vm.storage.bitstate.size", 64 << 20);
+    nHashes = config.getInt("vm.storage.bitstate.hashes", 3);
+    long idSize = config.getMemorySize("vm.storage.bitstate.id_table", 16 << 20);
+
+    if (size < MIN_SIZE || (size >>> 3) > Integer.MAX_VALUE) {
+      throw new JPFConfigException("vm.storage.bitstate.size out of range: " + size);
+    }
+    if (nHashes < 1 || nHashes > MAX_HASHES) {
+      throw new JPFConfigException("vm.storage.bitstate.hashes out of range [1.." + MAX_HASHES + "]: " + nHashes);
+    }
+    if (idSize < 4 || (idSize >>> 2) > (1 << 30)) {
+      throw new JPFConfigException("vm.storage.bitstate.id_table out of range: " + idSize);
+    }
+    if (config.getBoolean("search.match_depth")) {
+      throw new JPFConfigException("BitStateSet does not support search.match_depth");
+    }
+
+    size = Long.highestOneBit(size);
+    bits = new long[(int) (size >>> 3)];
+    mask = (size << 3) - 1;
+
+    int nSlots = (int) Long.highestOneBit(idSize >>> 2);
+    ids = new int[nSlots];
+    Arrays.fill(ids, UNKNOWN_ID);
+    idMask = nSlots - 1;
+  }
+
+  // a second, independent 64bit hash (MurmurHash3 finalizer)
+  static long mix (long h) {
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  @Override
+  public int size() {
+    return nextId;
+  }
+
+  public long getNumberOfBits() {
+    return mask + 1;
+  }
+
+  public int getNumberOfHashes() {
+    return nHashes;
+  }
+
+  public double getFillRatio() {
+    return (double) nSetBits / (mask + 1);
+  }
+
+  /**
+   * the probability that the next new state is considered to be visited
+   */
+  @Override
+  public double getOmissionProbability() {
+    return Math.pow(getFillRatio(), nHashes);
+  }
+
+  /**
+   * estimated number of states that were omitted so far, which assumes that
+   * we didn't see more new states than we stored
+   */
+  @Override
+  public double getExpectedOmissions() {
+    return expectedOmissions;
+  }
+
+  @Override
+  public int add (int[] state) {
+    long h1 = JenkinsStateSet.longLookup3Hash(state);
+    long h2 = mix(h1) | 1;
+
+    long[] bits = this.bits;
+    long nSetBefore = nSetBits;
+    boolean isNew = false;
+    long h = h1;
+
+    for (int i = 0; i < nHashes; i++) {
+      long idx = h & mask;
+      int wi = (int) (idx >>> 6);
+      long m = 1L << idx; // shift is mod 64
+
+      long w = bits[wi];
+      if ((w & m) == 0) {
+        bits[wi] = w | m;
+        nSetBits++;
+        isNew = true;
+      }
+      h += h2;
+    }
+
+    // the bit indices only use the lower bits of h2 (the bit array has at most 2^34 bits)
+    int slot = (int) (h2 >>> 32) & idMask;
+    int id = ids[slot];
+
+    if (isNew || id == UNKNOWN_ID) {
+      if (isNew) {
+        expectedOmissions += Math.pow((double) nSetBefore / (mask + 1), nHashes);
+      }
+      id = nextId++;
+      ids[slot] = id;
+    }
+
+    return id;
+  }
+}
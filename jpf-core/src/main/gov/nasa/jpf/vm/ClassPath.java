@@ -71,6 +71,14 @@ public class ClassPath implements Restorable<ClassPath>{
   }
 
 
+  public int getNumberOfClassFileContainers(){
+    return pathElements.size();
+  }
+
+  public ClassFileContainer getClassFileContainer (int idx){
+    return pathElements.get(idx);
+  }
+
   public String[] getPathNames(){
     String[] pn = new String[pathElements.size()];
 
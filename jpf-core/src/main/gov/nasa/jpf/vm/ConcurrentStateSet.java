@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gov.nasa.jpf.vm;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.util.ConcurrentFingerprintTable;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * a StateSet that stores Jenkins fingerprints in a lock free
+ * ConcurrentFingerprintTable, which can be shared between the StateSets of
+ * several searches that run at the same time (ids are still unique).
+ *
+ * Even in a sequential search this avoids the stop-the-world rehashing of
+ * JenkinsStateSet: the table is resized incrementally, and it can be sized
+ * upfront with 'vm.storage.expected_states'
+ */
+public class ConcurrentStateSet extends SerializingStateSet {
+
+  protected ConcurrentFingerprintTable table;
+  protected AtomicInteger stateIds;
+
+  // the id of our next new state is reserved upfront, which is what we
+  // report as our size() (VM.forward() uses this to determine if a state was new)
+  protected int nextId;
+
+  public ConcurrentStateSet (Config config) {
+    this( new ConcurrentFingerprintTable( config.getInt("vm.storage.expected_states", 0)), new AtomicInteger());
+  }
+
+  /**
+   * a StateSet that shares its table and id counter with other ones
+   */
+  public ConcurrentStateSet (ConcurrentFingerprintTable table, AtomicInteger stateIds) {
+    this.table = table;
+    this.stateIds = stateIds;
+    nextId = stateIds.getAndIncrement();
+  }
+
+  @Override
+  public int size() {
+    return nextId;
+  }
+
+  @Override
+  public int add (int[] state) {
+    long fp = JenkinsStateSet.longLookup3Hash(state);
+
+    int id = table.getOrAdd(fp, nextId);
+    if (id == nextId) {
+      nextId = stateIds.getAndIncrement();
+    }
+    return id;
+  }
+}
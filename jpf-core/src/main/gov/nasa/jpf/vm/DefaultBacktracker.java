@@ -91,7 +91,8 @@ public class DefaultBacktracker<KState> implements Backtracker {
   
   //--- the restore support
   
-  // <2do> this saves both the backtrack and the restore data - too redundant
+  // this saves both the backtrack and the restore data, which is redundant
+  // if we never backtrack beyond restored states (see getCompactRestorableState())
   class RestorableStateImpl implements RestorableState {
     final ImmutableList<KState> savedKstack;
     final ImmutableList<Object> savedSstack;
@@ -105,6 +106,18 @@ public class DefaultBacktracker<KState> implements Backtracker {
       kcur = restorer.getRestorableData();
       scur = ss.getRestoreData();
     }
+
+    /**
+     * the compact version, which doesn't keep the backtrack stacks (and
+     * with them the backtrack data of the whole path) alive, and shares
+     * the CG path with the last restored state
+     */
+    RestorableStateImpl (boolean isCompact) {
+      savedKstack = null;
+      savedSstack = null;
+      kcur = restorer.getRestorableData();
+      scur = ss.getCompactRestoreData();
+    }
     
     void restore() {
       kstack = savedKstack;
@@ -123,4 +136,9 @@ public class DefaultBacktracker<KState> implements Backtracker {
   public RestorableState getRestorableState() {
     return new RestorableStateImpl();
   }
+
+  @Override
+  public RestorableState getCompactRestorableState() {
+    return new RestorableStateImpl(true);
+  }
 }
@@ -63,6 +63,10 @@ public abstract class GenericHeap implements Heap, Iterable<ElementInfo> {
       heap.internStringsMap = internStringsMap;
       heap.attributes = attributes;
       heap.liveBitValue = false; // always start with false after a restore
+
+      if (heap.changedRefs != null) { // we don't know what got restored
+        heap.elementsRestored = true;
+      }
       return inSitu;
     }
   }
@@ -119,6 +123,12 @@ public abstract class GenericHeap implements Heap, Iterable<ElementInfo> {
   // the number of live objects
   // <2do> currently only defined after gc
   protected int nLiveObjects;
+
+  // optional log of objects that were created, modified (cloned) or removed since
+  // the last resetChanges(), which can be used by incremental serializers. If
+  // elements got restored we don't know what changed
+  protected IntVector changedRefs;
+  protected boolean elementsRestored;
   
   //--- constructors
 
@@ -249,7 +259,7 @@ public abstract class GenericHeap implements Heap, Iterable<ElementInfo> {
     
     set(objref, ei);
 
-    attributes |= ATTR_ELEMENTS_CHANGED;
+    markChanged(objref);
 
     // and do the default (const) field initialization
     ci.initializeInstanceData(ei, ti);
@@ -289,7 +299,7 @@ public abstract class GenericHeap implements Heap, Iterable<ElementInfo> {
 
     set(objref, ei);
 
-    attributes |= ATTR_ELEMENTS_CHANGED;
+    markChanged(objref);
 
     vm.notifyObjectCreated(ti, ei);
 
@@ -612,6 +622,7 @@ public abstract class GenericHeap implements Heap, Iterable<ElementInfo> {
         ei.processReleaseActions();
         
         vm.notifyObjectReleased(ti, ei);
+        markChanged(ei.getObjectRef());
         remove(ei.getObjectRef());
       }
     }
@@ -713,6 +724,44 @@ public abstract class GenericHeap implements Heap, Iterable<ElementInfo> {
   @Override
   public void markChanged(int objref) {
     attributes |= ATTR_ELEMENTS_CHANGED;
+
+    if (changedRefs != null) {
+      changedRefs.add(objref);
+    }
+  }
+
+  /**
+   * turn on/off logging of changed object references
+   */
+  public void setTrackChanges (boolean trackChanges) {
+    if (trackChanges) {
+      if (changedRefs == null) {
+        changedRefs = new IntVector();
+        elementsRestored = true; // we don't know what happened before
+      }
+    } else {
+      changedRefs = null;
+    }
+  }
+
+  /**
+   * the references of objects that were created, modified or removed since
+   * the last resetChanges(). This can contain duplicates, and is only valid
+   * if there was no restore in between (see isElementsRestored())
+   */
+  public IntVector getChangedRefs() {
+    return changedRefs;
+  }
+
+  public boolean isElementsRestored() {
+    return elementsRestored;
+  }
+
+  public void resetChanges() {
+    if (changedRefs != null) {
+      changedRefs.clear();
+    }
+    elementsRestored = false;
   }
 
   public void setStored() {
@@ -20,6 +20,7 @@ package gov.nasa.jpf.vm;
 import gov.nasa.jpf.util.ObjectList;
 import gov.nasa.jpf.util.Source;
 import gov.nasa.jpf.vm.bytecode.InstructionInterface;
+import gov.nasa.jpf.vm.bytecode.SuperInstruction;
 
 
 
@@ -35,6 +36,9 @@ public abstract class Instruction implements Cloneable, InstructionInterface {
 
   // property/mode specific attributes
   protected Object attr;
+
+  // optional fused sequence that starts with this instruction
+  protected SuperInstruction superInsn;
   
   // this is for changing from InstructionInterface types to Instruction types
   @Override
@@ -191,6 +195,35 @@ public abstract class Instruction implements Cloneable, InstructionInterface {
   @Override
   public abstract Instruction execute(ThreadInfo ti);
 
+  /**
+   * can the next execution of this instruction only see and change state that
+   * is confined to ti (operand stack, locals, objects that are neither shared nor
+   * exposed), without creating ChoiceGenerators, throwing exceptions or calling
+   * methods. If so, ThreadInfo.executeTransition() can execute it on its fast path.
+   * This is called right before execution, i.e. can look at the operand stack
+   *
+   * Note that subclasses which break transitions (e.g. with data CGs) are still
+   * handled correctly, but should override this if they change the state of
+   * other threads
+   */
+  public boolean isThreadLocal (ThreadInfo ti) {
+    return false;
+  }
+
+  /**
+   * the superinstruction that executes this and the following instructions of
+   * the same method in one step, if any. SuperInstructions are not part of
+   * the method code and only used on the fast path, hence they don't affect
+   * listeners, step recording or source locations
+   */
+  public SuperInstruction getSuperInstruction() {
+    return superInsn;
+  }
+
+  public void setSuperInstruction (SuperInstruction superInsn) {
+    this.superInsn = superInsn;
+  }
+
   @Override
   public String toString() {
     return getMnemonic();
@@ -441,6 +474,9 @@ public abstract class Instruction implements Cloneable, InstructionInterface {
 
       // reset the method that this insn belongs to
       clone.mi = mi;
+
+      // superinstructions refer to the original code
+      clone.superInsn = null;
     } catch (CloneNotSupportedException e) {
       e.printStackTrace();
     }
@@ -22,58 +22,143 @@ import gov.nasa.jpf.util.HashData;
 import gov.nasa.jpf.util.IntVector;
 
 import java.io.PrintStream;
+import java.util.Arrays;
 
 /**
  * element values for int[] objects
+ *
+ * Large arrays switch to chunked storage when they get cloned, which happens
+ * on the first modification after a state was stored (ElementInfo.deepClone()).
+ * Clones share all chunks and only copy the ones they modify, i.e. updating a
+ * single element of a large frozen array does not copy the whole array. Since
+ * the stored (frozen) ElementInfos are the heap mementos, they share the chunks
+ * as well. Clients that need the whole array (asIntArray(), getValues()) turn
+ * the object back into flat storage
  */
 public class IntArrayFields extends ArrayFields {
 
-  int[] values;
+  static final int CHUNK_SHIFT = 8;
+  static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+  static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+  // smaller arrays are always cloned as a whole
+  static final int MIN_CHUNKED_LENGTH = 4 * CHUNK_SIZE;
+
+  int[] values;         // flat storage, null if we are chunked
+
+  int[][] chunks;       // chunked storage, which might be shared with clones
+  boolean[] ownsChunk;  // the chunks we can modify in place
+  int length;
 
   public IntArrayFields (int length) {
     values = new int[length];
+    this.length = length;
+  }
+
+  public boolean isChunked() {
+    return chunks != null;
+  }
+
+  /**
+   * turn chunked storage back into a flat array that can be modified in place
+   */
+  protected int[] flatten() {
+    if (chunks != null) {
+      int[] v = new int[length];
+      for (int i=0, off=0; i<chunks.length; i++, off += CHUNK_SIZE) {
+        System.arraycopy(chunks[i], 0, v, off, Math.min(CHUNK_SIZE, length - off));
+      }
+      values = v;
+      chunks = null;
+      ownsChunk = null;
+    }
+    return values;
+  }
+
+  protected static int[][] createChunks (int[] v) {
+    int n = (v.length + CHUNK_MASK) >> CHUNK_SHIFT;
+    int[][] chunks = new int[n][];
+    for (int i=0, off=0; i<n; i++, off += CHUNK_SIZE) {
+      int len = Math.min(CHUNK_SIZE, v.length - off);
+      chunks[i] = new int[len];
+      System.arraycopy(v, off, chunks[i], 0, len);
+    }
+    return chunks;
   }
 
   @Override
   public int[] asIntArray() {
-    return values;
+    return flatten();
   }
 
   @Override
   public void copyElements (ArrayFields src, int srcPos, int dstPos, int len){
     IntArrayFields a = (IntArrayFields) src;
-    System.arraycopy(a.values, srcPos, values, dstPos, len);
+    if (values != null && a.values != null) {
+      System.arraycopy(a.values, srcPos, values, dstPos, len);
+
+    } else {
+      int[] tmp = new int[len]; // src and dst might overlap
+      for (int i=0; i<len; i++) {
+        tmp[i] = a.getIntValue(srcPos + i);
+      }
+      for (int i=0; i<len; i++) {
+        setIntValue(dstPos + i, tmp[i]);
+      }
+    }
   }
   
   @Override
   protected void printValue(PrintStream ps, int idx){
-    ps.print(values[idx]);
+    ps.print(getIntValue(idx));
   }
   
   @Override
   public Object getValues(){
-    return values;
+    return flatten();
   }
 
   @Override
   public int arrayLength() {
-    return values.length;
+    return length;
   }
 
   @Override
   public int getHeapSize() {  // in bytes
-    return values.length * 4;
+    return length * 4;
   }
 
   @Override
   public void appendTo (IntVector v) {
-    v.append(values);
+    if (chunks != null) {
+      for (int[] c : chunks) {
+        v.append(c);
+      }
+    } else {
+      v.append(values);
+    }
   }
 
   @Override
   public IntArrayFields clone(){
     IntArrayFields f = (IntArrayFields)cloneFields();
-    f.values = values.clone();
+
+    if (chunks != null) {
+      // both of us have to copy chunks before modifying them from now on
+      f.chunks = chunks.clone();
+      f.ownsChunk = new boolean[chunks.length];
+      Arrays.fill(ownsChunk, false);
+
+    } else if (length >= MIN_CHUNKED_LENGTH) {
+      f.values = null;
+      f.chunks = createChunks(values);
+      f.ownsChunk = new boolean[f.chunks.length];
+      Arrays.fill(f.ownsChunk, true);
+
+    } else {
+      f.values = values.clone();
+    }
+
     return f;
   }
 
@@ -82,15 +167,23 @@ public class IntArrayFields extends ArrayFields {
     if (o instanceof IntArrayFields) {
       IntArrayFields other = (IntArrayFields)o;
 
-      int[] v = values;
-      int[] vOther = other.values;
-      if (v.length != vOther.length) {
+      if (length != other.length) {
         return false;
       }
 
-      for (int i=0; i<v.length; i++) {
-        if (v[i] != vOther[i]) {
-          return false;
+      if (values != null && other.values != null) {
+        int[] v = values;
+        int[] vOther = other.values;
+        for (int i=0; i<v.length; i++) {
+          if (v[i] != vOther[i]) {
+            return false;
+          }
+        }
+      } else {
+        for (int i=0; i<length; i++) {
+          if (getIntValue(i) != other.getIntValue(i)) {
+            return false;
+          }
         }
       }
 
@@ -103,20 +196,43 @@ public class IntArrayFields extends ArrayFields {
 
   @Override
   public void setIntValue (int pos, int newValue) {
-    values[pos] = newValue;
+    if (chunks == null) {
+      values[pos] = newValue;
+
+    } else { // the last chunk is not padded, so this still throws for pos >= length
+      int i = pos >> CHUNK_SHIFT;
+      if (!ownsChunk[i]) {
+        chunks[i] = chunks[i].clone();
+        ownsChunk[i] = true;
+      }
+      chunks[i][pos & CHUNK_MASK] = newValue;
+    }
   }
 
   @Override
   public int getIntValue (int pos) {
-    return values[pos];
+    if (chunks == null) {
+      return values[pos];
+
+    } else {
+      return chunks[pos >> CHUNK_SHIFT][pos & CHUNK_MASK];
+    }
   }
 
 
   @Override
   public void hash(HashData hd) {
-    int[] v = values;
-    for (int i=0; i < v.length; i++) {
-      hd.add(v[i]);
+    if (chunks != null) {
+      for (int[] c : chunks) {
+        for (int i=0; i < c.length; i++) {
+          hd.add(c[i]);
+        }
+      }
+    } else {
+      int[] v = values;
+      for (int i=0; i < v.length; i++) {
+        hd.add(v[i]);
+      }
     }
   }
 
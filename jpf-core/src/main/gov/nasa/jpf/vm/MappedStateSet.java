@@ -0,0 +1,427 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gov.nasa.jpf.vm;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.JPFException;
+import gov.nasa.jpf.search.Search;
+import gov.nasa.jpf.search.SearchListenerAdapter;
+import gov.nasa.jpf.util.LongVector;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.BitSet;
+import java.util.HashSet;
+
+/**
+ * a StateSet that keeps its Jenkins fingerprints in a memory mapped file, so
+ * that the number of stored states is not limited by the heap (and doesn't
+ * cause GC pressure). Recently matched states are kept in a small, direct
+ * mapped in-heap cache.
+ *
+ * The file is an open addressed hash table with linear probing, each slot
+ * holds a 64bit fingerprint and the state id. The table is rehashed into a
+ * new file of twice the size if it gets too full, which can be avoided by
+ * setting 'vm.storage.expected_states'.
+ *
+ * If 'vm.storage.resume' is set and the file exists, we continue with the
+ * states that were stored by a previous run. Since the previous run might have
+ * been terminated before it explored all successors of a state, only states
+ * that are done (i.e. that were backtracked from, and whose subtree wasn't cut
+ * off by the depth limit) are considered to be visited on resume. This
+ * assumes a depth first search.
+ *
+ * Configuration:
+ *   vm.storage.file            - the state file (default: temp file)
+ *   vm.storage.resume          - continue with the states of the file (default: false)
+ *   vm.storage.expected_states - initial capacity of the table
+ *   vm.storage.cache_size      - number of in-heap cache entries (default: 65536)
+ */
+public class MappedStateSet extends SerializingStateSet {
+
+  static final long MAGIC = 0x4a50465354415445L; // "JPFSTATE"
+  static final int VERSION = 1;
+
+  // header layout: magic, version, capacity, count, nextId
+  static final int HEADER_SIZE = 64;
+  static final int H_MAGIC = 0;
+  static final int H_VERSION = 8;
+  static final int H_CAPACITY = 16;
+  static final int H_COUNT = 24;
+  static final int H_NEXT_ID = 32;
+
+  // slot layout: fingerprint, (id+1) | CLOSED. A fingerprint with a 0 id
+  // field is a state that was still open when the file was written
+  static final int SLOT_SIZE = 12;
+  static final int CLOSED = 0x80000000;
+  static final int ID_MASK = 0x7fffffff;
+
+  static final long SEGMENT_SLOTS = 1L << 27; // each mapping has to be < 2GB
+  static final long MIN_CAPACITY = 1L << 16;
+  static final double MAX_LOAD = 0.75;
+
+  static final long ZERO_KEY = 0x9e3779b97f4a7c15L;
+
+  protected File file;
+  protected RandomAccessFile raf;
+  protected MappedByteBuffer header;
+  protected MappedByteBuffer[] segments;
+
+  protected long capacity;
+  protected long mask;
+  protected long count;
+  protected long nextRehash;
+  protected int nextId;
+
+  // the in-heap cache of recently used fingerprints (storing the slot id fields)
+  protected long[] cacheKeys;
+  protected int[] cacheFields;
+  protected int cacheMask;
+
+  // the fingerprints of the new states on our current path (0 for revisited
+  // states), and which of them have successors that are not done
+  protected LongVector path = new LongVector();
+  protected BitSet incomplete = new BitSet();
+  protected HashSet<Long> onPath = new HashSet<Long>();
+
+  protected long lastFingerprint;
+  protected boolean lastIsNew;
+  protected boolean lastIsClosed;
+
+  public MappedStateSet (Config config) {
+    String fileName = config.getString("vm.storage.file");
+    boolean resume = config.getBoolean("vm.storage.resume", false);
+    long expectedStates = config.getLong("vm.storage.expected_states", 0);
+    int cacheSize = config.getInt("vm.storage.cache_size", 65536);
+
+    try {
+      if (fileName == null) {
+        file = File.createTempFile("jpf-states", ".bin");
+        file.deleteOnExit();
+        resume = false;
+      } else {
+        file = new File(fileName);
+      }
+
+      if (resume && file.isFile() && file.length() >= HEADER_SIZE) {
+        open();
+      } else {
+        create(getCapacity(expectedStates));
+      }
+    } catch (IOException x) {
+      throw new JPFException("cannot map state file: " + file, x);
+    }
+
+    int n = 1;
+    while (n < cacheSize) {
+      n <<= 1;
+    }
+    cacheKeys = new long[n];
+    cacheFields = new int[n];
+    cacheMask = n - 1;
+  }
+
+  static long getCapacity (long expectedStates) {
+    long minCapacity = (long) (expectedStates / MAX_LOAD) + 1;
+    long capacity = MIN_CAPACITY;
+    while (capacity < minCapacity) {
+      capacity <<= 1;
+    }
+    return capacity;
+  }
+
+  static int hash (long key) {
+    long h = key ^ (key >>> 32);
+    return (int) h ^ ((int) h >>> 16);
+  }
+
+  @Override
+  public void attach (VM vm) {
+    super.attach(vm);
+
+    // we need to know which states are done, and when to flush
+    vm.getJPF().addListener( new SearchListenerAdapter() {
+      @Override
+      public void stateAdvanced (Search search) {
+        int i = path.size();
+
+        if (lastIsNew) {
+          path.add(lastFingerprint);
+          onPath.add(lastFingerprint);
+          // successors of states at the depth limit are not explored
+          if (search.getDepth() >= search.getDepthLimit()) {
+            incomplete.set(i);
+          }
+
+        } else {
+          path.add(0);
+          // revisited states on our path will be done when we backtrack to them
+          if (!lastIsClosed && !onPath.contains(lastFingerprint)) {
+            incomplete.set(i);
+          }
+        }
+      }
+
+      @Override
+      public void stateBacktracked (Search search) {
+        int i = path.size() - 1;
+        if (i >= 0) {
+          long fp = path.get(i);
+          path.setSize(i);
+
+          if (fp != 0) {
+            onPath.remove(fp);
+          }
+
+          if (incomplete.get(i)) {
+            incomplete.clear(i);
+            if (i > 0) {
+              incomplete.set(i - 1);
+            }
+          } else if (fp != 0) {
+            markClosed(fp);
+          }
+        }
+      }
+
+      @Override
+      public void stateRestored (Search search) {
+        // not a depth first search, we don't know what is done
+        path.clear();
+        incomplete.clear();
+        onPath.clear();
+      }
+
+      @Override
+      public void searchFinished (Search search) {
+        flush();
+      }
+    });
+  }
+
+  @Override
+  public int size() {
+    return nextId;
+  }
+
+  public long getCapacity() {
+    return capacity;
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  @Override
+  public int add (int[] state) {
+    long fp = JenkinsStateSet.longLookup3Hash(state);
+    if (fp == 0) {
+      fp = ZERO_KEY; // 0 marks empty slots
+    }
+    lastFingerprint = fp;
+    lastIsNew = false;
+
+    int ci = hash(fp) & cacheMask;
+    if (cacheKeys[ci] == fp) {
+      int f = cacheFields[ci];
+      lastIsClosed = (f & CLOSED) != 0;
+      return (f & ID_MASK) - 1;
+    }
+
+    long slot = findSlot(fp);
+    long key = getKey(slot);
+    int f;
+
+    if (key == fp) {
+      f = getIdField(slot);
+      if (f == 0) { // open state from a previous run, needs to be explored again
+        f = ++nextId;
+        setIdField(slot, f);
+        header.putInt(H_NEXT_ID, nextId);
+        lastIsNew = true;
+      }
+
+    } else { // new state
+      f = ++nextId;
+      setKey(slot, fp);
+      setIdField(slot, f);
+      count++;
+      header.putLong(H_COUNT, count);
+      header.putInt(H_NEXT_ID, nextId);
+      lastIsNew = true;
+
+      if (count >= nextRehash) {
+        try {
+          grow();
+        } catch (IOException x) {
+          throw new JPFException("cannot grow state file: " + file, x);
+        }
+      }
+    }
+
+    cacheKeys[ci] = fp;
+    cacheFields[ci] = f;
+    lastIsClosed = (f & CLOSED) != 0;
+    return (f & ID_MASK) - 1;
+  }
+
+  public void flush() {
+    header.force();
+    for (MappedByteBuffer seg : segments) {
+      seg.force();
+    }
+  }
+
+  //--- the mapped table
+
+  protected long findSlot (long key) {
+    long slot = hash(key) & mask;
+    long k;
+    while ((k = getKey(slot)) != 0 && k != key) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  protected long getKey (long slot) {
+    return segments[(int) (slot / SEGMENT_SLOTS)].getLong((int) (slot % SEGMENT_SLOTS) * SLOT_SIZE);
+  }
+
+  protected void setKey (long slot, long key) {
+    segments[(int) (slot / SEGMENT_SLOTS)].putLong((int) (slot % SEGMENT_SLOTS) * SLOT_SIZE, key);
+  }
+
+  protected int getIdField (long slot) {
+    return segments[(int) (slot / SEGMENT_SLOTS)].getInt((int) (slot % SEGMENT_SLOTS) * SLOT_SIZE + 8);
+  }
+
+  protected void setIdField (long slot, int f) {
+    segments[(int) (slot / SEGMENT_SLOTS)].putInt((int) (slot % SEGMENT_SLOTS) * SLOT_SIZE + 8, f);
+  }
+
+  protected void markClosed (long fp) {
+    long slot = findSlot(fp);
+    if (getKey(slot) == fp) {
+      int f = getIdField(slot) | CLOSED;
+      setIdField(slot, f);
+
+      int ci = hash(fp) & cacheMask;
+      if (cacheKeys[ci] == fp) {
+        cacheFields[ci] = f;
+      }
+    }
+  }
+
+  protected void map (long newCapacity) throws IOException {
+    FileChannel fc = raf.getChannel();
+    raf.setLength(HEADER_SIZE + newCapacity * SLOT_SIZE); // sparse on most file systems
+
+    header = fc.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+
+    int nSegments = (int) ((newCapacity + SEGMENT_SLOTS - 1) / SEGMENT_SLOTS);
+    segments = new MappedByteBuffer[nSegments];
+    for (int i = 0; i < nSegments; i++) {
+      long nSlots = Math.min(SEGMENT_SLOTS, newCapacity - i * SEGMENT_SLOTS);
+      segments[i] = fc.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + i * SEGMENT_SLOTS * SLOT_SIZE, nSlots * SLOT_SIZE);
+    }
+
+    capacity = newCapacity;
+    mask = newCapacity - 1;
+    nextRehash = (long) (newCapacity * MAX_LOAD);
+  }
+
+  protected void create (long newCapacity) throws IOException {
+    raf = new RandomAccessFile(file, "rw");
+    raf.setLength(0);
+    map(newCapacity);
+
+    count = 0;
+    nextId = 0;
+    header.putLong(H_MAGIC, MAGIC);
+    header.putInt(H_VERSION, VERSION);
+    header.putLong(H_CAPACITY, capacity);
+    header.putLong(H_COUNT, 0);
+    header.putInt(H_NEXT_ID, 0);
+  }
+
+  protected void open() throws IOException {
+    raf = new RandomAccessFile(file, "rw");
+
+    long magic = raf.readLong();
+    int version = raf.readInt();
+    if (magic != MAGIC || version != VERSION) {
+      raf.close();
+      throw new JPFException("not a state file: " + file);
+    }
+    raf.seek(H_CAPACITY);
+    long cap = raf.readLong();
+    map(cap);
+
+    count = header.getLong(H_COUNT);
+    nextId = header.getInt(H_NEXT_ID);
+
+    // everything that wasn't completely explored has to be re-explored
+    for (long slot = 0; slot < capacity; slot++) {
+      if (getKey(slot) != 0 && (getIdField(slot) & CLOSED) == 0) {
+        setIdField(slot, 0);
+      }
+    }
+  }
+
+  /**
+   * rehash into a new file with twice the capacity, which replaces the old one.
+   * This stops the search for a while, set 'vm.storage.expected_states' to avoid it
+   */
+  protected void grow() throws IOException {
+    RandomAccessFile oldRaf = raf;
+    MappedByteBuffer[] oldSegments = segments;
+    long oldCapacity = capacity;
+
+    File newFile = new File(file.getPath() + ".grow");
+    raf = new RandomAccessFile(newFile, "rw");
+    raf.setLength(0);
+    map(oldCapacity << 1);
+
+    for (int i = 0; i < oldSegments.length; i++) {
+      MappedByteBuffer seg = oldSegments[i];
+      int nSlots = seg.capacity() / SLOT_SIZE;
+      for (int j = 0; j < nSlots; j++) {
+        long key = seg.getLong(j * SLOT_SIZE);
+        if (key != 0) {
+          long slot = findSlot(key);
+          setKey(slot, key);
+          setIdField(slot, seg.getInt(j * SLOT_SIZE + 8));
+        }
+      }
+    }
+
+    header.putLong(H_MAGIC, MAGIC);
+    header.putInt(H_VERSION, VERSION);
+    header.putLong(H_CAPACITY, capacity);
+    header.putLong(H_COUNT, count);
+    header.putInt(H_NEXT_ID, nextId);
+
+    oldRaf.close(); // the old mappings go away once they are collected
+    Files.move(newFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+  }
+}
@@ -19,11 +19,16 @@
 package gov.nasa.jpf.vm;
 
 import gov.nasa.jpf.JPF;
+import gov.nasa.jpf.JPFException;
 import gov.nasa.jpf.JPFNativePeerException;
 import gov.nasa.jpf.util.JPFLogger;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 
 /**
  * a MethodInfo for a native peer executed method
@@ -43,18 +48,72 @@ public class NativeMethodInfo extends MethodInfo {
     }
   }
 
+  // the generic type of our invokers - the argument registers in, the (boxed) return value out
+  static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+  // the InvocationTargetException ctor we use to wrap exceptions thrown by peer methods
+  static final MethodHandle WRAP_TARGET_EXCEPTION;
+
+  static {
+    try {
+      WRAP_TARGET_EXCEPTION = MethodHandles.lookup().findConstructor(InvocationTargetException.class,
+                                    MethodType.methodType(void.class, Throwable.class));
+    } catch (NoSuchMethodException | IllegalAccessException x) {
+      throw new JPFException(x);
+    }
+  }
+
   protected Method mth; // the native method to enter in lieu
   protected NativePeer peer;
 
+  // mth bound to the peer once we know both, so that calls don't have to go through
+  // the access and argument checks of Method.invoke()
+  protected MethodHandle invoker;
+
   public NativeMethodInfo (MethodInfo mi, Method mth, NativePeer peer){
     super(mi);  // <2do> do we want any operands or locals?
 
     this.peer = peer;
     this.mth = mth;
 
+    if (mth != null) {
+      invoker = createInvoker(mth, peer);
+    }
+
     ci.setNativeCallCode(this);
   }
 
+  /**
+   * turn the peer method into a (Object[])Object MethodHandle that is bound to the
+   * peer object. This is done once per NativeMethodInfo, and the resulting handle
+   * doesn't need any per-call checks other than the argument count and cast.
+   *
+   * Exceptions thrown by the peer method are wrapped into InvocationTargetExceptions
+   * (as Method.invoke() does), so that we can tell them apart from the ones the
+   * argument spreading throws
+   */
+  protected static MethodHandle createInvoker (Method mth, NativePeer peer) {
+    try {
+      MethodHandle mh = MethodHandles.lookup().unreflect(mth);
+
+      if (!Modifier.isStatic(mth.getModifiers())) {
+        mh = mh.bindTo(peer);
+      }
+
+      MethodHandle wrapper = MethodHandles.filterArguments(
+              MethodHandles.throwException(mh.type().returnType(), InvocationTargetException.class),
+              0, WRAP_TARGET_EXCEPTION);
+      mh = MethodHandles.catchException(mh, Throwable.class, wrapper);
+
+      return mh.asSpreader(Object[].class, mth.getParameterCount()).asType(INVOKER_TYPE);
+
+    } catch (IllegalAccessException ilax) {
+      // we report this when the method gets called, as the reflection call did before
+      logger.warning(ilax.toString());
+      return null;
+    }
+  }
+
   public void replace( MethodInfo mi){
     mthTable.set(mi.globalId, this);
     mi.ci.putDeclaredMethod(this);
@@ -118,56 +177,23 @@ public class NativeMethodInfo extends MethodInfo {
                                         "cannot find native " + ci.getName() + '.' + getName());
     }
 
-    try {
-      args = nativeFrame.getArguments();
-
-      // this is the reflection call into the native peer
-      ret = mth.invoke(peer, args);
-
-      if (env.hasException()) {
-        // even though we should prefer throwing normal exceptionHandlers,
-        // sometimes it might be better/required to explicitly throw
-        // something that's not wrapped into a InvocationTargetException
-        // (e.g. InterruptedException), which is why there still is a
-        // MJIEnv.throwException()
-        return ti.throwException( env.popException());
-      }
-
-      StackFrame top = ti.getTopFrame();
-//      if (top == nativeFrame){ // no roundtrips, straight return
-      if (top.originatesFrom(nativeFrame)){ // could have changed attributes
-        NativeStackFrame ntop = (NativeStackFrame)top;
-
-        if (env.isInvocationRepeated()){
-          // don't advance
-          return ntop.getPC();
-
-        } else {
-          // we don't have to do a ti.topClone() because the last insn left
-          // is NATIVERETURN. Even if a listener creates a CG on it, it won't
-          // modify its StackFrame, which is then popped anyways
-
-          ntop.setReturnValue(ret);
-          ntop.setReturnAttr(env.getReturnAttribute());
+    if (invoker == null) {
+      return ti.createAndThrowException("java.lang.IllegalAccessException",
+                                        "calling " + ci.getName() + '.' + getName());
+    }
 
-          return ntop.getPC().getNext(); // that should be the NATIVERETURN
-        }
+    args = nativeFrame.getArguments();
 
-      } else {
-        // direct calls from within the native method, i.e. nativeFrame is not
-        // on top anymore, but its current instruction (invoke) will be reexecuted
-        // because DirectCallStackFrames don't advance the pc of the new top top upon return
-        return top.getPC();
-      }
+    try {
+      // this is the call into the native peer
+      ret = (Object) invoker.invokeExact(args);
 
-    } catch (IllegalArgumentException iax) {
-      logger.warning(iax.toString());
+    } catch (ClassCastException | IllegalArgumentException | NullPointerException x) {
+      // thrown by the argument spreading, i.e. the argument registers don't match
+      // the peer method, which therefore wasn't entered
+      logger.warning(x.toString());
       return ti.createAndThrowException("java.lang.IllegalArgumentException",
                                         "calling " + ci.getName() + '.' + getName());
-    } catch (IllegalAccessException ilax) {
-      logger.warning(ilax.toString());
-      return ti.createAndThrowException("java.lang.IllegalAccessException",
-                                        "calling " + ci.getName() + '.' + getName());
     } catch (InvocationTargetException itx) {
 
       // if loading a class throws an exception
@@ -184,6 +210,47 @@ public class NativeMethodInfo extends MethodInfo {
       // we don't try to hand them back to the application
       throw new JPFNativePeerException("exception in native method "
           + ci.getName() + '.' + getName(), itx.getTargetException());
+
+    } catch (Throwable t) {
+      // can't happen, the invoker wraps everything the peer method throws
+      throw new JPFNativePeerException("invoking native method "
+          + ci.getName() + '.' + getName(), t);
+    }
+
+    if (env.hasException()) {
+      // even though we should prefer throwing normal exceptionHandlers,
+      // sometimes it might be better/required to explicitly throw
+      // something that's not wrapped into a InvocationTargetException
+      // (e.g. InterruptedException), which is why there still is a
+      // MJIEnv.throwException()
+      return ti.throwException( env.popException());
+    }
+
+    StackFrame top = ti.getTopFrame();
+//    if (top == nativeFrame){ // no roundtrips, straight return
+    if (top.originatesFrom(nativeFrame)){ // could have changed attributes
+      NativeStackFrame ntop = (NativeStackFrame)top;
+
+      if (env.isInvocationRepeated()){
+        // don't advance
+        return ntop.getPC();
+
+      } else {
+        // we don't have to do a ti.topClone() because the last insn left
+        // is NATIVERETURN. Even if a listener creates a CG on it, it won't
+        // modify its StackFrame, which is then popped anyways
+
+        ntop.setReturnValue(ret);
+        ntop.setReturnAttr(env.getReturnAttribute());
+
+        return ntop.getPC().getNext(); // that should be the NATIVERETURN
+      }
+
+    } else {
+      // direct calls from within the native method, i.e. nativeFrame is not
+      // on top anymore, but its current instruction (invoke) will be reexecuted
+      // because DirectCallStackFrames don't advance the pc of the new top top upon return
+      return top.getPC();
     }
   }
 
@@ -110,6 +110,7 @@ public class OVHeap extends GenericSGOIDHeap {
         ei = ei.deepClone(); 
         // freshly created ElementInfos are not frozen, so we don't have to defreeze
         elementInfos.set(ref, ei);
+        markChanged(ref);
       }
 
       return ei;
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf.vm;
+
+import java.util.Arrays;
+
+/**
+ * the buffer that holds the captured SUT output of all transitions along the
+ * current path (see vm.capture_output).
+ *
+ * Transitions only store the position of their output within this buffer,
+ * which is truncated again when we backtrack. This means we neither print
+ * output that nobody looks at, nor create a String for each transition that
+ * had some output - Strings are only created if somebody asks for the output of
+ * a transition (e.g. to report an error trace), or if the transition is cloned
+ * to be stored outside of the current path
+ */
+public class OutputBuffer {
+
+  protected char[] data;
+  protected int length;
+
+  public OutputBuffer (int initialCapacity) {
+    data = new char[Math.max(initialCapacity, 16)];
+  }
+
+  public OutputBuffer () {
+    this(4096);
+  }
+
+  protected void ensureCapacity (int n) {
+    if (n > data.length) {
+      data = Arrays.copyOf(data, Math.max(n, data.length * 2));
+    }
+  }
+
+  public void append (String s) {
+    int len = s.length();
+    ensureCapacity(length + len);
+    s.getChars(0, len, data, length);
+    length += len;
+  }
+
+  public void append (char c) {
+    ensureCapacity(length + 1);
+    data[length++] = c;
+  }
+
+  public int length() {
+    return length;
+  }
+
+  public void setLength (int newLength) {
+    if (newLength < length) {
+      length = newLength;
+    }
+  }
+
+  public String toString (int start, int len) {
+    return new String(data, start, len);
+  }
+
+  @Override
+  public String toString() {
+    return new String(data, 0, length);
+  }
+}
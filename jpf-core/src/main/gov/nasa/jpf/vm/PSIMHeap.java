@@ -91,6 +91,7 @@ public class PSIMHeap extends GenericSGOIDHeap {
         ei.processReleaseActions();
         // <2do> still have to process finalizers here, which might make the object live again
         vm.notifyObjectReleased( ti, ei);
+        markChanged( ei.getObjectRef());
         return true;
       } 
     }
@@ -139,6 +140,7 @@ public class PSIMHeap extends GenericSGOIDHeap {
         ei = ei.deepClone(); 
         // freshly created ElementInfos are not frozen, so we don't have to defreeze
         elementInfos = elementInfos.set(ref, ei);
+        markChanged(ref);
       }
 
       return ei;
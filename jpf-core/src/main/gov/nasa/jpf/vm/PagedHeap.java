@@ -0,0 +1,298 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gov.nasa.jpf.vm;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.JPFConfigException;
+import gov.nasa.jpf.util.IntIterator;
+import gov.nasa.jpf.util.IntVector;
+import gov.nasa.jpf.util.PagedObjVector;
+import gov.nasa.jpf.util.SortedArrayIntSet;
+
+import java.util.Iterator;
+
+/**
+ * a SGOID heap that stores its ElementInfos in copy-on-write pages which are
+ * shared between the current state and all stored states that didn't change
+ * them.
+ *
+ * Storing a state copies the page directory and freezes the objects that were
+ * created or cloned since the last store (we keep a log of them). The first
+ * write into a page after that copies the page, so the memory and time we
+ * spend on mementos is proportional to the number of pages touched in a
+ * transition.
+ *
+ * Restoring re-installs the page directory. Pages that are the same as before
+ * hold the same (frozen) objects as the state we come from, so we only reset
+ * the transient attributes of the objects on pages that differ, and tell
+ * incremental serializers about their refs. The remaining transient state that
+ * other heaps reset for all objects is handled separately:
+ *  - locks: we keep the refs of objects with locked or blocked monitors (which
+ *    can only change in modifiable objects) and re-register only those with
+ *    their threads
+ *  - live bits: these are only used during gc, so we reset them at the start of
+ *    the next gc, which has to visit all live objects anyways
+ *  - sids: the CFSerializer does not depend on sids being reset
+ *
+ * The page size is set with 'vm.heap.page_bits' (log2 of the number of
+ * objects per page)
+ */
+public class PagedHeap extends GenericSGOIDHeap {
+
+  //--- state management
+  static class PagedMemento extends GenericSGOIDHeapMemento {
+    PagedObjVector.Snapshot<ElementInfo> eiSnap;
+    int nElements;
+    SortedArrayIntSet lockedRefs;
+
+    PagedMemento (PagedHeap heap) {
+      super(heap);
+
+      heap.freezeChanged();
+      eiSnap = heap.elementInfos.getSnapshot();
+      nElements = heap.nElements;
+      lockedRefs = (SortedArrayIntSet) heap.lockedRefs.clone();
+    }
+
+    @Override
+    public Heap restore(Heap inSitu) {
+      PagedHeap heap = (PagedHeap)inSitu;
+      boolean wasRestored = heap.elementsRestored;
+
+      super.restore( inSitu);
+
+      IntVector changedPages = heap.changedPages;
+      changedPages.clear();
+      heap.elementInfos.restore(eiSnap, changedPages);
+      heap.restoreChangedPages(changedPages);
+
+      // we know what changed, no need to tell incremental serializers otherwise
+      heap.elementsRestored = wasRestored;
+
+      heap.lockedRefs = (SortedArrayIntSet) lockedRefs.clone();
+      heap.restoreLockedObjects(changedPages);
+
+      heap.nElements = nElements;
+      heap.unfrozenRefs.clear(); // all restored objects are frozen
+      heap.liveBitsStale = true;
+
+      return heap;
+    }
+  }
+
+  //--- instance data
+
+  protected PagedObjVector<ElementInfo> elementInfos;
+
+  protected int nElements;
+
+  // refs of the objects that were created or cloned since the last store
+  protected IntVector unfrozenRefs;
+
+  // refs of the objects that had locked or blocked monitors when we last stored
+  protected SortedArrayIntSet lockedRefs;
+
+  // the pages that differed from the restored ones (reused)
+  protected IntVector changedPages;
+
+  // set if objects can have live bits of gc cycles from other paths
+  protected boolean liveBitsStale;
+
+  //--- constructors
+
+  public PagedHeap (Config config, KernelState ks){
+    super(config, ks);
+
+    int pageBits = config.getInt("vm.heap.page_bits", PagedObjVector.DEFAULT_PAGE_BITS);
+    if (pageBits < 1 || pageBits > 16) {
+      throw new JPFConfigException("vm.heap.page_bits out of range [1..16]: " + pageBits);
+    }
+
+    elementInfos = new PagedObjVector<ElementInfo>(pageBits);
+    unfrozenRefs = new IntVector();
+    lockedRefs = new SortedArrayIntSet();
+    changedPages = new IntVector();
+  }
+
+  //--- the container interface
+
+  @Override
+  public int size() {
+    return nElements;
+  }
+
+  @Override
+  protected void set (int index, ElementInfo ei) {
+    if (elementInfos.get(index) == null) {
+      nElements++;
+    }
+    elementInfos.set(index, ei);
+
+    if (!ei.isFrozen()) {
+      unfrozenRefs.add(index);
+    }
+  }
+
+  /**
+   * we treat ref <= 0 as NULL reference instead of throwing an exception
+   */
+  @Override
+  public ElementInfo get (int ref) {
+    if (ref <= 0) {
+      return null;
+    } else {
+      return elementInfos.get(ref);
+    }
+  }
+
+  @Override
+  public ElementInfo getModifiable (int ref) {
+    if (ref <= 0) {
+      return null;
+    } else {
+      ElementInfo ei = elementInfos.get(ref);
+
+      if (ei != null && ei.isFrozen()) {
+        ei = ei.deepClone();
+        // freshly created ElementInfos are not frozen, so we don't have to defreeze
+        elementInfos.set(ref, ei);
+        unfrozenRefs.add(ref);
+        markChanged(ref);
+      }
+
+      return ei;
+    }
+  }
+
+  @Override
+  protected void remove(int ref) {
+    if (elementInfos.remove(ref) != null) {
+      nElements--;
+      lockedRefs.remove(ref);
+    }
+  }
+
+  protected void freezeChanged() {
+    int n = unfrozenRefs.size();
+
+    for (int i = 0; i < n; i++) {
+      int ref = unfrozenRefs.get(i);
+      ElementInfo ei = elementInfos.get(ref);
+      if (ei != null) {
+        ei.freeze();
+
+        // monitors can only change in unfrozen objects
+        if (ei.getLockingThread() != null || ei.getMonitor().hasLockedThreads()) {
+          lockedRefs.add(ref);
+        } else {
+          lockedRefs.remove(ref);
+        }
+      }
+    }
+
+    unfrozenRefs.clear();
+  }
+
+  /**
+   * reset the transient attributes of all objects on restored pages that are
+   * different from the ones we had before, and record their refs as changed
+   */
+  protected void restoreChangedPages (IntVector pages) {
+    int pageBits = elementInfos.getPageBits();
+    int pageSize = elementInfos.getPageSize();
+    int n = pages.size();
+
+    for (int i = 0; i < n; i++) {
+      int ref = pages.get(i) << pageBits;
+      int max = ref + pageSize;
+
+      for (; ref < max; ref++) {
+        ElementInfo ei = elementInfos.get(ref);
+        if (ei != null) {
+          ElementInfo.restorer.process(ei);
+        }
+        if (changedRefs != null) {
+          changedRefs.add(ref);
+        }
+      }
+    }
+  }
+
+  /**
+   * threads reset their lock info upon restore, which has to be re-created from
+   * the locked objects. Those on changed pages were already processed
+   */
+  protected void restoreLockedObjects (IntVector pages) {
+    int pageBits = elementInfos.getPageBits();
+
+    for (IntIterator it = lockedRefs.intIterator(); it.hasNext(); ) {
+      int ref = it.next();
+      if (!pages.contains(ref >>> pageBits)) {
+        ElementInfo ei = elementInfos.get(ref);
+        if (ei != null) {
+          ei.updateLockingInfo();
+        }
+      }
+    }
+  }
+
+  @Override
+  public void gc() {
+    if (liveBitsStale) {
+      // restored objects can have live bits of gc cycles on other paths
+      for (ElementInfo ei : elementInfos.elements()) {
+        ei.setAlive(false);
+      }
+      liveBitsStale = false;
+    }
+
+    super.gc();
+  }
+
+  //--- iterators
+
+  @Override
+  public Iterator<ElementInfo> iterator() {
+    return elementInfos.iterator();
+  }
+
+  @Override
+  public Iterable<ElementInfo> liveObjects() {
+    return elementInfos.elements();
+  }
+
+  @Override
+  public void resetVolatiles() {
+    // we don't have any
+  }
+
+  @Override
+  public void restoreVolatiles() {
+    // we don't have any
+  }
+
+  @Override
+  public Memento<Heap> getMemento(MementoFactory factory) {
+    return factory.getMemento(this);
+  }
+
+  @Override
+  public Memento<Heap> getMemento(){
+    return new PagedMemento(this);
+  }
+}
@@ -17,10 +17,18 @@
  */
 package gov.nasa.jpf.vm;
 
+import gov.nasa.jpf.util.ImmutableList;
+
 
 /**
  * NOTE - making VMStates fully restorable is currently very
  * expensive and should only be done on a selective basis
+ *
+ * To keep this at least proportional to what changed, the path is not
+ * stored as a full copy but as an immutable list of cloned transitions that is
+ * shared with the last restored state (which usually is the parent state if
+ * this is used by a HeuristicSearch). Compact states also share the CG path
+ * and don't keep the backtrack data alive (see VM.getCompactRestorableState())
  */
 public class RestorableVMState {
   
@@ -32,17 +40,27 @@ public class RestorableVMState {
    * to restore a state. Since this is really expensive, it has to be done
    * on demand, with varying degrees of information
    */
-  Path path;
+  ImmutableList<Transition> transitions; // last transition first
+  int pathLength;
+  String application;
   
   Backtracker.RestorableState bkstate;
   
   VM vm;
   
   RestorableVMState (VM vm) {
+    this(vm, false);
+  }
+
+  RestorableVMState (VM vm, boolean isCompact) {
     this.vm = vm;
 
-    path = vm.getClonedPath();
-    bkstate = vm.getBacktracker().getRestorableState();
+    application = vm.path.getApplication();
+    pathLength = vm.path.size();
+    transitions = vm.getStoredTransitions();
+
+    Backtracker backtracker = vm.getBacktracker();
+    bkstate = isCompact ? backtracker.getCompactRestorableState() : backtracker.getRestorableState();
     lastTransition = vm.lastTrailInfo;
   }
   
@@ -54,7 +72,21 @@ public class RestorableVMState {
     return lastTransition;
   }
   
+  /**
+   * create a new Path from our stored transitions. Note this is not cached, we
+   * don't want to keep the copy alive
+   */
   public Path getPath () {
+    Transition[] ts = new Transition[pathLength];
+    int i = pathLength;
+    for (ImmutableList<Transition> l = transitions; l != null; l = l.tail) {
+      ts[--i] = l.head;
+    }
+
+    Path path = new Path(application);
+    for (Transition t : ts) {
+      path.add( (Transition)t.clone());
+    }
     return path;
   }
   
@@ -2121,6 +2121,19 @@ public abstract class StackFrame implements Cloneable {
     top--;
   }
 
+  /**
+   * store a non-reference value without attribute in a local variable, which is
+   * the same as pushing and then storing it as an operand
+   */
+  public void storeLocalValue (int index, int v){
+    slots[index] = v;
+    isRef.clear(index);
+
+    if (attrs != null){
+      attrs[index] = null;
+    }
+  }
+
   public void storeLongOperand (int index){
     int t = top-1;
     int i = index;
@@ -39,5 +39,21 @@ public interface StateSet {
    * how many states already in the set.  also, index of next newly-added state.
    */
   int size ();
+
+  /**
+   * the probability that the next new state is considered to be visited, or
+   * -1 if this set does not omit states
+   */
+  default double getOmissionProbability() {
+    return -1;
+  }
+
+  /**
+   * estimated number of states that were omitted so far, or -1 if this set
+   * does not omit states
+   */
+  default double getExpectedOmissions() {
+    return -1;
+  }
 }
 
@@ -110,6 +110,13 @@ public abstract class SystemClassLoaderInfo extends ClassLoaderInfo {
   public void addAttributor (Attributor a){
     attributors.add(a);
   }
+
+  /**
+   * called by the VM after the JPF run is finished
+   */
+  public void cleanUp (){
+    // nothing here
+  }
   
   /**
    * to be called on each ClassInfo created in the realm of this SystemClassLoader
@@ -23,6 +23,7 @@ import gov.nasa.jpf.util.TypeSpecMatcher;
 import gov.nasa.jpf.vm.choice.BreakGenerator;
 
 import java.io.PrintWriter;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 
 
@@ -144,6 +145,44 @@ public class SystemState {
       ss.curCg = cloneCG(curCg);
     }
     
+    /**
+     * the compact version that only clones the CGs that were created or
+     * advanced since the last restored state, and shares the (never modified)
+     * CGs of the memento it was restored from
+     */
+    RestorableMemento (SystemState ss, IdentityHashMap<ChoiceGenerator<?>,ChoiceGenerator<?>> storedCgs){
+      super(ss);
+
+      curCg = cloneCG( ss.curCg, storedCgs, null, null);
+      nextCg = cloneCG( ss.nextCg, storedCgs, ss.curCg, curCg);
+    }
+
+    /**
+     * clone the CG path of 'cg' until we hit a CG that was restored from a stored
+     * CG, which we use instead. If we hit 'liveCg', we link to its 'liveClone'
+     */
+    static ChoiceGenerator<?> cloneCG (ChoiceGenerator<?> cg, IdentityHashMap<ChoiceGenerator<?>,ChoiceGenerator<?>> storedCgs,
+                                       ChoiceGenerator<?> liveCg, ChoiceGenerator<?> liveClone){
+      if (cg == null){
+        return null;
+      } else if (cg == liveCg){
+        return liveClone;
+      }
+
+      ChoiceGenerator<?> stored = storedCgs.get(cg);
+      if (stored != null){
+        return stored;
+      }
+
+      try {
+        ChoiceGenerator<?> clone = cg.clone();
+        clone.setPreviousChoiceGenerator( cloneCG( cg.getPreviousChoiceGenerator(), storedCgs, liveCg, liveClone));
+        return clone;
+      } catch (CloneNotSupportedException cnsx){
+        throw new JPFException("clone failed: " + cg);
+      }
+    }
+
     /**
      * this one is used if we restore and then advance, i.e. it might change the CG on
      * the next advance (if nextCg was set)
@@ -153,6 +192,7 @@ public class SystemState {
       // if we don't clone them on restore, it means we can only restore this memento once
       ss.nextCg = cloneCG(nextCg);
       ss.curCg = cloneCG(curCg);
+      ss.setRestored(this);
 
       ss.atomicLevel = atomicLevel;
       ss.id = id;
@@ -168,6 +208,13 @@ public class SystemState {
 
   int id;                   /** the state id */
 
+  // the memento we restored last and the CG clones we got from it, which is what
+  // compact RestorableMementos of subsequent states share (mapped lazily)
+  RestorableMemento restoredMemento;
+  ChoiceGenerator<?> restoredCurCg;
+  ChoiceGenerator<?> restoredNextCg;
+  IdentityHashMap<ChoiceGenerator<?>,ChoiceGenerator<?>> restoredCgs;
+
   ChoiceGenerator<?> nextCg;   // the ChoiceGenerator for the next transition
   ChoiceGenerator<?>  curCg;   // the ChoiceGenerator used in the current transition
   ThreadInfo execThread;    // currently executing thread, reset by ThreadChoiceGenerators
@@ -274,6 +321,10 @@ public class SystemState {
     recordSteps = cond;
   }
 
+  public boolean isRecordingSteps () {
+    return recordSteps;
+  }
+
   /**
    * use those with extreme care, it overrides scheduling choices
    */
@@ -553,6 +604,69 @@ public class SystemState {
     ((Memento) backtrackData).restore( this);
   }
 
+  /**
+   * a RestorableMemento that shares the CGs of the last restored state. This is
+   * only valid as long as we don't backtrack beyond the restored state, which
+   * the VM tells us by calling clearRestored()
+   */
+  public Object getCompactRestoreData(){
+    return new RestorableMemento(this, getRestoredCgs());
+  }
+
+  void setRestored (RestorableMemento m){
+    restoredMemento = m;
+    restoredCurCg = curCg;
+    restoredNextCg = nextCg;
+    restoredCgs = null;
+  }
+
+  void clearRestored (){
+    restoredMemento = null;
+    restoredCurCg = null;
+    restoredNextCg = null;
+    restoredCgs = null;
+  }
+
+  protected IdentityHashMap<ChoiceGenerator<?>,ChoiceGenerator<?>> getRestoredCgs(){
+    if (restoredCgs == null){
+      restoredCgs = new IdentityHashMap<ChoiceGenerator<?>,ChoiceGenerator<?>>();
+
+      if (restoredMemento != null){
+        ChoiceGenerator<?> storedCur = restoredMemento.curCg;
+        ChoiceGenerator<?> storedNext = restoredMemento.nextCg;
+
+        if (storedNext != null){
+          // the (cascaded) nextCgs get advanced, but not the path they are attached to
+          addRestoredCgs( restoredNextCg, storedNext, getPathLength(storedNext) - getPathLength(storedCur));
+          addRestoredCgs( restoredCurCg, storedCur, 0);
+        } else {
+          // if there is no nextCg the restored curCg gets advanced
+          addRestoredCgs( restoredCurCg, storedCur, 1);
+        }
+      }
+    }
+
+    return restoredCgs;
+  }
+
+  static int getPathLength (ChoiceGenerator<?> cg){
+    int n = 0;
+    for (; cg != null; cg = cg.getPreviousChoiceGenerator()){
+      n++;
+    }
+    return n;
+  }
+
+  void addRestoredCgs (ChoiceGenerator<?> restored, ChoiceGenerator<?> stored, int nSkip){
+    for (int i=0; restored != null && stored != null; i++){
+      if (i >= nSkip){
+        restoredCgs.put(restored, stored);
+      }
+      restored = restored.getPreviousChoiceGenerator();
+      stored = stored.getPreviousChoiceGenerator();
+    }
+  }
+
   public void retainAttributes (boolean b){
     retainAttributes = b;
   }
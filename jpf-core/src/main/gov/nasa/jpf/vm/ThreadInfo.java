@@ -30,6 +30,7 @@ import gov.nasa.jpf.util.JPFLogger;
 import gov.nasa.jpf.util.Predicate;
 import gov.nasa.jpf.util.StringSetMatcher;
 import gov.nasa.jpf.vm.bytecode.ReturnInstruction;
+import gov.nasa.jpf.vm.bytecode.SuperInstruction;
 import gov.nasa.jpf.vm.choice.BreakGenerator;
 import java.io.File;
 import java.io.PrintWriter;
@@ -319,6 +320,12 @@ public class ThreadInfo extends InfoObject
    */
   static int maxTransitionLength;
 
+  /**
+   * do we execute sequences of thread local instructions without notifications
+   * if nobody is listening
+   */
+  static boolean fastPath;
+
   /**
    * reset ThreadInfo statics (e.g. to reinitialize JPF) 
    */
@@ -336,6 +343,7 @@ public class ThreadInfo extends InfoObject
     passUncaughtHandler = config.getBoolean( "vm.pass_uncaught_handler", true);
 
     maxTransitionLength = config.getInt("vm.max_transition_length", 5000);
+    fastPath = config.getBoolean("vm.fast_path", true);
 
     return true;
   }
@@ -1858,7 +1866,14 @@ public class ThreadInfo extends InfoObject
       // the transition was explicitly marked as ignored, or we have reached a
       // max insn count and preempt the thread upon the next available backjump
       while (pc != null) {
-        nextPc = executeInstruction();
+        // instruction tracing (FINER) is done in executeInstruction()
+        if (fastPath && !vm.hasInstructionListeners() && !ss.isRecordingSteps()
+            && !log.isLoggable(Level.FINER)
+            && (pendingSUTExceptionRequest == null) && pc.isThreadLocal(this)){
+          nextPc = executeThreadLocalInstructions(ss);
+        } else {
+          nextPc = executeInstruction();
+        }
 
         if (ss.breakTransition()) {
           if (ss.extendTransition()){
@@ -1881,6 +1896,65 @@ public class ThreadInfo extends InfoObject
   }
 
 
+  /**
+   * the fast path of executeTransition(), which executes instructions as long
+   * as they are thread local, using superinstructions where possible. Since nobody is listening,
+   * we don't record steps and don't trace instructions, the only thing we skip compared to
+   * executeInstruction() is overhead (notifications, SUT exception requests and probe checks
+   * for each instruction).
+   *
+   * Returns the next instruction to execute, or the first one that broke the transition
+   */
+  protected Instruction executeThreadLocalInstructions (SystemState ss) {
+    Instruction pc = getPC();
+
+    resetTransientAttributes();
+
+    do {
+      // use the superinstruction starting here if it is thread local too
+      Instruction insn = pc;
+      SuperInstruction si = pc.getSuperInstruction();
+      if (si != null && si.isThreadLocal(this)) {
+        insn = si;
+      }
+
+      nextPc = null;
+      try {
+        nextPc = insn.execute(this);
+      } catch (ClassInfoException cie) {
+        nextPc = this.createAndThrowException(cie.getExceptionClass(), cie.getMessage());
+      }
+
+      if (insn == si) {
+        int n = si.getNumberOfInstructions();
+        executedInstructions += n;
+        for (int i = 0; i < n; i++) {
+          ss.recordExecutionStep(si.getInstruction(i));
+        }
+      } else {
+        executedInstructions++;
+        ss.recordExecutionStep(pc);
+      }
+      insn.cleanupTransients();
+
+      if (top == null) {
+        nextPc = null;
+        break;
+      }
+      setPC(nextPc);
+
+      if (ss.breakTransition()) {
+        break;
+      }
+      pc = nextPc;
+
+    } while (pc != null && pc.isThreadLocal(this));
+
+    vm.getSearch().checkAndResetProbeRequest();
+
+    return nextPc;
+  }
+
   protected void resetTransientAttributes(){
     attributes &= ~(ATTR_SKIP_INSN_EXEC | ATTR_SKIP_INSN_LOG | ATTR_ENABLE_EMPTY_TRANSITION);
   }
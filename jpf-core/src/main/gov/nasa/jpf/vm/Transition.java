@@ -35,6 +35,12 @@ public class Transition implements Iterable<Step>, Cloneable {
   private Object annotation;
   String         output;
 
+  // if the output was captured in the (shared) OutputBuffer of the VM, we only
+  // store its position and create the String on demand
+  OutputBuffer   outputBuffer;
+  int            outputStart;
+  int            outputLength;
+
   private int stateId = StateSet.UNKNOWN_ID;
 
   public Transition (ChoiceGenerator<?> cg, ThreadInfo ti) {
@@ -46,6 +52,13 @@ public class Transition implements Iterable<Step>, Cloneable {
   public Object clone() {
     try {
       Transition t = (Transition)super.clone();
+
+      // the OutputBuffer gets truncated when we backtrack, so clones have to
+      // keep their own copy of the output
+      if (outputBuffer != null){
+        t.output = getOutput();
+        t.outputBuffer = null;
+      }
       
       // the deep copy references
       t.cg = cg.clone();
@@ -76,6 +89,27 @@ public class Transition implements Iterable<Step>, Cloneable {
 
   public void setOutput (String s) {
     output = s;
+    outputBuffer = null;
+  }
+
+  /**
+   * set output that is kept in a OutputBuffer. This does not create a String,
+   * but the buffer contents in [start,start+length[ have to remain unchanged
+   * for as long as this transition is in the current path
+   */
+  public void setOutput (OutputBuffer buf, int start, int length) {
+    output = null;
+    outputBuffer = buf;
+    outputStart = start;
+    outputLength = length;
+  }
+
+  /**
+   * @return the position of this transition's output in the OutputBuffer, or -1
+   * if the output is not kept in the buffer
+   */
+  public int getOutputStart (OutputBuffer buf) {
+    return (outputBuffer == buf) ? outputStart : -1;
   }
 
   public void setAnnotation (Object o) {
@@ -87,6 +121,9 @@ public class Transition implements Iterable<Step>, Cloneable {
   }
 
   public String getOutput () {
+    if (output == null && outputBuffer != null){
+      output = outputBuffer.toString(outputStart, outputLength);
+    }
     return output;
   }
 
@@ -22,16 +22,26 @@ import gov.nasa.jpf.JPF;
 import gov.nasa.jpf.JPFConfigException;
 import gov.nasa.jpf.JPFException;
 import gov.nasa.jpf.JPFListenerException;
+import gov.nasa.jpf.ListenerAdapter;
+import gov.nasa.jpf.PropertyListenerAdapter;
 import gov.nasa.jpf.jvm.ClassFile;
 import gov.nasa.jpf.search.Search;
+import gov.nasa.jpf.util.AsyncOutputStream;
+import gov.nasa.jpf.util.ImmutableList;
 import gov.nasa.jpf.util.IntTable;
 import gov.nasa.jpf.util.JPFLogger;
 import gov.nasa.jpf.util.Misc;
 import gov.nasa.jpf.util.Predicate;
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
 import java.io.PrintWriter;
+import java.lang.reflect.Method;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -90,6 +100,19 @@ public abstract class VM {
   protected Path path;  /** execution path to current state */
   protected StringBuilder out;  /** buffer to store output along path execution */
 
+  // if we capture output (vm.capture_output), this is used instead of 'out'. Transitions
+  // only store positions within this buffer, which is truncated when we backtrack
+  protected OutputBuffer outputBuffer;
+  protected int outputMark;      // start of the pending (not yet stored) output
+  protected int outputSample;    // print the output of every n-th end state (0: none)
+  protected int nEndStates;
+  protected PrintStream outputFile; // where tree and sampled output goes, if not System.out
+
+  // the stored transitions of the last restored state, which are shared by
+  // the RestorableVMStates we create as long as we don't backtrack beyond it
+  protected ImmutableList<Transition> restoredTransitions;
+  protected int restoredPathLength = -1;
+
   /**
    * various caches for VMListener state acquisition. NOTE - these are only
    * valid during notification
@@ -121,6 +144,12 @@ public abstract class VM {
    creating objects on each notification */
   protected VMListener[] listeners = new VMListener[0];
 
+  /** the subsets of listeners that actually implement the per-instruction notifications.
+   These are called for every executed bytecode, so we don't want to pay for adapter
+   listeners that just inherit the empty methods */
+  protected VMListener[] executeInsnListeners = new VMListener[0];
+  protected VMListener[] insnExecutedListeners = new VMListener[0];
+
   /** did we get a new transition */
   protected boolean transitionOccurred;
 
@@ -174,6 +203,7 @@ public abstract class VM {
     treeOutput = config.getBoolean("vm.tree_output", true);
     // we have to defer setting pathOutput until we have a reporter registered
     indentOutput = config.getBoolean("vm.indent_output",false);
+    initOutputCapture(config);
 
     processFinalizers = config.getBoolean("vm.process_finalizers", false);
     
@@ -253,6 +283,34 @@ public abstract class VM {
     // peer classes get initialized upon NativePeer creation
   }
 
+  protected void initOutputCapture (Config config){
+    if (config.getBoolean("vm.capture_output", false)) {
+      // we don't print as we go, but keep the output of the current path so that
+      // it can be reported for errors (or sampled end states)
+      treeOutput = false;
+      pathOutput = true;
+      outputBuffer = new OutputBuffer();
+      outputSample = config.getInt("vm.capture_output.sample", 0);
+    }
+
+    String fileName = config.getString("vm.output_file");
+    if (fileName != null) {
+      try {
+        outputFile = new PrintStream(new AsyncOutputStream(
+                new BufferedOutputStream(new FileOutputStream(fileName))), false);
+      } catch (IOException iox) {
+        throw new JPFConfigException("cannot open vm.output_file: " + fileName, iox);
+      }
+    }
+  }
+
+  /**
+   * the stream that receives tree output and sampled path output
+   */
+  public PrintStream getOutputStream() {
+    return (outputFile != null) ? outputFile : System.out;
+  }
+
   protected void initTimeModel (Config config){
     Class<?>[] argTypes = { VM.class, Config.class };
     Object[] args = { this, config };
@@ -263,7 +321,14 @@ public abstract class VM {
    * called after the JPF run is finished. Shouldn't be public, but is called by JPF
    */
   public void cleanUp(){
-    // nothing yet
+    for (ApplicationContext appCtx : getApplicationContexts()){
+      appCtx.getSystemClassLoader().cleanUp();
+    }
+
+    if (outputFile != null) {
+      outputFile.close();
+      outputFile = null;
+    }
   }
   
   protected boolean getPlatformEndianness (Config config){
@@ -660,6 +725,35 @@ public abstract class VM {
   public void addListener (VMListener newListener) {
     log.info("VMListener added: ", newListener);
     listeners = Misc.appendElement(listeners, newListener);
+
+    if (implementsNotification(newListener, "executeInstruction", VM.class, ThreadInfo.class, Instruction.class)) {
+      executeInsnListeners = Misc.appendElement(executeInsnListeners, newListener);
+    }
+    if (implementsNotification(newListener, "instructionExecuted", VM.class, ThreadInfo.class, Instruction.class, Instruction.class)) {
+      insnExecutedListeners = Misc.appendElement(insnExecutedListeners, newListener);
+    }
+  }
+
+  /**
+   * does the listener class (or any of its superclasses) override the respective notification
+   * method, i.e. is it not just the empty method inherited from one of our adapters
+   */
+  protected static boolean implementsNotification (VMListener listener, String mthName, Class<?>... argTypes) {
+    try {
+      Method m = listener.getClass().getMethod(mthName, argTypes);
+      Class<?> declCls = m.getDeclaringClass();
+      return (declCls != ListenerAdapter.class) && (declCls != PropertyListenerAdapter.class);
+
+    } catch (NoSuchMethodException x) {
+      return true; // can't happen for a VMListener, but better safe than sorry
+    }
+  }
+
+  /**
+   * do we have listeners for executeInstruction() or instructionExecuted() notifications
+   */
+  public boolean hasInstructionListeners () {
+    return (executeInsnListeners.length > 0) || (insnExecutedListeners.length > 0);
   }
 
   public boolean hasListenerOfType (Class<?> listenerCls) {
@@ -672,6 +766,8 @@ public abstract class VM {
   
   public void removeListener (VMListener removeListener) {
     listeners = Misc.removeElement(listeners, removeListener);
+    executeInsnListeners = Misc.removeElement(executeInsnListeners, removeListener);
+    insnExecutedListeners = Misc.removeElement(insnExecutedListeners, removeListener);
   }
 
   public void setTraceReplay (boolean isReplay) {
@@ -787,9 +883,13 @@ public abstract class VM {
   }
 
   protected void notifyExecuteInstruction (ThreadInfo ti, Instruction insn) {
+    if (executeInsnListeners.length == 0) {
+      return; // the common case, don't even enter the try block
+    }
+
     try {
-      for (int i = 0; i < listeners.length; i++) {
-        listeners[i].executeInstruction(this, ti, insn);
+      for (int i = 0; i < executeInsnListeners.length; i++) {
+        executeInsnListeners[i].executeInstruction(this, ti, insn);
       }
     } catch (UncaughtException x) {
       throw x;
@@ -801,10 +901,13 @@ public abstract class VM {
   }
 
   protected void notifyInstructionExecuted (ThreadInfo ti, Instruction insn, Instruction nextInsn) {
+    if (insnExecutedListeners.length == 0) {
+      return;
+    }
+
     try {
-      //listener.instructionExecuted(this);
-      for (int i = 0; i < listeners.length; i++) {
-        listeners[i].instructionExecuted(this, ti, nextInsn, insn);
+      for (int i = 0; i < insnExecutedListeners.length; i++) {
+        insnExecutedListeners[i].instructionExecuted(this, ti, nextInsn, insn);
       }
     } catch (UncaughtException x) {
       throw x;
@@ -1250,6 +1353,34 @@ public abstract class VM {
     return path.size();
   }
 
+  /**
+   * the current path as an immutable list of cloned transitions (last transition
+   * first), sharing the stored transitions of the last restored state
+   */
+  ImmutableList<Transition> getStoredTransitions () {
+    ImmutableList<Transition> list = null;
+    int n = path.size();
+    int nShared = 0;
+
+    if (restoredPathLength >= 0){
+      list = restoredTransitions;
+      nShared = restoredPathLength;
+    }
+
+    if (n > nShared){
+      Transition[] tail = new Transition[n - nShared];
+      Iterator<Transition> it = path.descendingIterator();
+      for (int i=tail.length-1; i>=0; i--){
+        tail[i] = (Transition) it.next().clone();
+      }
+      for (Transition t : tail){
+        list = new ImmutableList<Transition>(t, list);
+      }
+    }
+
+    return list;
+  }
+
   public ThreadList getThreadList () {
     return getKernelState().getThreadList();
   }
@@ -1263,7 +1394,18 @@ public abstract class VM {
    * Bundles up the state of the system for export
    */
   public RestorableVMState getRestorableState () {
-    return new RestorableVMState(this);
+    return new RestorableVMState(this, false);
+  }
+
+  /**
+   * a restorable state that doesn't support backtracking beyond it once it
+   * is restored, which is enough for searches that only use restored states
+   * to generate their successors. Such states don't keep the backtrack data of
+   * their path alive, and share the transitions and CGs of their path with the
+   * last restored state, i.e. their size mostly depends on the KernelState
+   */
+  public RestorableVMState getCompactRestorableState () {
+    return new RestorableVMState(this, true);
   }
 
   /**
@@ -1391,7 +1533,7 @@ public abstract class VM {
   
   public void print (String s) {
     if (treeOutput) {
-      System.out.print(s);
+      getOutputStream().print(s);
     }
 
     if (pathOutput) {
@@ -1408,10 +1550,10 @@ public abstract class VM {
           indent.append('|').append(i);
         }
         indent.append("|").append(s);
-        System.out.println(indent);
+        getOutputStream().println(indent);
       }
       else {
-        System.out.println(s);
+        getOutputStream().println(s);
       }
     }
 
@@ -1423,7 +1565,7 @@ public abstract class VM {
 
   public void print (boolean b) {
     if (treeOutput) {
-      System.out.print(b);
+      getOutputStream().print(b);
     }
 
     if (pathOutput) {
@@ -1433,7 +1575,7 @@ public abstract class VM {
 
   public void print (char c) {
     if (treeOutput) {
-      System.out.print(c);
+      getOutputStream().print(c);
     }
 
     if (pathOutput) {
@@ -1443,7 +1585,7 @@ public abstract class VM {
 
   public void print (int i) {
     if (treeOutput) {
-      System.out.print(i);
+      getOutputStream().print(i);
     }
 
     if (pathOutput) {
@@ -1453,7 +1595,7 @@ public abstract class VM {
 
   public void print (long l) {
     if (treeOutput) {
-      System.out.print(l);
+      getOutputStream().print(l);
     }
 
     if (pathOutput) {
@@ -1463,7 +1605,7 @@ public abstract class VM {
 
   public void print (double d) {
     if (treeOutput) {
-      System.out.print(d);
+      getOutputStream().print(d);
     }
 
     if (pathOutput) {
@@ -1473,7 +1615,7 @@ public abstract class VM {
 
   public void print (float f) {
     if (treeOutput) {
-      System.out.print(f);
+      getOutputStream().print(f);
     }
 
     if (pathOutput) {
@@ -1483,7 +1625,7 @@ public abstract class VM {
 
   public void println () {
     if (treeOutput) {
-      System.out.println();
+      getOutputStream().println();
     }
 
     if (pathOutput) {
@@ -1493,6 +1635,10 @@ public abstract class VM {
 
 
   void appendOutput (String s) {
+    if (outputBuffer != null) {
+      outputBuffer.append(s);
+      return;
+    }
     if (out == null) {
       out = new StringBuilder();
     }
@@ -1500,6 +1646,10 @@ public abstract class VM {
   }
 
   void appendOutput (char c) {
+    if (outputBuffer != null) {
+      outputBuffer.append(c);
+      return;
+    }
     if (out == null) {
       out = new StringBuilder();
     }
@@ -1510,6 +1660,10 @@ public abstract class VM {
    * get the pending output (not yet stored in the path)
    */
   public String getPendingOutput() {
+    if (outputBuffer != null) {
+      int len = outputBuffer.length() - outputMark;
+      return (len > 0) ? outputBuffer.toString(outputMark, len) : null;
+    }
     if (out != null && out.length() > 0){
       return out.toString();
     } else {
@@ -1531,6 +1685,21 @@ public abstract class VM {
                            ss.getChoiceGenerators(), verbose);
   }
 
+  /**
+   * print the output of all transitions in the current path (used for sampled
+   * end states if we capture output)
+   */
+  protected void printPathOutput () {
+    PrintStream ps = getOutputStream();
+    ps.printf("====================================================== output of path %d\n", nEndStates);
+    for (Transition t : path) {
+      String s = t.getOutput();
+      if (s != null) {
+        ps.print(s);
+      }
+    }
+  }
+
   public void storePathOutput () {
     pathOutput = true;
   }
@@ -1641,9 +1810,23 @@ public abstract class VM {
       if (CHECK_CONSISTENCY) checkConsistency(false);
       
       // restore the path
+      Transition t = path.getLast();
       path.removeLast();
+      if (outputBuffer != null) {
+        int start = (t != null) ? t.getOutputStart(outputBuffer) : -1;
+        if (start >= 0) {
+          outputBuffer.setLength(start);
+        }
+        outputMark = outputBuffer.length();
+      }
       lastTrailInfo = path.getLast();
 
+      if (path.size() < restoredPathLength){ // we left the restored state
+        restoredTransitions = null;
+        restoredPathLength = -1;
+        ss.clearRestored();
+      }
+
       return true;
       
     } else {
@@ -1668,7 +1851,14 @@ public abstract class VM {
       // but this might not be our only annotation in the future
 
       // did we have output during the last transition? If yes, add it
-      if ((out != null) && (out.length() > 0)) {
+      if (outputBuffer != null) {
+        int len = outputBuffer.length() - outputMark;
+        if (len > 0) {
+          t.setOutput( outputBuffer, outputMark, len);
+          outputMark += len;
+        }
+
+      } else if ((out != null) && (out.length() > 0)) {
         t.setOutput( out.toString());
         out.setLength(0);
       }
@@ -1729,6 +1919,12 @@ public abstract class VM {
       updatePath();
 
       if (!isIgnoredState()) {
+        if (outputSample > 0 && isEndState()) {
+          if ((++nEndStates % outputSample) == 0) {
+            printPathOutput();
+          }
+        }
+
         // if this is ignored we are going to backtrack anyways
         // matching states out of ignored transitions is also not a good idea
         // because this transition is usually incomplete
@@ -1770,11 +1966,20 @@ public abstract class VM {
 
 
   public void restoreState (RestorableVMState state) {
-    if (state.path == null) {
+    if (state.bkstate == null) {
       throw new JPFException("tried to restore partial VMState: " + state);
     }
     backtracker.restoreState(state.getBkState());
-    path = state.path.clone();
+    path = state.getPath();
+
+    if (outputBuffer != null) {
+      // the transitions of restored paths are clones that have their own output
+      outputBuffer.setLength(0);
+      outputMark = 0;
+    }
+
+    restoredTransitions = state.transitions;
+    restoredPathLength = state.pathLength;
   }
 
   public void activateGC () {
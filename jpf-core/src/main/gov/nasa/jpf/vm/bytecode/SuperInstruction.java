@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf.vm.bytecode;
+
+import gov.nasa.jpf.vm.Instruction;
+
+/**
+ * abstract root for instructions that execute a fixed sequence of consecutive
+ * instructions of a method in one step.
+ *
+ * SuperInstructions are not stored in the method code. They get attached to the
+ * first instruction of their sequence (Instruction.setSuperInstruction()), which
+ * leaves all other instructions of the sequence as potential branch targets. Only
+ * the fast path of ThreadInfo.executeTransition() uses them, i.e. nobody observes
+ * the individual instructions. It still counts and records the fused instructions
+ * as separate steps
+ */
+public abstract class SuperInstruction extends Instruction {
+
+  protected Instruction[] insns;
+  protected Instruction next; // the instruction following the sequence
+
+  protected SuperInstruction (Instruction[] insns) {
+    this.insns = insns;
+
+    Instruction first = insns[0];
+    setMethodInfo(first.getMethodInfo());
+    setLocation(first.getInstructionIndex(), first.getPosition());
+  }
+
+  public int getNumberOfInstructions() {
+    return insns.length;
+  }
+
+  public Instruction getInstruction (int i) {
+    return insns[i];
+  }
+
+  /**
+   * the instruction after the sequence, which is where we continue if we don't branch
+   */
+  protected Instruction getFollowingInstruction() {
+    if (next == null) {
+      next = mi.getInstruction(insnIndex + insns.length);
+    }
+    return next;
+  }
+
+  @Override
+  public int getByteCode() {
+    return insns[0].getByteCode();
+  }
+
+  @Override
+  public int getLength() {
+    int len = 0;
+    for (Instruction insn : insns) {
+      len += insn.getLength();
+    }
+    return len;
+  }
+
+  @Override
+  public void cleanupTransients() {
+    for (Instruction insn : insns) {
+      insn.cleanupTransients();
+    }
+  }
+
+  @Override
+  public String getMnemonic() {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < insns.length; i++) {
+      if (i > 0) {
+        sb.append('_');
+      }
+      sb.append(insns[i].getMnemonic());
+    }
+    return sb.toString();
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("fused(");
+    for (int i = 0; i < insns.length; i++) {
+      if (i > 0) {
+        sb.append(", ");
+      }
+      sb.append(insns[i]);
+    }
+    sb.append(')');
+    return sb.toString();
+  }
+}
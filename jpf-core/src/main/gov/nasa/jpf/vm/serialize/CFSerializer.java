@@ -47,11 +47,13 @@ import gov.nasa.jpf.vm.ThreadList;
  */
 public class CFSerializer extends FilteringSerializer {
 
-  // we flip this on every serialization, which helps us to avoid passes
-  // over the serialized objects to reset their sids. This works by resetting
-  // the sid to 0 upon backtrack, and counting either upwards from 1 or downwards
-  // from -1, but store the absolute value in the serialization stream
-  boolean positiveSid;
+  // sids keep growing over all serializations, and the ones of the current
+  // serialization are > sidBase. This helps us to avoid passes over the
+  // serialized objects to reset their sids, and it also works for objects
+  // with sids that are left over from serializations on other paths (i.e. we
+  // don't depend on the heap resetting sids upon backtrack). We store the
+  // sid relative to sidBase in the serialization stream
+  int sidBase;
 
   int sidCount;
 
@@ -59,13 +61,16 @@ public class CFSerializer extends FilteringSerializer {
   protected void initReferenceQueue() {
     super.initReferenceQueue();
 
-    if (positiveSid){
-      positiveSid = false;
-      sidCount = -1;
-    } else {
-      positiveSid = true;
-      sidCount = 1;
+    if (sidCount > Integer.MAX_VALUE/2){
+      // very unlikely, but we don't want to overflow. Objects that are not in
+      // the heap anymore get their sids reset when they are restored
+      for (ElementInfo ei : heap.liveObjects()){
+        ei.setSid(0);
+      }
+      sidCount = 0;
     }
+
+    sidBase = sidCount;
   }
 
   // might be overriden in subclasses to conditionally queue objects
@@ -82,23 +87,14 @@ public class CFSerializer extends FilteringSerializer {
       ElementInfo ei = heap.get(objref);
       int sid = ei.getSid();
 
-      if (positiveSid){ // count sid upwards from 1
-        if (sid <= 0){  // not seen before in this serialization run
-          sid = sidCount++;
-          ei.setSid(sid);
-          queueReference(ei);
-        }
-      } else { // count sid downwards from -1
-        if (sid >= 0){ // not seen before in this serialization run
-          sid = sidCount--;
-          ei.setSid(sid);
-          queueReference(ei);
-        }
-        sid = -sid;
+      if (sid <= sidBase){  // not seen before in this serialization run
+        sid = ++sidCount;
+        ei.setSid(sid);
+        queueReference(ei);
       }
 
-      // note that we always add the absolute sid value
-      buf.add(sid);
+      // this counts upwards from 1 in each serialization
+      buf.add(sid - sidBase);
     }
   }
   
@@ -140,6 +136,6 @@ public class CFSerializer extends FilteringSerializer {
   
   @Override
   protected int getSerializedReferenceValue (ElementInfo ei){
-    return Math.abs(ei.getSid());
+    return ei.getSid() - sidBase;
   }
 }
@@ -0,0 +1,326 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gov.nasa.jpf.vm.serialize;
+
+import gov.nasa.jpf.JPFConfigException;
+import gov.nasa.jpf.util.FinalBitSet;
+import gov.nasa.jpf.util.IntVector;
+import gov.nasa.jpf.util.LongVector;
+import gov.nasa.jpf.util.ObjVector;
+import gov.nasa.jpf.vm.ArrayFields;
+import gov.nasa.jpf.vm.ClassInfo;
+import gov.nasa.jpf.vm.ClassLoaderInfo;
+import gov.nasa.jpf.vm.ElementInfo;
+import gov.nasa.jpf.vm.Fields;
+import gov.nasa.jpf.vm.GenericHeap;
+import gov.nasa.jpf.vm.Heap;
+import gov.nasa.jpf.vm.Instruction;
+import gov.nasa.jpf.vm.NativeStateHolder;
+import gov.nasa.jpf.vm.StackFrame;
+import gov.nasa.jpf.vm.StaticElementInfo;
+import gov.nasa.jpf.vm.Statics;
+import gov.nasa.jpf.vm.ThreadInfo;
+import gov.nasa.jpf.vm.ThreadList;
+
+import java.util.List;
+
+/**
+ * a FilteringSerializer that doesn't serialize the whole state, but computes a
+ * 64bit fingerprint from per-object hashes that are only recomputed for
+ * objects which changed since the last state.
+ *
+ * This relies on the copy-on-write scheme of ElementInfos: objects are frozen
+ * when a state is stored, and every subsequent modification goes through
+ * Heap.getModifiable(), which clones the object and logs it as changed (as do
+ * allocation and gc). Object hashes are combined by addition, i.e. we can
+ * subtract the old hash and add the new one for each changed object. After a
+ * backtrack we don't know which objects were restored, but we only have to
+ * compare the restored objects with the ones we hashed (the restore already is
+ * a pass over the heap), and only rehash the ones that differ.
+ *
+ * Statics, threads and stack frames are hashed for each state, but statics
+ * use the same per-object caching.
+ *
+ * Note that all live objects are hashed, not just the ones that are reachable
+ * through non-filtered fields, and references are not canonicalized (as in
+ * CFSerializer). This means we might match less states than other serializers,
+ * but never states that differ in their non-filtered values. It also requires
+ * a heap that uses search global object ids (like OVHeap) to achieve heap
+ * symmetry. The resulting storing data is just the fingerprint (two ints).
+ */
+public class IncrementalHashingSerializer extends FilteringSerializer {
+
+  protected GenericHeap genericHeap;
+
+  // the objects (and their hashes) that are currently included in heapHash, indexed by objref
+  protected ObjVector<ElementInfo> hashedObjects = new ObjVector<ElementInfo>();
+  protected LongVector objectHashes = new LongVector();
+  protected long heapHash;
+
+  // objects that were still modifiable when we hashed them, i.e. which might have
+  // changed without being logged. We have to rehash them for the next state
+  protected IntVector unfrozenRefs = new IntVector();
+  protected IntVector nextUnfrozenRefs = new IntVector();
+
+  // per class loader caches of static hashes, indexed by ClassLoaderInfo id
+  static class StaticsHashes {
+    ObjVector<ElementInfo> hashed = new ObjVector<ElementInfo>();
+    LongVector hashes = new LongVector();
+  }
+  protected ObjVector<StaticsHashes> staticsHashes = new ObjVector<StaticsHashes>();
+
+  // reused to get array values
+  protected IntVector values = new IntVector(256);
+
+  //--- the hash function
+
+  static final long M = 0x9e3779b97f4a7c15L;
+
+  protected static long mix (long h, int v) {
+    h = (h + v) * M;
+    return h ^ (h >>> 32);
+  }
+
+  protected static long mix (long h, long v) {
+    h = (h + v) * M;
+    return h ^ (h >>> 32);
+  }
+
+  protected static long finish (long h) {
+    // murmur3 fmix64
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  //--- objects
+
+  protected long hashObject (ElementInfo ei) {
+    ClassInfo ci = ei.getClassInfo();
+    Fields fields = ei.getFields();
+    long h = mix(ei.getObjectRef(), ci.getUniqueId());
+
+    if (fields instanceof ArrayFields) { // not filtered
+      ArrayFields afields = (ArrayFields) fields;
+      h = mix(h, afields.arrayLength());
+
+      if (afields.isReferenceArray()) {
+        int[] refs = afields.asReferenceArray();
+        for (int i = 0; i < refs.length; i++) {
+          h = mix(h, refs[i]);
+        }
+      } else {
+        values.clear();
+        afields.appendTo(values);
+        int n = values.size();
+        for (int i = 0; i < n; i++) {
+          h = mix(h, values.get(i));
+        }
+      }
+
+    } else { // named fields, filtered
+      FinalBitSet filtered = getInstanceFilterMask(ci);
+      int[] slots = fields.asFieldSlots();
+      for (int i = 0; i < slots.length; i++) {
+        if (!filtered.get(i)) {
+          h = mix(h, slots[i]);
+        }
+      }
+    }
+
+    return finish(h);
+  }
+
+  protected void updateObject (int ref, boolean force) {
+    ElementInfo ei = genericHeap.get(ref);
+    ElementInfo hashed = hashedObjects.get(ref);
+
+    if (ei != hashed || force) {
+      long oldHash = (hashed != null) ? objectHashes.get(ref) : 0;
+      long newHash = (ei != null) ? hashObject(ei) : 0;
+
+      heapHash += newHash - oldHash;
+      hashedObjects.set(ref, ei);
+      objectHashes.set(ref, newHash);
+    }
+
+    if (ei != null && !ei.isFrozen()) {
+      nextUnfrozenRefs.add(ref);
+    }
+  }
+
+  protected void updateHeapHash() {
+    if (genericHeap.isElementsRestored()) {
+      // we don't know what changed, compare with what we have hashed
+      for (ElementInfo ei : genericHeap.liveObjects()) {
+        int ref = ei.getObjectRef();
+        updateObject(ref, false);
+      }
+      for (int ref = 0; ref < hashedObjects.size(); ref++) {
+        if (hashedObjects.get(ref) != null && genericHeap.get(ref) == null) {
+          updateObject(ref, false);
+        }
+      }
+
+    } else {
+      IntVector changedRefs = genericHeap.getChangedRefs();
+      int n = changedRefs.size();
+      for (int i = 0; i < n; i++) {
+        updateObject(changedRefs.get(i), false);
+      }
+    }
+
+    int n = unfrozenRefs.size();
+    for (int i = 0; i < n; i++) {
+      updateObject(unfrozenRefs.get(i), true);
+    }
+
+    IntVector v = unfrozenRefs;
+    unfrozenRefs = nextUnfrozenRefs;
+    nextUnfrozenRefs = v;
+    nextUnfrozenRefs.clear();
+
+    genericHeap.resetChanges();
+  }
+
+  //--- statics
+
+  protected long hashClass (StaticElementInfo sei) {
+    ClassInfo ci = sei.getClassInfo();
+    Fields fields = sei.getFields();
+    long h = mix(ci.getUniqueId(), sei.getStatus());
+
+    FinalBitSet filtered = getStaticFilterMask(ci);
+    int max = ci.getStaticDataSize();
+    for (int i = 0; i < max; i++) {
+      if (!filtered.get(i)) {
+        h = mix(h, fields.getIntValue(i));
+      }
+    }
+
+    return finish(h);
+  }
+
+  protected long hashStatics (ClassLoaderInfo cl) {
+    StaticsHashes sh = staticsHashes.get(cl.getId());
+    if (sh == null) {
+      sh = new StaticsHashes();
+      staticsHashes.set(cl.getId(), sh);
+    }
+
+    Statics statics = cl.getStatics();
+    long h = 0;
+    for (StaticElementInfo sei : statics.liveStatics()) {
+      int id = sei.getObjectRef();
+      long hc;
+      if (sh.hashed.get(id) == sei && sei.isFrozen()) {
+        hc = sh.hashes.get(id);
+      } else {
+        hc = hashClass(sei);
+        sh.hashed.set(id, sei);
+        sh.hashes.set(id, hc);
+      }
+      h += hc;
+    }
+
+    return mix(h, statics.size());
+  }
+
+  //--- threads
+
+  protected long hashFrame (long h, StackFrame frame) {
+    h = mix(h, frame.getMethodInfo().getGlobalId());
+
+    Instruction pc = frame.getPC();
+    h = mix(h, (pc != null) ? pc.getInstructionIndex() : -1);
+
+    int len = frame.getTopPos() + 1;
+    h = mix(h, len);
+
+    int[] slots = frame.getSlots();
+    for (int i = 0; i < len; i++) {
+      h = mix(h, slots[i]);
+    }
+    return h;
+  }
+
+  protected long hashThread (ThreadInfo ti) {
+    long h = mix(ti.getId(), ti.getState().ordinal());
+    h = mix(h, ti.getStackDepth());
+    h = mix(h, ti.getThreadObjectRef());
+
+    for (StackFrame frame = ti.getTopFrame(); frame != null; frame = frame.getPrevious()) {
+      h = hashFrame(h, frame);
+    }
+
+    ElementInfo eiLock = ti.getLockObject();
+    if (eiLock != null) {
+      h = mix(h, eiLock.getObjectRef());
+    }
+
+    // the locked objects are a set, so we have to be order independent
+    List<ElementInfo> lockedObjects = ti.getLockedObjects();
+    long hl = 0;
+    for (int i = 0; i < lockedObjects.size(); i++) {
+      hl += finish(lockedObjects.get(i).getObjectRef());
+    }
+    h = mix(h, hl);
+
+    return finish(h);
+  }
+
+  //--- our main purpose in life
+
+  @Override
+  protected int[] computeStoringData() {
+    if (genericHeap == null) {
+      Heap h = ks.getHeap();
+      if (!(h instanceof GenericHeap)) {
+        throw new JPFConfigException("IncrementalHashingSerializer requires a GenericHeap");
+      }
+      genericHeap = (GenericHeap) h;
+      genericHeap.setTrackChanges(true);
+    }
+
+    updateHeapHash();
+    long h = finish(heapHash);
+
+    for (ClassLoaderInfo cl : ks.classLoaders) {
+      if (cl.isAlive()) {
+        h = mix(h, hashStatics(cl));
+      }
+    }
+
+    ThreadList tl = ks.getThreadList();
+    for (ThreadInfo ti : tl) {
+      if (ti.isAlive()) {
+        h = mix(h, hashThread(ti));
+      }
+    }
+
+    for (NativeStateHolder nsh : nativeStateHolders) {
+      h = mix(h, nsh.getHash());
+    }
+
+    h = finish(h);
+    return new int[] { (int) (h >>> 32), (int) h };
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf;
+
+import gov.nasa.jpf.test.mc.basic.LockOrderInversion;
+import gov.nasa.jpf.util.JPFSiteUtils;
+import gov.nasa.jpf.util.test.TestJPF;
+import gov.nasa.jpf.vm.Verify;
+
+import org.junit.Test;
+
+/**
+ * regression test for SwarmJPF
+ *
+ * each test method is both the host side that runs the swarm, and the SUT
+ * that is executed by the (isolated) worker JPFs
+ */
+public class SwarmJPFTest extends TestJPF {
+
+  protected SwarmJPF createSwarm (String... args) {
+    Config conf = new Config(args);
+    setTestTargetKeys(conf, getCaller());
+
+    String projectId = JPFSiteUtils.getCurrentProjectId();
+    if (projectId != null) {
+      String testCp = conf.getString(projectId + ".test_classpath");
+      if (testCp != null) {
+        conf.append("classpath", testCp, ",");
+      }
+    }
+    conf.promotePropertyCategory("test.");
+
+    return new SwarmJPF(conf);
+  }
+
+  @Test
+  public void testDeadlock() {
+    if (!isJPFRun()) {
+      SwarmJPF swarm = createSwarm("+swarm.workers=6");
+      swarm.run();
+
+      assertTrue("no deadlock found", swarm.foundErrors());
+
+    } else {
+      LockOrderInversion.run();
+    }
+  }
+
+  @Test
+  public void testNoViolation() {
+    if (!isJPFRun()) {
+      SwarmJPF swarm = createSwarm("+swarm.searches=.search.DFSearch,.search.heuristic.BFSHeuristic");
+      swarm.run();
+
+      SwarmContext context = swarm.getContext();
+      assertFalse("wrong violation", swarm.foundErrors());
+      assertTrue("no states", context.getNewStates(0) > 0);
+      assertTrue("different state spaces", context.getNewStates(0) == context.getNewStates(1));
+
+    } else {
+      int a = Verify.getInt(0, 3);
+      int b = Verify.getInt(0, 3);
+
+      assert (a + b) <= 6;
+    }
+  }
+
+  @Test
+  public void testRandomOnly() {
+    if (!isJPFRun()) {
+      // without exhaustive workers, random workers have to run until their path limit
+      SwarmJPF swarm = createSwarm("+swarm.searches=.search.RandomSearch", "+swarm.workers=2",
+                                   "+search.RandomSearch.path_limit=10");
+      swarm.run();
+
+      SwarmContext context = swarm.getContext();
+      assertFalse("wrong violation", swarm.foundErrors());
+      assertTrue("worker 0 did not explore", context.getNewStates(0) > 0);
+      assertTrue("worker 1 did not explore", context.getNewStates(1) > 0);
+
+    } else {
+      int a = Verify.getInt(0, 3);
+      int b = Verify.getInt(0, 3);
+
+      assert (a + b) <= 6;
+    }
+  }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf.jvm;
+
+import gov.nasa.jpf.util.test.TestJPF;
+import gov.nasa.jpf.vm.ClassFileMatch;
+import gov.nasa.jpf.vm.ClassParseException;
+import gov.nasa.jpf.vm.ClassPath;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * unit test for the persistent ClassFileCache
+ */
+public class ClassFileCacheTest extends TestJPF {
+
+  static void write (File f, byte[] data, long lastModified) throws IOException {
+    try (FileOutputStream fos = new FileOutputStream(f)) {
+      fos.write(data);
+    }
+    f.setLastModified(lastModified);
+  }
+
+  static void delete (File f){
+    File[] files = f.listFiles();
+    if (files != null){
+      for (File c : files){
+        delete(c);
+      }
+    }
+    f.delete();
+  }
+
+  static ClassFileMatch lookup (File cacheDir, ClassPath cp, String clsName) throws ClassParseException {
+    ClassFileCache cache = new ClassFileCache(cacheDir, cp);
+    ClassFileMatch match = cache.getMatch(clsName);
+    if (match == null){
+      match = cp.findMatch(clsName);
+      cache.add(clsName, match);
+      cache.store();
+      return null;
+    }
+    return match;
+  }
+
+  static ClassPath createClassPath (File... dirs){
+    ClassPath cp = new ClassPath();
+    for (File d : dirs){
+      cp.addClassFileContainer( new DirClassFileContainer(d));
+    }
+    return cp;
+  }
+
+  @Test
+  public void testInvalidation() throws Exception {
+    File root = Files.createTempDirectory("jpf-cfc").toFile();
+    try {
+      File cacheDir = new File(root, "cache");
+      File dir1 = new File(root, "a");
+      File dir2 = new File(root, "b");
+      dir1.mkdir();
+      dir2.mkdir();
+
+      long past = System.currentTimeMillis() - 100000;
+      byte[] data = { 1, 2, 3 };
+      write( new File(dir2, "Foo.class"), data, past);
+      dir1.setLastModified(past);
+      dir2.setLastModified(past);
+
+      // first lookup goes to the classpath and populates the cache
+      assertTrue( lookup(cacheDir, createClassPath(dir1, dir2), "Foo") == null);
+      assertTrue( cacheDir.list().length == 1);
+
+      ClassFileMatch match = lookup(cacheDir, createClassPath(dir1, dir2), "Foo");
+      assertTrue( match != null);
+      assertTrue( Arrays.equals(data, ((JVMClassFileContainer.JVMClassFileMatch)match).getData()));
+      assertTrue( match.getClassURL().equals( createClassPath(dir2).findMatch("Foo").getClassURL()));
+
+      // changed classfile
+      byte[] newData = { 4, 5, 6, 7 };
+      write( new File(dir2, "Foo.class"), newData, past + 1000);
+      assertTrue( lookup(cacheDir, createClassPath(dir1, dir2), "Foo") == null);
+      match = lookup(cacheDir, createClassPath(dir1, dir2), "Foo");
+      assertTrue( Arrays.equals(newData, ((JVMClassFileContainer.JVMClassFileMatch)match).getData()));
+
+      // classfile that shadows the cached one
+      write( new File(dir1, "Foo.class"), data, past);
+      match = lookup(cacheDir, createClassPath(dir1, dir2), "Foo");
+      assertTrue( match == null);
+      match = lookup(cacheDir, createClassPath(dir1, dir2), "Foo");
+      assertTrue( Arrays.equals(data, ((JVMClassFileContainer.JVMClassFileMatch)match).getData()));
+
+      // dirs are checked per entry, i.e. changing their contents doesn't discard the cache
+      assertTrue( cacheDir.list().length == 1);
+
+      // different classpath
+      assertTrue( lookup(cacheDir, createClassPath(dir2), "Foo") == null);
+
+    } finally {
+      delete(root);
+    }
+  }
+
+  static byte[] getClassData (Class<?> cls) throws IOException {
+    try (InputStream is = cls.getResourceAsStream(cls.getSimpleName() + ".class")) {
+      return is.readAllBytes();
+    }
+  }
+
+  static class MethodCollector extends ClassFileReaderAdapter {
+    String clsName;
+    ArrayList<String> methods = new ArrayList<String>();
+
+    @Override
+    public void setClass (ClassFile cf, String clsName, String superClsName, int flags, int cpCount){
+      this.clsName = clsName;
+    }
+    @Override
+    public void setMethod (ClassFile cf, int methodIndex, int accessFlags, String name, String descriptor){
+      methods.add(name + descriptor);
+    }
+  }
+
+  @Test
+  public void testConstPool() throws Exception {
+    File root = Files.createTempDirectory("jpf-cfc").toFile();
+    try {
+      File cacheDir = new File(root, "cache");
+      File dir = new File(root, "a");
+      dir.mkdir();
+
+      byte[] data = getClassData(ClassFileCacheTest.class);
+      write( new File(dir, "Foo.class"), data, System.currentTimeMillis() - 100000);
+
+      // parse it before we store, like a ClassInfo would
+      ClassPath cp = createClassPath(dir);
+      ClassFileCache cache = new ClassFileCache(cacheDir, cp);
+      JVMClassFileContainer.JVMClassFileMatch match = (JVMClassFileContainer.JVMClassFileMatch)cp.findMatch("Foo");
+      ClassFile cf = match.createClassFile();
+      MethodCollector ref = new MethodCollector();
+      cf.parse(ref);
+      match.updateConstPool(cf);
+      assertTrue( match.getConstPool() != null);
+      cache.add("Foo", match);
+      cache.store();
+
+      match = (JVMClassFileContainer.JVMClassFileMatch) new ClassFileCache(cacheDir, createClassPath(dir)).getMatch("Foo");
+      assertTrue( match != null);
+      ClassFile.ConstPool cpool = match.getConstPool();
+      assertTrue( cpool != null);
+      ClassFile.ConstPool refCp = cf.getConstPool();
+      assertTrue( Arrays.equals(refCp.pos, cpool.pos));
+      assertTrue( Arrays.equals(refCp.values, cpool.values));
+      assertTrue( refCp.end == cpool.end);
+
+      // parsing with the cached const pool has to give us the same class
+      MethodCollector mc = new MethodCollector();
+      match.createClassFile().parse(mc);
+      assertEquals( ref.clsName, mc.clsName);
+      assertEquals( ref.methods, mc.methods);
+
+    } finally {
+      delete(root);
+    }
+  }
+
+  @Test
+  public void testPruning() throws Exception {
+    File root = Files.createTempDirectory("jpf-cfc").toFile();
+    try {
+      File cacheDir = new File(root, "cache");
+      File dir = new File(root, "a");
+      dir.mkdir();
+      write( new File(dir, "Foo.class"), new byte[] { 1, 2, 3 }, System.currentTimeMillis() - 100000);
+
+      assertTrue( lookup(cacheDir, createClassPath(dir), "Foo") == null);
+      String[] files = cacheDir.list();
+      assertTrue( files.length == 1);
+
+      // a cache for the same classpath that was stored before some container changed
+      String name = files[0];
+      File stale = new File(cacheDir, name.substring(0, name.lastIndexOf('-')) + "-0.cache");
+      write( stale, new byte[] { 0 }, System.currentTimeMillis());
+      // and one for a different classpath
+      File other = new File(cacheDir, "classes-0-0.cache");
+      write( other, new byte[] { 0 }, System.currentTimeMillis());
+
+      write( new File(dir, "Bar.class"), new byte[] { 4, 5 }, System.currentTimeMillis() - 100000);
+      assertTrue( lookup(cacheDir, createClassPath(dir), "Bar") == null);
+
+      assertFalse( stale.exists());
+      assertTrue( other.exists());
+      assertTrue( new File(cacheDir, name).exists());
+
+    } finally {
+      delete(root);
+    }
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf.listener;
+
+import gov.nasa.jpf.tool.StateGraphConverter;
+import gov.nasa.jpf.tool.StateGraphConverter.StateGraph;
+import gov.nasa.jpf.util.test.TestJPF;
+import gov.nasa.jpf.vm.Verify;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.BitSet;
+
+import org.junit.Test;
+
+/**
+ * regression test for StateGraphLogger and StateGraphConverter
+ */
+public class StateGraphLoggerTest extends TestJPF {
+
+  static final String LOG = "build/test-state-graph.bin";
+  static final String LISTENER = "+listener=.listener.StateGraphLogger";
+
+  @Test
+  public void testEdges() throws IOException {
+    if (verifyNoPropertyViolation(LISTENER, "+state_graph.file=" + LOG)) {
+      int a = Verify.getInt(0, 2);
+      boolean b = Verify.getBoolean();
+    }
+
+    if (!isJPFRun()) {
+      StateGraph g = StateGraphConverter.read(LOG);
+      new File(LOG).delete();
+
+      // init + 3 ints + 3*2 booleans
+      assertTrue("wrong number of edges: " + g.getNumberOfEdges(), g.getNumberOfEdges() == 10);
+      assertTrue("first edge not from init", g.parentIds.get(0) == -1);
+
+      // all boolean choices end in the same state
+      int nBoolean = 0, nNew = 0;
+      for (int i = 0; i < g.getNumberOfEdges(); i++) {
+        if (g.isNewEdge(i)) {
+          nNew++;
+        }
+        if (g.getCGType(i).endsWith("BooleanChoiceGenerator")) {
+          nBoolean++;
+        }
+      }
+      assertTrue("wrong number of boolean choices: " + nBoolean, nBoolean == 6);
+      assertTrue("wrong number of new states: " + nNew, nNew == 5);
+    }
+  }
+
+  @Test
+  public void testTruncatedEdge() throws IOException {
+    if (verifyNoPropertyViolation(LISTENER, "+state_graph.file=" + LOG)) {
+      int a = Verify.getInt(0, 2);
+      boolean b = Verify.getBoolean();
+    }
+
+    if (!isJPFRun()) {
+      // cut the last EDGE record after its stateId and parentId
+      try (RandomAccessFile f = new RandomAccessFile(LOG, "rw")) {
+        f.setLength(f.length() - StateGraphLogger.EDGE_SIZE + 9);
+      }
+
+      StateGraph g = StateGraphConverter.read(LOG);
+      new File(LOG).delete();
+
+      int n = g.getNumberOfEdges();
+      assertTrue("wrong number of edges: " + n, n == 9);
+      assertTrue("inconsistent edge data", g.parentIds.size() == n && g.typeIds.size() == n
+                 && g.choiceIndices.size() == n && g.threadIds.size() == n && g.flags.size() == n);
+      assertTrue("first edge not from init", g.parentIds.get(0) == -1);
+    }
+  }
+
+  @Test
+  public void testMaxStates() throws IOException {
+    if (verifyNoPropertyViolation(LISTENER, "+state_graph.file=" + LOG)) {
+      int a = Verify.getInt(0, 2);
+      boolean b = Verify.getBoolean();
+    }
+
+    if (!isJPFRun()) {
+      StateGraph all = StateGraphConverter.read(LOG);
+      StateGraph g = StateGraphConverter.read(LOG, 3);
+      new File(LOG).delete();
+
+      int n = StateGraphConverter.selectStates(all, 3).cardinality();
+      assertTrue("wrong number of edges: " + g.getNumberOfEdges() + ", expected " + n, g.getNumberOfEdges() == n);
+      for (int i = 0; i < g.getNumberOfEdges(); i++) {
+        assertTrue("state above limit: " + g.stateIds.get(i), g.stateIds.get(i) < 3);
+      }
+    }
+  }
+
+  @Test
+  public void testErrorPath() throws IOException {
+    if (verifyAssertionError(LISTENER, "+state_graph.file=" + LOG)) {
+      int a = Verify.getInt(0, 2);
+      boolean b = Verify.getBoolean();
+
+      assert (a != 1) || b : "a == 1 and !b";
+    }
+
+    if (!isJPFRun()) {
+      StateGraph g = StateGraphConverter.read(LOG);
+      new File(LOG).delete();
+
+      assertTrue("no error recorded", g.errorIds.size() == 1);
+
+      // init -> a -> b
+      BitSet sel = StateGraphConverter.selectErrorPaths(g);
+      assertTrue("wrong error path length: " + sel.cardinality(), sel.cardinality() == 3);
+    }
+  }
+}
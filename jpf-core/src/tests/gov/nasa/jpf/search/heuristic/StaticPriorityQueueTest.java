@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf.search.heuristic;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.util.test.TestJPF;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * regression test for the min-max heap based StaticPriorityQueue
+ */
+public class StaticPriorityQueueTest extends TestJPF {
+
+  static StaticPriorityQueue createQueue (String... args) {
+    return new StaticPriorityQueue( new Config(args));
+  }
+
+  static PrioritizedState state (int id, int value) {
+    return new PrioritizedState(id, value, new int[] { id });
+  }
+
+  @Test
+  public void testOrder() {
+    StaticPriorityQueue q = createQueue("+search.heuristic.queue_limit=-1");
+    Random r = new Random(42);
+    int n = 1000;
+
+    for (int i = 0; i < n; i++) {
+      q.add( state(i, r.nextInt(100)));
+    }
+    assertTrue( q.size() == n);
+
+    PrioritizedState last = null;
+    for (int i = 0; i < n; i++) {
+      PrioritizedState s = q.pollFirst();
+      if (last != null) {
+        assertTrue( last.compareTo(s) < 0);
+      }
+      last = s;
+    }
+    assertTrue( q.isEmpty());
+    assertTrue( q.pollFirst() == null);
+  }
+
+  @Test
+  public void testBothEnds() {
+    StaticPriorityQueue q = createQueue("+search.heuristic.queue_limit=-1");
+    Random r = new Random(42);
+
+    for (int i = 0; i < 500; i++) {
+      q.add( state(i, r.nextInt(1000) - 500));
+    }
+
+    PrioritizedState min = null, max = null;
+    while (!q.isEmpty()) {
+      PrioritizedState s = q.pollFirst();
+      if (min != null) {
+        assertTrue( min.compareTo(s) < 0);
+      }
+      min = s;
+
+      if (!q.isEmpty()) {
+        s = q.pollLast();
+        if (max != null) {
+          assertTrue( max.compareTo(s) > 0);
+        }
+        assertTrue( min.compareTo(s) < 0);
+        max = s;
+      }
+    }
+  }
+
+  @Test
+  public void testLimit() {
+    StaticPriorityQueue q = createQueue("+search.heuristic.queue_limit=3");
+
+    assertTrue( q.add( state(1, 10)));
+    assertTrue( q.add( state(2, 5)));
+    assertTrue( q.add( state(3, 20)));
+    assertTrue( q.isQueueLimitReached());
+
+    assertFalse( q.add( state(4, 30)));  // worse than all
+    assertTrue( q.add( state(5, 1)));    // evicts 3
+    assertTrue( q.size() == 3);
+    assertTrue( q.last().getStateId() == 1);
+
+    assertTrue( q.pollFirst().getStateId() == 5);
+    assertTrue( q.pollFirst().getStateId() == 2);
+    assertTrue( q.pollFirst().getStateId() == 1);
+    assertTrue( q.pollFirst() == null);
+  }
+
+  @Test
+  public void testSpill() {
+    StaticPriorityQueue q = createQueue("+search.heuristic.queue_limit=4", "+search.heuristic.queue_spill=true");
+    assertTrue( q.isSpilling());
+
+    Random r = new Random(42);
+    int n = 100;
+    for (int i = 0; i < n; i++) {
+      assertTrue( q.add( state(i, r.nextInt(20))));
+    }
+    assertFalse( q.isQueueLimitReached());
+    assertTrue( q.size() == n);
+    assertTrue( q.getNumberOfSpilledStates() == n - 4);
+
+    // spilled states come back in order
+    PrioritizedState last = null;
+    for (int i = 0; i < n; i++) {
+      PrioritizedState s = q.pollFirst();
+      if (last != null) {
+        assertTrue( last.compareTo(s) < 0);
+      }
+      assertTrue( s.getChoiceTrace()[0] == s.getStateId());
+      last = s;
+    }
+    assertTrue( q.isEmpty());
+  }
+
+  @Test
+  public void testColdStates() {
+    StaticPriorityQueue q = createQueue("+search.heuristic.queue_limit=10", "+search.heuristic.hot_states=3");
+    assertTrue( q.needsChoiceTraces());
+
+    Random r = new Random(42);
+    for (int i = 0; i < 20; i++) {
+      q.add( state(i, r.nextInt(20)));
+    }
+    assertTrue( q.isQueueLimitReached());
+    assertTrue( q.size() == 10);
+    assertTrue( q.getNumberOfColdStates() == 7);
+
+    PrioritizedState last = null;
+    for (int i = 0; i < 10; i++) {
+      PrioritizedState s = q.pollFirst();
+      if (last != null) {
+        assertTrue( last.compareTo(s) < 0);
+      }
+      assertTrue( s.getChoiceTrace()[0] == s.getStateId());
+      last = s;
+    }
+    assertTrue( q.isEmpty());
+  }
+
+  @Test
+  public void testPackedTrace() {
+    int[] trace = { 0, 1, 127, 128, 300, 16384, Integer.MAX_VALUE, -1 };
+    PrioritizedState s = new PrioritizedState(42, 0, trace);
+
+    assertFalse( s.isCompact());
+    s.compact();
+    assertTrue( s.isCompact());
+    assertTrue( s.getVMState() == null);
+    assertTrue( Arrays.equals( s.getChoiceTrace(), trace));
+  }
+}
@@ -103,6 +103,22 @@ public class JPF_gov_nasa_jpf_test_basic_MJITest extends NativePeer {
     return s.length();
   }
 
+  // the SUT passes an int, which can't be cast to String
+  @MJI
+  public int nativeArgumentMismatch__I__I (MJIEnv env, int robj, String s) {
+    System.out.println("# entering nativeArgumentMismatch()");
+    return s.length();
+  }
+
+  @MJI
+  public int nativeIllegalArgument__I__I (MJIEnv env, int robj, int i) {
+    System.out.println("# entering nativeIllegalArgument()");
+    if (i < 0) {
+      throw new IllegalArgumentException("negative argument");
+    }
+    return i;
+  }
+
   @MJI
   public int nativeInstanceMethod (MJIEnv env, int robj, double d,
                                           char c, boolean b, int i) {
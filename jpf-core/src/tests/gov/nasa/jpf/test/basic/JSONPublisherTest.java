@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf.test.basic;
+
+import gov.nasa.jpf.util.test.TestJPF;
+import gov.nasa.jpf.vm.Verify;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * regression test for the JSONPublisher
+ */
+public class JSONPublisherTest extends TestJPF {
+
+  static List<String> readRecords (File file) throws Exception {
+    return Files.readAllLines(file.toPath());
+  }
+
+  static int countRecords (List<String> records, String event) {
+    int n = 0;
+    for (String r : records) {
+      if (r.startsWith("{\"event\":\"" + event + "\"")) {
+        n++;
+      }
+    }
+    return n;
+  }
+
+  @Test
+  public void testErrorRecords () throws Exception {
+    if (!isJPFRun()) {
+      File file = File.createTempFile("jpf-report", ".ndjson");
+      try {
+        assertionError("+report.publisher=json", "+report.json.file=" + file.getPath());
+
+        List<String> records = readRecords(file);
+        assertTrue("no started record: " + records, records.get(0).startsWith("{\"event\":\"started\""));
+        assertTrue("no error record: " + records, countRecords(records, "error") == 1);
+        String last = records.get(records.size() - 1);
+        assertTrue("no finished record: " + last, last.startsWith("{\"event\":\"finished\""));
+        assertTrue("wrong error count: " + last, last.contains("\"errors\":1"));
+
+        for (String r : records) {
+          if (r.startsWith("{\"event\":\"error\"")) {
+            assertTrue("wrong error record: " + r, r.contains("NoUncaughtExceptionsProperty")
+                    && r.contains("java.lang.AssertionError: \\\"gotcha\\\""));
+          }
+        }
+
+      } finally {
+        file.delete();
+      }
+
+    } else {
+      int i = Verify.getInt(0, 2);
+      assert i != 1 : "\"gotcha\"";
+    }
+  }
+
+  @Test
+  public void testHeartbeatRecords () throws Exception {
+    if (!isJPFRun()) {
+      File file = File.createTempFile("jpf-report", ".ndjson");
+      try {
+        noPropertyViolation("+report.publisher=json", "+report.json.file=" + file.getPath(),
+                "+report.json.interval=10");
+
+        // the SUT spends most of its time in its first transition, i.e. there is no
+        // snapshot for most of the intervals
+        List<String> records = readRecords(file);
+        int nStale = 0;
+        for (String r : records) {
+          if (r.contains("\"stale\":true")) {
+            assertTrue("wrong heartbeat record: " + r, r.startsWith("{\"event\":\"progress\"") && r.contains("\"heap_used\":"));
+            nStale++;
+          }
+        }
+        assertTrue("no heartbeat records: " + records, nStale > 0);
+
+      } finally {
+        file.delete();
+      }
+
+    } else {
+      long t = System.currentTimeMillis();
+      while (System.currentTimeMillis() - t < 200) {
+        // busy wait without scheduling points
+      }
+    }
+  }
+
+  @Test
+  public void testProgressRecords () throws Exception {
+    if (!isJPFRun()) {
+      File file = File.createTempFile("jpf-report", ".ndjson");
+      PrintStream out = System.out;
+      ByteArrayOutputStream console = new ByteArrayOutputStream();
+      System.setOut(new PrintStream(console));
+      try {
+        noPropertyViolation("+report.publisher=console,json", "+report.console.probe=statistics",
+                "+report.json.file=" + file.getPath(), "+report.json.interval=10", "+vm.storage.class=");
+        System.setOut(out);
+
+        List<String> records = readRecords(file);
+        assertTrue("no progress records: " + records, countRecords(records, "progress") > 0);
+        assertTrue("no fresh progress records: " + records, String.join("\n", records).contains("\"stale\":false"));
+        String last = records.get(records.size() - 1);
+        assertTrue("wrong end state count: " + last, last.contains("\"end_states\":1024"));
+
+        // our snapshots are not console probes
+        assertFalse("console published statistics", console.toString().contains("statistics"));
+
+      } finally {
+        System.setOut(out);
+        file.delete();
+      }
+
+    } else {
+      int sum = 0;
+      for (int i = 0; i < 5; i++) {
+        sum += Verify.getInt(0, 3);
+        for (int j = 0; j < 100; j++) {
+          sum ^= j;
+        }
+      }
+    }
+  }
+}
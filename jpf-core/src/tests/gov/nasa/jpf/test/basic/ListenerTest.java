@@ -22,7 +22,10 @@ import gov.nasa.jpf.JPF;
 import gov.nasa.jpf.ListenerAdapter;
 import gov.nasa.jpf.search.Search;
 import gov.nasa.jpf.util.test.TestJPF;
+import gov.nasa.jpf.vm.Instruction;
 import gov.nasa.jpf.vm.SingleProcessVM;
+import gov.nasa.jpf.vm.ThreadInfo;
+import gov.nasa.jpf.vm.VM;
 import gov.nasa.jpf.vm.Verify;
 
 import org.junit.Test;
@@ -60,5 +63,55 @@ public class ListenerTest extends TestJPF {
     }
   }
   
+  public static class InsnListener extends ListenerAdapter {
+    @Override
+    public void executeInstruction (VM vm, ThreadInfo ti, Instruction insnToExecute){
+      Verify.incrementCounter(0);
+    }
+
+    @Override
+    public void instructionExecuted (VM vm, ThreadInfo ti, Instruction nextInsn, Instruction executedInsn){
+      Verify.incrementCounter(1);
+    }
+  }
+
+  // the notification methods are only inherited, but still have to be called
+  public static class DerivedInsnListener extends InsnListener {
+  }
+
+  @Test
+  public void testInstructionNotifications (){
+    if (!isJPFRun()){
+      Verify.resetCounter(0);
+      Verify.resetCounter(1);
+    }
+
+    if (verifyNoPropertyViolation("+listener=gov.nasa.jpf.test.basic.ListenerTest$InsnListener")){
+      System.out.println("this is verified by JPF");
+    }
+
+    if (!isJPFRun()){
+      assertTrue("no executeInstruction() notifications", Verify.getCounter(0) > 0);
+      assertTrue("executeInstruction() and instructionExecuted() notifications differ", Verify.getCounter(0) == Verify.getCounter(1));
+    }
+  }
+
+  @Test
+  public void testInheritedInstructionNotifications (){
+    if (!isJPFRun()){
+      Verify.resetCounter(0);
+      Verify.resetCounter(1);
+    }
+
+    if (verifyNoPropertyViolation("+listener=gov.nasa.jpf.test.basic.ListenerTest$DerivedInsnListener")){
+      System.out.println("this is verified by JPF");
+    }
+
+    if (!isJPFRun()){
+      assertTrue("no executeInstruction() notifications", Verify.getCounter(0) > 0);
+      assertTrue("no instructionExecuted() notifications", Verify.getCounter(1) > 0);
+    }
+  }
+
   // <2do> ... and tons more to follow
 }
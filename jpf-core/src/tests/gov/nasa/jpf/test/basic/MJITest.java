@@ -137,6 +137,29 @@ public class MJITest extends TestJPF {
     }
   }
 
+  @Test
+  public void testNativeArgumentMismatch () {
+    if (verifyNoPropertyViolation()){
+      try {
+        nativeArgumentMismatch(42); // peer takes a String
+      } catch (IllegalArgumentException iax) {
+        return;
+      } catch (Throwable t) {
+        assert false : "wrong argument mismatch exception type: " + t.getClass();
+      }
+
+      assert false : "no argument mismatch exception thrown";
+    }
+  }
+
+  @Test
+  public void testNativeIllegalArgument () {
+    // exceptions of the peer method itself are not handed back to the application
+    if (verifyJPFException(new TypeRef("gov.nasa.jpf.JPFNativePeerException"))){
+      nativeIllegalArgument(-1);
+    }
+  }
+
   @Test
   public void testNativeInstanceMethod () {
     if (verifyNoPropertyViolation()){
@@ -226,6 +249,10 @@ public class MJITest extends TestJPF {
 
   native int nativeCrash ();
 
+  native int nativeArgumentMismatch (int i);
+
+  native int nativeIllegalArgument (int i);
+
   native int nativeInstanceMethod (double d, char c, boolean b, int i);
 
   native long nativeStaticMethod (long l, String s);
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf.test.mc.basic;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import gov.nasa.jpf.tool.StateGraphConverter;
+import gov.nasa.jpf.tool.StateGraphConverter.StateGraph;
+import gov.nasa.jpf.util.test.TestJPF;
+import gov.nasa.jpf.vm.Verify;
+
+/**
+ * unit test for BitStateSet
+ */
+public class BitStateSetTest extends TestJPF {
+
+  static final String STORAGE = "+vm.storage.class=.vm.BitStateSet";
+  static final String LOG = "build/test-bitstate-graph.bin";
+
+  @Test
+  public void testExploration() {
+    if (!isJPFRun()){
+      Verify.resetCounter(0);
+    }
+
+    if (verifyNoPropertyViolation(STORAGE)) {
+      int a = Verify.getInt(0, 3);
+      int b = Verify.getInt(0, 3);
+
+      Verify.breakTransition("testExploration"); // all (a,b) are different states
+      Verify.incrementCounter(0);
+    }
+
+    if (!isJPFRun()){
+      assertTrue( Verify.getCounter(0) == 16);
+    }
+  }
+
+  @Test
+  public void testMatching() {
+    if (!isJPFRun()){
+      Verify.resetCounter(0);
+    }
+
+    if (verifyNoPropertyViolation(STORAGE)) {
+      int n = Verify.getInt(0, 5);
+      n = 0;
+
+      Verify.breakTransition("testMatching"); // all choices end up in the same state
+      Verify.incrementCounter(0);
+    }
+
+    if (!isJPFRun()){
+      assertTrue( Verify.getCounter(0) == 1);
+    }
+  }
+
+  @Test
+  public void testRevisitedIds() throws IOException {
+    // revisited states have to get the ids they were stored with, i.e. the same
+    // ones we get with the default StateSet
+    if (!isJPFRun()){
+      String[] logArgs = { "+listener=.listener.StateGraphLogger", "+state_graph.file=" + LOG };
+
+      noPropertyViolation(STORAGE, logArgs[0], logArgs[1]);
+      StateGraph g = StateGraphConverter.read(LOG);
+      noPropertyViolation(logArgs);
+      StateGraph ref = StateGraphConverter.read(LOG);
+      new File(LOG).delete();
+
+      int n = ref.getNumberOfEdges();
+      assertTrue("wrong number of edges: " + g.getNumberOfEdges(), g.getNumberOfEdges() == n);
+
+      int nRevisited = 0;
+      for (int i = 0; i < n; i++) {
+        assertTrue("wrong state id: " + g.stateIds.get(i), g.stateIds.get(i) == ref.stateIds.get(i));
+        if (!g.isNewEdge(i)) {
+          nRevisited++;
+        }
+      }
+      assertTrue("no revisited states", nRevisited > 0);
+
+    } else {
+      int a = Verify.getInt(0, 3);
+      a = a % 2; // 2 and 3 end in the states of 0 and 1
+
+      Verify.breakTransition("testRevisitedIds");
+    }
+  }
+
+  @Test
+  public void testOmissions() {
+    if (!isJPFRun()){
+      Verify.resetCounter(0);
+    }
+
+    // 64 bits and 16 bits per state, and a single id slot (which otherwise would
+    // tell us that most of the states we would omit were never stored)
+    if (verifyNoPropertyViolation(STORAGE, "+vm.storage.bitstate.size=8", "+vm.storage.bitstate.hashes=16",
+                                  "+vm.storage.bitstate.id_table=4")) {
+      int a = Verify.getInt(0, 3);
+      int b = Verify.getInt(0, 3);
+
+      Verify.breakTransition("testOmissions");
+      Verify.incrementCounter(0);
+    }
+
+    if (!isJPFRun()){
+      assertTrue( Verify.getCounter(0) < 16);
+    }
+  }
+}
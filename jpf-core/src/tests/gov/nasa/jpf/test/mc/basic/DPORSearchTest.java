@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf.test.mc.basic;
+
+import gov.nasa.jpf.JPF;
+import gov.nasa.jpf.search.dpor.DPORSearch;
+import gov.nasa.jpf.util.test.TestJPF;
+
+import org.junit.Test;
+
+/**
+ * regression test for gov.nasa.jpf.search.dpor.DPORSearch
+ *
+ * the reduced search still has to find all the defects that depend on the
+ * order of conflicting accesses
+ */
+public class DPORSearchTest extends TestJPF {
+
+  static final String SEARCH = "+search.class=.search.dpor.DPORSearch";
+
+  static class Counter {
+    int n;
+
+    void inc() {
+      int t = n;
+      n = t + 1;
+    }
+
+    synchronized void syncInc() {
+      int t = n;
+      n = t + 1;
+    }
+  }
+
+  @Test
+  public void testLostUpdate() throws InterruptedException {
+    if (verifyAssertionError(SEARCH)){
+      final Counter c = new Counter();
+
+      Thread t = new Thread() {
+        @Override
+        public void run() {
+          c.inc();
+        }
+      };
+      t.start();
+
+      c.inc();
+      t.join();
+
+      assert c.n == 2 : "lost update";
+    }
+  }
+
+  @Test
+  public void testSynchronized() throws InterruptedException {
+    if (verifyNoPropertyViolation(SEARCH)){
+      final Counter c = new Counter();
+
+      Thread t = new Thread() {
+        @Override
+        public void run() {
+          c.syncInc();
+        }
+      };
+      t.start();
+
+      c.syncInc();
+      t.join();
+
+      assert c.n == 2;
+    }
+  }
+
+  @Test
+  public void testArrayRace() throws InterruptedException {
+    if (verifyAssertionError(SEARCH)){
+      final int[] a = new int[2];
+
+      Thread t = new Thread() {
+        @Override
+        public void run() {
+          a[0] = 1;
+          a[1] = a[1] + 1;
+        }
+      };
+      t.start();
+
+      a[1] = 2;
+      t.join();
+
+      assert a[1] == 3 : "overwritten element";
+    }
+  }
+
+  static class Pair {
+    int a;
+    int b;
+  }
+
+  @Test
+  public void testIndependentFields() throws InterruptedException {
+    // the pair is shared, but each thread only writes its own field, i.e. there
+    // are scheduling points without races to reverse
+    if (!isJPFRun()){
+      JPF jpf = noPropertyViolation(SEARCH);
+
+      DPORSearch search = (DPORSearch) jpf.getSearch();
+      assertTrue("no choices pruned", search.getNumberOfPrunedChoices() > 0);
+
+    } else {
+      final Pair p = new Pair();
+
+      Thread t = new Thread() {
+        @Override
+        public void run() {
+          p.a = 1;
+          p.a = 2;
+        }
+      };
+      t.start();
+
+      p.b = 1;
+      p.b = 2;
+      t.join();
+
+      assert p.a == 2 && p.b == 2;
+    }
+  }
+
+  @Test
+  public void testDeadlock() {
+    if (verifyDeadlock(SEARCH)){
+      LockOrderInversion.run();
+    }
+  }
+
+  static class Event {
+    boolean signaled;
+
+    synchronized void signal() {
+      signaled = true;
+      notifyAll();
+    }
+
+    synchronized void waitForSignal() throws InterruptedException {
+      if (!signaled) { // missing loop is fine, there is only one signal
+        wait();
+      }
+    }
+  }
+
+  @Test
+  public void testMissedSignal() {
+    // waiting without checking the condition blocks if the signal comes first
+    if (verifyDeadlock(SEARCH)){
+      final Object lock = new Object();
+
+      Thread t = new Thread() {
+        @Override
+        public void run() {
+          synchronized (lock) {
+            lock.notify();
+          }
+        }
+      };
+      t.start();
+
+      synchronized (lock) {
+        try {
+          lock.wait();
+        } catch (InterruptedException ix) {
+          // not here
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testWaitNotify() throws InterruptedException {
+    if (verifyNoPropertyViolation(SEARCH)){
+      final Event e = new Event();
+      final Counter c = new Counter();
+
+      Thread t = new Thread() {
+        @Override
+        public void run() {
+          c.n = 42;
+          e.signal();
+        }
+      };
+      t.start();
+
+      e.waitForSignal();
+      assert c.n == 42;
+    }
+  }
+}
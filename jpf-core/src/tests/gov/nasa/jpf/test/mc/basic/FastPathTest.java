@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf.test.mc.basic;
+
+import gov.nasa.jpf.util.test.TestJPF;
+import gov.nasa.jpf.vm.Verify;
+
+import org.junit.Test;
+
+/**
+ * regression test for the thread local fast path of ThreadInfo.executeTransition()
+ */
+public class FastPathTest extends TestJPF {
+
+  static int sum (int[] a) {
+    int s = 0;
+    for (int i = 0; i < a.length; i++) {
+      s += a[i] * 3 / 3;
+    }
+    return s;
+  }
+
+  @Test
+  public void testLocalComputation() {
+    if (!isJPFRun()){
+      Verify.resetCounter(0);
+    }
+
+    if (verifyNoPropertyViolation("+vm.fast_path=true")) {
+      int n = Verify.getInt(1, 4);
+      int[] a = new int[n * 10];
+      for (int i = 0; i < a.length; i++) {
+        a[i] = i;
+      }
+
+      int s = sum(a);
+      assert s == (a.length * (a.length - 1)) / 2;
+      Verify.incrementCounter(0);
+    }
+
+    if (!isJPFRun()){
+      assertTrue( Verify.getCounter(0) == 4);
+    }
+  }
+
+  @Test
+  public void testArithmeticException() {
+    if (verifyNoPropertyViolation("+vm.fast_path=true")) {
+      int d = 10;
+      int n = 0;
+      for (int i = 0; i < 10; i++) {
+        d--;
+        try {
+          n += 100 / d;
+        } catch (ArithmeticException ax) {
+          n = -1;
+        }
+      }
+      assert n == -1;
+    }
+  }
+
+  static class Data {
+    int x;
+    int[] values = new int[8];
+  }
+
+  @Test
+  public void testSharedAfterLocal() throws InterruptedException {
+    if (verifyAssertionError("+vm.fast_path=true")) {
+      final Data d = new Data();
+
+      // d is thread local up to here
+      for (int i = 0; i < d.values.length; i++) {
+        d.values[i] = i;
+        d.x += d.values[i];
+      }
+
+      Thread t = new Thread() {
+        @Override
+        public void run() {
+          d.values[0] = 42;
+        }
+      };
+      t.start();
+
+      int v = d.values[0];
+      t.join();
+
+      assert v == 0 : "saw shared array update";
+    }
+  }
+}
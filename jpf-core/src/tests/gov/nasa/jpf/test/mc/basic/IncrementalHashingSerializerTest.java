@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gov.nasa.jpf.test.mc.basic;
+
+import gov.nasa.jpf.annotation.FilterField;
+import gov.nasa.jpf.util.test.TestJPF;
+import gov.nasa.jpf.vm.Verify;
+
+import org.junit.Test;
+
+/**
+ * regression test for IncrementalHashingSerializer based state matching
+ */
+public class IncrementalHashingSerializerTest extends TestJPF {
+
+  static final String SERIALIZER_ARG = "+vm.serializer.class=.vm.serialize.IncrementalHashingSerializer";
+
+  static class MyClass {
+    int data;
+    @FilterField int ignored;
+  }
+
+  @Test
+  public void testMatchAfterRestore() {
+    if (!isJPFRun()){
+      Verify.resetCounter(0);
+    }
+
+    if (verifyNoPropertyViolation(SERIALIZER_ARG)){
+      MyClass o = new MyClass();
+      int d = Verify.getInt(0, 5);
+      o.data = d;
+      o.data = 0; // object changed, but all choices end up with the same value
+      d = 0;
+
+      Verify.breakTransition("testMatchAfterRestore");
+      Verify.incrementCounter(0);
+    }
+
+    if (!isJPFRun()){
+      assertTrue( Verify.getCounter(0) == 1);
+    }
+  }
+
+  @Test
+  public void testDifferentValues() {
+    if (!isJPFRun()){
+      Verify.resetCounter(0);
+    }
+
+    if (verifyNoPropertyViolation(SERIALIZER_ARG)){
+      MyClass o = new MyClass();
+      int d = Verify.getInt(0, 5);
+      o.data = d % 3;
+      d = 0;
+
+      Verify.breakTransition("testDifferentValues");
+      Verify.incrementCounter(0);
+    }
+
+    if (!isJPFRun()){
+      assertTrue( Verify.getCounter(0) == 3);
+    }
+  }
+
+  @Test
+  public void testFilteredField() {
+    if (!isJPFRun()){
+      Verify.resetCounter(0);
+    }
+
+    if (verifyNoPropertyViolation(SERIALIZER_ARG)){
+      MyClass o = new MyClass();
+      int d = Verify.getInt(0, 5);
+      o.ignored = d;
+      d = 0;
+
+      Verify.breakTransition("testFilteredField");
+      Verify.incrementCounter(0);
+    }
+
+    if (!isJPFRun()){
+      assertTrue( Verify.getCounter(0) == 1);
+    }
+  }
+}
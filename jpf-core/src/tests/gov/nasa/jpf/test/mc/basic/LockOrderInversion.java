@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf.test.mc.basic;
+
+/**
+ * SUT fixture for search regression tests: two threads that acquire the same
+ * two locks in opposite order, which deadlocks for some schedules
+ */
+public class LockOrderInversion {
+
+  static class Lock {}
+
+  public static void run() {
+    final Lock l1 = new Lock();
+    final Lock l2 = new Lock();
+
+    Thread t = new Thread() {
+      @Override
+      public void run() {
+        synchronized (l2) {
+          synchronized (l1) {
+            System.out.println("t got both locks");
+          }
+        }
+      }
+    };
+    t.start();
+
+    synchronized (l1) {
+      synchronized (l2) {
+        System.out.println("main got both locks");
+      }
+    }
+  }
+}
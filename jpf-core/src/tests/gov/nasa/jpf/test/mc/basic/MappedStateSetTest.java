@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gov.nasa.jpf.test.mc.basic;
+
+import org.junit.Test;
+
+import gov.nasa.jpf.util.test.TestJPF;
+import gov.nasa.jpf.vm.Verify;
+
+/**
+ * regression test for the memory mapped gov.nasa.jpf.vm.MappedStateSet
+ */
+public class MappedStateSetTest extends TestJPF {
+
+  static final String STORAGE = "+vm.storage.class=.vm.MappedStateSet";
+  static final String FILE = "+vm.storage.file=build/MappedStateSetTest.states";
+
+  @Test
+  public void testMatching(){
+    if (!isJPFRun()){
+      Verify.resetCounter(0);
+    }
+
+    if (verifyNoPropertyViolation(STORAGE)){
+      int d = Verify.getInt(0, 5);
+      d = 0;
+      Verify.breakTransition("testMatching"); // all choices lead to the same state
+      Verify.incrementCounter(0);
+    }
+
+    if (!isJPFRun()){
+      assert Verify.getCounter(0) == 1;
+    }
+  }
+
+  @Test
+  public void testResume(){
+    if (!isJPFRun()){
+      Verify.resetCounter(0);
+    }
+
+    // the first run stores all states
+    if (verifyNoPropertyViolation(STORAGE, FILE)){
+      int d = Verify.getInt(0, 5);
+      Verify.breakTransition("testResume");
+      Verify.incrementCounter(0);
+    }
+
+    if (!isJPFRun()){
+      assert Verify.getCounter(0) == 6;
+      Verify.resetCounter(0);
+    }
+
+    // the second run finds all of them done
+    if (verifyNoPropertyViolation(STORAGE, FILE, "+vm.storage.resume")){
+      int d = Verify.getInt(0, 5);
+      Verify.breakTransition("testResume");
+      Verify.incrementCounter(0);
+    }
+
+    if (!isJPFRun()){
+      assert Verify.getCounter(0) == 0;
+    }
+  }
+
+  @Test
+  public void testResumeAfterDepthLimit(){
+    if (!isJPFRun()){
+      Verify.resetCounter(0);
+    }
+
+    // the depth limit cuts off the successors, i.e. the states are not done
+    if (verifyNoPropertyViolation(STORAGE, FILE, "+search.depth_limit=1")){
+      int d = Verify.getInt(0, 5);
+      Verify.breakTransition("testResumeAfterDepthLimit");
+      Verify.incrementCounter(0);
+    }
+
+    if (!isJPFRun()){
+      assert Verify.getCounter(0) == 0;
+    }
+
+    if (verifyNoPropertyViolation(STORAGE, FILE, "+vm.storage.resume")){
+      int d = Verify.getInt(0, 5);
+      Verify.breakTransition("testResumeAfterDepthLimit");
+      Verify.incrementCounter(0);
+    }
+
+    if (!isJPFRun()){
+      assert Verify.getCounter(0) == 6;
+    }
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gov.nasa.jpf.test.mc.basic;
+
+import org.junit.Test;
+
+import gov.nasa.jpf.util.test.TestJPF;
+import gov.nasa.jpf.vm.Verify;
+
+/**
+ * unit test for PagedHeap, which only restores the objects on pages that
+ * changed since the restored state was stored
+ */
+public class PagedHeapTest extends TestJPF {
+
+  // small pages so that the SUT objects spread over several of them
+  static final String[] HEAP = { "+vm.heap.class=.vm.PagedHeap", "+vm.heap.page_bits=2" };
+
+  static class X {
+    int data;
+    X next;
+  }
+
+  @Test
+  public void testRestore() {
+    if (verifyNoPropertyViolation(HEAP)) {
+      X[] xs = new X[20];
+      for (int i = 0; i < xs.length; i++) {
+        xs[i] = new X();
+      }
+
+      int n = Verify.getInt(0, 3);
+
+      for (int i = 0; i < xs.length; i++) {
+        assertTrue("object not restored", xs[i].data == 0);
+        assertTrue("reference not restored", xs[i].next == null);
+      }
+
+      xs[n * 5].data = n + 1;
+      xs[19 - n].next = new X(); // allocation after restore
+    }
+  }
+
+  @Test
+  public void testLocks() {
+    if (verifyNoPropertyViolation(HEAP)) {
+      X[] xs = new X[20];
+      for (int i = 0; i < xs.length; i++) {
+        xs[i] = new X();
+      }
+
+      synchronized (xs[3]) {
+        int n = Verify.getInt(0, 3);
+
+        // lock owner has to survive restores that don't touch its page
+        assertTrue("lost lock", Thread.holdsLock(xs[3]));
+        assertTrue("stale lock", !Thread.holdsLock(xs[17]));
+
+        synchronized (xs[17]) {
+          xs[17].data = n;
+          Verify.breakTransition("testLocks");
+          assertTrue("lost nested lock", Thread.holdsLock(xs[17]));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testGarbage() {
+    if (verifyNoPropertyViolation(HEAP)) {
+      X x = new X();
+
+      int n = Verify.getInt(0, 3);
+      for (int i = 0; i < n * 20; i++) {
+        x.next = new X(); // the previous one is garbage
+        x.next.data = i;
+      }
+
+      Verify.breakTransition("testGarbage"); // gc
+      assertTrue("wrong value", (n == 0) || (x.next.data == n * 20 - 1));
+    }
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf.test.mc.basic;
+
+import gov.nasa.jpf.Error;
+import gov.nasa.jpf.JPF;
+import gov.nasa.jpf.util.test.TestJPF;
+import gov.nasa.jpf.vm.Verify;
+
+import java.util.HashSet;
+
+import org.junit.Test;
+
+/**
+ * regression test for gov.nasa.jpf.search.parallel.ParallelChoiceSearch
+ */
+public class ParallelChoiceSearchTest extends TestJPF {
+
+  static final String SEARCH = "+search.class=.search.parallel.ParallelChoiceSearch";
+  static final String WORKERS = "+search.parallel.workers=3";
+
+  @Test
+  public void testNoViolation() {
+    if (verifyNoPropertyViolation(SEARCH, WORKERS)){
+      int a = Verify.getInt(0, 9);
+      int b = Verify.getInt(0, 3);
+
+      assert (a + b) <= 12;
+    }
+  }
+
+  @Test
+  public void testAssertion() {
+    if (verifyAssertionError(SEARCH, WORKERS)){
+      int a = Verify.getInt(0, 9);
+      int b = Verify.getInt(0, 3);
+
+      assert (a != 7 || b != 2) : "found it";
+    }
+  }
+
+  @Test
+  public void testAssertionInPrefix() {
+    if (verifyAssertionError(SEARCH, WORKERS)){
+      int n = 42;
+      assert n < 42 : "before any choice";
+    }
+  }
+
+  @Test
+  public void testRootPartitioning() {
+    // each choice of the root CG has to be claimed and explored by one of the
+    // workers, i.e. we get exactly one error for each of them
+    if (!isJPFRun()){
+      JPF jpf = assertionError(SEARCH, WORKERS, "+search.multiple_errors=true");
+
+      HashSet<String> choices = new HashSet<String>();
+      for (Error e : jpf.getSearch().getErrors()){
+        String details = e.getDetails().trim();
+        int i = details.indexOf('\n');
+        choices.add( (i > 0) ? details.substring(0, i) : details);
+      }
+      assertTrue("wrong number of errors: " + jpf.getSearch().getErrors().size(),
+                 jpf.getSearch().getErrors().size() == 8);
+      for (int i = 0; i < 8; i++){
+        assertTrue("choice not explored: " + i, choices.contains("java.lang.AssertionError: choice " + i));
+      }
+
+    } else {
+      int a = Verify.getInt(0, 7);
+      int b = Verify.getInt(0, 1);
+
+      assert b == 0 : "choice " + a;
+    }
+  }
+
+  @Test
+  public void testThreadRoot() {
+    if (verifyDeadlock(SEARCH, WORKERS, "+search.parallel.split_depth=3")){
+      LockOrderInversion.run();
+    }
+  }
+}
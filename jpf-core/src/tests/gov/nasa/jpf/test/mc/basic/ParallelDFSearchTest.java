@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gov.nasa.jpf.test.mc.basic;
+
+import gov.nasa.jpf.util.test.TestJPF;
+import gov.nasa.jpf.vm.Verify;
+
+import org.junit.Test;
+
+/**
+ * regression test for gov.nasa.jpf.search.parallel.ParallelDFSearch
+ *
+ * note that workers run in their own isolated JPFs, i.e. we can't use
+ * Verify counters to check how often something was executed
+ */
+public class ParallelDFSearchTest extends TestJPF {
+
+  static final String SEARCH = "+search.class=.search.parallel.ParallelDFSearch";
+  static final String WORKERS = "+search.parallel.workers=2";
+
+  @Test
+  public void testNoViolation() {
+    if (verifyNoPropertyViolation(SEARCH, WORKERS, "+search.parallel.split_depth=2")){
+      int a = Verify.getInt(0, 3);
+      int b = Verify.getInt(0, 3);
+      int c = Verify.getInt(0, 3);
+
+      assert (a + b + c) <= 9;
+    }
+  }
+
+  @Test
+  public void testAssertionBelowSplit() {
+    if (verifyAssertionError(SEARCH, WORKERS, "+search.parallel.split_depth=1")){
+      int a = Verify.getInt(0, 3);
+      int b = Verify.getInt(0, 3);
+      int c = Verify.getInt(0, 3);
+
+      assert (a + b + c) < 9 : "all max";
+    }
+  }
+
+  @Test
+  public void testAssertionAboveSplit() {
+    if (verifyAssertionError(SEARCH, WORKERS, "+search.parallel.split_depth=10")){
+      boolean b = Verify.getBoolean();
+
+      assert b : "false branch";
+    }
+  }
+
+  @Test
+  public void testDeadlock() {
+    if (verifyDeadlock(SEARCH, WORKERS, "+search.parallel.split_depth=3")){
+      LockOrderInversion.run();
+    }
+  }
+}
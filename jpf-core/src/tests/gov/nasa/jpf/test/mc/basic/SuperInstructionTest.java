@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf.test.mc.basic;
+
+import gov.nasa.jpf.util.test.TestJPF;
+import gov.nasa.jpf.vm.Verify;
+
+import org.junit.Test;
+
+/**
+ * regression test for superinstructions (fused bytecode sequences) that are
+ * executed on the thread local fast path
+ */
+public class SuperInstructionTest extends TestJPF {
+
+  static class Point {
+    int x, y;
+    Point (int x, int y){
+      this.x = x;
+      this.y = y;
+    }
+  }
+
+  static int compute (int[] a, Point p) {
+    int s = 0;
+    for (int i = 0; i < a.length; i++) {
+      int v = a[i];
+      if (v > 2) {
+        s = s + v;      // ILOAD,ILOAD,IADD,ISTORE
+      } else {
+        s = s ^ 1;      // ILOAD,ICONST,IXOR,ISTORE
+      }
+      s = s + p.x;
+    }
+    return s;
+  }
+
+  @Test
+  public void testLoop() {
+    if (!isJPFRun()){
+      Verify.resetCounter(0);
+    }
+
+    if (verifyNoPropertyViolation("+jvm.superinstructions=true")) {
+      int n = Verify.getInt(1, 3);
+      int[] a = new int[n * 4];
+      for (int i = 0; i < a.length; i++) {
+        a[i] = i;
+      }
+      Point p = new Point(n, 0);
+
+      int expected = 0;
+      for (int i = 0; i < a.length; i++) {
+        int v = a[i];
+        expected = (v > 2) ? expected + v : expected ^ 1;
+        expected += n;
+      }
+
+      assert compute(a, p) == expected;
+      Verify.incrementCounter(0);
+    }
+
+    if (!isJPFRun()){
+      assertTrue( Verify.getCounter(0) == 3);
+    }
+  }
+
+  @Test
+  public void testBranchIntoSequence() {
+    if (verifyNoPropertyViolation("+jvm.superinstructions=true")) {
+      int s = 0;
+      for (int i = 0; i < 10; i++) {
+        boolean c = (i % 2) == 0;
+        int a = i;
+        int b = -i;
+        // the 'a' branch jumps into the middle of the fused 'b' sequence
+        s = (c ? a : b) + 1;
+        assert s == (c ? i + 1 : 1 - i);
+      }
+    }
+  }
+
+  @Test
+  public void testSharedFieldRead() throws InterruptedException {
+    if (verifyAssertionError("+jvm.superinstructions=true")) {
+      final Point p = new Point(0, 0);
+
+      Thread t = new Thread() {
+        @Override
+        public void run() {
+          p.x = 42;
+        }
+      };
+      t.start();
+
+      int x = p.x;
+      t.join();
+
+      assert x == 0 : "saw shared field update";
+    }
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf.test.mc.data;
+
+import gov.nasa.jpf.util.test.TestJPF;
+import gov.nasa.jpf.vm.Verify;
+
+import org.junit.Test;
+
+/**
+ * regression test for the DataChoiceReducer listener
+ */
+public class DataChoiceReducerTest extends TestJPF {
+
+  static final String LISTENER = "+listener=gov.nasa.jpf.listener.DataChoiceReducer";
+
+  static boolean isBelow (int x, int limit) {
+    return x < limit;
+  }
+
+  @Test
+  public void testComparisons () {
+    if (!isJPFRun()) {
+      Verify.resetCounter(0);
+    }
+
+    if (verifyNoPropertyViolation(LISTENER)) {
+      int a = Verify.getInt(0, 20);
+      int b = Verify.getInt(0, 20);
+
+      if (isBelow(a, 5)) {   // a: [0..4], [5..20]
+        System.out.println("a is small");
+      }
+      switch (b) {           // b: 3, other
+        case 3:
+          System.out.println("b is 3");
+      }
+      Verify.incrementCounter(0);
+    }
+
+    if (!isJPFRun()) {
+      assertTrue("wrong number of paths: " + Verify.getCounter(0), Verify.getCounter(0) == 4);
+    }
+  }
+
+  static class Holder {
+    int value;
+  }
+
+  @Test
+  public void testCopies () {
+    if (!isJPFRun()) {
+      Verify.resetCounter(0);
+    }
+
+    if (verifyNoPropertyViolation(LISTENER)) {
+      int[] a = new int[1];
+      a[0] = Verify.getInt(0, 9);
+      Holder h = new Holder();
+      h.value = a[0];
+      int x = h.value;
+
+      if (x == 7) {
+        System.out.println("got 7");
+      }
+      Verify.incrementCounter(0);
+    }
+
+    if (!isJPFRun()) {
+      assertTrue("wrong number of paths: " + Verify.getCounter(0), Verify.getCounter(0) == 2);
+    }
+  }
+
+  @Test
+  public void testEscape () {
+    if (!isJPFRun()) {
+      Verify.resetCounter(0);
+    }
+
+    if (verifyNoPropertyViolation(LISTENER)) {
+      int a = Verify.getInt(0, 9);
+      int b = a * 2;  // we don't know what this does to comparisons
+
+      if (b > 4) {
+        System.out.println("b is big");
+      }
+      Verify.incrementCounter(0);
+    }
+
+    if (!isJPFRun()) {
+      assertTrue("wrong number of paths: " + Verify.getCounter(0), Verify.getCounter(0) == 10);
+    }
+  }
+
+  @Test
+  public void testViolation () {
+    if (verifyAssertionError(LISTENER)) {
+      int a = Verify.getInt(0, 20);
+      int b = Verify.getInt(0, 20);
+
+      if (a > 15) {
+        assert b != 13 : "a > 15 && b == 13";
+      }
+    }
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf.test.vm.basic;
+
+import gov.nasa.jpf.JPF;
+import gov.nasa.jpf.util.test.TestJPF;
+import gov.nasa.jpf.vm.Path;
+import gov.nasa.jpf.vm.Transition;
+import gov.nasa.jpf.vm.Verify;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.junit.Test;
+
+/**
+ * regression test for vm.capture_output
+ */
+public class OutputCaptureTest extends TestJPF {
+
+  static String getOutput (Path path) {
+    StringBuilder sb = new StringBuilder();
+    for (Transition t : path) {
+      String s = t.getOutput();
+      if (s != null) {
+        sb.append(s);
+      }
+    }
+    return sb.toString();
+  }
+
+  @Test
+  public void testErrorTraceOutput () {
+    if (!isJPFRun()) {
+      JPF jpf = assertionError("+vm.capture_output");
+
+      // only the output of the error path is kept
+      String output = getOutput(jpf.getSearchErrors().get(0).getPath());
+      assertTrue("wrong error trace output: " + output, output.equals("i=2\nboom\n"));
+
+    } else {
+      int i = Verify.getInt(0, 2);
+      System.out.println("i=" + i);
+      if (i == 2) {
+        System.out.println("boom");
+        assert false : "gotcha";
+      }
+    }
+  }
+
+  @Test
+  public void testSampledOutput () throws Exception {
+    if (!isJPFRun()) {
+      File file = File.createTempFile("jpf-output", ".txt");
+      try {
+        noPropertyViolation("+vm.capture_output", "+vm.capture_output.sample=2", "+vm.output_file=" + file.getPath());
+
+        // end states 2 and 4 are sampled
+        String output = new String(Files.readAllBytes(file.toPath()));
+        assertTrue("missing sample: " + output, output.contains("output of path 2\nv=1\n"));
+        assertTrue("missing sample: " + output, output.contains("output of path 4\nv=3\n"));
+        assertFalse("unexpected sample: " + output, output.contains("v=0") || output.contains("v=2"));
+
+      } finally {
+        file.delete();
+      }
+
+    } else {
+      int i = Verify.getInt(0, 3);
+      System.out.println("v=" + i);
+    }
+  }
+
+  @Test
+  public void testTreeOutputFile () throws Exception {
+    if (!isJPFRun()) {
+      File file = File.createTempFile("jpf-output", ".txt");
+      try {
+        noPropertyViolation("+vm.output_file=" + file.getPath());
+
+        String output = new String(Files.readAllBytes(file.toPath()));
+        assertTrue("wrong tree output: " + output, output.equals("t=0\nt=1\n"));
+
+      } finally {
+        file.delete();
+      }
+
+    } else {
+      boolean b = Verify.getBoolean();
+      System.out.println("t=" + (b ? 1 : 0));
+    }
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf.tool;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.util.test.TestJPF;
+import gov.nasa.jpf.vm.Verify;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+/**
+ * regression test for JPFServer. The host side runs a server and submits jobs
+ * that execute the SUT methods of this class
+ */
+public class JPFServerTest extends TestJPF {
+
+  public void violation() {
+    int a = Verify.getInt(0, 3);
+    assert a < 3 : "got 3";
+  }
+
+  public void noViolation() {
+    int a = Verify.getInt(0, 3);
+    assert a <= 3;
+  }
+
+  String getJob (String testMethod) {
+    return "+classpath+=," + new File("build/tests").getAbsolutePath()
+        + " +target=" + getClass().getName()
+        + " +target.entry=runTestMethod([Ljava/lang/String;)V"
+        + " +target.test_method=" + testMethod;
+  }
+
+  static String getResult (ArrayList<String> lines, int jobId, String status) {
+    String prefix = "{\"job\":" + jobId + ",\"status\":\"" + status + '"';
+    for (String line : lines) {
+      if (line.startsWith(prefix)) {
+        return line;
+      }
+    }
+    return null;
+  }
+
+  @Test
+  public void testJobs() throws Exception {
+    final JPFServer server = new JPFServer( new Config( new String[] {"+server.workers=2"}));
+    server.open();
+
+    Thread t = new Thread() {
+      @Override
+      public void run() {
+        try {
+          server.serve();
+        } catch (Exception x) {
+          x.printStackTrace();
+        }
+      }
+    };
+    t.start();
+
+    ArrayList<String> lines = new ArrayList<String>();
+    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+      PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+      out.println( getJob("violation"));
+      out.println( getJob("noViolation"));
+      out.println( "NoSuchClass");
+      out.println( JPFServer.SHUTDOWN); // pending jobs still get processed
+
+      BufferedReader in = new BufferedReader( new InputStreamReader(socket.getInputStream()));
+      String line;
+      while ((line = in.readLine()) != null) {
+        lines.add(line);
+      }
+    }
+    t.join();
+
+    assertTrue( lines.size() == 6);
+    for (int i = 1; i <= 3; i++) {
+      assertTrue( getResult(lines, i, "queued") != null);
+    }
+
+    String result = getResult(lines, 1, "finished");
+    assertTrue( result != null);
+    assertTrue( result.contains("\"errors\":[\"gov.nasa.jpf.vm.NoUncaughtExceptionsProperty"));
+
+    result = getResult(lines, 2, "finished");
+    assertTrue( result != null);
+    assertTrue( result.contains("\"errors\":[]"));
+    assertTrue( result.contains("\"endStates\":4"));
+
+    assertTrue( getResult(lines, 3, "failed") != null);
+  }
+
+  @Test
+  public void testSplitArgs() {
+    String[] args = JPFServer.splitArgs("  +a=1  \"+b=x y\" +c=\"z \\\"w\\\"\" Main ");
+    assertTrue( args.length == 4);
+    assertTrue( args[0].equals("+a=1"));
+    assertTrue( args[1].equals("+b=x y"));
+    assertTrue( args[2].equals("+c=z \"w\""));
+    assertTrue( args[3].equals("Main"));
+  }
+
+  @Test
+  public void testJobAfterShutdown() throws Exception {
+    final JPFServer server = new JPFServer( new Config( new String[] {"+server.workers=1"}));
+    server.open();
+
+    Thread t = new Thread() {
+      @Override
+      public void run() {
+        try {
+          server.serve();
+        } catch (Exception x) {
+          x.printStackTrace();
+        }
+      }
+    };
+    t.start();
+
+    ArrayList<String> lines = new ArrayList<String>();
+    try (Socket other = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+         Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+      PrintWriter otherOut = new PrintWriter(other.getOutputStream(), true);
+      otherOut.println( JPFServer.SHUTDOWN);
+      while (!server.isShutdown) {
+        Thread.sleep(10);
+      }
+
+      // the connection is still open, but its jobs are not executed anymore
+      PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+      out.println( getJob("noViolation"));
+      socket.shutdownOutput();
+
+      BufferedReader in = new BufferedReader( new InputStreamReader(socket.getInputStream()));
+      String line;
+      while ((line = in.readLine()) != null) {
+        lines.add(line);
+      }
+    }
+    t.join();
+
+    assertTrue( lines.size() == 1);
+    assertTrue( lines.get(0).contains("\"status\":\"failed\""));
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gov.nasa.jpf.util;
+
+import gov.nasa.jpf.util.test.TestJPF;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * unit test for ConcurrentFingerprintTable
+ */
+public class ConcurrentFingerprintTableTest extends TestJPF {
+
+  static long fingerprint (int i) {
+    return (i * 0x9e3779b97f4a7c15L) ^ 0x5bd1e995L;
+  }
+
+  @Test
+  public void testGetOrAdd() {
+    ConcurrentFingerprintTable tbl = new ConcurrentFingerprintTable();
+    final int N = 10000; // enough to resize a couple of times
+
+    for (int i = 0; i < N; i++) {
+      assertTrue( tbl.getOrAdd(fingerprint(i), i) == i);
+    }
+
+    for (int i = 0; i < N; i++) {
+      assertTrue( tbl.getOrAdd(fingerprint(i), N + i) == i);
+      assertTrue( tbl.get(fingerprint(i)) == i);
+    }
+
+    assertTrue( tbl.get(fingerprint(N)) == -1);
+    assertTrue( tbl.size() == N);
+  }
+
+  @Test
+  public void testZeroKey() {
+    ConcurrentFingerprintTable tbl = new ConcurrentFingerprintTable();
+
+    assertTrue( tbl.getOrAdd(0L, 42) == 42);
+    assertTrue( tbl.getOrAdd(0L, 43) == 42);
+    assertTrue( tbl.get(0L) == 42);
+  }
+
+  @Test
+  public void testExpectedSize() {
+    ConcurrentFingerprintTable tbl = new ConcurrentFingerprintTable(100000);
+    int capacity = tbl.getCapacity();
+
+    for (int i = 0; i < 100000; i++) {
+      tbl.getOrAdd(fingerprint(i), i);
+    }
+
+    assertTrue( tbl.getCapacity() == capacity);
+  }
+
+  @Test
+  public void testConcurrentAdd() throws InterruptedException {
+    final ConcurrentFingerprintTable tbl = new ConcurrentFingerprintTable();
+    final int N = 50000;
+    final int nThreads = 4;
+    final AtomicInteger ids = new AtomicInteger();
+    final AtomicInteger nNew = new AtomicInteger();
+    final int[][] results = new int[nThreads][N];
+
+    Thread[] threads = new Thread[nThreads];
+    for (int t = 0; t < nThreads; t++) {
+      final int[] res = results[t];
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          for (int i = 0; i < N; i++) {
+            int id = ids.getAndIncrement();
+            res[i] = tbl.getOrAdd(fingerprint(i), id);
+            if (res[i] == id) {
+              nNew.incrementAndGet();
+            }
+          }
+        }
+      };
+      threads[t].start();
+    }
+
+    for (Thread t : threads) {
+      t.join();
+    }
+
+    // each key was added exactly once, and all threads agree on its id
+    assertTrue( nNew.get() == N);
+    assertTrue( tbl.size() == N);
+    for (int i = 0; i < N; i++) {
+      for (int t = 1; t < nThreads; t++) {
+        assertTrue( results[t][i] == results[0][i]);
+      }
+      assertTrue( tbl.get(fingerprint(i)) == results[0][i]);
+    }
+  }
+}
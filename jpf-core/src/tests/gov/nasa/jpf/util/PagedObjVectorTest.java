@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package gov.nasa.jpf.util;
+
+import java.util.Iterator;
+
+import org.junit.Test;
+
+import gov.nasa.jpf.util.test.TestJPF;
+
+/**
+ * regression test for PagedObjVector
+ */
+public class PagedObjVectorTest extends TestJPF {
+
+  @Test
+  public void testSetGet () {
+    PagedObjVector<Integer> v = new PagedObjVector<Integer>(2); // 4 elements per page
+
+    v.set(1, 1);
+    v.set(42, 42);
+    assertTrue( v.size() == 43);
+    assertTrue( v.get(1) == 1);
+    assertTrue( v.get(42) == 42);
+    assertTrue( v.get(0) == null);
+    assertTrue( v.get(20) == null);
+    assertTrue( v.get(1000) == null);
+
+    assertTrue( v.remove(42) == 42);
+    assertTrue( v.get(42) == null);
+  }
+
+  @Test
+  public void testSnapshot () {
+    PagedObjVector<Integer> v = new PagedObjVector<Integer>(2);
+
+    // empty snapshot
+    PagedObjVector.Snapshot<Integer> snap = v.getSnapshot();
+    v.set(0, 0);
+    v.restore(snap);
+    assertTrue( v.size() == 0 && v.get(0) == null);
+
+    for (int i = 0; i < 20; i++) {
+      v.set(i, i);
+    }
+    PagedObjVector.Snapshot<Integer> snap0 = v.getSnapshot();
+
+    // modify one page, remove from another and grow
+    v.set(5, 500);
+    v.remove(10);
+    v.set(100, 100);
+    PagedObjVector.Snapshot<Integer> snap1 = v.getSnapshot();
+
+    v.set(5, 5000);
+    v.set(6, 6000);
+
+    v.restore(snap0);
+    assertTrue( v.size() == 20);
+    for (int i = 0; i < 20; i++) {
+      assertTrue( v.get(i) == i);
+    }
+    assertTrue( v.get(100) == null);
+
+    v.restore(snap1);
+    assertTrue( v.size() == 101);
+    assertTrue( v.get(5) == 500);
+    assertTrue( v.get(6) == 6);
+    assertTrue( v.get(10) == null);
+    assertTrue( v.get(100) == 100);
+
+    // the snapshots are not affected by changes after restoring them
+    v.set(5, 42);
+    v.restore(snap1);
+    assertTrue( v.get(5) == 500);
+    v.restore(snap0);
+    assertTrue( v.get(5) == 5);
+  }
+
+  @Test
+  public void testIterator () {
+    PagedObjVector<Integer> v = new PagedObjVector<Integer>(2);
+    int[] values = { 1, 2, 3, 17, 18, 200 };
+
+    for (int i : values) {
+      v.set(i, i);
+    }
+
+    int n = 0;
+    for (Integer e : v) {
+      assertTrue( e == values[n++]);
+    }
+    assertTrue( n == values.length);
+  }
+
+  @Test
+  public void testIteratorRemove () {
+    PagedObjVector<Integer> v = new PagedObjVector<Integer>(2);
+    for (int i = 0; i < 10; i++) {
+      v.set(i, i);
+    }
+
+    for (Iterator<Integer> it = v.iterator(); it.hasNext(); ) {
+      if (it.next() % 2 == 0) {
+        it.remove();
+      }
+    }
+
+    int n = 0;
+    for (Integer e : v) {
+      assertTrue( e % 2 == 1);
+      n++;
+    }
+    assertTrue( n == 5);
+  }
+
+  @Test
+  public void testChangedPages () {
+    PagedObjVector<Integer> v = new PagedObjVector<Integer>(2); // 4 elements per page
+    for (int i = 0; i < 16; i++) {
+      v.set(i, i);
+    }
+    PagedObjVector.Snapshot<Integer> snap = v.getSnapshot();
+
+    v.set(5, 500);   // page 1
+    v.remove(14);    // page 3
+    v.set(20, 20);   // page 5 (new)
+
+    IntVector changedPages = new IntVector();
+    v.restore(snap, changedPages);
+
+    assertTrue( changedPages.size() == 3);
+    assertTrue( changedPages.contains(1) && changedPages.contains(3) && changedPages.contains(5));
+    assertTrue( v.get(5) == 5 && v.get(14) == 14 && v.get(20) == null);
+
+    // nothing changed since the restore
+    changedPages.clear();
+    v.restore(snap, changedPages);
+    assertTrue( changedPages.size() == 0);
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf.vm;
+
+import gov.nasa.jpf.util.HashData;
+import gov.nasa.jpf.util.IntVector;
+import gov.nasa.jpf.util.test.TestJPF;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * unit test for the chunked copy-on-write storage of IntArrayFields
+ */
+public class IntArrayFieldsTest extends TestJPF {
+
+  static final int LEN = IntArrayFields.MIN_CHUNKED_LENGTH + 17; // last chunk is partial
+
+  static IntArrayFields createFields () {
+    IntArrayFields f = new IntArrayFields(LEN);
+    for (int i=0; i<LEN; i++) {
+      f.setIntValue(i, i);
+    }
+    return f;
+  }
+
+  static int hash (Fields f) {
+    HashData hd = new HashData();
+    f.hash(hd);
+    return hd.getValue();
+  }
+
+  @Test
+  public void testCloneIsolation() {
+    IntArrayFields f0 = createFields();
+    assertFalse( f0.isChunked());
+
+    IntArrayFields f1 = f0.clone();
+    assertTrue( f1.isChunked());
+    assertTrue( f1.equals(f0) && f0.equals(f1));
+    assertTrue( hash(f0) == hash(f1));
+
+    IntArrayFields f2 = f1.clone(); // shares all chunks with f1
+    f2.setIntValue(5, -5);
+    f2.setIntValue(LEN-1, -1);
+    f1.setIntValue(6, -6);
+
+    assertTrue( f0.getIntValue(5) == 5 && f0.getIntValue(6) == 6);
+    assertTrue( f1.getIntValue(5) == 5 && f1.getIntValue(6) == -6 && f1.getIntValue(LEN-1) == LEN-1);
+    assertTrue( f2.getIntValue(5) == -5 && f2.getIntValue(6) == 6 && f2.getIntValue(LEN-1) == -1);
+
+    assertFalse( f1.equals(f2));
+    assertTrue( f1.arrayLength() == LEN && f2.arrayLength() == LEN);
+
+    try {
+      f2.getIntValue(LEN);
+      fail("no exception for index out of bounds");
+    } catch (ArrayIndexOutOfBoundsException x) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testFlatten() {
+    IntArrayFields f1 = createFields().clone();
+    IntArrayFields f2 = f1.clone();
+    f2.setIntValue(300, 42);
+
+    IntVector v1 = new IntVector();
+    f2.appendTo(v1);
+    int h = hash(f2);
+
+    int[] a = f2.asIntArray(); // flat again, can be modified in place
+    assertFalse( f2.isChunked());
+    assertTrue( a.length == LEN && a[300] == 42 && a[301] == 301);
+    assertTrue( h == hash(f2));
+
+    IntVector v2 = new IntVector();
+    f2.appendTo(v2);
+    assertTrue( Arrays.equals(v1.toArray(), v2.toArray()));
+
+    a[301] = 43;
+    assertTrue( f2.getIntValue(301) == 43);
+    assertTrue( f1.getIntValue(300) == 300 && f1.getIntValue(301) == 301);
+  }
+
+  @Test
+  public void testCopyElements() {
+    IntArrayFields f = createFields().clone();
+    f.copyElements(f, 0, 1, LEN-1); // overlapping
+
+    assertTrue( f.isChunked());
+    assertTrue( f.getIntValue(0) == 0);
+    for (int i=1; i<LEN; i++) {
+      assertTrue( f.getIntValue(i) == i-1);
+    }
+  }
+
+  @Test
+  public void testLargeArray() {
+    if (verifyNoPropertyViolation()) {
+      int[] a = new int[5000];
+      int n = Verify.getInt(0, 3);
+      a[n * 1000] = n + 1;
+      Verify.breakTransition("modify");
+      a[4999] = n;
+
+      for (int i=0; i<a.length; i++) {
+        if (i == n * 1000) {
+          assert a[i] == n + 1;
+        } else if (i == 4999) {
+          assert a[i] == n;
+        } else {
+          assert a[i] == 0;
+        }
+      }
+    }
+  }
+}